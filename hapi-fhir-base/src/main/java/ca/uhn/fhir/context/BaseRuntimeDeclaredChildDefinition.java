@@ -38,10 +38,10 @@ import ca.uhn.fhir.util.BeanUtils;
 
 public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChildDefinition {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseRuntimeDeclaredChildDefinition.class);
-	private Boolean ourUseMethodAccessors;
 	private final IAccessor myAccessor;
 	private final String myElementName;
 	private final Field myField;
+	private final ChildFieldAccess myFieldAccess;
 	private final String myFormalDefinition;
 	private final int myMax;
 	private final int myMin;
@@ -77,18 +77,16 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 
 		// TODO: handle lists (max>0), and maybe max=0?
 
-		// TODO: finish implementing field level accessors/mutators
-		if (ourUseMethodAccessors == null) {
-			try {
-				myField.setAccessible(true);
-				ourUseMethodAccessors = false;
-			} catch (SecurityException e) {
-				ourLog.info("Can not use field accessors/mutators, going to use methods instead");
-				ourUseMethodAccessors = true;
-			}
+		ChildFieldAccess fieldAccess;
+		try {
+			fieldAccess = ChildFieldAccess.forField(myField);
+		} catch (SecurityException e) {
+			ourLog.info("Can not use field accessors/mutators, going to use methods instead");
+			fieldAccess = null;
 		}
+		myFieldAccess = fieldAccess;
 
-		if (ourUseMethodAccessors == false) {
+		if (myFieldAccess != null) {
 			if (List.class.equals(myField.getType())) {
 				// TODO: verify that generic type is IElement
 				myAccessor = new FieldListAccessor();
@@ -200,13 +198,7 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 	protected final class FieldPlainMutator implements IMutator {
 		@Override
 		public void addValue(Object theTarget, IBase theValue) {
-			try {
-				myField.set(theTarget, theValue);
-			} catch (IllegalArgumentException e) {
-				throw new ConfigurationException("Failed to set value", e);
-			} catch (IllegalAccessException e) {
-				throw new ConfigurationException("Failed to set value", e);
-			}
+			myFieldAccess.set(theTarget, theValue);
 		}
 
 		@Override
@@ -218,18 +210,12 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 	private final class FieldPlainAccessor implements IAccessor {
 		@Override
 		public List<IBase> getValues(Object theTarget) {
-			try {
-				Object values = myField.get(theTarget);
-				if (values == null) {
-					return Collections.emptyList();
-				}
-				List<IBase> retVal = Collections.singletonList((IBase)values);
-				return retVal;
-			} catch (IllegalArgumentException e) {
-				throw new ConfigurationException("Failed to get value", e);
-			} catch (IllegalAccessException e) {
-				throw new ConfigurationException("Failed to get value", e);
+			Object values = myFieldAccess.get(theTarget);
+			if (values == null) {
+				return Collections.emptyList();
 			}
+			List<IBase> retVal = Collections.singletonList((IBase)values);
+			return retVal;
 		}
 	}
 
@@ -245,22 +231,16 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 		}
 
 		private void addValue(Object theTarget, IBase theValue, boolean theClear) {
-			try {
-				@SuppressWarnings("unchecked")
-				List<IBase> existingList = (List<IBase>) myField.get(theTarget);
-				if (existingList == null) {
-					existingList = new ArrayList<IBase>(2);
-					myField.set(theTarget, existingList);
-				}
-				if (theClear) {
-					existingList.clear();
-				}
-				existingList.add(theValue);
-			} catch (IllegalArgumentException e) {
-				throw new ConfigurationException("Failed to set value", e);
-			} catch (IllegalAccessException e) {
-				throw new ConfigurationException("Failed to set value", e);
+			@SuppressWarnings("unchecked")
+			List<IBase> existingList = (List<IBase>) myFieldAccess.get(theTarget);
+			if (existingList == null) {
+				existingList = new ArrayList<IBase>(2);
+				myFieldAccess.set(theTarget, existingList);
+			}
+			if (theClear) {
+				existingList.clear();
 			}
+			existingList.add(theValue);
 		}
 	}
 
@@ -268,14 +248,7 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 		@SuppressWarnings("unchecked")
 		@Override
 		public List<IBase> getValues(Object theTarget) {
-			List<IBase> retVal;
-			try {
-				retVal = (List<IBase>) myField.get(theTarget);
-			} catch (IllegalArgumentException e) {
-				throw new ConfigurationException("Failed to get value", e);
-			} catch (IllegalAccessException e) {
-				throw new ConfigurationException("Failed to get value", e);
-			}
+			List<IBase> retVal = (List<IBase>) myFieldAccess.get(theTarget);
 			if (retVal == null) {
 				retVal = Collections.emptyList();
 			}
@@ -27,6 +27,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.hl7.fhir.instance.model.api.IBase;
@@ -45,7 +46,8 @@ public abstract class BaseRuntimeElementDefinition<T extends IBase> {
 	private List<RuntimeChildDeclaredExtensionDefinition> myExtensionsModifier = new ArrayList<RuntimeChildDeclaredExtensionDefinition>();
 	private List<RuntimeChildDeclaredExtensionDefinition> myExtensionsNonModifier = new ArrayList<RuntimeChildDeclaredExtensionDefinition>();
 	private final boolean myStandardType;
-	private Map<Class<?>, Constructor<T>> myConstructors = Collections.synchronizedMap(new HashMap<Class<?>, Constructor<T>>());
+	private final Map<Class<?>, Constructor<T>> myConstructors = new ConcurrentHashMap<Class<?>, Constructor<T>>();
+	private volatile Constructor<T> myNoArgConstructor;
 
 	public BaseRuntimeElementDefinition(String theName, Class<? extends T> theImplementingClass, boolean theStandardType) {
 		assert StringUtils.isNotBlank(theName);
@@ -113,7 +115,12 @@ public abstract class BaseRuntimeElementDefinition<T extends IBase> {
 	public T newInstance(Object theArgument) {
 		try {
 			if (theArgument == null) {
-				return getConstructor(null).newInstance(null);
+				Constructor<T> constructor = myNoArgConstructor;
+				if (constructor == null) {
+					constructor = getConstructor(null);
+					myNoArgConstructor = constructor;
+				}
+				return constructor.newInstance();
 			} else {
 				return getConstructor(theArgument).newInstance(theArgument);
 			}
@@ -130,6 +137,11 @@ public abstract class BaseRuntimeElementDefinition<T extends IBase> {
 		}
 	}
 
+	/**
+	 * Constructors are looked up once per argument type and cached. They are made accessible when they are cached so
+	 * that creating an instance (which happens for every element while parsing) does not need to check the caller's
+	 * access each time.
+	 */
 	@SuppressWarnings("unchecked")
 	private Constructor<T> getConstructor(Object theArgument) {
 		
@@ -158,6 +170,11 @@ public abstract class BaseRuntimeElementDefinition<T extends IBase> {
 			if (retVal == null) {
 				throw new ConfigurationException("Class " + getImplementingClass() + " has no constructor with a single argument of type " + argumentType);
 			}
+			try {
+				retVal.setAccessible(true);
+			} catch (SecurityException e) {
+				// Not a problem, the constructor is public so it will just be checked on each call
+			}
 			myConstructors.put(argumentType, retVal);
 		}
 		return retVal;
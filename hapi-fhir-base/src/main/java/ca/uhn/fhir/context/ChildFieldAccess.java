@@ -0,0 +1,86 @@
+package ca.uhn.fhir.context;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.reflect.Field;
+
+/**
+ * Reads and writes the field behind one declared child of a model class. One instance is created for each child
+ * when the model is scanned, and it is used for every get and set of that child while parsing, encoding and walking
+ * resources. The field is made accessible once, when the instance is created, instead of on each access.
+ */
+final class ChildFieldAccess {
+
+	private final Class<?> myDeclaringClass;
+	private final Field myField;
+	private final Class<?> myFieldType;
+
+	private ChildFieldAccess(Field theField) {
+		myField = theField;
+		myDeclaringClass = theField.getDeclaringClass();
+		myFieldType = theField.getType();
+	}
+
+	/**
+	 * Returns the value of the field on the given object
+	 */
+	public Object get(Object theTarget) {
+		if (!myDeclaringClass.isInstance(theTarget)) {
+			throw new ConfigurationException("Failed to get value of field " + myField.getName() + " on " + describe(theTarget));
+		}
+		try {
+			return myField.get(theTarget);
+		} catch (IllegalAccessException e) {
+			throw new ConfigurationException("Failed to get value", e);
+		}
+	}
+
+	/**
+	 * Sets the value of the field on the given object
+	 */
+	public void set(Object theTarget, Object theValue) {
+		if (!myDeclaringClass.isInstance(theTarget)) {
+			throw new ConfigurationException("Failed to set value of field " + myField.getName() + " on " + describe(theTarget));
+		}
+		if (theValue != null && !myFieldType.isInstance(theValue)) {
+			throw new ConfigurationException("Value for field " + myField.getName() + " expects type " + myFieldType + " but got " + theValue.getClass());
+		}
+		try {
+			myField.set(theTarget, theValue);
+		} catch (IllegalAccessException e) {
+			throw new ConfigurationException("Failed to set value", e);
+		}
+	}
+
+	private static String describe(Object theTarget) {
+		return theTarget == null ? "null" : theTarget.getClass().getName();
+	}
+
+	/**
+	 * Creates the accessor for a field. This calls {@link Field#setAccessible(boolean)}, so it may throw a
+	 * {@link SecurityException}.
+	 */
+	static ChildFieldAccess forField(Field theField) {
+		theField.setAccessible(true);
+		return new ChildFieldAccess(theField);
+	}
+
+}
@@ -39,6 +39,7 @@ import ca.uhn.fhir.model.api.IFhirVersion;
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.view.ViewGenerator;
 import ca.uhn.fhir.narrative.INarrativeGenerator;
+import ca.uhn.fhir.parser.BinaryParser;
 import ca.uhn.fhir.parser.DataFormatException;
 import ca.uhn.fhir.parser.IParserErrorHandler;
 import ca.uhn.fhir.parser.IParser;
@@ -309,6 +310,24 @@ public class FhirContext {
 		return myVersion;
 	}
 
+	/**
+	 * Create and return a new parser for the compact binary encoding. This encoding is not part of the FHIR
+	 * specification, and is intended for exchanging resources between systems which both use HAPI FHIR. See
+	 * {@link BinaryParser} for details.
+	 * 
+	 * <p>
+	 * Thread safety: <b>Parsers are not guaranteed to be thread safe</b>. Create a new parser instance for every thread
+	 * or every message being parsed/encoded.
+	 * </p>
+	 * <p>
+	 * Performance Note: <b>This method is cheap</b> to call, and may be called once for every message being processed
+	 * without incurring any performance penalty
+	 * </p>
+	 */
+	public IParser newBinaryParser() {
+		return new BinaryParser(this, myParserErrorHandler);
+	}
+
 	/**
 	 * This method should be considered experimental and will likely change in future releases
 	 * of HAPI. Use with caution!
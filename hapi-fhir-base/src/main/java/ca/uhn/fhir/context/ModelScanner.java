@@ -38,7 +38,6 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -47,6 +46,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -91,6 +91,7 @@ import ca.uhn.fhir.util.ReflectionUtil;
 
 class ModelScanner {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ModelScanner.class);
+	static final Map<FhirVersionEnum, VersionTypes> ourVersionTypes = new ConcurrentHashMap<FhirVersionEnum, VersionTypes>();
 
 	private final Map<Class<? extends Annotation>, Class<? extends Annotation>> myAnnotationForwards = new HashMap<Class<? extends Annotation>, Class<? extends Annotation>>();
 	private Map<Class<? extends IBase>, BaseRuntimeElementDefinition<?>> myClassToElementDefinitions = new HashMap<Class<? extends IBase>, BaseRuntimeElementDefinition<?>>();
@@ -743,44 +744,67 @@ class ModelScanner {
 
 	private void scanResourceForSearchParams(Class<? extends IBaseResource> theClass, RuntimeResourceDefinition theResourceDef) {
 
+		List<SearchParamIndexEntry> searchParams = new ArrayList<SearchParamIndexEntry>();
+		List<SearchParamIndexEntry> indexedSearchParams = null;
+		VersionTypes versionTypes = ourVersionTypes.get(myVersion);
+		String resourceKey = theResourceDef.getName().toLowerCase();
+		if (versionTypes != null && theClass.equals(versionTypes.myResourceTypes.get(resourceKey))) {
+			indexedSearchParams = versionTypes.myResourceSearchParams.get(resourceKey);
+		}
+
+		if (indexedSearchParams != null) {
+			/*
+			 * The index generated by Tinder only holds the parameters declared on the resource class itself, so the
+			 * few parameters inherited from the base resource class are still read from their annotations
+			 */
+			addAnnotatedSearchParams(theClass.getSuperclass(), searchParams);
+			searchParams.addAll(indexedSearchParams);
+		} else {
+			addAnnotatedSearchParams(theClass, searchParams);
+		}
+
 		Map<String, RuntimeSearchParam> nameToParam = new HashMap<String, RuntimeSearchParam>();
-		Map<Field, SearchParamDefinition> compositeFields = new LinkedHashMap<Field, SearchParamDefinition>();
+		List<SearchParamIndexEntry> compositeParams = new ArrayList<SearchParamIndexEntry>();
 
-		for (Field nextField : theClass.getFields()) {
-			SearchParamDefinition searchParam = pullAnnotation(nextField, SearchParamDefinition.class);
-			if (searchParam != null) {
-				RestSearchParameterTypeEnum paramType = RestSearchParameterTypeEnum.valueOf(searchParam.type().toUpperCase());
-				if (paramType == null) {
-					throw new ConfigurationException("Search param " + searchParam.name() + " has an invalid type: " + searchParam.type());
-				}
-				if (paramType == RestSearchParameterTypeEnum.COMPOSITE) {
-					compositeFields.put(nextField, searchParam);
-					continue;
-				}
-				RuntimeSearchParam param = new RuntimeSearchParam(searchParam.name(), searchParam.description(), searchParam.path(), paramType);
-				theResourceDef.addSearchParam(param);
-				nameToParam.put(param.getName(), param);
+		for (SearchParamIndexEntry searchParam : searchParams) {
+			RestSearchParameterTypeEnum paramType = RestSearchParameterTypeEnum.valueOf(searchParam.myType.toUpperCase());
+			if (paramType == null) {
+				throw new ConfigurationException("Search param " + searchParam.myName + " has an invalid type: " + searchParam.myType);
+			}
+			if (paramType == RestSearchParameterTypeEnum.COMPOSITE) {
+				compositeParams.add(searchParam);
+				continue;
 			}
+			RuntimeSearchParam param = new RuntimeSearchParam(searchParam.myName, searchParam.myDescription, searchParam.myPath, paramType);
+			theResourceDef.addSearchParam(param);
+			nameToParam.put(param.getName(), param);
 		}
 
-		for (Entry<Field, SearchParamDefinition> nextEntry : compositeFields.entrySet()) {
-			SearchParamDefinition searchParam = nextEntry.getValue();
-
+		for (SearchParamIndexEntry searchParam : compositeParams) {
 			List<RuntimeSearchParam> compositeOf = new ArrayList<RuntimeSearchParam>();
-			for (String nextName : searchParam.compositeOf()) {
+			for (String nextName : searchParam.myCompositeOf) {
 				RuntimeSearchParam param = nameToParam.get(nextName);
 				if (param == null) {
-					ourLog.warn("Search parameter {}.{} declares that it is a composite with compositeOf value '{}' but that is not a valid parametr name itself. Valid values are: {}", new Object[] { theResourceDef.getName(), searchParam.name(), nextName, nameToParam.keySet() });
+					ourLog.warn("Search parameter {}.{} declares that it is a composite with compositeOf value '{}' but that is not a valid parametr name itself. Valid values are: {}", new Object[] { theResourceDef.getName(), searchParam.myName, nextName, nameToParam.keySet() });
 					continue;
 				}
 				compositeOf.add(param);
 			}
 
-			RuntimeSearchParam param = new RuntimeSearchParam(searchParam.name(), searchParam.description(), searchParam.path(), RestSearchParameterTypeEnum.COMPOSITE, compositeOf);
+			RuntimeSearchParam param = new RuntimeSearchParam(searchParam.myName, searchParam.myDescription, searchParam.myPath, RestSearchParameterTypeEnum.COMPOSITE, compositeOf);
 			theResourceDef.addSearchParam(param);
 		}
 	}
 
+	private void addAnnotatedSearchParams(Class<?> theClass, List<SearchParamIndexEntry> theSearchParams) {
+		for (Field nextField : theClass.getFields()) {
+			SearchParamDefinition searchParam = pullAnnotation(nextField, SearchParamDefinition.class);
+			if (searchParam != null) {
+				theSearchParams.add(new SearchParamIndexEntry(searchParam.name(), searchParam.description(), searchParam.path(), searchParam.type(), searchParam.compositeOf()));
+			}
+		}
+	}
+
 	private static Class<?> getGenericCollectionTypeOfCodedField(Field next) {
 		Class<?> type;
 		ParameterizedType collectionType = (ParameterizedType) next.getGenericType();
@@ -796,65 +820,182 @@ class ModelScanner {
 	}
 
 	static Set<Class<? extends IBase>> scanVersionPropertyFile(Set<Class<? extends IBase>> theDatatypes, Map<String, Class<? extends IBaseResource>> theResourceTypes, FhirVersionEnum version) {
-		Set<Class<? extends IBase>> retVal = new HashSet<Class<? extends IBase>>();
+		VersionTypes versionTypes = ourVersionTypes.get(version);
+		if (versionTypes == null) {
+			versionTypes = loadVersionPropertyFile(version);
+			ourVersionTypes.put(version, versionTypes);
+		}
 
+		theResourceTypes.putAll(versionTypes.myResourceTypes);
+		if (theDatatypes == null) {
+			return new HashSet<Class<? extends IBase>>();
+		}
+		theDatatypes.addAll(versionTypes.myScannableDatatypes);
+		return new HashSet<Class<? extends IBase>>(versionTypes.myDatatypes);
+	}
+
+	private static VersionTypes loadVersionPropertyFile(FhirVersionEnum version) {
 		InputStream str = version.getVersionImplementation().getFhirVersionPropertiesFile();
 		Properties prop = new Properties();
 		try {
 			prop.load(str);
-			for (Entry<Object, Object> nextEntry : prop.entrySet()) {
-				String nextKey = nextEntry.getKey().toString();
-				String nextValue = nextEntry.getValue().toString();
-
-				if (nextKey.startsWith("datatype.")) {
-					if (theDatatypes != null) {
-						try {
-							// Datatypes
-
-							@SuppressWarnings("unchecked")
-							Class<? extends IBase> dtType = (Class<? extends IBase>) Class.forName(nextValue);
-							retVal.add(dtType);
-
-							if (IElement.class.isAssignableFrom(dtType)) {
-								@SuppressWarnings("unchecked")
-								Class<? extends IElement> nextClass = (Class<? extends IElement>) dtType;
-								theDatatypes.add(nextClass);
-							} else if (IBaseDatatype.class.isAssignableFrom(dtType)) {
-								@SuppressWarnings("unchecked")
-								Class<? extends IBaseDatatype> nextClass = (Class<? extends IBaseDatatype>) dtType;
-								theDatatypes.add(nextClass);
-							} else {
-								ourLog.warn("Class is not assignable from " + IElement.class.getSimpleName() + " or " + IBaseDatatype.class.getSimpleName() + ": " + nextValue);
-								continue;
-							}
+		} catch (IOException e) {
+			throw new ConfigurationException("Failed to load model property file from classpath: " + "/ca/uhn/fhir/model/dstu/model.properties");
+		}
+		return parseVersionProperties(prop);
+	}
 
-						} catch (ClassNotFoundException e) {
-							throw new ConfigurationException("Unknown class[" + nextValue + "] for data type definition: " + nextKey.substring("datatype.".length()), e);
-						}
+	/**
+	 * Parses the contents of a version property file. The classes are loaded without being initialized, so that a
+	 * resource type's static initializer only runs once that type is actually used.
+	 * <p>
+	 * Property files generated by Tinder also contain an index of the search parameters declared by each generated
+	 * resource (<code>searchparams.[resource]=[count]</code> followed by
+	 * <code>searchparam.[resource].[name].type/path/description/compositeOf</code> entries). Resources found in this
+	 * index have their search parameters built from it instead of reading the annotations on each of their fields.
+	 * </p>
+	 */
+	static VersionTypes parseVersionProperties(Properties theProperties) {
+		VersionTypes retVal = new VersionTypes();
+		ClassLoader classLoader = ModelScanner.class.getClassLoader();
+
+		Map<String, Integer> resourceToSearchParamCount = new HashMap<String, Integer>();
+		Map<String, Map<String, SearchParamIndexEntry>> resourceToSearchParams = new HashMap<String, Map<String, SearchParamIndexEntry>>();
+
+		for (Entry<Object, Object> nextEntry : theProperties.entrySet()) {
+			String nextKey = nextEntry.getKey().toString();
+			String nextValue = nextEntry.getValue().toString();
+
+			if (nextKey.startsWith("datatype.")) {
+				try {
+					// Datatypes
+
+					@SuppressWarnings("unchecked")
+					Class<? extends IBase> dtType = (Class<? extends IBase>) Class.forName(nextValue, false, classLoader);
+					retVal.myDatatypes.add(dtType);
+
+					if (IElement.class.isAssignableFrom(dtType) || IBaseDatatype.class.isAssignableFrom(dtType)) {
+						retVal.myScannableDatatypes.add(dtType);
+					} else {
+						ourLog.warn("Class is not assignable from " + IElement.class.getSimpleName() + " or " + IBaseDatatype.class.getSimpleName() + ": " + nextValue);
+						continue;
 					}
-				} else if (nextKey.startsWith("resource.")) {
-					// Resources
-					String resName = nextKey.substring("resource.".length()).toLowerCase();
-					try {
-						@SuppressWarnings("unchecked")
-						Class<? extends IBaseResource> nextClass = (Class<? extends IBaseResource>) Class.forName(nextValue);
-						if (!IBaseResource.class.isAssignableFrom(nextClass)) {
-							throw new ConfigurationException("Class is not assignable from " + IBaseResource.class.getSimpleName() + ": " + nextValue);
-						}
 
-						theResourceTypes.put(resName, nextClass);
-					} catch (ClassNotFoundException e) {
-						throw new ConfigurationException("Unknown class[" + nextValue + "] for resource definition: " + nextKey.substring("resource.".length()), e);
+				} catch (ClassNotFoundException e) {
+					throw new ConfigurationException("Unknown class[" + nextValue + "] for data type definition: " + nextKey.substring("datatype.".length()), e);
+				}
+			} else if (nextKey.startsWith("resource.")) {
+				// Resources
+				String resName = nextKey.substring("resource.".length()).toLowerCase();
+				try {
+					@SuppressWarnings("unchecked")
+					Class<? extends IBaseResource> nextClass = (Class<? extends IBaseResource>) Class.forName(nextValue, false, classLoader);
+					if (!IBaseResource.class.isAssignableFrom(nextClass)) {
+						throw new ConfigurationException("Class is not assignable from " + IBaseResource.class.getSimpleName() + ": " + nextValue);
 					}
+
+					retVal.myResourceTypes.put(resName, nextClass);
+				} catch (ClassNotFoundException e) {
+					throw new ConfigurationException("Unknown class[" + nextValue + "] for resource definition: " + nextKey.substring("resource.".length()), e);
+				}
+			} else if (nextKey.startsWith("searchparams.")) {
+				// Number of search params indexed for a resource
+				String resName = nextKey.substring("searchparams.".length()).toLowerCase();
+				try {
+					resourceToSearchParamCount.put(resName, Integer.parseInt(nextValue));
+				} catch (NumberFormatException e) {
+					throw new ConfigurationException("Invalid search parameter count in version property file: " + nextKey + "=" + nextValue);
+				}
+			} else if (nextKey.startsWith("searchparam.")) {
+				// Search param index entries, in the form searchparam.[resource].[name].[attribute]
+				int resEnd = nextKey.indexOf('.', "searchparam.".length());
+				int nameEnd = nextKey.lastIndexOf('.');
+				if (resEnd == -1 || nameEnd <= resEnd) {
+					throw new ConfigurationException("Unexpected property in version property file: " + nextKey + "=" + nextValue);
+				}
+				String resName = nextKey.substring("searchparam.".length(), resEnd).toLowerCase();
+				String paramName = nextKey.substring(resEnd + 1, nameEnd);
+				String attribute = nextKey.substring(nameEnd + 1);
+
+				Map<String, SearchParamIndexEntry> params = resourceToSearchParams.get(resName);
+				if (params == null) {
+					params = new HashMap<String, SearchParamIndexEntry>();
+					resourceToSearchParams.put(resName, params);
+				}
+				SearchParamIndexEntry param = params.get(paramName);
+				if (param == null) {
+					param = new SearchParamIndexEntry(paramName, "", "", null, new String[0]);
+					params.put(paramName, param);
+				}
+
+				if ("type".equals(attribute)) {
+					param.myType = nextValue;
+				} else if ("path".equals(attribute)) {
+					param.myPath = nextValue;
+				} else if ("description".equals(attribute)) {
+					param.myDescription = nextValue;
+				} else if ("compositeOf".equals(attribute)) {
+					param.myCompositeOf = isBlank(nextValue) ? new String[0] : nextValue.split(",");
 				} else {
 					throw new ConfigurationException("Unexpected property in version property file: " + nextKey + "=" + nextValue);
 				}
+			} else {
+				throw new ConfigurationException("Unexpected property in version property file: " + nextKey + "=" + nextValue);
+			}
+		}
+
+		/*
+		 * Only use the index for a resource if it is complete, otherwise that resource falls back to reading its
+		 * annotations
+		 */
+		for (Entry<String, Integer> nextEntry : resourceToSearchParamCount.entrySet()) {
+			Map<String, SearchParamIndexEntry> params = resourceToSearchParams.get(nextEntry.getKey());
+			if (params == null) {
+				params = new HashMap<String, SearchParamIndexEntry>();
+			}
+			boolean complete = params.size() == nextEntry.getValue();
+			for (SearchParamIndexEntry next : params.values()) {
+				complete &= next.myType != null;
+			}
+			if (complete) {
+				retVal.myResourceSearchParams.put(nextEntry.getKey(), new ArrayList<SearchParamIndexEntry>(params.values()));
+			} else {
+				ourLog.warn("Ignoring incomplete search parameter index for resource {} in version property file", nextEntry.getKey());
 			}
-		} catch (IOException e) {
-			throw new ConfigurationException("Failed to load model property file from classpath: " + "/ca/uhn/fhir/model/dstu/model.properties");
 		}
 
 		return retVal;
 	}
 
+	/**
+	 * The contents of a version property file. These are the same for every {@link FhirContext} of a given version, so
+	 * they are only read once instead of each time a context is created or a resource type is scanned.
+	 */
+	static class VersionTypes {
+		private final Set<Class<? extends IBase>> myDatatypes = new HashSet<Class<? extends IBase>>();
+		private final Map<String, List<SearchParamIndexEntry>> myResourceSearchParams = new HashMap<String, List<SearchParamIndexEntry>>();
+		private final Map<String, Class<? extends IBaseResource>> myResourceTypes = new HashMap<String, Class<? extends IBaseResource>>();
+		private final List<Class<? extends IBase>> myScannableDatatypes = new ArrayList<Class<? extends IBase>>();
+	}
+
+	/**
+	 * A search parameter as declared by a {@link SearchParamDefinition} annotation or by the search parameter index in
+	 * a version property file
+	 */
+	private static class SearchParamIndexEntry {
+		private String[] myCompositeOf;
+		private String myDescription;
+		private String myName;
+		private String myPath;
+		private String myType;
+
+		SearchParamIndexEntry(String theName, String theDescription, String thePath, String theType, String[] theCompositeOf) {
+			myName = theName;
+			myDescription = theDescription;
+			myPath = thePath;
+			myType = theType;
+			myCompositeOf = theCompositeOf;
+		}
+	}
+
 }
@@ -33,6 +33,8 @@ import org.hl7.fhir.instance.model.api.IAnyResource;
 
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.annotation.ResourceDef;
+import ca.uhn.fhir.util.FhirTerser;
+import ca.uhn.fhir.util.TerserPath;
 import ca.uhn.fhir.util.UrlUtil;
 
 public class RuntimeResourceDefinition extends BaseRuntimeElementCompositeDefinition<IBaseResource> {
@@ -119,6 +121,21 @@ public class RuntimeResourceDefinition extends BaseRuntimeElementCompositeDefini
 		return profile;
 	}
 
+	/**
+	 * Returns the path of the given search parameter of this resource type, compiled using
+	 * {@link FhirTerser#compileValidPaths(Class, String)} (so any of its paths which are not valid for this resource
+	 * type are left out). The path is compiled the first time it is requested and is then cached in the search
+	 * parameter.
+	 */
+	public TerserPath getSearchParamPath(RuntimeSearchParam theParam) {
+		TerserPath retVal = theParam.getCompiledPath();
+		if (retVal == null || retVal.getResourceType() != getImplementingClass()) {
+			retVal = myContext.newTerser().compileValidPaths(getImplementingClass(), theParam.getPath());
+			theParam.setCompiledPath(retVal);
+		}
+		return retVal;
+	}
+
 	public RuntimeSearchParam getSearchParam(String theName) {
 		return myNameToSearchParam.get(theName);
 	}
@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.StringTokenizer;
 
 import ca.uhn.fhir.rest.method.RestSearchParameterTypeEnum;
+import ca.uhn.fhir.util.TerserPath;
 
 /*
  * #%L
@@ -34,6 +35,7 @@ public class RuntimeSearchParam {
 	private RestSearchParameterTypeEnum myParamType;
 	private String myPath;
 	private List<RuntimeSearchParam> myCompositeOf;
+	private volatile TerserPath myCompiledPath;
 
 	public RuntimeSearchParam(String theName, String theDescription, String thePath, RestSearchParameterTypeEnum theParamType) {
 		this(theName, theDescription, thePath, theParamType, null);
@@ -48,6 +50,10 @@ public class RuntimeSearchParam {
 		myCompositeOf = theCompositeOf;
 	}
 
+	TerserPath getCompiledPath() {
+		return myCompiledPath;
+	}
+
 	public List<RuntimeSearchParam> getCompositeOf() {
 		return myCompositeOf;
 	}
@@ -83,4 +89,8 @@ public class RuntimeSearchParam {
 		return retVal;
 	}
 
+	void setCompiledPath(TerserPath theCompiledPath) {
+		myCompiledPath = theCompiledPath;
+	}
+
 }
@@ -114,6 +114,17 @@ public abstract class BaseElement implements IElement, ISupportsUndeclaredExtens
 		return (myUndeclaredModifierExtensions);
 	}
 
+	/**
+	 * Returns <code>true</code> if this element has any undeclared extensions or undeclared modifier extensions. Unlike
+	 * {@link #getUndeclaredExtensions()}, this does not create the lists of extensions if they do not already exist.
+	 */
+	public boolean hasUndeclaredExtensions() {
+		if (myUndeclaredExtensions != null && !myUndeclaredExtensions.isEmpty()) {
+			return true;
+		}
+		return myUndeclaredModifierExtensions != null && !myUndeclaredModifierExtensions.isEmpty();
+	}
+
 	/**
 	 * Intended to be called by extending classes {@link #isEmpty()} implementations, returns <code>true</code> if all content in this superclass instance is empty per the semantics of
 	 * {@link #isEmpty()}.
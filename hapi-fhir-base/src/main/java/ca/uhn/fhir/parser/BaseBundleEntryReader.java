@@ -0,0 +1,105 @@
+package ca.uhn.fhir.parser;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+
+/**
+ * Base class for the {@link IBundleEntryReader} implementations of the parsers. The document is parsed into a
+ * {@link ParserState} which queues the entries of the bundle instead of adding them to it.
+ */
+abstract class BaseBundleEntryReader<T extends IBaseBundle> implements IBundleEntryReader<T> {
+
+	private final RuntimeResourceDefinition myBundleDef;
+	private final LinkedList<IBase> myEntries = new LinkedList<IBase>();
+	private boolean myFinished;
+	private final BaseParser myParser;
+	private final ParserState<T> myState;
+
+	BaseBundleEntryReader(BaseParser theParser, FhirContext theContext, Class<T> theBundleType, boolean theJsonMode) {
+		myParser = theParser;
+		myBundleDef = theContext.getResourceDefinition(theBundleType);
+		myState = ParserState.getPreResourceInstance(theBundleType, theContext, theJsonMode, theParser.getErrorHandler());
+		myState.setElementFilter(theParser.getCompiledElementFilter());
+		myState.setBundleEntryQueue(myEntries);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T getBundle() {
+		return (T) myState.getBundleEntryQueueBundle();
+	}
+
+	protected ParserState<T> getState() {
+		return myState;
+	}
+
+	protected boolean hasQueuedEntries() {
+		return !myEntries.isEmpty();
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (myEntries.isEmpty() && !myFinished) {
+			if (!readEntries()) {
+				myFinished = true;
+				T bundle = getBundle();
+				if (bundle != null) {
+					myParser.fixBaseForBundleId(myBundleDef, bundle);
+				}
+			}
+		}
+		return !myEntries.isEmpty();
+	}
+
+	@Override
+	public IBase next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		IBase retVal = myEntries.removeFirst();
+		List<IBase> bundleBase = myBundleDef.getChildByName("base").getAccessor().getValues(getBundle());
+		myParser.fixBaseForBundleEntryResourceId(myBundleDef, retVal, bundleBase);
+		return retVal;
+	}
+
+	/**
+	 * Parses the document into the parser state until at least one more entry has been queued, or until the end of the
+	 * bundle
+	 *
+	 * @return Returns <code>false</code> once the end of the bundle has been reached
+	 */
+	protected abstract boolean readEntries();
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+}
@@ -23,6 +23,10 @@ package ca.uhn.fhir.parser;
 import static org.apache.commons.lang3.StringUtils.*;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -32,6 +36,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -55,6 +60,7 @@ import ca.uhn.fhir.context.BaseRuntimeElementDefinition.ChildTypeEnum;
 import ca.uhn.fhir.context.ConfigurationException;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.RuntimeChildChoiceDefinition;
+import ca.uhn.fhir.context.RuntimeChildDeclaredExtensionDefinition;
 import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.model.api.Bundle;
 import ca.uhn.fhir.model.api.BundleEntry;
@@ -62,6 +68,7 @@ import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
 import ca.uhn.fhir.model.api.TagList;
 import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.rest.server.Constants;
 import ca.uhn.fhir.util.FhirTerser;
 import ca.uhn.fhir.util.ObjectUtil;
 
@@ -69,6 +76,12 @@ public abstract class BaseParser implements IParser {
 
 	private ContainedResources myContainedResources;
 	private FhirContext myContext;
+	private ElementFilter myElementFilter;
+	private Set<String> myElementFilterPaths;
+	private ElementFilter.Node myEncodeFilter;
+	private IBaseBundle myEncodingBundle;
+	private Iterator<IBase> myEncodingBundleEntries;
+	private BaseRuntimeChildDefinition myEncodingBundleEntryChild;
 	private IParserErrorHandler myErrorHandler;
 	private boolean myOmitResourceId;
 	private String myServerBaseUrl;
@@ -211,8 +224,26 @@ public abstract class BaseParser implements IParser {
 
 	protected abstract void doEncodeBundleToWriter(Bundle theBundle, Writer theWriter) throws IOException, DataFormatException;
 
+	/**
+	 * Encodes a resource as UTF-8 bytes. The default implementation encodes to a writer which wraps the stream, parsers
+	 * which are able to write bytes directly should override this method.
+	 */
+	protected void doEncodeResourceToOutputStream(IBaseResource theResource, OutputStream theOutputStream) throws IOException, DataFormatException {
+		Writer writer = new OutputStreamWriter(theOutputStream, Constants.CHARSET_UTF8);
+		doEncodeResourceToWriter(theResource, writer);
+		writer.flush();
+	}
+
 	protected abstract void doEncodeResourceToWriter(IBaseResource theResource, Writer theWriter) throws IOException, DataFormatException;
 
+	/**
+	 * Parses a resource from UTF-8 bytes. The default implementation parses from a reader which wraps the stream,
+	 * parsers which are able to read bytes directly should override this method.
+	 */
+	protected <T extends IBaseResource> T doParseResource(Class<T> theResourceType, InputStream theInputStream) throws DataFormatException {
+		return doParseResource(theResourceType, new InputStreamReader(theInputStream, Constants.CHARSET_UTF8));
+	}
+
 	protected abstract <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) throws DataFormatException;
 
 	@Override
@@ -248,6 +279,18 @@ public abstract class BaseParser implements IParser {
 		return stringWriter.toString();
 	}
 
+	@Override
+	public final void encodeResourceToOutputStream(IBaseResource theResource, OutputStream theOutputStream) throws IOException, DataFormatException {
+		Validate.notNull(theResource, "theResource can not be null");
+		Validate.notNull(theOutputStream, "theOutputStream can not be null");
+
+		if (theResource instanceof IBaseBundle) {
+			fixBaseLinksForBundle((IBaseBundle) theResource);
+		}
+
+		doEncodeResourceToOutputStream(theResource, theOutputStream);
+	}
+
 	@Override
 	public final void encodeResourceToWriter(IBaseResource theResource, Writer theWriter) throws IOException, DataFormatException {
 		Validate.notNull(theResource, "theResource can not be null");
@@ -260,6 +303,49 @@ public abstract class BaseParser implements IParser {
 		doEncodeResourceToWriter(theResource, theWriter);
 	}
 
+	@Override
+	public void encodeBundleEntriesToWriter(IBaseBundle theBundle, final Iterator<? extends IBase> theEntries, Writer theWriter) throws IOException, DataFormatException {
+		Validate.notNull(theBundle, "theBundle must not be null");
+		Validate.notNull(theEntries, "theEntries must not be null");
+		Validate.notNull(theWriter, "theWriter must not be null");
+
+		RuntimeResourceDefinition def = myContext.getResourceDefinition(theBundle);
+		BaseRuntimeChildDefinition entryChild = def.getChildByName("entry");
+		List<? extends IBase> existingEntries = entryChild.getAccessor().getValues(theBundle);
+		Validate.isTrue(existingEntries == null || existingEntries.isEmpty(), "theBundle must not contain any entries");
+
+		final FhirTerser terser = myContext.newTerser();
+		final String bundleBase = getBundleBase(terser, theBundle);
+
+		myEncodingBundle = theBundle;
+		myEncodingBundleEntryChild = entryChild;
+		myEncodingBundleEntries = new Iterator<IBase>() {
+			@Override
+			public boolean hasNext() {
+				return theEntries.hasNext();
+			}
+
+			@Override
+			public IBase next() {
+				IBase retVal = theEntries.next();
+				fixBaseLinksForBundleEntry(terser, bundleBase, retVal);
+				return retVal;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		try {
+			doEncodeResourceToWriter(theBundle, theWriter);
+		} finally {
+			myEncodingBundle = null;
+			myEncodingBundleEntryChild = null;
+			myEncodingBundleEntries = null;
+		}
+	}
+
 	@Override
 	public String encodeTagListToString(TagList theTagList) {
 		Writer stringWriter = new StringWriter();
@@ -283,37 +369,45 @@ public abstract class BaseParser implements IParser {
 		 * update unit tests for both.
 		 */
 		FhirTerser t = myContext.newTerser();
-		IPrimitiveType<?> element = t.getSingleValueOrNull(theBundle, "base", IPrimitiveType.class);
-		String bundleBase = element != null ? element.getValueAsString() : null;
+		String bundleBase = getBundleBase(t, theBundle);
 
 		for (IBase nextEntry : t.getValues(theBundle, "Bundle.entry", IBase.class)) {
-			IBaseResource resource = t.getSingleValueOrNull(nextEntry, "resource", IBaseResource.class);
-			if (resource == null) {
-				continue;
-			}
+			fixBaseLinksForBundleEntry(t, bundleBase, nextEntry);
+		}
+	}
 
-			IPrimitiveType<?> baseElement = t.getSingleValueOrNull(nextEntry, "base", IPrimitiveType.class);
-			String entryBase = baseElement != null ? baseElement.getValueAsString() : null;
-			if (isNotBlank(entryBase)) {
-				continue;
-			}
+	private void fixBaseLinksForBundleEntry(FhirTerser theTerser, String theBundleBase, IBase theEntry) {
+		IBaseResource resource = theTerser.getSingleValueOrNull(theEntry, "resource", IBaseResource.class);
+		if (resource == null) {
+			return;
+		}
 
-			IIdType resourceId = resource.getIdElement();
-			String resourceIdBase = resourceId.getBaseUrl();
-			if (isNotBlank(resourceIdBase)) {
-				if (!ObjectUtil.equals(bundleBase, resourceIdBase)) {
-					if (baseElement == null) {
-						baseElement = (IPrimitiveType<?>) myContext.getElementDefinition("uri").newInstance();
-						BaseRuntimeElementCompositeDefinition<?> entryDef = (BaseRuntimeElementCompositeDefinition<?>) myContext.getElementDefinition(nextEntry.getClass());
-						entryDef.getChildByNameOrThrowDataFormatException("base").getMutator().setValue(nextEntry, baseElement);
-					}
+		IPrimitiveType<?> baseElement = theTerser.getSingleValueOrNull(theEntry, "base", IPrimitiveType.class);
+		String entryBase = baseElement != null ? baseElement.getValueAsString() : null;
+		if (isNotBlank(entryBase)) {
+			return;
+		}
 
-					baseElement.setValueAsString(resourceIdBase);
+		IIdType resourceId = resource.getIdElement();
+		String resourceIdBase = resourceId.getBaseUrl();
+		if (isNotBlank(resourceIdBase)) {
+			if (!ObjectUtil.equals(theBundleBase, resourceIdBase)) {
+				if (baseElement == null) {
+					baseElement = (IPrimitiveType<?>) myContext.getElementDefinition("uri").newInstance();
+					BaseRuntimeElementCompositeDefinition<?> entryDef = (BaseRuntimeElementCompositeDefinition<?>) myContext.getElementDefinition(theEntry.getClass());
+					entryDef.getChildByNameOrThrowDataFormatException("base").getMutator().setValue(theEntry, baseElement);
 				}
+
+				baseElement.setValueAsString(resourceIdBase);
 			}
 		}
 	}
 
+	private String getBundleBase(FhirTerser theTerser, IBaseBundle theBundle) {
+		IPrimitiveType<?> element = theTerser.getSingleValueOrNull(theBundle, "base", IPrimitiveType.class);
+		return element != null ? element.getValueAsString() : null;
+	}
+
 	protected String fixContainedResourceId(String theValue) {
 		if (StringUtils.isNotBlank(theValue) && theValue.charAt(0) == '#') {
 			return theValue.substring(1);
@@ -325,6 +419,64 @@ public abstract class BaseParser implements IParser {
 		return myContainedResources;
 	}
 
+	/**
+	 * Returns the values of a child of an element which is being encoded, or <code>null</code> if it has none. The
+	 * entries of a bundle being encoded by {@link #encodeBundleEntriesToWriter(IBaseBundle, Iterator, Writer)} are
+	 * taken from its iterator as they are encoded, instead of from the bundle.
+	 */
+	protected Iterable<? extends IBase> getChildValuesForEncoding(BaseRuntimeChildDefinition theChild, IBase theElement) {
+		if (theElement == myEncodingBundle && theChild == myEncodingBundleEntryChild) {
+			final Iterator<IBase> entries = myEncodingBundleEntries;
+			if (entries == null || !entries.hasNext()) {
+				return null;
+			}
+			myEncodingBundleEntries = null;
+			return new Iterable<IBase>() {
+				@Override
+				public Iterator<IBase> iterator() {
+					return entries;
+				}
+			};
+		}
+
+		List<? extends IBase> values = theChild.getAccessor().getValues(theElement);
+		if (values == null || values.isEmpty()) {
+			return null;
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the compiled element filter, or <code>null</code> if all elements are parsed and encoded
+	 */
+	ElementFilter getCompiledElementFilter() {
+		return myElementFilter;
+	}
+
+	@Override
+	public Set<String> getElementFilter() {
+		return myElementFilterPaths;
+	}
+
+	/**
+	 * Returns the filter node for the element currently being encoded, or <code>null</code> if all of its children are
+	 * encoded
+	 */
+	ElementFilter.Node getEncodeFilter() {
+		return myEncodeFilter;
+	}
+
+	/**
+	 * Returns the filter node for the elements of the given resource, or <code>null</code> if all of them are encoded.
+	 * Contained resources are never filtered.
+	 */
+	ElementFilter.Node getResourceEncodeFilter(RuntimeResourceDefinition theResDef, boolean theContainedResource) {
+		if (myElementFilter == null || theContainedResource) {
+			return null;
+		}
+		return myElementFilter.getResourceNode(theResDef.getName());
+	}
+
 	protected IParserErrorHandler getErrorHandler() {
 		return myErrorHandler;
 	}
@@ -365,62 +517,87 @@ public abstract class BaseParser implements IParser {
 	@Override
 	public <T extends IBaseResource> T parseResource(Class<T> theResourceType, Reader theReader) throws DataFormatException {
 		T retVal = doParseResource(theResourceType, theReader);
+		fixBaseForParsedResource(retVal);
+		return retVal;
+	}
+
+	@Override
+	public <T extends IBaseResource> T parseResource(Class<T> theResourceType, InputStream theInputStream) throws DataFormatException {
+		Validate.notNull(theInputStream, "theInputStream must not be null");
+		T retVal = doParseResource(theResourceType, theInputStream);
+		fixBaseForParsedResource(retVal);
+		return retVal;
+	}
 
-		RuntimeResourceDefinition def = myContext.getResourceDefinition(retVal);
+	private void fixBaseForParsedResource(IBaseResource theResource) {
+		RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
 		if ("Bundle".equals(def.getName())) {
-			List<IBase> base = def.getChildByName("base").getAccessor().getValues(retVal);
-			if (base != null && base.size() > 0) {
-				IPrimitiveType<?> baseType = (IPrimitiveType<?>) base.get(0);
-				IBaseResource res = (retVal);
-				res.setId(new IdDt(baseType.getValueAsString(), def.getName(), res.getIdElement().getIdPart(), res.getIdElement().getVersionIdPart()));
-			}
+			List<IBase> base = fixBaseForBundleId(def, theResource);
 
-			BaseRuntimeChildDefinition entryChild = def.getChildByName("entry");
-			BaseRuntimeElementCompositeDefinition<?> entryDef = (BaseRuntimeElementCompositeDefinition<?>) entryChild.getChildByName("entry");
-			List<IBase> entries = entryChild.getAccessor().getValues(retVal);
+			List<IBase> entries = def.getChildByName("entry").getAccessor().getValues(theResource);
 			if (entries != null) {
 				for (IBase nextEntry : entries) {
-					List<IBase> entryBase = entryDef.getChildByName("base").getAccessor().getValues(nextEntry);
+					fixBaseForBundleEntryResourceId(def, nextEntry, base);
+				}
+			}
 
-					if (entryBase == null || entryBase.isEmpty()) {
-						entryBase = base;
-					}
+		}
+	}
 
-					if (entryBase != null && entryBase.size() > 0) {
-						IPrimitiveType<?> baseType = (IPrimitiveType<?>) entryBase.get(0);
-
-						List<IBase> entryResources = entryDef.getChildByName("resource").getAccessor().getValues(nextEntry);
-						if (entryResources != null && entryResources.size() > 0) {
-							IBaseResource res = (IBaseResource) entryResources.get(0);
-							RuntimeResourceDefinition resDef = myContext.getResourceDefinition(res);
-							String versionIdPart = res.getIdElement().getVersionIdPart();
-							if (isBlank(versionIdPart) && res instanceof IResource) {
-								versionIdPart = ResourceMetadataKeyEnum.VERSION.get((IResource) res);
-							}
-
-							String baseUrl = baseType.getValueAsString();
-							String idPart = res.getIdElement().getIdPart();
-
-							String resourceName = resDef.getName();
-							if (!baseUrl.startsWith("cid:") && !baseUrl.startsWith("urn:")) {
-								res.setId(new IdDt(baseUrl, resourceName, idPart, versionIdPart));
-							} else {
-								if (baseUrl.endsWith(":")) {
-									res.setId(new IdDt(baseUrl + idPart));
-								} else {
-									res.setId(new IdDt(baseUrl + ':' + idPart));
-								}
-							}
-						}
+	/**
+	 * Adds <code>Bundle.base</code> to the ID of a parsed Bundle resource
+	 * 
+	 * @return The values of <code>Bundle.base</code>
+	 */
+	List<IBase> fixBaseForBundleId(RuntimeResourceDefinition theBundleDef, IBaseResource theBundle) {
+		List<IBase> base = theBundleDef.getChildByName("base").getAccessor().getValues(theBundle);
+		if (base != null && base.size() > 0) {
+			IPrimitiveType<?> baseType = (IPrimitiveType<?>) base.get(0);
+			theBundle.setId(new IdDt(baseType.getValueAsString(), theBundleDef.getName(), theBundle.getIdElement().getIdPart(), theBundle.getIdElement().getVersionIdPart()));
+		}
+		return base;
+	}
 
-					}
+	/**
+	 * Adds <code>Bundle.entry.base</code>, or <code>Bundle.base</code> if the entry has none, to the ID of the resource
+	 * in a parsed bundle entry
+	 */
+	void fixBaseForBundleEntryResourceId(RuntimeResourceDefinition theBundleDef, IBase theEntry, List<IBase> theBundleBase) {
+		BaseRuntimeElementCompositeDefinition<?> entryDef = (BaseRuntimeElementCompositeDefinition<?>) theBundleDef.getChildByName("entry").getChildByName("entry");
+		List<IBase> entryBase = entryDef.getChildByName("base").getAccessor().getValues(theEntry);
+
+		if (entryBase == null || entryBase.isEmpty()) {
+			entryBase = theBundleBase;
+		}
+
+		if (entryBase != null && entryBase.size() > 0) {
+			IPrimitiveType<?> baseType = (IPrimitiveType<?>) entryBase.get(0);
 
+			List<IBase> entryResources = entryDef.getChildByName("resource").getAccessor().getValues(theEntry);
+			if (entryResources != null && entryResources.size() > 0) {
+				IBaseResource res = (IBaseResource) entryResources.get(0);
+				RuntimeResourceDefinition resDef = myContext.getResourceDefinition(res);
+				String versionIdPart = res.getIdElement().getVersionIdPart();
+				if (isBlank(versionIdPart) && res instanceof IResource) {
+					versionIdPart = ResourceMetadataKeyEnum.VERSION.get((IResource) res);
+				}
+
+				String baseUrl = baseType.getValueAsString();
+				String idPart = res.getIdElement().getIdPart();
+
+				String resourceName = resDef.getName();
+				if (!baseUrl.startsWith("cid:") && !baseUrl.startsWith("urn:")) {
+					res.setId(new IdDt(baseUrl, resourceName, idPart, versionIdPart));
+				} else {
+					if (baseUrl.endsWith(":")) {
+						res.setId(new IdDt(baseUrl + idPart));
+					} else {
+						res.setId(new IdDt(baseUrl + ':' + idPart));
+					}
 				}
 			}
 
 		}
-
-		return retVal;
 	}
 
 	@SuppressWarnings("cast")
@@ -445,6 +622,64 @@ public abstract class BaseParser implements IParser {
 		return parseTagList(new StringReader(theString));
 	}
 
+	@Override
+	public IParser setElementFilter(Set<String> theElements) {
+		if (theElements == null || theElements.isEmpty()) {
+			myElementFilterPaths = null;
+			myElementFilter = null;
+		} else {
+			myElementFilterPaths = Collections.unmodifiableSet(new HashSet<String>(theElements));
+			myElementFilter = new ElementFilter(myElementFilterPaths);
+		}
+		return this;
+	}
+
+	void setEncodeFilter(ElementFilter.Node theEncodeFilter) {
+		myEncodeFilter = theEncodeFilter;
+	}
+
+	/**
+	 * Called before a child of the element currently being encoded is encoded. If the child is selected by the element
+	 * filter, the filter node for the child is made current.
+	 * 
+	 * @param theParentFilter
+	 *            The filter node of the element being encoded (as returned by {@link #getEncodeFilter()} before its
+	 *            children were encoded)
+	 * @return Returns <code>false</code> if the child should not be encoded
+	 */
+	boolean startEncodingChild(ElementFilter.Node theParentFilter, BaseRuntimeChildDefinition theChild) {
+		if (theParentFilter == null) {
+			return true;
+		}
+		String elementName = theChild.getElementName();
+		if (theChild instanceof RuntimeChildDeclaredExtensionDefinition) {
+			elementName = ((RuntimeChildDeclaredExtensionDefinition) theChild).isModifier() ? "modifierExtension" : "extension";
+		}
+		ElementFilter.Node filter = theParentFilter.getChild(elementName);
+		if (filter == null) {
+			return false;
+		}
+		myEncodeFilter = filter.isAll() ? null : filter;
+		return true;
+	}
+
+	/**
+	 * Called before the extensions of the element currently being encoded are encoded. Extensions are encoded without
+	 * any filter if they are selected, so the caller must restore the previous filter node afterward.
+	 * 
+	 * @return Returns <code>false</code> if the extensions should not be encoded
+	 */
+	boolean startEncodingExtensions() {
+		if (myEncodeFilter == null) {
+			return true;
+		}
+		if (myEncodeFilter.getChild("extension") == null && myEncodeFilter.getChild("modifierExtension") == null) {
+			return false;
+		}
+		myEncodeFilter = null;
+		return true;
+	}
+
 	@Override
 	public BaseParser setOmitResourceId(boolean theOmitResourceId) {
 		myOmitResourceId = theOmitResourceId;
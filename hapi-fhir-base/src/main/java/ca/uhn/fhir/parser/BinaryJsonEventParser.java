@@ -0,0 +1,328 @@
+package ca.uhn.fhir.parser;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.json.JsonException;
+import javax.json.stream.JsonLocation;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParsingException;
+
+import ca.uhn.fhir.rest.server.Constants;
+
+/**
+ * Reads content in the format described in {@link BinaryParser} as the events of a JSON parser. The stream is read
+ * through a buffer, and is not closed when the parser is closed.
+ */
+class BinaryJsonEventParser implements JsonParser {
+
+	private final byte[] myBuffer = new byte[8192];
+	private long myBufferOffset;
+	private boolean[] myContainerIsObject = new boolean[16];
+	private BigDecimal myDecimal;
+	private int myDepth;
+	private Event myEvent;
+	private final InputStream myInputStream;
+	private int myLimit;
+	private long myLong;
+	private final List<String> myNames = new ArrayList<String>();
+	private int myPosition;
+	private boolean myStarted;
+	private String myString;
+	private final List<String> myValues = new ArrayList<String>();
+
+	BinaryJsonEventParser(InputStream theInputStream) {
+		myInputStream = theInputStream;
+	}
+
+	@Override
+	public void close() {
+		// nothing, the stream belongs to the caller
+	}
+
+	/**
+	 * Makes sure that at least the given number of bytes (which must not be more than the size of the buffer) are
+	 * available in the buffer
+	 */
+	private void fill(int theLength) {
+		if (myLimit - myPosition >= theLength) {
+			return;
+		}
+		if (myPosition > 0) {
+			System.arraycopy(myBuffer, myPosition, myBuffer, 0, myLimit - myPosition);
+			myBufferOffset += myPosition;
+			myLimit -= myPosition;
+			myPosition = 0;
+		}
+		try {
+			while (myLimit < theLength) {
+				int count = myInputStream.read(myBuffer, myLimit, myBuffer.length - myLimit);
+				if (count == -1) {
+					throw newParsingException("Unexpected end of content");
+				}
+				myLimit += count;
+			}
+		} catch (IOException e) {
+			throw new JsonException("Failed to read binary content: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public BigDecimal getBigDecimal() {
+		assertNumber();
+		return myDecimal != null ? myDecimal : BigDecimal.valueOf(myLong);
+	}
+
+	@Override
+	public int getInt() {
+		assertNumber();
+		return myDecimal != null ? myDecimal.intValue() : (int) myLong;
+	}
+
+	@Override
+	public JsonLocation getLocation() {
+		final long offset = myBufferOffset + myPosition;
+		return new JsonLocation() {
+			@Override
+			public long getColumnNumber() {
+				return -1;
+			}
+
+			@Override
+			public long getLineNumber() {
+				return -1;
+			}
+
+			@Override
+			public long getStreamOffset() {
+				return offset;
+			}
+		};
+	}
+
+	@Override
+	public long getLong() {
+		assertNumber();
+		return myDecimal != null ? myDecimal.longValue() : myLong;
+	}
+
+	@Override
+	public String getString() {
+		switch (myEvent) {
+		case KEY_NAME:
+		case VALUE_STRING:
+			return myString;
+		case VALUE_NUMBER:
+			return myDecimal != null ? myDecimal.toString() : Long.toString(myLong);
+		default:
+			throw new IllegalStateException("Current event " + myEvent + " has no string value");
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !myStarted || myDepth > 0;
+	}
+
+	@Override
+	public boolean isIntegralNumber() {
+		assertNumber();
+		return myDecimal == null || myDecimal.scale() == 0;
+	}
+
+	private void assertNumber() {
+		if (myEvent != Event.VALUE_NUMBER) {
+			throw new IllegalStateException("Current event " + myEvent + " is not a number");
+		}
+	}
+
+	private JsonParsingException newParsingException(String theMessage) {
+		return new JsonParsingException(theMessage + " at offset " + (myBufferOffset + myPosition), getLocation());
+	}
+
+	@Override
+	public Event next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		if (!myStarted) {
+			readHeader();
+			myStarted = true;
+		}
+		myEvent = readEvent();
+		return myEvent;
+	}
+
+	private int readByte() {
+		fill(1);
+		return myBuffer[myPosition++] & 0xFF;
+	}
+
+	private Event readEvent() {
+		int token = readByte();
+		if (token >= BinaryParser.TOKEN_NAME_REF_SHORT) {
+			myString = readShared(myNames, token & 0x7F);
+			return Event.KEY_NAME;
+		}
+		if (token >= BinaryParser.TOKEN_STRING_REF_SHORT) {
+			myString = readShared(myValues, token & 0x3F);
+			return Event.VALUE_STRING;
+		}
+
+		switch (token) {
+		case BinaryParser.TOKEN_START_OBJECT:
+			startContainer(true);
+			return Event.START_OBJECT;
+		case BinaryParser.TOKEN_START_ARRAY:
+			startContainer(false);
+			return Event.START_ARRAY;
+		case BinaryParser.TOKEN_END:
+			if (myDepth == 0) {
+				throw newParsingException("Unexpected end of object or array");
+			}
+			myDepth--;
+			return myContainerIsObject[myDepth] ? Event.END_OBJECT : Event.END_ARRAY;
+		case BinaryParser.TOKEN_NULL:
+			return Event.VALUE_NULL;
+		case BinaryParser.TOKEN_TRUE:
+			return Event.VALUE_TRUE;
+		case BinaryParser.TOKEN_FALSE:
+			return Event.VALUE_FALSE;
+		case BinaryParser.TOKEN_INTEGER:
+			long value = readVarint();
+			myLong = (value >>> 1) ^ -(value & 1);
+			myDecimal = null;
+			return Event.VALUE_NUMBER;
+		case BinaryParser.TOKEN_DECIMAL:
+			String text = readUtf8();
+			try {
+				myDecimal = new BigDecimal(text);
+			} catch (NumberFormatException e) {
+				throw newParsingException("Invalid decimal value '" + text + "'");
+			}
+			return Event.VALUE_NUMBER;
+		case BinaryParser.TOKEN_STRING:
+			myString = readUtf8();
+			if (myString.length() <= BinaryParser.MAX_SHARED_VALUE_LENGTH && myValues.size() < BinaryParser.MAX_SHARED_STRINGS) {
+				myValues.add(myString);
+			}
+			return Event.VALUE_STRING;
+		case BinaryParser.TOKEN_STRING_REF:
+			myString = readShared(myValues, readVarint());
+			return Event.VALUE_STRING;
+		case BinaryParser.TOKEN_NAME:
+			myString = readUtf8();
+			if (myNames.size() < BinaryParser.MAX_SHARED_STRINGS) {
+				myNames.add(myString);
+			}
+			return Event.KEY_NAME;
+		case BinaryParser.TOKEN_NAME_REF:
+			myString = readShared(myNames, readVarint());
+			return Event.KEY_NAME;
+		default:
+			throw newParsingException("Unknown token " + token);
+		}
+	}
+
+	private void readHeader() {
+		byte[] header = BinaryParser.HEADER;
+		try {
+			fill(header.length);
+		} catch (JsonParsingException e) {
+			throw newParsingException("Content is not in the HAPI FHIR binary format");
+		}
+		for (int i = 0; i < header.length - 1; i++) {
+			if (myBuffer[myPosition + i] != header[i]) {
+				throw newParsingException("Content is not in the HAPI FHIR binary format");
+			}
+		}
+		int version = myBuffer[myPosition + header.length - 1];
+		if (version != BinaryParser.FORMAT_VERSION) {
+			throw newParsingException("Unsupported version " + version + " of the HAPI FHIR binary format");
+		}
+		myPosition += header.length;
+	}
+
+	private String readShared(List<String> theTable, long theIndex) {
+		if (theIndex >= theTable.size()) {
+			throw newParsingException("Invalid reference to string " + theIndex);
+		}
+		return theTable.get((int) theIndex);
+	}
+
+	private String readUtf8() {
+		long length = readVarint();
+		if (length > Integer.MAX_VALUE) {
+			throw newParsingException("Invalid string length " + length);
+		}
+		int intLength = (int) length;
+		if (intLength <= myBuffer.length) {
+			fill(intLength);
+			String retVal = new String(myBuffer, myPosition, intLength, Constants.CHARSET_UTF8);
+			myPosition += intLength;
+			return retVal;
+		}
+
+		/*
+		 * Strings which do not fit in the buffer are collected one buffer at a time, so that a corrupt length can not
+		 * cause a huge allocation before the end of the content is found
+		 */
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(myBuffer.length * 2);
+		int remaining = intLength;
+		while (remaining > 0) {
+			int count = Math.min(remaining, myBuffer.length);
+			fill(count);
+			bytes.write(myBuffer, myPosition, count);
+			myPosition += count;
+			remaining -= count;
+		}
+		return new String(bytes.toByteArray(), Constants.CHARSET_UTF8);
+	}
+
+	private long readVarint() {
+		long retVal = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int next = readByte();
+			retVal |= (long) (next & 0x7F) << shift;
+			if ((next & 0x80) == 0) {
+				return retVal;
+			}
+		}
+		throw newParsingException("Invalid variable length integer");
+	}
+
+	private void startContainer(boolean theObject) {
+		if (myDepth == myContainerIsObject.length) {
+			boolean[] containers = new boolean[myDepth * 2];
+			System.arraycopy(myContainerIsObject, 0, containers, 0, myDepth);
+			myContainerIsObject = containers;
+		}
+		myContainerIsObject[myDepth++] = theObject;
+	}
+
+}
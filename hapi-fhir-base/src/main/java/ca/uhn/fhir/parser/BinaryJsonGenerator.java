@@ -0,0 +1,366 @@
+package ca.uhn.fhir.parser;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+
+/**
+ * Writes the events of a JSON generator in the format described in {@link BinaryParser}. The content is buffered, and
+ * is written to the stream when the generator is flushed or closed. Closing the generator does not close the stream.
+ */
+class BinaryJsonGenerator implements JsonGenerator {
+
+	private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+	private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+
+	private final byte[] myBuffer = new byte[8192];
+	private int myCount;
+	private final Map<String, Integer> myNames = new HashMap<String, Integer>();
+	private final OutputStream myOutputStream;
+	private final Map<String, Integer> myValues = new HashMap<String, Integer>();
+
+	BinaryJsonGenerator(OutputStream theOutputStream) {
+		myOutputStream = theOutputStream;
+		System.arraycopy(BinaryParser.HEADER, 0, myBuffer, 0, BinaryParser.HEADER.length);
+		myCount = BinaryParser.HEADER.length;
+	}
+
+	@Override
+	public void close() {
+		flush();
+	}
+
+	private void ensureCapacity(int theLength) {
+		if (myCount + theLength > myBuffer.length) {
+			flushBuffer();
+		}
+	}
+
+	@Override
+	public void flush() {
+		flushBuffer();
+		try {
+			myOutputStream.flush();
+		} catch (IOException e) {
+			throw new JsonException("Failed to flush binary content", e);
+		}
+	}
+
+	private void flushBuffer() {
+		if (myCount == 0) {
+			return;
+		}
+		try {
+			myOutputStream.write(myBuffer, 0, myCount);
+		} catch (IOException e) {
+			throw new JsonException("Failed to write binary content", e);
+		}
+		myCount = 0;
+	}
+
+	private static boolean isSurrogate(char theChar) {
+		return theChar >= Character.MIN_SURROGATE && theChar <= Character.MAX_SURROGATE;
+	}
+
+	@Override
+	public JsonGenerator write(BigDecimal theValue) {
+		writeToken(BinaryParser.TOKEN_DECIMAL);
+		writeUtf8(theValue.toString());
+		return this;
+	}
+
+	@Override
+	public JsonGenerator write(BigInteger theValue) {
+		if (theValue.compareTo(MIN_LONG) >= 0 && theValue.compareTo(MAX_LONG) <= 0) {
+			return write(theValue.longValue());
+		}
+		return write(new BigDecimal(theValue));
+	}
+
+	@Override
+	public JsonGenerator write(boolean theValue) {
+		writeToken(theValue ? BinaryParser.TOKEN_TRUE : BinaryParser.TOKEN_FALSE);
+		return this;
+	}
+
+	@Override
+	public JsonGenerator write(double theValue) {
+		return write(BigDecimal.valueOf(theValue));
+	}
+
+	@Override
+	public JsonGenerator write(int theValue) {
+		return write((long) theValue);
+	}
+
+	@Override
+	public JsonGenerator write(JsonValue theValue) {
+		switch (theValue.getValueType()) {
+		case OBJECT:
+			writeToken(BinaryParser.TOKEN_START_OBJECT);
+			for (Entry<String, JsonValue> next : ((JsonObject) theValue).entrySet()) {
+				write(next.getKey(), next.getValue());
+			}
+			writeToken(BinaryParser.TOKEN_END);
+			return this;
+		case ARRAY:
+			writeToken(BinaryParser.TOKEN_START_ARRAY);
+			for (JsonValue next : (JsonArray) theValue) {
+				write(next);
+			}
+			writeToken(BinaryParser.TOKEN_END);
+			return this;
+		case STRING:
+			return write(((JsonString) theValue).getString());
+		case NUMBER:
+			JsonNumber number = (JsonNumber) theValue;
+			if (number.isIntegral()) {
+				return write(number.bigIntegerValue());
+			}
+			return write(number.bigDecimalValue());
+		case TRUE:
+			return write(true);
+		case FALSE:
+			return write(false);
+		default:
+			return writeNull();
+		}
+	}
+
+	@Override
+	public JsonGenerator write(long theValue) {
+		writeToken(BinaryParser.TOKEN_INTEGER);
+		writeVarint((theValue << 1) ^ (theValue >> 63));
+		return this;
+	}
+
+	@Override
+	public JsonGenerator write(String theValue) {
+		if (theValue == null) {
+			return writeNull();
+		}
+		if (theValue.length() > BinaryParser.MAX_SHARED_VALUE_LENGTH) {
+			writeToken(BinaryParser.TOKEN_STRING);
+			writeUtf8(theValue);
+			return this;
+		}
+		writeShared(theValue, myValues, BinaryParser.TOKEN_STRING, BinaryParser.TOKEN_STRING_REF, BinaryParser.TOKEN_STRING_REF_SHORT, 0x40);
+		return this;
+	}
+
+	@Override
+	public JsonGenerator write(String theName, BigDecimal theValue) {
+		writeName(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator write(String theName, BigInteger theValue) {
+		writeName(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator write(String theName, boolean theValue) {
+		writeName(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator write(String theName, double theValue) {
+		writeName(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator write(String theName, int theValue) {
+		writeName(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator write(String theName, JsonValue theValue) {
+		writeName(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator write(String theName, long theValue) {
+		writeName(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator write(String theName, String theValue) {
+		writeName(theName);
+		return write(theValue);
+	}
+
+	@Override
+	public JsonGenerator writeEnd() {
+		writeToken(BinaryParser.TOKEN_END);
+		return this;
+	}
+
+	private void writeName(String theName) {
+		writeShared(theName, myNames, BinaryParser.TOKEN_NAME, BinaryParser.TOKEN_NAME_REF, BinaryParser.TOKEN_NAME_REF_SHORT, 0x80);
+	}
+
+	@Override
+	public JsonGenerator writeNull() {
+		writeToken(BinaryParser.TOKEN_NULL);
+		return this;
+	}
+
+	@Override
+	public JsonGenerator writeNull(String theName) {
+		writeName(theName);
+		return writeNull();
+	}
+
+	/**
+	 * Writes a string which is held in a table, either in full (adding it to the table) or as a reference to the
+	 * table entry
+	 *
+	 * @param theShortRefCount
+	 *           The number of entries which may be referred to by a single byte token
+	 */
+	private void writeShared(String theValue, Map<String, Integer> theTable, int theToken, int theRefToken, int theShortRefToken, int theShortRefCount) {
+		Integer index = theTable.get(theValue);
+		if (index == null) {
+			writeToken(theToken);
+			writeUtf8(theValue);
+			if (theTable.size() < BinaryParser.MAX_SHARED_STRINGS) {
+				theTable.put(theValue, theTable.size());
+			}
+		} else if (index < theShortRefCount) {
+			writeToken(theShortRefToken | index);
+		} else {
+			writeToken(theRefToken);
+			writeVarint(index);
+		}
+	}
+
+	@Override
+	public JsonGenerator writeStartArray() {
+		writeToken(BinaryParser.TOKEN_START_ARRAY);
+		return this;
+	}
+
+	@Override
+	public JsonGenerator writeStartArray(String theName) {
+		writeName(theName);
+		return writeStartArray();
+	}
+
+	@Override
+	public JsonGenerator writeStartObject() {
+		writeToken(BinaryParser.TOKEN_START_OBJECT);
+		return this;
+	}
+
+	@Override
+	public JsonGenerator writeStartObject(String theName) {
+		writeName(theName);
+		return writeStartObject();
+	}
+
+	private void writeToken(int theToken) {
+		ensureCapacity(1);
+		myBuffer[myCount++] = (byte) theToken;
+	}
+
+	/**
+	 * Writes the length of the UTF-8 bytes of a string followed by the bytes. As with {@link String#getBytes(String)},
+	 * unpaired surrogate characters are written as '?'.
+	 */
+	private void writeUtf8(String theValue) {
+		int length = theValue.length();
+		int byteLength = 0;
+		for (int i = 0; i < length; i++) {
+			char next = theValue.charAt(i);
+			if (next < 0x80) {
+				byteLength++;
+			} else if (next < 0x800) {
+				byteLength += 2;
+			} else if (!isSurrogate(next)) {
+				byteLength += 3;
+			} else if (Character.isHighSurrogate(next) && i + 1 < length && Character.isLowSurrogate(theValue.charAt(i + 1))) {
+				byteLength += 4;
+				i++;
+			} else {
+				byteLength++;
+			}
+		}
+		writeVarint(byteLength);
+
+		byte[] buffer = myBuffer;
+		for (int i = 0; i < length; i++) {
+			if (myCount + 4 > buffer.length) {
+				flushBuffer();
+			}
+			char next = theValue.charAt(i);
+			if (next < 0x80) {
+				buffer[myCount++] = (byte) next;
+			} else if (next < 0x800) {
+				buffer[myCount++] = (byte) (0xC0 | (next >> 6));
+				buffer[myCount++] = (byte) (0x80 | (next & 0x3F));
+			} else if (!isSurrogate(next)) {
+				buffer[myCount++] = (byte) (0xE0 | (next >> 12));
+				buffer[myCount++] = (byte) (0x80 | ((next >> 6) & 0x3F));
+				buffer[myCount++] = (byte) (0x80 | (next & 0x3F));
+			} else if (Character.isHighSurrogate(next) && i + 1 < length && Character.isLowSurrogate(theValue.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(next, theValue.charAt(++i));
+				buffer[myCount++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[myCount++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[myCount++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[myCount++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else {
+				buffer[myCount++] = '?';
+			}
+		}
+	}
+
+	private void writeVarint(long theValue) {
+		ensureCapacity(10);
+		long value = theValue;
+		while ((value & ~0x7FL) != 0) {
+			myBuffer[myCount++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		myBuffer[myCount++] = (byte) value;
+	}
+
+}
@@ -0,0 +1,226 @@
+package ca.uhn.fhir.parser;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+
+import javax.json.JsonException;
+import javax.json.stream.JsonGenerator;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import ca.uhn.fhir.context.FhirContext;
+
+/**
+ * This class is the FHIR compact binary parser/encoder. Users should not interact with this class directly, but should
+ * use {@link FhirContext#newBinaryParser()} to get an instance.
+ * <p>
+ * The binary encoding holds exactly the same content as the JSON encoding (the elements are written by the JSON
+ * encoder, which walks the model using the context's element definitions), but in a form which is smaller and much
+ * cheaper to write and read: there is no quoting, escaping or whitespace, numbers are stored as variable length
+ * integers, and each property name and short string value is only written in full the first time it appears in a
+ * document. Later occurrences are written as a reference to the first one, which takes a single byte for the first 128
+ * names and 64 values.
+ * </p>
+ * <p>
+ * The content starts with the four bytes <code>0xFB 'H' 'F' 0x01</code> (the last byte being the version of the
+ * format), followed by the tokens of a single JSON value:
+ * </p>
+ * <table>
+ * <tr><th>Token</th><th>Meaning</th></tr>
+ * <tr><td><code>0x01</code></td><td>Start of an object</td></tr>
+ * <tr><td><code>0x02</code></td><td>Start of an array</td></tr>
+ * <tr><td><code>0x03</code></td><td>End of the current object or array</td></tr>
+ * <tr><td><code>0x04</code>, <code>0x05</code>, <code>0x06</code></td><td><code>null</code>, <code>true</code>, <code>false</code></td></tr>
+ * <tr><td><code>0x07</code> <i>varint</i></td><td>An integer, zigzag encoded</td></tr>
+ * <tr><td><code>0x08</code> <i>string</i></td><td>A decimal, as its text</td></tr>
+ * <tr><td><code>0x09</code> <i>string</i></td><td>A string value, added to the value table if it is at most 64 characters long</td></tr>
+ * <tr><td><code>0x0A</code> <i>varint</i></td><td>A string value from the value table</td></tr>
+ * <tr><td><code>0x0B</code> <i>string</i></td><td>A property name, added to the name table</td></tr>
+ * <tr><td><code>0x0C</code> <i>varint</i></td><td>A property name from the name table</td></tr>
+ * <tr><td><code>0x40</code> - <code>0x7F</code></td><td>A string value from the first 64 entries of the value table</td></tr>
+ * <tr><td><code>0x80</code> - <code>0xFF</code></td><td>A property name from the first 128 entries of the name table</td></tr>
+ * </table>
+ * <p>
+ * A <i>varint</i> is an unsigned integer written 7 bits at a time, least significant bits first, with the high bit of
+ * each byte set if more bytes follow. A <i>string</i> is the length of its UTF-8 bytes as a varint, followed by the
+ * bytes. The name and value tables each hold at most 1024 entries, numbered from 0 in the order they were added.
+ * </p>
+ * <p>
+ * The methods which encode to a {@link Writer} or string, and which parse from a {@link Reader} or string, represent
+ * each byte of the encoding as one character (as the ISO-8859-1 character set does), so the encoding can be passed
+ * through code which handles text. The methods which use streams should be preferred where possible. Pretty printing
+ * has no effect on this encoding.
+ * </p>
+ */
+public class BinaryParser extends JsonParser {
+
+	static final int FORMAT_VERSION = 1;
+	static final byte[] HEADER = { (byte) 0xFB, 'H', 'F', FORMAT_VERSION };
+	static final int MAX_SHARED_STRINGS = 1024;
+	static final int MAX_SHARED_VALUE_LENGTH = 64;
+	static final int TOKEN_DECIMAL = 0x08;
+	static final int TOKEN_END = 0x03;
+	static final int TOKEN_FALSE = 0x06;
+	static final int TOKEN_INTEGER = 0x07;
+	static final int TOKEN_NAME = 0x0B;
+	static final int TOKEN_NAME_REF = 0x0C;
+	static final int TOKEN_NAME_REF_SHORT = 0x80;
+	static final int TOKEN_NULL = 0x04;
+	static final int TOKEN_START_ARRAY = 0x02;
+	static final int TOKEN_START_OBJECT = 0x01;
+	static final int TOKEN_STRING = 0x09;
+	static final int TOKEN_STRING_REF = 0x0A;
+	static final int TOKEN_STRING_REF_SHORT = 0x40;
+	static final int TOKEN_TRUE = 0x05;
+
+	private FhirContext myContext;
+
+	/**
+	 * Do not use this constructor, the recommended way to obtain a new instance of the binary parser is to invoke
+	 * {@link FhirContext#newBinaryParser()}.
+	 */
+	public BinaryParser(FhirContext theContext, IParserErrorHandler theParserErrorHandler) {
+		super(theContext, theParserErrorHandler);
+		myContext = theContext;
+	}
+
+	@Override
+	JsonGenerator createJsonGenerator(OutputStream theOutputStream) {
+		return new BinaryJsonGenerator(theOutputStream);
+	}
+
+	@Override
+	JsonGenerator createJsonGenerator(Writer theWriter) {
+		return new BinaryJsonGenerator(new CharacterOutputStream(theWriter));
+	}
+
+	private JsonStreamParser createStreamParser(InputStream theInputStream) {
+		return new JsonStreamParser(this, myContext, getErrorHandler(), new BinaryJsonEventParser(theInputStream));
+	}
+
+	@Override
+	JsonStreamParser createStreamParser(Reader theReader) {
+		return createStreamParser(new CharacterInputStream(theReader));
+	}
+
+	@Override
+	protected <T extends IBaseResource> T doParseResource(Class<T> theResourceType, InputStream theInputStream) {
+		try {
+			return createStreamParser(theInputStream).parseResource(theResourceType);
+		} catch (JsonException e) {
+			throw new DataFormatException("Failed to parse binary encoded FHIR content: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
+		return doParseResource(theResourceType, new CharacterInputStream(theReader));
+	}
+
+	/**
+	 * Reads the bytes of the encoding from characters
+	 */
+	private static class CharacterInputStream extends InputStream {
+
+		private char[] myBuffer;
+		private final Reader myReader;
+
+		public CharacterInputStream(Reader theReader) {
+			myReader = theReader;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int retVal = myReader.read();
+			if (retVal > 0xFF) {
+				throw newInvalidCharacterException(retVal);
+			}
+			return retVal;
+		}
+
+		@Override
+		public int read(byte[] theBytes, int theOffset, int theLength) throws IOException {
+			if (myBuffer == null || myBuffer.length < theLength) {
+				myBuffer = new char[Math.max(theLength, 1024)];
+			}
+			int retVal = myReader.read(myBuffer, 0, theLength);
+			for (int i = 0; i < retVal; i++) {
+				char next = myBuffer[i];
+				if (next > 0xFF) {
+					throw newInvalidCharacterException(next);
+				}
+				theBytes[theOffset + i] = (byte) next;
+			}
+			return retVal;
+		}
+
+		private static IOException newInvalidCharacterException(int theChar) {
+			return new IOException("Content is not in the HAPI FHIR binary format, found character " + theChar);
+		}
+
+	}
+
+	/**
+	 * Writes the bytes of the encoding as characters
+	 */
+	private static class CharacterOutputStream extends OutputStream {
+
+		private char[] myBuffer;
+		private final Writer myWriter;
+
+		public CharacterOutputStream(Writer theWriter) {
+			myWriter = theWriter;
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+
+		@Override
+		public void flush() throws IOException {
+			myWriter.flush();
+		}
+
+		@Override
+		public void write(byte[] theBytes, int theOffset, int theLength) throws IOException {
+			if (myBuffer == null || myBuffer.length < theLength) {
+				myBuffer = new char[Math.max(theLength, 1024)];
+			}
+			for (int i = 0; i < theLength; i++) {
+				myBuffer[i] = (char) (theBytes[theOffset + i] & 0xFF);
+			}
+			myWriter.write(myBuffer, 0, theLength);
+		}
+
+		@Override
+		public void write(int theByte) throws IOException {
+			myWriter.write(theByte & 0xFF);
+		}
+
+	}
+
+}
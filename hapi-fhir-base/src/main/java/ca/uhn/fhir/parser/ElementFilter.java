@@ -0,0 +1,203 @@
+package ca.uhn.fhir.parser;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * The compiled form of the element paths passed to {@link IParser#setElementFilter(Set)}, as one tree of
+ * {@link Node nodes} per resource type.
+ * <p>
+ * A path is made up of element names separated by dots, and is either qualified with a resource type (e.g.
+ * <code>Patient.name.family</code>) or applies to resources of any type (e.g. <code>name.family</code>, or
+ * <code>*.name.family</code>). Paths which are not qualified do not apply to Bundle resources, so that filtering the
+ * resources in a bundle does not remove the entries which hold them. The <code>id</code> and <code>meta</code> elements
+ * of a filtered resource are always kept.
+ * </p>
+ */
+class ElementFilter {
+
+	private static final String ANY_RESOURCE = "*";
+
+	private final Map<String, Node> myResourceNodes = new HashMap<String, Node>();
+	private final Node myAnyResourceNode;
+
+	ElementFilter(Set<String> theElements) {
+		Node anyResourceNode = null;
+		for (String next : theElements) {
+			if (isBlank(next)) {
+				continue;
+			}
+			String[] parts = next.trim().split("\\.");
+			int start = 0;
+			String resourceName = ANY_RESOURCE;
+			if (parts[0].equals(ANY_RESOURCE) || Character.isUpperCase(parts[0].charAt(0))) {
+				resourceName = parts[0];
+				start = 1;
+			}
+
+			Node node;
+			if (resourceName.equals(ANY_RESOURCE)) {
+				if (anyResourceNode == null) {
+					anyResourceNode = newResourceNode();
+				}
+				node = anyResourceNode;
+			} else {
+				node = myResourceNodes.get(resourceName);
+				if (node == null) {
+					node = newResourceNode();
+					myResourceNodes.put(resourceName, node);
+				}
+			}
+			node.add(parts, start);
+		}
+
+		myAnyResourceNode = anyResourceNode;
+		if (anyResourceNode != null) {
+			for (Entry<String, Node> next : myResourceNodes.entrySet()) {
+				if (!"Bundle".equals(next.getKey())) {
+					next.getValue().addAll(anyResourceNode);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the node for the elements of a resource of the given type, or <code>null</code> if resources of that type
+	 * are not filtered
+	 */
+	Node getResourceNode(String theResourceName) {
+		Node retVal = myResourceNodes.get(theResourceName);
+		if (retVal == null && !"Bundle".equals(theResourceName)) {
+			retVal = myAnyResourceNode;
+		}
+		if (retVal != null && retVal.isAll()) {
+			return null;
+		}
+		return retVal;
+	}
+
+	private static Node newResourceNode() {
+		Node retVal = new Node();
+		retVal.myChildren.put("id", Node.ALL);
+		retVal.myChildren.put("meta", Node.ALL);
+		return retVal;
+	}
+
+	/**
+	 * The elements selected within one element
+	 */
+	static class Node {
+
+		/**
+		 * Selects an element along with all of its children
+		 */
+		static final Node ALL = new Node(null);
+
+		private Map<String, Node> myChildren;
+
+		private Node() {
+			this(new HashMap<String, Node>());
+		}
+
+		private Node(Map<String, Node> theChildren) {
+			myChildren = theChildren;
+		}
+
+		private void add(String[] theParts, int theIndex) {
+			if (theIndex == theParts.length) {
+				myChildren = null;
+				return;
+			}
+			if (myChildren == null) {
+				return;
+			}
+			String name = stripChoiceSuffix(theParts[theIndex]);
+			Node child = myChildren.get(name);
+			if (child == null) {
+				if (theIndex + 1 == theParts.length) {
+					myChildren.put(name, ALL);
+					return;
+				}
+				child = new Node();
+				myChildren.put(name, child);
+			} else if (child == ALL) {
+				return;
+			}
+			child.add(theParts, theIndex + 1);
+		}
+
+		private void addAll(Node theNode) {
+			if (myChildren == null) {
+				return;
+			}
+			if (theNode.myChildren == null) {
+				myChildren = null;
+				return;
+			}
+			for (Entry<String, Node> next : theNode.myChildren.entrySet()) {
+				Node child = myChildren.get(next.getKey());
+				if (child == null) {
+					child = new Node();
+					myChildren.put(next.getKey(), child);
+				} else if (child == ALL) {
+					continue;
+				}
+				child.addAll(next.getValue());
+				if (child.myChildren == null) {
+					myChildren.put(next.getKey(), ALL);
+				}
+			}
+		}
+
+		/**
+		 * Returns the node for the given child element, or <code>null</code> if the child is not selected. Choice
+		 * elements may be named with or without their <code>[x]</code> suffix.
+		 */
+		Node getChild(String theElementName) {
+			if (myChildren == null) {
+				return this;
+			}
+			return myChildren.get(stripChoiceSuffix(theElementName));
+		}
+
+		/**
+		 * Returns <code>true</code> if all of the children of the element are selected
+		 */
+		boolean isAll() {
+			return myChildren == null;
+		}
+
+		private static String stripChoiceSuffix(String theElementName) {
+			if (theElementName.endsWith("[x]")) {
+				return theElementName.substring(0, theElementName.length() - 3);
+			}
+			return theElementName;
+		}
+
+	}
+
+}
@@ -0,0 +1,52 @@
+package ca.uhn.fhir.parser;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Iterator;
+
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+
+/**
+ * Reads the entries of a Bundle resource one at a time, parsing only as much of the document as is needed to return
+ * the next entry. Entries which have been returned are not referenced by the reader, so bundles of any size can be
+ * processed in constant memory. Instances are obtained from {@link IParser#parseBundleEntries(Class, java.io.Reader)}.
+ * <p>
+ * Each entry is returned once it has been completely parsed, with the ID of its resource populated as
+ * {@link IParser#parseResource(Class, java.io.Reader)} would populate it. Because the other entries are not
+ * available at that point, references from one entry to the resource of another entry are not resolved.
+ * </p>
+ * <p>
+ * {@link #remove()} is not supported. Parse errors are thrown as a {@link DataFormatException} from
+ * {@link #hasNext()} or {@link #next()}.
+ * </p>
+ */
+public interface IBundleEntryReader<T extends IBaseBundle> extends Iterator<IBase> {
+
+	/**
+	 * Returns the bundle being read, which never contains any entries. Elements which appear before the entries in the
+	 * document (such as <code>Bundle.type</code> and <code>Bundle.total</code>) are populated once the first entry
+	 * has been read, and elements which appear after the entries only once {@link #hasNext()} has returned
+	 * <code>false</code>.
+	 */
+	T getBundle();
+
+}
@@ -21,10 +21,16 @@ package ca.uhn.fhir.parser;
  */
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.Iterator;
+import java.util.Set;
 
 import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import ca.uhn.fhir.context.ConfigurationException;
@@ -55,6 +61,32 @@ public interface IParser {
 
 	void encodeResourceToWriter(IBaseResource theResource, Writer theWriter) throws IOException, DataFormatException;
 
+	/**
+	 * Encodes a resource to a stream using the UTF-8 character set. Parsers whose underlying encoder accepts a stream
+	 * (such as the JSON parser) hand the stream to it directly instead of writing through an additional writer.
+	 * 
+	 * @param theResource
+	 *            The resource to encode
+	 * @param theOutputStream
+	 *            The stream to encode to. Note that the stream will be flushed but not closed by the parser.
+	 */
+	void encodeResourceToOutputStream(IBaseResource theResource, OutputStream theOutputStream) throws IOException, DataFormatException;
+
+	/**
+	 * Encodes a Bundle resource whose entries are supplied one at a time by an iterator, instead of being held in the
+	 * bundle. Each entry is written as soon as it has been returned by the iterator and is not referenced by the parser
+	 * afterwards, so bundles of any size can be written in constant memory. The output is the same as encoding the
+	 * bundle with all of its entries using {@link #encodeResourceToWriter(IBaseResource, Writer)}.
+	 * 
+	 * @param theBundle
+	 *            The bundle to encode. Must not contain any entries.
+	 * @param theEntries
+	 *            The entries to encode, which must be instances of the entry type of <code>theBundle</code>
+	 * @param theWriter
+	 *            The writer to encode to
+	 */
+	void encodeBundleEntriesToWriter(IBaseBundle theBundle, Iterator<? extends IBase> theEntries, Writer theWriter) throws IOException, DataFormatException;
+
 	/**
 	 * Encodes a tag list, as defined in the <a href="http://hl7.org/implement/standards/fhir/http.html#tags">FHIR Specification</a>.
 	 * 
@@ -95,6 +127,19 @@ public interface IParser {
 	 */
 	Bundle parseBundle(String theMessageString) throws ConfigurationException, DataFormatException;
 
+	/**
+	 * Parses a Bundle resource one entry at a time. Nothing is read until the returned reader is used, and the reader
+	 * only holds the entry currently being parsed, so bundles of any size can be processed in constant memory.
+	 * 
+	 * @param theBundleType
+	 *            The Bundle resource type of the structures being used
+	 * @param theReader
+	 *            The reader to parse input from. Note that the Reader will not be closed by the parser.
+	 * @return A reader which returns the entries of the bundle
+	 * @see IBundleEntryReader
+	 */
+	<T extends IBaseBundle> IBundleEntryReader<T> parseBundleEntries(Class<T> theBundleType, Reader theReader);
+
 	/**
 	 * Parses a resource
 	 * 
@@ -108,6 +153,22 @@ public interface IParser {
 	 */
 	<T extends IBaseResource> T parseResource(Class<T> theResourceType, Reader theReader) throws DataFormatException;
 
+	/**
+	 * Parses a resource from a stream which is encoded using the UTF-8 character set (or, for a binary encoding, which
+	 * contains the bytes of the encoding)
+	 * 
+	 * @param theResourceType
+	 *            The resource type to use, or <code>null</code> to use the type found in the content. This can be used
+	 *            to explicitly specify a class which extends a built-in type (e.g. a custom type extending the default
+	 *            Patient class)
+	 * @param theInputStream
+	 *            The stream to parse input from. Note that the stream will not be closed by the parser upon completion.
+	 * @return A parsed resource
+	 * @throws DataFormatException
+	 *             If the resource can not be parsed because the data is not recognized or invalid for any reason
+	 */
+	<T extends IBaseResource> T parseResource(Class<T> theResourceType, InputStream theInputStream) throws DataFormatException;
+
 	/**
 	 * Parses a resource
 	 * 
@@ -163,6 +224,36 @@ public interface IParser {
 	 */
 	TagList parseTagList(String theString);
 
+	/**
+	 * Sets the elements which will be parsed and encoded by this parser. All other elements are skipped when a resource
+	 * is parsed (so they are never created in the model), and are left out when a resource is encoded. This can be used
+	 * to read or write a small part of large resources, e.g. to implement the <code>_elements</code> and
+	 * <code>_summary</code> search parameters.
+	 * <p>
+	 * Each value is a path of element names separated by dots, either starting with a resource type (e.g.
+	 * <code>Patient.name.family</code>) or applying to resources of any type except Bundle (e.g. <code>name</code> or
+	 * <code>*.name</code>). Selecting an element selects all of its children, and extensions are selected with the
+	 * element names <code>extension</code> and <code>modifierExtension</code>. The <code>id</code> and
+	 * <code>meta</code> elements are always included, and contained resources are never filtered.
+	 * </p>
+	 * 
+	 * @param theElements
+	 *            The paths of the elements to include, or <code>null</code> (which is the default) or an empty set to
+	 *            include all elements
+	 * @return Returns an instance of <code>this</code> parser so that method calls can be chained together
+	 * @since 1.1
+	 */
+	IParser setElementFilter(Set<String> theElements);
+
+	/**
+	 * Returns the paths of the elements which are parsed and encoded by this parser, or <code>null</code> if all
+	 * elements are
+	 * 
+	 * @see #setElementFilter(Set)
+	 * @since 1.1
+	 */
+	Set<String> getElementFilter();
+
 	/**
 	 * Sets the "pretty print" flag, meaning that the parser will encode resources with human-readable spacing and newlines between elements instead of condensing output as much as possible.
 	 * 
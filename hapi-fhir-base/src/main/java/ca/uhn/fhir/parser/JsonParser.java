@@ -24,7 +24,10 @@ import static org.apache.commons.lang3.StringUtils.defaultString;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
@@ -41,7 +44,6 @@ import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonNumber;
 import javax.json.JsonObject;
-import javax.json.JsonReader;
 import javax.json.JsonString;
 import javax.json.JsonValue;
 import javax.json.JsonValue.ValueType;
@@ -56,6 +58,7 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBaseBinary;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseBooleanDatatype;
 import org.hl7.fhir.instance.model.api.IBaseDatatype;
 import org.hl7.fhir.instance.model.api.IBaseDecimalDatatype;
@@ -79,6 +82,7 @@ import ca.uhn.fhir.context.RuntimeChildNarrativeDefinition;
 import ca.uhn.fhir.context.RuntimeChildUndeclaredExtensionDefinition;
 import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.model.api.BaseBundle;
+import ca.uhn.fhir.model.api.BaseElement;
 import ca.uhn.fhir.model.api.Bundle;
 import ca.uhn.fhir.model.api.BundleEntry;
 import ca.uhn.fhir.model.api.ExtensionDt;
@@ -104,6 +108,7 @@ import ca.uhn.fhir.model.primitive.StringDt;
 import ca.uhn.fhir.model.primitive.UriDt;
 import ca.uhn.fhir.model.primitive.XhtmlDt;
 import ca.uhn.fhir.narrative.INarrativeGenerator;
+import ca.uhn.fhir.rest.server.Constants;
 import ca.uhn.fhir.util.ElementUtil;
 import ca.uhn.fhir.util.UrlUtil;
 
@@ -115,6 +120,8 @@ public class JsonParser extends BaseParser implements IParser {
 	private static final Set<String> BUNDLE_TEXTNODE_CHILDREN_DSTU1;
 	private static final Set<String> BUNDLE_TEXTNODE_CHILDREN_DSTU2;
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(JsonParser.HeldExtension.class);
+	private static volatile JsonGeneratorFactory ourGeneratorFactory;
+	private static volatile JsonGeneratorFactory ourPrettyGeneratorFactory;
 
 	static {
 		HashSet<String> hashSetDstu1 = new HashSet<String>();
@@ -144,19 +151,28 @@ public class JsonParser extends BaseParser implements IParser {
 		myContext = theContext;
 	}
 
-	private void addToHeldExtensions(int valueIdx, List<? extends IBaseExtension<?, ?>> ext, ArrayList<ArrayList<HeldExtension>> list, boolean theIsModifier) {
-		if (ext.size() > 0) {
-			list.ensureCapacity(valueIdx);
-			while (list.size() <= valueIdx) {
-				list.add(null);
-			}
-			if (list.get(valueIdx) == null) {
-				list.set(valueIdx, new ArrayList<JsonParser.HeldExtension>());
-			}
-			for (IBaseExtension<?, ?> next : ext) {
-				list.get(valueIdx).add(new HeldExtension(next, theIsModifier));
-			}
+	/**
+	 * The list of held extensions is only created once an extension is found, so the returned list should be used in
+	 * place of the one which was passed in
+	 */
+	private ArrayList<ArrayList<HeldExtension>> addToHeldExtensions(int valueIdx, List<? extends IBaseExtension<?, ?>> ext, ArrayList<ArrayList<HeldExtension>> list, boolean theIsModifier) {
+		if (ext.isEmpty()) {
+			return list;
 		}
+		ArrayList<ArrayList<HeldExtension>> retVal = list;
+		if (retVal == null) {
+			retVal = new ArrayList<ArrayList<HeldExtension>>(valueIdx + 1);
+		}
+		while (retVal.size() <= valueIdx) {
+			retVal.add(null);
+		}
+		if (retVal.get(valueIdx) == null) {
+			retVal.set(valueIdx, new ArrayList<JsonParser.HeldExtension>(ext.size()));
+		}
+		for (IBaseExtension<?, ?> next : ext) {
+			retVal.get(valueIdx).add(new HeldExtension(next, theIsModifier));
+		}
+		return retVal;
 	}
 
 	private void assertObjectOfType(JsonValue theResourceTypeObj, ValueType theValueType, String thePosition) {
@@ -169,14 +185,29 @@ public class JsonParser extends BaseParser implements IParser {
 		}
 	}
 
-	private JsonGenerator createJsonGenerator(Writer theWriter) {
-		Map<String, Object> properties = new HashMap<String, Object>(1);
-		if (myPrettyPrint) {
-			properties.put(JsonGenerator.PRETTY_PRINTING, myPrettyPrint);
-		}
-		JsonGeneratorFactory jgf = Json.createGeneratorFactory(properties);
-		JsonGenerator eventWriter = jgf.createGenerator(theWriter);
-		return eventWriter;
+	/**
+	 * Generators return their buffer to the factory's pool when they are closed, so the stream is wrapped in order for
+	 * the generator to be closed without closing the stream. This is overridden by {@link BinaryParser} in order to
+	 * write the same content in its own format.
+	 */
+	JsonGenerator createJsonGenerator(OutputStream theOutputStream) {
+		return getGeneratorFactory(myPrettyPrint).createGenerator(new NonClosingOutputStream(theOutputStream), Constants.CHARSET_UTF8);
+	}
+
+	/**
+	 * Generators return their buffer to the factory's pool when they are closed, so the writer is wrapped in order for
+	 * the generator to be closed without closing the writer
+	 */
+	JsonGenerator createJsonGenerator(Writer theWriter) {
+		return getGeneratorFactory(myPrettyPrint).createGenerator(new NonClosingWriter(theWriter));
+	}
+
+	/**
+	 * Creates the parser which reads the events of the content into a {@link ParserState}. This is overridden by
+	 * {@link BinaryParser} in order to read the same events from its own format.
+	 */
+	JsonStreamParser createStreamParser(Reader theReader) {
+		return new JsonStreamParser(this, myContext, getErrorHandler(), theReader);
 	}
 
 	@Override
@@ -187,7 +218,7 @@ public class JsonParser extends BaseParser implements IParser {
 		} else {
 			encodeBundleToWriterInDstu1Format(theBundle, eventWriter);
 		}
-		eventWriter.flush();
+		eventWriter.close();
 	}
 
 	private void encodeBundleToWriterInDstu1Format(Bundle theBundle, JsonGenerator eventWriter) throws IOException {
@@ -492,6 +523,7 @@ public class JsonParser extends BaseParser implements IParser {
 
 	private void encodeCompositeElementChildrenToStreamWriter(RuntimeResourceDefinition theResDef, IBaseResource theResource, IBase theNextValue, JsonGenerator theEventWriter,
 			List<? extends BaseRuntimeChildDefinition> theChildren, boolean theContainedResource) throws IOException {
+		ElementFilter.Node filter = getEncodeFilter();
 		for (BaseRuntimeChildDefinition nextChild : theChildren) {
 			if (nextChild.getElementName().equals("extension") || nextChild.getElementName().equals("modifierExtension")) {
 				continue;
@@ -499,6 +531,9 @@ public class JsonParser extends BaseParser implements IParser {
 			if (nextChild.getElementName().equals("id")) {
 				continue;
 			}
+			if (!startEncodingChild(filter, nextChild)) {
+				continue;
+			}
 
 			if (nextChild instanceof RuntimeChildNarrativeDefinition) {
 
@@ -523,16 +558,16 @@ public class JsonParser extends BaseParser implements IParser {
 				continue;
 			}
 			
-			List<? extends IBase> values = nextChild.getAccessor().getValues(theNextValue);
-			if (values == null || values.isEmpty()) {
+			Iterable<? extends IBase> values = getChildValuesForEncoding(nextChild, theNextValue);
+			if (values == null) {
 				continue;
 			}
 
 			String currentChildName = null;
 			boolean inArray = false;
 
-			ArrayList<ArrayList<HeldExtension>> extensions = new ArrayList<ArrayList<HeldExtension>>(0);
-			ArrayList<ArrayList<HeldExtension>> modifierExtensions = new ArrayList<ArrayList<HeldExtension>>(0);
+			ArrayList<ArrayList<HeldExtension>> extensions = null;
+			ArrayList<ArrayList<HeldExtension>> modifierExtensions = null;
 
 			int valueIdx = 0;
 			for (IBase nextValue : values) {
@@ -587,23 +622,23 @@ public class JsonParser extends BaseParser implements IParser {
 						encodeChildElementToStreamWriter(theResDef, theResource, theEventWriter, nextValue, childDef, null, theContainedResource);
 					}
 
-					if (primitive) {
+					if (primitive && hasUndeclaredExtensions(nextValue)) {
 						if (nextValue instanceof ISupportsUndeclaredExtensions) {
 							List<ExtensionDt> ext = ((ISupportsUndeclaredExtensions) nextValue).getUndeclaredExtensions();
-							addToHeldExtensions(valueIdx, ext, extensions, false);
+							extensions = addToHeldExtensions(valueIdx, ext, extensions, false);
 
 							ext = ((ISupportsUndeclaredExtensions) nextValue).getUndeclaredModifierExtensions();
-							addToHeldExtensions(valueIdx, ext, modifierExtensions, true);
+							modifierExtensions = addToHeldExtensions(valueIdx, ext, modifierExtensions, true);
 						} else {
 							if (nextValue instanceof IBaseHasExtensions) {
 								IBaseHasExtensions element = (IBaseHasExtensions) nextValue;
 								List<? extends IBaseExtension<?, ?>> ext = element.getExtension();
-								addToHeldExtensions(valueIdx, ext, extensions, false);
+								extensions = addToHeldExtensions(valueIdx, ext, extensions, false);
 							}
 							if (nextValue instanceof IBaseHasModifierExtensions) {
 								IBaseHasModifierExtensions element = (IBaseHasModifierExtensions) nextValue;
 								List<? extends IBaseExtension<?, ?>> ext = element.getModifierExtension();
-								addToHeldExtensions(valueIdx, ext, extensions, true);
+								extensions = addToHeldExtensions(valueIdx, ext, extensions, true);
 							}
 						}
 					}
@@ -617,7 +652,7 @@ public class JsonParser extends BaseParser implements IParser {
 				theEventWriter.writeEnd();
 			}
 
-			if (extensions.size() > 0 || modifierExtensions.size() > 0) {
+			if (extensions != null || modifierExtensions != null) {
 				if (inArray) {
 					// If this is a repeatable field, the extensions go in an array too
 					theEventWriter.writeStartArray('_' + currentChildName);
@@ -630,12 +665,12 @@ public class JsonParser extends BaseParser implements IParser {
 
 					List<HeldExtension> heldExts = Collections.emptyList();
 					List<HeldExtension> heldModExts = Collections.emptyList();
-					if (extensions.size() > i && extensions.get(i) != null && extensions.get(i).isEmpty() == false) {
+					if (extensions != null && extensions.size() > i && extensions.get(i) != null && extensions.get(i).isEmpty() == false) {
 						haveContent = true;
 						heldExts = extensions.get(i);
 					}
 
-					if (modifierExtensions.size() > i && modifierExtensions.get(i) != null && modifierExtensions.get(i).isEmpty() == false) {
+					if (modifierExtensions != null && modifierExtensions.size() > i && modifierExtensions.get(i) != null && modifierExtensions.get(i).isEmpty() == false) {
 						haveContent = true;
 						heldModExts = modifierExtensions.get(i);
 					}
@@ -656,11 +691,16 @@ public class JsonParser extends BaseParser implements IParser {
 				theEventWriter.writeEnd();
 			}
 		}
+		setEncodeFilter(filter);
 	}
 
 	private void encodeCompositeElementToStreamWriter(RuntimeResourceDefinition theResDef, IBaseResource theResource, IBase theNextValue, JsonGenerator theEventWriter,
 			BaseRuntimeElementCompositeDefinition<?> resDef, boolean theContainedResource) throws IOException, DataFormatException {
-		extractAndWriteExtensionsAsDirectChild(theNextValue, theEventWriter, resDef, theResDef, theResource, null);
+		ElementFilter.Node filter = getEncodeFilter();
+		if (startEncodingExtensions()) {
+			extractAndWriteExtensionsAsDirectChild(theNextValue, theEventWriter, resDef, theResDef, theResource, null);
+			setEncodeFilter(filter);
+		}
 		encodeCompositeElementChildrenToStreamWriter(theResDef, theResource, theNextValue, theEventWriter, resDef.getExtensions(), theContainedResource);
 		encodeCompositeElementChildrenToStreamWriter(theResDef, theResource, theNextValue, theEventWriter, resDef.getChildren(), theContainedResource);
 	}
@@ -697,6 +737,8 @@ public class JsonParser extends BaseParser implements IParser {
 		}
 
 		RuntimeResourceDefinition resDef = myContext.getResourceDefinition(theResource);
+		ElementFilter.Node previousFilter = getEncodeFilter();
+		setEncodeFilter(null);
 
 		if (theObjectNameOrNull == null) {
 			theEventWriter.writeStartObject();
@@ -770,10 +812,21 @@ public class JsonParser extends BaseParser implements IParser {
 			theEventWriter.write("contentType", bin.getContentType());
 			theEventWriter.write("content", bin.getContentAsBase64());
 		} else {
+			setEncodeFilter(getResourceEncodeFilter(resDef, theContainedResource));
 			encodeCompositeElementToStreamWriter(theResDef, theResource, theResource, theEventWriter, resDef, theContainedResource);
 		}
 
 		theEventWriter.writeEnd();
+		setEncodeFilter(previousFilter);
+	}
+
+	@Override
+	protected void doEncodeResourceToOutputStream(IBaseResource theResource, OutputStream theOutputStream) throws IOException {
+		JsonGenerator eventWriter = createJsonGenerator(theOutputStream);
+
+		RuntimeResourceDefinition resDef = myContext.getResourceDefinition(theResource);
+		encodeResourceToJsonStreamWriter(resDef, theResource, eventWriter, null, false);
+		eventWriter.close();
 	}
 
 	@Override
@@ -782,7 +835,7 @@ public class JsonParser extends BaseParser implements IParser {
 
 		RuntimeResourceDefinition resDef = myContext.getResourceDefinition(theResource);
 		encodeResourceToJsonStreamWriter(resDef, theResource, eventWriter, null, false);
-		eventWriter.flush();
+		eventWriter.close();
 	}
 
 	@Override
@@ -812,7 +865,7 @@ public class JsonParser extends BaseParser implements IParser {
 		eventWriter.writeEnd();
 
 		eventWriter.writeEnd();
-		eventWriter.flush();
+		eventWriter.close();
 	}
 
 	/**
@@ -820,6 +873,11 @@ public class JsonParser extends BaseParser implements IParser {
 	 * called _name): resource extensions, and extension extensions
 	 */
 	private void extractAndWriteExtensionsAsDirectChild(IBase theElement, JsonGenerator theEventWriter, BaseRuntimeElementDefinition<?> theElementDef, RuntimeResourceDefinition theResDef, IBaseResource theResource, String theParentExtensionUrl) throws IOException {
+		boolean hasDeclaredExtensions = theElementDef != null && (!theElementDef.getExtensionsNonModifier().isEmpty() || !theElementDef.getExtensionsModifier().isEmpty());
+		if (!hasDeclaredExtensions && !hasUndeclaredExtensions(theElement)) {
+			return;
+		}
+
 		List<HeldExtension> extensions = new ArrayList<HeldExtension>(0);
 		List<HeldExtension> modifierExtensions = new ArrayList<HeldExtension>(0);
 
@@ -900,7 +958,18 @@ public class JsonParser extends BaseParser implements IParser {
 		}
 	}
 
-	private void parseAlternates(JsonValue theAlternateVal, ParserState<?> theState, String theElementName) {
+	/**
+	 * Returns <code>false</code> if the element is known to have no undeclared extensions, without creating the lists
+	 * of extensions of elements which have never had any
+	 */
+	private static boolean hasUndeclaredExtensions(IBase theElement) {
+		if (theElement instanceof BaseElement) {
+			return ((BaseElement) theElement).hasUndeclaredExtensions();
+		}
+		return true;
+	}
+
+	void parseAlternates(JsonValue theAlternateVal, ParserState<?> theState, String theElementName) {
 		if (theAlternateVal == null || theAlternateVal.getValueType() == ValueType.NULL) {
 			return;
 		}
@@ -945,19 +1014,22 @@ public class JsonParser extends BaseParser implements IParser {
 
 	@Override
 	public <T extends IBaseResource> Bundle parseBundle(Class<T> theResourceType, Reader theReader) {
-		JsonReader reader;
-		JsonObject object;
-
 		try {
-			reader = Json.createReader(theReader);
-			object = reader.readObject();
+			return createStreamParser(theReader).parseBundle(theResourceType);
 		} catch (JsonParsingException e) {
 			if (e.getMessage().startsWith("Unexpected char 39")) {
 				throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage() + " - This may indicate that single quotes are being used as JSON escapes where double quotes are required", e);
 			}
 			throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
 		}
-		JsonValue resourceTypeObj = object.get("resourceType");
+	}
+
+	/**
+	 * Parses a bundle which has already been read into a JSON object. This is used by {@link JsonStreamParser} when
+	 * the bundle can not be streamed.
+	 */
+	<T extends IBaseResource> Bundle parseBundle(Class<T> theResourceType, JsonObject theObject) {
+		JsonValue resourceTypeObj = theObject.get("resourceType");
 		assertObjectOfType(resourceTypeObj, JsonValue.ValueType.STRING, "resourceType");
 		String resourceType = ((JsonString) resourceTypeObj).getString();
 		if (!"Bundle".equals(resourceType)) {
@@ -965,13 +1037,14 @@ public class JsonParser extends BaseParser implements IParser {
 		}
 
 		ParserState<Bundle> state = ParserState.getPreAtomInstance(myContext, theResourceType, true, getErrorHandler());
+		state.setElementFilter(getCompiledElementFilter());
 		if (myContext.getVersion().getVersion().isNewerThan(FhirVersionEnum.DSTU1)) {
 			state.enteringNewElement(null, "Bundle");
 		} else {
 			state.enteringNewElement(null, "feed");
 		}
 
-		parseBundleChildren(object, state);
+		parseBundleChildren(theObject, state);
 
 		state.endingElement();
 
@@ -992,69 +1065,91 @@ public class JsonParser extends BaseParser implements IParser {
 					theState.endingElement();
 				}
 				continue;
-			} else if (myContext.getVersion().getVersion() == FhirVersionEnum.DSTU1) {
-				if ("link".equals(nextName)) {
-					JsonArray entries = theObject.getJsonArray(nextName);
-					for (JsonValue jsonValue : entries) {
-						theState.enteringNewElement(null, "link");
-						JsonObject linkObj = (JsonObject) jsonValue;
-						String rel = linkObj.getString("rel", null);
-						String href = linkObj.getString("href", null);
-						theState.attributeValue("rel", rel);
-						theState.attributeValue("href", href);
-						theState.endingElement();
-					}
-					continue;
-				} else if (BUNDLE_TEXTNODE_CHILDREN_DSTU1.contains(nextName)) {
-					theState.enteringNewElement(null, nextName);
-					theState.string(theObject.getString(nextName, null));
-					theState.endingElement();
-					continue;
-				}
-			} else {
-				if ("link".equals(nextName)) {
-					JsonArray entries = theObject.getJsonArray(nextName);
-					for (JsonValue jsonValue : entries) {
-						theState.enteringNewElement(null, "link");
-						JsonObject linkObj = (JsonObject) jsonValue;
-						String rel = linkObj.getString("relation", null);
-						String href = linkObj.getString("url", null);
-						theState.enteringNewElement(null, "relation");
-						theState.attributeValue("value", rel);
-						theState.endingElement();
-						theState.enteringNewElement(null, "url");
-						theState.attributeValue("value", href);
-						theState.endingElement();
-						theState.endingElement();
-					}
-					continue;
-				} else if (BUNDLE_TEXTNODE_CHILDREN_DSTU2.contains(nextName)) {
-					theState.enteringNewElement(null, nextName);
-					// String obj = theObject.getString(nextName, null);
-
-					JsonValue obj = theObject.get(nextName);
-					if (obj == null) {
-						theState.attributeValue("value", null);
-					} else if (obj instanceof JsonString) {
-						theState.attributeValue("value", theObject.getString(nextName, null));
-					} else if (obj instanceof JsonNumber) {
-						theState.attributeValue("value", obj.toString());
-					} else {
-						throw new DataFormatException("Unexpected JSON object for entry '" + nextName + "'");
-					}
-
-					theState.endingElement();
-					continue;
-				}
 			}
 
 			JsonValue nextVal = theObject.get(nextName);
+			if (parseBundleChild(theState, nextName, nextVal)) {
+				continue;
+			}
 			parseChildren(theState, nextName, nextVal, null, null);
 
 		}
 	}
 
-	private void parseChildren(JsonObject theObject, ParserState<?> theState) {
+	boolean isSpecialBundleChild(String theName) {
+		if ("link".equals(theName)) {
+			return true;
+		}
+		if (myContext.getVersion().getVersion() == FhirVersionEnum.DSTU1) {
+			return BUNDLE_TEXTNODE_CHILDREN_DSTU1.contains(theName);
+		}
+		return BUNDLE_TEXTNODE_CHILDREN_DSTU2.contains(theName);
+	}
+
+	/**
+	 * Parses the bundle and bundle entry children which are not regular elements (see
+	 * {@link #isSpecialBundleChild(String)})
+	 * 
+	 * @return Returns <code>false</code> if the child is a regular element, which has not been parsed
+	 */
+	boolean parseBundleChild(ParserState<?> theState, String theName, JsonValue theValue) {
+		if (myContext.getVersion().getVersion() == FhirVersionEnum.DSTU1) {
+			if ("link".equals(theName)) {
+				JsonArray entries = (JsonArray) theValue;
+				for (JsonValue jsonValue : entries) {
+					theState.enteringNewElement(null, "link");
+					JsonObject linkObj = (JsonObject) jsonValue;
+					String rel = linkObj.getString("rel", null);
+					String href = linkObj.getString("href", null);
+					theState.attributeValue("rel", rel);
+					theState.attributeValue("href", href);
+					theState.endingElement();
+				}
+				return true;
+			} else if (BUNDLE_TEXTNODE_CHILDREN_DSTU1.contains(theName)) {
+				theState.enteringNewElement(null, theName);
+				theState.string(theValue instanceof JsonString ? ((JsonString) theValue).getString() : null);
+				theState.endingElement();
+				return true;
+			}
+		} else {
+			if ("link".equals(theName)) {
+				JsonArray entries = (JsonArray) theValue;
+				for (JsonValue jsonValue : entries) {
+					theState.enteringNewElement(null, "link");
+					JsonObject linkObj = (JsonObject) jsonValue;
+					String rel = linkObj.getString("relation", null);
+					String href = linkObj.getString("url", null);
+					theState.enteringNewElement(null, "relation");
+					theState.attributeValue("value", rel);
+					theState.endingElement();
+					theState.enteringNewElement(null, "url");
+					theState.attributeValue("value", href);
+					theState.endingElement();
+					theState.endingElement();
+				}
+				return true;
+			} else if (BUNDLE_TEXTNODE_CHILDREN_DSTU2.contains(theName)) {
+				theState.enteringNewElement(null, theName);
+
+				if (theValue == null) {
+					theState.attributeValue("value", null);
+				} else if (theValue instanceof JsonString) {
+					theState.attributeValue("value", ((JsonString) theValue).getString());
+				} else if (theValue instanceof JsonNumber) {
+					theState.attributeValue("value", theValue.toString());
+				} else {
+					throw new DataFormatException("Unexpected JSON object for entry '" + theName + "'");
+				}
+
+				theState.endingElement();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	void parseChildren(JsonObject theObject, ParserState<?> theState) {
 		String elementId = null;
 		for (String nextName : theObject.keySet()) {
 			if ("resourceType".equals(nextName)) {
@@ -1104,7 +1199,7 @@ public class JsonParser extends BaseParser implements IParser {
 		}
 	}
 
-	private void parseChildren(ParserState<?> theState, String theName, JsonValue theJsonVal, JsonValue theAlternateVal, String theAlternateName) {
+	void parseChildren(ParserState<?> theState, String theName, JsonValue theJsonVal, JsonValue theAlternateVal, String theAlternateName) {
 		switch (theJsonVal.getValueType()) {
 		case ARRAY: {
 			JsonArray nextArray = (JsonArray) theJsonVal;
@@ -1160,7 +1255,7 @@ public class JsonParser extends BaseParser implements IParser {
 		}
 	}
 
-	private void parseExtension(ParserState<?> theState, JsonArray theValues, boolean theIsModifier) {
+	void parseExtension(ParserState<?> theState, JsonArray theValues, boolean theIsModifier) {
 		for (int i = 0; i < theValues.size(); i++) {
 			JsonObject nextExtObj = theValues.getJsonObject(i);
 			String url = nextExtObj.getString("url");
@@ -1209,36 +1304,70 @@ public class JsonParser extends BaseParser implements IParser {
 	// theState.endingElement();
 	// }
 
+	/**
+	 * Looking up the JSON provider is expensive, and each generator factory keeps its own pool of the buffers used by
+	 * the generators it creates, so one factory is shared for each pretty print setting. Generator factories are thread
+	 * safe.
+	 */
+	private static JsonGeneratorFactory getGeneratorFactory(boolean thePrettyPrint) {
+		JsonGeneratorFactory retVal = thePrettyPrint ? ourPrettyGeneratorFactory : ourGeneratorFactory;
+		if (retVal == null) {
+			Map<String, Object> properties = new HashMap<String, Object>(1);
+			if (thePrettyPrint) {
+				properties.put(JsonGenerator.PRETTY_PRINTING, thePrettyPrint);
+			}
+			retVal = Json.createGeneratorFactory(properties);
+			if (thePrettyPrint) {
+				ourPrettyGeneratorFactory = retVal;
+			} else {
+				ourGeneratorFactory = retVal;
+			}
+		}
+		return retVal;
+	}
+
+	@Override
+	public <T extends IBaseBundle> IBundleEntryReader<T> parseBundleEntries(Class<T> theBundleType, Reader theReader) {
+		Validate.notNull(theBundleType, "theBundleType must not be null");
+		Validate.notNull(theReader, "theReader must not be null");
+		return new JsonBundleEntryReader<T>(theBundleType, theReader);
+	}
+
 	@Override
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
 		try {
-			JsonReader reader = Json.createReader(theReader);
-			JsonObject object = reader.readObject();
-	
-			JsonValue resourceTypeObj = object.get("resourceType");
-			assertObjectOfType(resourceTypeObj, JsonValue.ValueType.STRING, "resourceType");
-			String resourceType = ((JsonString) resourceTypeObj).getString();
-	
-			ParserState<? extends IBaseResource> state = ParserState.getPreResourceInstance(theResourceType, myContext, true, getErrorHandler());
-			state.enteringNewElement(null, resourceType);
-	
-			parseChildren(object, state);
-	
-			state.endingElement();
-	
-			@SuppressWarnings("unchecked")
-			T retVal = (T) state.getObject();
-	
-			return retVal;
+			return createStreamParser(theReader).parseResource(theResourceType);
 		} catch (JsonParsingException e) {
 			throw new DataFormatException("Failed to parse JSON: " + e.getMessage(), e);
 		}
 	}
 
+	/**
+	 * Parses a resource which has already been read into a JSON object. This is used by {@link JsonStreamParser} when
+	 * the resource can not be streamed.
+	 */
+	<T extends IBaseResource> T doParseResource(Class<T> theResourceType, JsonObject theObject) {
+		JsonValue resourceTypeObj = theObject.get("resourceType");
+		assertObjectOfType(resourceTypeObj, JsonValue.ValueType.STRING, "resourceType");
+		String resourceType = ((JsonString) resourceTypeObj).getString();
+
+		ParserState<? extends IBaseResource> state = ParserState.getPreResourceInstance(theResourceType, myContext, true, getErrorHandler());
+		state.setElementFilter(getCompiledElementFilter());
+		state.enteringNewElement(null, resourceType);
+
+		parseChildren(theObject, state);
+
+		state.endingElement();
+
+		@SuppressWarnings("unchecked")
+		T retVal = (T) state.getObject();
+
+		return retVal;
+	}
+
 	@Override
 	public TagList parseTagList(Reader theReader) {
-		JsonReader reader = Json.createReader(theReader);
-		JsonObject object = reader.readObject();
+		JsonObject object = createStreamParser(theReader).readRootObject();
 
 		JsonValue resourceTypeObj = object.get("resourceType");
 		assertObjectOfType(resourceTypeObj, JsonValue.ValueType.STRING, "resourceType");
@@ -1466,4 +1595,65 @@ public class JsonParser extends BaseParser implements IParser {
 		}
 
 	}
+	private class JsonBundleEntryReader<T extends IBaseBundle> extends BaseBundleEntryReader<T> {
+
+		private final Reader myReader;
+		private JsonStreamParser myStreamParser;
+
+		public JsonBundleEntryReader(Class<T> theBundleType, Reader theReader) {
+			super(JsonParser.this, myContext, theBundleType, true);
+			myReader = theReader;
+		}
+
+		@Override
+		protected boolean readEntries() {
+			if (myStreamParser == null) {
+				myStreamParser = createStreamParser(myReader);
+			}
+			try {
+				return myStreamParser.readBundleEntries(getState());
+			} catch (JsonParsingException e) {
+				throw new DataFormatException("Failed to parse JSON: " + e.getMessage(), e);
+			}
+		}
+
+	}
+
+	/**
+	 * Flushes instead of closing the wrapped stream when it is closed
+	 */
+	private static class NonClosingOutputStream extends FilterOutputStream {
+
+		public NonClosingOutputStream(OutputStream theOutputStream) {
+			super(theOutputStream);
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+
+		@Override
+		public void write(byte[] theBytes, int theOffset, int theLength) throws IOException {
+			out.write(theBytes, theOffset, theLength);
+		}
+
+	}
+
+	/**
+	 * Flushes instead of closing the wrapped writer when it is closed
+	 */
+	private static class NonClosingWriter extends FilterWriter {
+
+		public NonClosingWriter(Writer theWriter) {
+			super(theWriter);
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+
+	}
+
 }
@@ -0,0 +1,667 @@
+package ca.uhn.fhir.parser;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParserFactory;
+
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.model.api.Bundle;
+import ca.uhn.fhir.model.api.IIdentifiableElement;
+
+/**
+ * Parses JSON resources and bundles by feeding the events of a streaming JSON parser directly into a
+ * {@link ParserState}, instead of first reading the whole document into a tree of JSON objects. The only values which
+ * are held are the primitive values of the object currently being parsed, since the <code>_name</code> sibling
+ * holding the id and extensions of a primitive may come after it.
+ * <p>
+ * HAPI always writes <code>resourceType</code> as the first property of a resource and <code>url</code> as the first
+ * property of an extension. A resource or extension which is written differently is read into a JSON object and
+ * parsed by {@link JsonParser} instead.
+ * </p>
+ */
+class JsonStreamParser {
+
+	private JsonObjectBuilder myBundleProperties;
+	private final FhirContext myContext;
+	private final IParserErrorHandler myErrorHandler;
+	private boolean myInBundleEntries;
+	private final javax.json.stream.JsonParser myParser;
+	private final JsonParser myTreeParser;
+
+	JsonStreamParser(JsonParser theTreeParser, FhirContext theContext, IParserErrorHandler theErrorHandler, Reader theReader) {
+		this(theTreeParser, theContext, theErrorHandler, Factories.PARSER_FACTORY.createParser(theReader));
+	}
+
+	/**
+	 * @param theParser
+	 *           The source of the events to parse, which need not come from JSON text (see {@link BinaryParser})
+	 */
+	JsonStreamParser(JsonParser theTreeParser, FhirContext theContext, IParserErrorHandler theErrorHandler, javax.json.stream.JsonParser theParser) {
+		myTreeParser = theTreeParser;
+		myContext = theContext;
+		myErrorHandler = theErrorHandler;
+		myParser = theParser;
+	}
+
+	private void emitPrimitive(ParserState<?> theState, String theName, String theValue, JsonValue theAlternate) {
+		theState.enteringNewElement(null, theName);
+		theState.attributeValue("value", theValue);
+		myTreeParser.parseAlternates(theAlternate, theState, '_' + theName);
+		theState.endingElement();
+	}
+
+	/**
+	 * @param theValue
+	 *           A value or list of values returned by {@link #readPrimitiveArray(Event)}
+	 */
+	private void emitPrimitives(ParserState<?> theState, String theName, Object theValue, JsonValue theAlternate) {
+		if (!(theValue instanceof List)) {
+			emitPrimitive(theState, theName, (String) theValue, theAlternate);
+			return;
+		}
+
+		List<?> values = (List<?>) theValue;
+		JsonArray alternates = theAlternate instanceof JsonArray ? (JsonArray) theAlternate : null;
+		for (int i = 0; i < values.size(); i++) {
+			Object next = values.get(i);
+			JsonValue nextAlternate = alternates != null && i < alternates.size() ? alternates.get(i) : null;
+			if (next instanceof String) {
+				emitPrimitive(theState, theName, (String) next, nextAlternate);
+			} else if (next != null) {
+				myTreeParser.parseChildren(theState, theName, (JsonValue) next, nextAlternate, '_' + theName);
+			}
+		}
+	}
+
+	private Event nextEvent() {
+		if (!myParser.hasNext()) {
+			throw new DataFormatException("Invalid JSON content detected, unexpected end of content");
+		}
+		return myParser.next();
+	}
+
+	<T extends IBaseResource> Bundle parseBundle(Class<T> theResourceType) {
+		readStartOfContent();
+		Event event = nextEvent();
+		if (event != Event.KEY_NAME || !"resourceType".equals(myParser.getString())) {
+			return myTreeParser.parseBundle(theResourceType, readObject(event));
+		}
+
+		String resourceType = readString(nextEvent(), "resourceType");
+		if (!"Bundle".equals(resourceType)) {
+			throw new DataFormatException("Trying to parse bundle but found resourceType other than 'Bundle'. Found: '" + resourceType + "'");
+		}
+
+		ParserState<Bundle> state = ParserState.getPreAtomInstance(myContext, theResourceType, true, myErrorHandler);
+		state.setElementFilter(myTreeParser.getCompiledElementFilter());
+		if (myContext.getVersion().getVersion().isNewerThan(FhirVersionEnum.DSTU1)) {
+			state.enteringNewElement(null, "Bundle");
+		} else {
+			state.enteringNewElement(null, "feed");
+		}
+
+		parseBundleChildren(state);
+
+		state.endingElement();
+
+		return state.getObject();
+	}
+
+	/**
+	 * Reads a Bundle resource into a state which queues its entries (see
+	 * {@link ParserState#setBundleEntryQueue(java.util.Queue)}) until the next entry has been read. The other
+	 * properties of the bundle are collected into a JSON object which is parsed by {@link JsonParser} when the entries
+	 * start and when the bundle ends.
+	 * 
+	 * @return Returns <code>false</code> once the end of the bundle has been reached
+	 */
+	boolean readBundleEntries(ParserState<?> theState) {
+		if (myBundleProperties == null) {
+			readStartOfContent();
+			Event event = nextEvent();
+			if (event != Event.KEY_NAME || !"resourceType".equals(myParser.getString())) {
+				JsonObject object = readObject(event);
+				JsonValue resourceType = object.get("resourceType");
+				if (!(resourceType instanceof JsonString)) {
+					throw new DataFormatException("Invalid JSON content detected, missing required element: 'resourceType'");
+				}
+				theState.enteringNewElement(null, ((JsonString) resourceType).getString());
+				myTreeParser.parseChildren(object, theState);
+				theState.endingElement();
+				return false;
+			}
+			theState.enteringNewElement(null, readString(nextEvent(), "resourceType"));
+			myBundleProperties = Factories.BUILDER_FACTORY.createObjectBuilder();
+		}
+
+		while (true) {
+			if (myInBundleEntries) {
+				Event event = nextEvent();
+				if (event == Event.END_ARRAY) {
+					myInBundleEntries = false;
+					continue;
+				}
+				if (event != Event.START_OBJECT) {
+					throw new DataFormatException("Invalid content of element entry, expected OBJECT");
+				}
+				parseObject(theState, "entry", null);
+				return true;
+			}
+
+			Event event = nextEvent();
+			if (event == Event.END_OBJECT) {
+				parseBundleProperties(theState);
+				theState.endingElement();
+				return false;
+			}
+
+			String name = myParser.getString();
+			Event valueEvent = nextEvent();
+			if ("entry".equals(name) && valueEvent == Event.START_ARRAY) {
+				parseBundleProperties(theState);
+				myInBundleEntries = true;
+			} else {
+				readProperty(myBundleProperties, name, valueEvent);
+			}
+		}
+	}
+
+	private void parseBundleChildren(ParserState<?> theState) {
+		for (Event event = nextEvent(); event != Event.END_OBJECT; event = nextEvent()) {
+			String name = myParser.getString();
+			Event valueEvent = nextEvent();
+			if ("resourceType".equals(name)) {
+				skipValue(valueEvent);
+			} else if ("entry".equals(name)) {
+				if (valueEvent != Event.START_ARRAY) {
+					throw new DataFormatException("Invalid content of element entry, expected ARRAY");
+				}
+				for (Event entryEvent = nextEvent(); entryEvent != Event.END_ARRAY; entryEvent = nextEvent()) {
+					if (entryEvent != Event.START_OBJECT) {
+						throw new DataFormatException("Invalid content of element entry, expected OBJECT");
+					}
+					theState.enteringNewElement(null, "entry");
+					parseBundleChildren(theState);
+					theState.endingElement();
+				}
+			} else if (myTreeParser.isSpecialBundleChild(name)) {
+				myTreeParser.parseBundleChild(theState, name, readValue(valueEvent));
+			} else {
+				parseValue(theState, name, valueEvent, null);
+			}
+		}
+	}
+
+	/**
+	 * Parses the properties of an object whose start (and possibly <code>resourceType</code> property) has already
+	 * been read, up to and including the end of the object
+	 */
+	private void parseBundleProperties(ParserState<?> theState) {
+		JsonObject properties = myBundleProperties.build();
+		myBundleProperties = Factories.BUILDER_FACTORY.createObjectBuilder();
+		if (!properties.isEmpty()) {
+			myTreeParser.parseChildren(properties, theState);
+		}
+	}
+
+	private void parseChildren(ParserState<?> theState) {
+		String elementId = null;
+		Map<String, Object> primitives = null;
+		Map<String, JsonValue> alternates = null;
+
+		for (Event event = nextEvent(); event != Event.END_OBJECT; event = nextEvent()) {
+			String name = myParser.getString();
+			Event valueEvent = nextEvent();
+			if ("resourceType".equals(name)) {
+				skipValue(valueEvent);
+				continue;
+			} else if ("id".equals(name)) {
+				if (valueEvent == Event.VALUE_NULL) {
+					continue;
+				}
+				elementId = readString(valueEvent, name);
+				if (myContext.getVersion().getVersion() != FhirVersionEnum.DSTU1) {
+					emitPrimitive(theState, name, elementId, null);
+				}
+				continue;
+			} else if ("_id".equals(name)) {
+				// _id is incorrect, but some early examples in the FHIR spec used it
+				if (valueEvent != Event.VALUE_NULL) {
+					elementId = readString(valueEvent, name);
+				}
+				continue;
+			} else if ("extension".equals(name)) {
+				parseExtensions(theState, valueEvent, false);
+				continue;
+			} else if ("modifierExtension".equals(name)) {
+				parseExtensions(theState, valueEvent, true);
+				continue;
+			} else if (name.charAt(0) == '_') {
+				JsonValue alternate = readValue(valueEvent);
+				String primitiveName = name.substring(1);
+				Object primitive = primitives != null ? primitives.remove(primitiveName) : null;
+				if (primitive != null) {
+					emitPrimitives(theState, primitiveName, primitive, alternate);
+				} else {
+					if (alternates == null) {
+						alternates = new HashMap<String, JsonValue>();
+					}
+					alternates.put(primitiveName, alternate);
+				}
+				continue;
+			}
+
+			JsonValue alternate = alternates != null ? alternates.remove(name) : null;
+			Object primitive;
+			switch (valueEvent) {
+			case START_OBJECT:
+				parseObject(theState, name, alternate);
+				continue;
+			case START_ARRAY:
+				Event firstEvent = nextEvent();
+				if (firstEvent == Event.START_OBJECT || firstEvent == Event.START_ARRAY) {
+					parseArray(theState, name, firstEvent, alternate);
+					continue;
+				}
+				primitive = readPrimitiveArray(firstEvent);
+				break;
+			case VALUE_STRING:
+			case VALUE_NUMBER:
+			case VALUE_TRUE:
+			case VALUE_FALSE:
+				primitive = readPrimitive(valueEvent);
+				break;
+			default:
+				continue;
+			}
+
+			if (alternate != null) {
+				emitPrimitives(theState, name, primitive, alternate);
+			} else {
+				if (primitives == null) {
+					primitives = new LinkedHashMap<String, Object>();
+				}
+				primitives.put(name, primitive);
+			}
+		}
+
+		if (primitives != null) {
+			for (Entry<String, Object> next : primitives.entrySet()) {
+				emitPrimitives(theState, next.getKey(), next.getValue(), null);
+			}
+		}
+
+		if (elementId != null) {
+			IBase object = (IBase) theState.getObject();
+			if (object instanceof IIdentifiableElement) {
+				((IIdentifiableElement) object).setElementSpecificId(elementId);
+			} else if (object instanceof IBaseResource) {
+				((IBaseResource) object).getIdElement().setValue(elementId);
+			}
+		}
+	}
+
+	private void parseArray(ParserState<?> theState, String theName, Event theFirstEvent, JsonValue theAlternate) {
+		JsonArray alternates = theAlternate instanceof JsonArray ? (JsonArray) theAlternate : null;
+		int index = 0;
+		for (Event event = theFirstEvent; event != Event.END_ARRAY; event = nextEvent()) {
+			JsonValue nextAlternate = alternates != null && index < alternates.size() ? alternates.get(index) : null;
+			parseValue(theState, theName, event, nextAlternate);
+			index++;
+		}
+	}
+
+	private void parseExtension(ParserState<?> theState, boolean theIsModifier) {
+		Event event = nextEvent();
+		if (event != Event.KEY_NAME || !"url".equals(myParser.getString())) {
+			JsonArray extension = Factories.BUILDER_FACTORY.createArrayBuilder().add(readObject(event)).build();
+			myTreeParser.parseExtension(theState, extension, theIsModifier);
+			return;
+		}
+
+		String url = readString(nextEvent(), "url");
+		theState.enteringNewElementExtension(null, url, theIsModifier);
+		for (event = nextEvent(); event != Event.END_OBJECT; event = nextEvent()) {
+			String name = myParser.getString();
+			Event valueEvent = nextEvent();
+			if ("url".equals(name)) {
+				skipValue(valueEvent);
+			} else if ("extension".equals(name)) {
+				parseExtensions(theState, valueEvent, false);
+			} else if ("modifierExtension".equals(name)) {
+				parseExtensions(theState, valueEvent, true);
+			} else {
+				parseValue(theState, name, valueEvent, null);
+			}
+		}
+		theState.endingElement();
+	}
+
+	private void parseExtensions(ParserState<?> theState, Event theValueEvent, boolean theIsModifier) {
+		String name = theIsModifier ? "modifierExtension" : "extension";
+		if (theValueEvent != Event.START_ARRAY) {
+			throw new DataFormatException("Invalid content of element " + name + ", expected ARRAY");
+		}
+		for (Event event = nextEvent(); event != Event.END_ARRAY; event = nextEvent()) {
+			if (event != Event.START_OBJECT) {
+				throw new DataFormatException("Invalid content of element " + name + ", expected OBJECT");
+			}
+			parseExtension(theState, theIsModifier);
+		}
+	}
+
+	/**
+	 * Parses an object whose start has already been read
+	 */
+	private void parseObject(ParserState<?> theState, String theName, JsonValue theAlternate) {
+		theState.enteringNewElement(null, theName);
+		if (theState.isSkippingElement()) {
+			// Not selected by the element filter (or unknown), so don't bother reading the content into events
+			skipValue(Event.START_OBJECT);
+			theState.endingElement();
+			return;
+		}
+		myTreeParser.parseAlternates(theAlternate, theState, '_' + theName);
+		if (theState.isPreResource()) {
+			Event event = nextEvent();
+			if (event == Event.KEY_NAME && "resourceType".equals(myParser.getString())) {
+				Event valueEvent = nextEvent();
+				String resType = valueEvent == Event.VALUE_STRING ? myParser.getString() : null;
+				if (isBlank(resType)) {
+					throw new DataFormatException("Missing 'resourceType' from resource");
+				}
+				theState.enteringNewElement(null, resType);
+				parseChildren(theState);
+				theState.endingElement();
+			} else {
+				JsonObject object = readObject(event);
+				JsonValue resTypeObj = object.get("resourceType");
+				String resType = resTypeObj instanceof JsonString ? ((JsonString) resTypeObj).getString() : null;
+				if (isBlank(resType)) {
+					throw new DataFormatException("Missing 'resourceType' from resource");
+				}
+				theState.enteringNewElement(null, resType);
+				myTreeParser.parseChildren(object, theState);
+				theState.endingElement();
+			}
+		} else {
+			parseChildren(theState);
+		}
+		theState.endingElement();
+	}
+
+	<T extends IBaseResource> T parseResource(Class<T> theResourceType) {
+		readStartOfContent();
+		Event event = nextEvent();
+		if (event != Event.KEY_NAME || !"resourceType".equals(myParser.getString())) {
+			return myTreeParser.doParseResource(theResourceType, readObject(event));
+		}
+
+		String resourceType = readString(nextEvent(), "resourceType");
+
+		ParserState<? extends IBaseResource> state = ParserState.getPreResourceInstance(theResourceType, myContext, true, myErrorHandler);
+		state.setElementFilter(myTreeParser.getCompiledElementFilter());
+		state.enteringNewElement(null, resourceType);
+
+		parseChildren(state);
+
+		state.endingElement();
+
+		@SuppressWarnings("unchecked")
+		T retVal = (T) state.getObject();
+
+		return retVal;
+	}
+
+	/**
+	 * Parses a value whose first event has already been read, without waiting for a <code>_name</code> sibling
+	 */
+	private void parseValue(ParserState<?> theState, String theName, Event theEvent, JsonValue theAlternate) {
+		switch (theEvent) {
+		case START_OBJECT:
+			parseObject(theState, theName, theAlternate);
+			break;
+		case START_ARRAY:
+			parseArray(theState, theName, nextEvent(), theAlternate);
+			break;
+		case VALUE_STRING:
+		case VALUE_NUMBER:
+		case VALUE_TRUE:
+		case VALUE_FALSE:
+			emitPrimitive(theState, theName, readPrimitive(theEvent), theAlternate);
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void readArray(JsonArrayBuilder theBuilder) {
+		for (Event event = nextEvent(); event != Event.END_ARRAY; event = nextEvent()) {
+			switch (event) {
+			case START_OBJECT:
+				theBuilder.add(readObject(nextEvent()));
+				break;
+			case START_ARRAY:
+				JsonArrayBuilder builder = Factories.BUILDER_FACTORY.createArrayBuilder();
+				readArray(builder);
+				theBuilder.add(builder);
+				break;
+			case VALUE_STRING:
+				theBuilder.add(myParser.getString());
+				break;
+			case VALUE_NUMBER:
+				theBuilder.add(myParser.getBigDecimal());
+				break;
+			case VALUE_TRUE:
+				theBuilder.add(true);
+				break;
+			case VALUE_FALSE:
+				theBuilder.add(false);
+				break;
+			default:
+				theBuilder.addNull();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Reads the rest of an object into a JSON object
+	 * 
+	 * @param theEvent
+	 *           The first event after the start of the object
+	 */
+	private JsonObject readObject(Event theEvent) {
+		JsonObjectBuilder builder = Factories.BUILDER_FACTORY.createObjectBuilder();
+		for (Event event = theEvent; event != Event.END_OBJECT; event = nextEvent()) {
+			String name = myParser.getString();
+			readProperty(builder, name, nextEvent());
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Reads a property value whose first event has already been read into a JSON object
+	 */
+	private void readProperty(JsonObjectBuilder theBuilder, String theName, Event theEvent) {
+		switch (theEvent) {
+		case START_OBJECT:
+			theBuilder.add(theName, readObject(nextEvent()));
+			break;
+		case START_ARRAY:
+			JsonArrayBuilder arrayBuilder = Factories.BUILDER_FACTORY.createArrayBuilder();
+			readArray(arrayBuilder);
+			theBuilder.add(theName, arrayBuilder);
+			break;
+		case VALUE_STRING:
+			theBuilder.add(theName, myParser.getString());
+			break;
+		case VALUE_NUMBER:
+			theBuilder.add(theName, myParser.getBigDecimal());
+			break;
+		case VALUE_TRUE:
+			theBuilder.add(theName, true);
+			break;
+		case VALUE_FALSE:
+			theBuilder.add(theName, false);
+			break;
+		default:
+			theBuilder.addNull(theName);
+			break;
+		}
+	}
+
+	/**
+	 * Returns the value of the current primitive event as it would be converted to a string by {@link JsonParser}
+	 */
+	private String readPrimitive(Event theEvent) {
+		switch (theEvent) {
+		case VALUE_NUMBER:
+			return myParser.getBigDecimal().toString();
+		case VALUE_TRUE:
+			return "true";
+		case VALUE_FALSE:
+			return "false";
+		default:
+			return myParser.getString();
+		}
+	}
+
+	/**
+	 * Reads the rest of an array whose first element is not an object or array. Primitive values are returned as
+	 * strings, <code>null</code> values as <code>null</code>, and any objects or arrays as JSON values.
+	 */
+	private List<Object> readPrimitiveArray(Event theFirstEvent) {
+		List<Object> retVal = new ArrayList<Object>();
+		for (Event event = theFirstEvent; event != Event.END_ARRAY; event = nextEvent()) {
+			switch (event) {
+			case START_OBJECT:
+			case START_ARRAY:
+				retVal.add(readValue(event));
+				break;
+			case VALUE_NULL:
+				retVal.add(null);
+				break;
+			default:
+				retVal.add(readPrimitive(event));
+				break;
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Reads the whole content into a JSON object, for content which is not parsed as it is read (such as tag lists)
+	 */
+	JsonObject readRootObject() {
+		readStartOfContent();
+		return readObject(nextEvent());
+	}
+
+	private void readStartOfContent() {
+		if (!myParser.hasNext() || myParser.next() != Event.START_OBJECT) {
+			throw new DataFormatException("Invalid JSON content detected, expected a JSON object");
+		}
+	}
+
+	private String readString(Event theEvent, String theName) {
+		if (theEvent != Event.VALUE_STRING) {
+			throw new DataFormatException("Invalid content of element " + theName + ", expected STRING");
+		}
+		return myParser.getString();
+	}
+
+	/**
+	 * Reads a value whose first event has already been read into a JSON value
+	 */
+	private JsonValue readValue(Event theEvent) {
+		switch (theEvent) {
+		case START_OBJECT:
+			return readObject(nextEvent());
+		case VALUE_TRUE:
+			return JsonValue.TRUE;
+		case VALUE_FALSE:
+			return JsonValue.FALSE;
+		case VALUE_NULL:
+			return JsonValue.NULL;
+		default:
+			JsonArrayBuilder builder = Factories.BUILDER_FACTORY.createArrayBuilder();
+			if (theEvent == Event.START_ARRAY) {
+				readArray(builder);
+				return builder.build();
+			} else if (theEvent == Event.VALUE_NUMBER) {
+				builder.add(myParser.getBigDecimal());
+			} else {
+				builder.add(myParser.getString());
+			}
+			return builder.build().get(0);
+		}
+	}
+
+	private void skipValue(Event theEvent) {
+		if (theEvent != Event.START_OBJECT && theEvent != Event.START_ARRAY) {
+			return;
+		}
+		int depth = 1;
+		while (depth > 0) {
+			Event event = nextEvent();
+			if (event == Event.START_OBJECT || event == Event.START_ARRAY) {
+				depth++;
+			} else if (event == Event.END_OBJECT || event == Event.END_ARRAY) {
+				depth--;
+			}
+		}
+	}
+
+	/**
+	 * The factories look up the JSON provider, which is slow, so they are only created once (and only when the JSON
+	 * parser is actually used, since the JSON library is an optional dependency)
+	 */
+	private static class Factories {
+		static final JsonBuilderFactory BUILDER_FACTORY = Json.createBuilderFactory(Collections.<String, Object> emptyMap());
+		static final JsonParserFactory PARSER_FACTORY = Json.createParserFactory(Collections.<String, Object> emptyMap());
+	}
+
+}
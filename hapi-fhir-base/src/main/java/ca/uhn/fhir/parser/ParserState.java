@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 
 import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
@@ -85,7 +86,10 @@ import ca.uhn.fhir.util.IModelVisitor;
 class ParserState<T> {
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ParserState.class);
+	private Queue<IBase> myBundleEntryQueue;
+	private IBaseResource myBundleEntryQueueBundle;
 	private FhirContext myContext;
+	private ElementFilter myElementFilter;
 	private boolean myJsonMode;
 	private T myObject;
 	private BaseState myState;
@@ -113,6 +117,14 @@ class ParserState<T> {
 		myState.enteringNewElementExtension(theElem, theUrlAttr, theIsModifier);
 	}
 
+	/**
+	 * Returns the bundle resource whose entries are being handed to the queue set by
+	 * {@link #setBundleEntryQueue(Queue)}, or <code>null</code> if parsing has not reached it yet
+	 */
+	public IBaseResource getBundleEntryQueueBundle() {
+		return myBundleEntryQueueBundle;
+	}
+
 	@SuppressWarnings("unchecked")
 	public T getObject() {
 		return (T) myState.getCurrentElement();
@@ -126,6 +138,14 @@ class ParserState<T> {
 		return myState.isPreResource();
 	}
 
+	/**
+	 * Returns <code>true</code> if the element which was just entered is being skipped, in which case the parser may
+	 * skip straight to the end of the element
+	 */
+	public boolean isSkippingElement() {
+		return myState.isSkippingElement();
+	}
+
 	private Object newContainedDt(IResource theTarget) {
 
 		Object newChildInstance;
@@ -194,6 +214,23 @@ class ParserState<T> {
 		}
 	}
 
+	/**
+	 * If set, the entries of the bundle resource being parsed are not added to it. Each entry is instead added to the
+	 * given queue as soon as it has been completely parsed, so that the entries of very large bundles can be processed
+	 * one at a time.
+	 */
+	public void setBundleEntryQueue(Queue<IBase> theBundleEntryQueue) {
+		myBundleEntryQueue = theBundleEntryQueue;
+	}
+
+	/**
+	 * If set, only the elements selected by the given filter are parsed, and all others are skipped without being
+	 * created
+	 */
+	public void setElementFilter(ElementFilter theElementFilter) {
+		myElementFilter = theElementFilter;
+	}
+
 	public void string(String theData) {
 		myState.string(theData);
 	}
@@ -852,6 +889,10 @@ class ParserState<T> {
 			return false;
 		}
 
+		public boolean isSkippingElement() {
+			return false;
+		}
+
 		public void setStack(BaseState theState) {
 			myStack = theState;
 		}
@@ -1355,6 +1396,11 @@ class ParserState<T> {
 			pop();
 		}
 
+		@Override
+		protected boolean isContainedResource() {
+			return true;
+		}
+
 		@Override
 		public void wereBack() {
 			IResource res = (IResource) getCurrentElement();
@@ -1388,6 +1434,11 @@ class ParserState<T> {
 			pop();
 		}
 
+		@Override
+		protected boolean isContainedResource() {
+			return true;
+		}
+
 		@Override
 		public void wereBack() {
 			IBaseResource res = getCurrentElement();
@@ -1505,12 +1556,22 @@ class ParserState<T> {
 	private class ElementCompositeState extends BaseState {
 
 		private BaseRuntimeElementCompositeDefinition<?> myDefinition;
+		private ElementFilter.Node myFilter;
 		private IBase myInstance;
 
 		public ElementCompositeState(PreResourceState thePreResourceState, BaseRuntimeElementCompositeDefinition<?> theDef, IBase theInstance) {
+			this(thePreResourceState, theDef, theInstance, null);
+		}
+
+		/**
+		 * @param theFilter
+		 *            The filter node selecting the children to parse, or <code>null</code> to parse all children
+		 */
+		public ElementCompositeState(PreResourceState thePreResourceState, BaseRuntimeElementCompositeDefinition<?> theDef, IBase theInstance, ElementFilter.Node theFilter) {
 			super(thePreResourceState);
 			myDefinition = theDef;
 			myInstance = theInstance;
+			myFilter = theFilter;
 		}
 
 		@Override
@@ -1557,12 +1618,24 @@ class ParserState<T> {
 				throw new DataFormatException("Found unexpected element '" + theChildName + "' in parent element '" + myDefinition.getName() + "'. Valid names are: " + child.getValidChildNames());
 			}
 
+			ElementFilter.Node filter = null;
+			if (myFilter != null) {
+				filter = myFilter.getChild(child.getElementName());
+				if (filter == null) {
+					push(new SwallowChildrenWholeState(getPreResourceState()));
+					return;
+				}
+				if (filter.isAll()) {
+					filter = null;
+				}
+			}
+
 			switch (target.getChildType()) {
 			case COMPOSITE_DATATYPE: {
 				BaseRuntimeElementCompositeDefinition<?> compositeTarget = (BaseRuntimeElementCompositeDefinition<?>) target;
 				ICompositeType newChildInstance = (ICompositeType) compositeTarget.newInstance(child.getInstanceConstructorArguments());
 				child.getMutator().addValue(myInstance, newChildInstance);
-				ParserState<T>.ElementCompositeState newState = new ElementCompositeState(getPreResourceState(), compositeTarget, newChildInstance);
+				ParserState<T>.ElementCompositeState newState = new ElementCompositeState(getPreResourceState(), compositeTarget, newChildInstance, filter);
 				push(newState);
 				return;
 			}
@@ -1586,8 +1659,12 @@ class ParserState<T> {
 			case RESOURCE_BLOCK: {
 				RuntimeResourceBlockDefinition blockTarget = (RuntimeResourceBlockDefinition) target;
 				IBase newBlockInstance = blockTarget.newInstance();
+				if (myInstance == myBundleEntryQueueBundle && "entry".equals(theChildName)) {
+					push(new QueuedBundleEntryState(getPreResourceState(), blockTarget, newBlockInstance, filter));
+					return;
+				}
 				child.getMutator().addValue(myInstance, newBlockInstance);
-				ElementCompositeState newState = new ElementCompositeState(getPreResourceState(), blockTarget, newBlockInstance);
+				ElementCompositeState newState = new ElementCompositeState(getPreResourceState(), blockTarget, newBlockInstance, filter);
 				push(newState);
 				return;
 			}
@@ -1647,6 +1724,10 @@ class ParserState<T> {
 
 		@Override
 		public void enteringNewElementExtension(StartElement theElement, String theUrlAttr, boolean theIsModifier) {
+			if (myFilter != null && myFilter.getChild(theIsModifier ? "modifierExtension" : "extension") == null) {
+				push(new SwallowChildrenWholeState(getPreResourceState()));
+				return;
+			}
 			RuntimeChildDeclaredExtensionDefinition declaredExtension = myDefinition.getDeclaredExtension(theUrlAttr);
 			if (declaredExtension != null) {
 				BaseState newState = new DeclaredExtensionState(getPreResourceState(), declaredExtension, myInstance);
@@ -1839,6 +1920,24 @@ class ParserState<T> {
 
 	}
 
+	/**
+	 * An entry of the bundle set by {@link ParserState#setBundleEntryQueue(Queue)}, which is queued instead of being
+	 * added to the bundle
+	 */
+	private class QueuedBundleEntryState extends ElementCompositeState {
+
+		public QueuedBundleEntryState(PreResourceState thePreResourceState, BaseRuntimeElementCompositeDefinition<?> theDef, IBase theInstance, ElementFilter.Node theFilter) {
+			super(thePreResourceState, theDef, theInstance, theFilter);
+		}
+
+		@Override
+		public void endingElement() {
+			super.endingElement();
+			myBundleEntryQueue.add(getCurrentElement());
+		}
+
+	}
+
 	private class PreAtomState extends BasePreAtomOrBundleState {
 
 		public PreAtomState(Class<? extends IBaseResource> theResourceType) {
@@ -2046,14 +2145,21 @@ class ParserState<T> {
 
 			RuntimeResourceDefinition def = (RuntimeResourceDefinition) definition;
 			myInstance = def.newInstance();
+			if (myBundleEntryQueue != null && myBundleEntryQueueBundle == null) {
+				myBundleEntryQueueBundle = myInstance;
+			}
 
 			String resourceName = def.getName();
+			ElementFilter.Node filter = null;
+			if (myElementFilter != null && !isContainedResource()) {
+				filter = myElementFilter.getResourceNode(resourceName);
+			}
 			if ("Binary".equals(resourceName) && myContext.getVersion().getVersion() == FhirVersionEnum.DSTU1) {
 				push(new BinaryResourceStateForDstu1(getRootPreResourceState(), (IBaseBinary) myInstance));
 			} else if (myInstance instanceof IResource) {
-				push(new ResourceStateHapi(getRootPreResourceState(), def, (IResource) myInstance));
+				push(new ResourceStateHapi(getRootPreResourceState(), def, (IResource) myInstance, filter));
 			} else {
-				push(new ResourceStateHl7Org(getRootPreResourceState(), def, myInstance));
+				push(new ResourceStateHl7Org(getRootPreResourceState(), def, myInstance, filter));
 			}
 		}
 
@@ -2061,6 +2167,13 @@ class ParserState<T> {
 			return myContainedResources;
 		}
 
+		/**
+		 * Contained resources are parsed in full, since the element filter does not apply to them
+		 */
+		protected boolean isContainedResource() {
+			return false;
+		}
+
 		@Override
 		protected IBaseResource getCurrentElement() {
 			return myInstance;
@@ -2400,8 +2513,8 @@ class ParserState<T> {
 
 		private IResource myInstance;
 
-		public ResourceStateHapi(PreResourceState thePreResourceState, BaseRuntimeElementCompositeDefinition<?> theDef, IResource theInstance) {
-			super(thePreResourceState, theDef, theInstance);
+		public ResourceStateHapi(PreResourceState thePreResourceState, BaseRuntimeElementCompositeDefinition<?> theDef, IResource theInstance, ElementFilter.Node theFilter) {
+			super(thePreResourceState, theDef, theInstance, theFilter);
 			myInstance = theInstance;
 		}
 
@@ -2419,8 +2532,8 @@ class ParserState<T> {
 
 	private class ResourceStateHl7Org extends ElementCompositeState {
 
-		public ResourceStateHl7Org(PreResourceState thePreResourceState, BaseRuntimeElementCompositeDefinition<?> theDef, IBaseResource theInstance) {
-			super(thePreResourceState, theDef, theInstance);
+		public ResourceStateHl7Org(PreResourceState thePreResourceState, BaseRuntimeElementCompositeDefinition<?> theDef, IBaseResource theInstance, ElementFilter.Node theFilter) {
+			super(thePreResourceState, theDef, theInstance, theFilter);
 		}
 
 	}
@@ -2456,6 +2569,11 @@ class ParserState<T> {
 			myDepth++;
 		}
 
+		@Override
+		public boolean isSkippingElement() {
+			return myDepth == 0;
+		}
+
 	}
 
 	private class TagListState extends BaseState {
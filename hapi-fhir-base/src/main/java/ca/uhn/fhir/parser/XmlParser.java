@@ -45,9 +45,11 @@ import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseBinary;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseDatatype;
 import org.hl7.fhir.instance.model.api.IBaseExtension;
 import org.hl7.fhir.instance.model.api.IBaseHasExtensions;
@@ -162,63 +164,73 @@ public class XmlParser extends BaseParser implements IParser {
 		try {
 			while (streamReader.hasNext()) {
 				XMLEvent nextEvent = streamReader.nextEvent();
-				try {
-					if (nextEvent.isStartElement()) {
-						StartElement elem = nextEvent.asStartElement();
-
-						String namespaceURI = elem.getName().getNamespaceURI();
+				if (doXmlEvent(nextEvent, parserState)) {
+					return parserState.getObject();
+				}
+			}
+			return null;
+		} catch (XMLStreamException e) {
+			throw new DataFormatException(e);
+		}
+	}
 
-						if ("extension".equals(elem.getName().getLocalPart())) {
-							Attribute urlAttr = elem.getAttributeByName(new QName("url"));
-							if (urlAttr == null || isBlank(urlAttr.getValue())) {
-								throw new DataFormatException("Extension element has no 'url' attribute");
-							}
-							parserState.enteringNewElementExtension(elem, urlAttr.getValue(), false);
-						} else if ("modifierExtension".equals(elem.getName().getLocalPart())) {
-							Attribute urlAttr = elem.getAttributeByName(new QName("url"));
-							if (urlAttr == null || isBlank(urlAttr.getValue())) {
-								throw new DataFormatException("Extension element has no 'url' attribute");
-							}
-							parserState.enteringNewElementExtension(elem, urlAttr.getValue(), true);
-						} else {
+	/**
+	 * @return Returns <code>true</code> if the event completed the object being parsed
+	 */
+	private boolean doXmlEvent(XMLEvent nextEvent, ParserState<?> parserState) {
+		try {
+			if (nextEvent.isStartElement()) {
+				StartElement elem = nextEvent.asStartElement();
 
-							String elementName = elem.getName().getLocalPart();
-							parserState.enteringNewElement(namespaceURI, elementName);
+				String namespaceURI = elem.getName().getNamespaceURI();
 
-						}
+				if ("extension".equals(elem.getName().getLocalPart())) {
+					Attribute urlAttr = elem.getAttributeByName(new QName("url"));
+					if (urlAttr == null || isBlank(urlAttr.getValue())) {
+						throw new DataFormatException("Extension element has no 'url' attribute");
+					}
+					parserState.enteringNewElementExtension(elem, urlAttr.getValue(), false);
+				} else if ("modifierExtension".equals(elem.getName().getLocalPart())) {
+					Attribute urlAttr = elem.getAttributeByName(new QName("url"));
+					if (urlAttr == null || isBlank(urlAttr.getValue())) {
+						throw new DataFormatException("Extension element has no 'url' attribute");
+					}
+					parserState.enteringNewElementExtension(elem, urlAttr.getValue(), true);
+				} else {
 
-						for (@SuppressWarnings("unchecked")
-						Iterator<Attribute> iter = elem.getAttributes(); iter.hasNext();) {
-							Attribute next = iter.next();
-							// if
-							// (next.getName().getLocalPart().equals("value")) {
-							parserState.attributeValue(next.getName().getLocalPart(), next.getValue());
-							// }
-						}
+					String elementName = elem.getName().getLocalPart();
+					parserState.enteringNewElement(namespaceURI, elementName);
 
-					} else if (nextEvent.isAttribute()) {
-						Attribute elem = (Attribute) nextEvent;
-						String name = (elem.getName().getLocalPart());
-						parserState.attributeValue(name, elem.getValue());
-					} else if (nextEvent.isEndElement()) {
-						parserState.endingElement();
-						if (parserState.isComplete()) {
-							return parserState.getObject();
-						}
-					} else if (nextEvent.isCharacters()) {
-						parserState.string(nextEvent.asCharacters().getData());
-					}
+				}
 
-					parserState.xmlEvent(nextEvent);
+				for (@SuppressWarnings("unchecked")
+				Iterator<Attribute> iter = elem.getAttributes(); iter.hasNext();) {
+					Attribute next = iter.next();
+					// if
+					// (next.getName().getLocalPart().equals("value")) {
+					parserState.attributeValue(next.getName().getLocalPart(), next.getValue());
+					// }
+				}
 
-				} catch (DataFormatException e) {
-					throw new DataFormatException("DataFormatException at [" + nextEvent.getLocation().toString() + "]: " + e.getMessage(), e);
+			} else if (nextEvent.isAttribute()) {
+				Attribute elem = (Attribute) nextEvent;
+				String name = (elem.getName().getLocalPart());
+				parserState.attributeValue(name, elem.getValue());
+			} else if (nextEvent.isEndElement()) {
+				parserState.endingElement();
+				if (parserState.isComplete()) {
+					return true;
 				}
+			} else if (nextEvent.isCharacters()) {
+				parserState.string(nextEvent.asCharacters().getData());
 			}
-			return null;
-		} catch (XMLStreamException e) {
-			throw new DataFormatException(e);
+
+			parserState.xmlEvent(nextEvent);
+
+		} catch (DataFormatException e) {
+			throw new DataFormatException("DataFormatException at [" + nextEvent.getLocation().toString() + "]: " + e.getMessage(), e);
 		}
+		return false;
 	}
 
 	@Override
@@ -550,6 +562,7 @@ public class XmlParser extends BaseParser implements IParser {
 
 	private void encodeCompositeElementChildrenToStreamWriter(IBaseResource theResource, IBase theElement, XMLStreamWriter theEventWriter, List<? extends BaseRuntimeChildDefinition> children,
 			boolean theIncludedResource) throws XMLStreamException, DataFormatException {
+		ElementFilter.Node filter = getEncodeFilter();
 		for (BaseRuntimeChildDefinition nextChild : children) {
 			if (nextChild.getElementName().equals("extension") || nextChild.getElementName().equals("modifierExtension")) {
 				continue;
@@ -557,6 +570,9 @@ public class XmlParser extends BaseParser implements IParser {
 			if (nextChild.getElementName().equals("id")) {
 				continue;
 			}
+			if (!startEncodingChild(filter, nextChild)) {
+				continue;
+			}
 
 			if (nextChild instanceof RuntimeChildNarrativeDefinition && !theIncludedResource) {
 				INarrativeGenerator gen = myContext.getNarrativeGenerator();
@@ -599,8 +615,8 @@ public class XmlParser extends BaseParser implements IParser {
 				}
 			} else {
 
-				List<? extends IBase> values = nextChild.getAccessor().getValues(theElement);
-				if (values == null || values.isEmpty()) {
+				Iterable<? extends IBase> values = getChildValuesForEncoding(nextChild, theElement);
+				if (values == null) {
 					continue;
 				}
 				for (IBase nextValue : values) {
@@ -639,6 +655,7 @@ public class XmlParser extends BaseParser implements IParser {
 				}
 			}
 		}
+		setEncodeFilter(filter);
 	}
 
 	private void encodeCompositeElementToStreamWriter(IBaseResource theResource, IBase theElement, XMLStreamWriter theEventWriter, BaseRuntimeElementCompositeDefinition<?> theElementDefinition,
@@ -649,6 +666,10 @@ public class XmlParser extends BaseParser implements IParser {
 	}
 
 	private void encodeExtensionsIfPresent(IBaseResource theResource, XMLStreamWriter theWriter, IBase theElement, boolean theIncludedResource) throws XMLStreamException, DataFormatException {
+		ElementFilter.Node filter = getEncodeFilter();
+		if (!startEncodingExtensions()) {
+			return;
+		}
 		if (theElement instanceof ISupportsUndeclaredExtensions) {
 			ISupportsUndeclaredExtensions res = (ISupportsUndeclaredExtensions) theElement;
 			encodeUndeclaredExtensions(theResource, theWriter, toBaseExtensionList(res.getUndeclaredExtensions()), "extension", theIncludedResource);
@@ -662,6 +683,7 @@ public class XmlParser extends BaseParser implements IParser {
 			IBaseHasModifierExtensions res = (IBaseHasModifierExtensions) theElement;
 			encodeUndeclaredExtensions(theResource, theWriter, res.getModifierExtension(), "modifierExtension", theIncludedResource);
 		}
+		setEncodeFilter(filter);
 	}
 
 	/**
@@ -765,6 +787,10 @@ public class XmlParser extends BaseParser implements IParser {
 			throw new ConfigurationException("Unknown resource type: " + theResource.getClass());
 		}
 
+		ElementFilter.Node previousFilter = getEncodeFilter();
+		ElementFilter.Node filter = getResourceEncodeFilter(resDef, theContainedResource);
+		setEncodeFilter(null);
+
 		theEventWriter.writeStartElement(resDef.getName());
 		theEventWriter.writeDefaultNamespace(FHIR_NS);
 
@@ -772,6 +798,7 @@ public class XmlParser extends BaseParser implements IParser {
 
 			// HL7.org Structures
 			writeOptionalTagWithValue(theEventWriter, "id", theResourceId);
+			setEncodeFilter(filter);
 			encodeCompositeElementToStreamWriter(theResource, theResource, theEventWriter, resDef, theContainedResource);
 
 		} else {
@@ -827,6 +854,7 @@ public class XmlParser extends BaseParser implements IParser {
 					writeOptionalTagWithValue(theEventWriter, "contentType", bin.getContentType());
 					writeOptionalTagWithValue(theEventWriter, "content", bin.getContentAsBase64());
 				} else {
+					setEncodeFilter(filter);
 					encodeResourceToStreamWriterInDstu2Format(resDef, theResource, theResource, theEventWriter, resDef, theContainedResource);
 				}
 
@@ -844,6 +872,7 @@ public class XmlParser extends BaseParser implements IParser {
 					}
 					theEventWriter.writeCharacters(bin.getContentAsBase64());
 				} else {
+					setEncodeFilter(filter);
 					encodeCompositeElementToStreamWriter(theResource, theResource, theEventWriter, resDef, theContainedResource);
 				}
 
@@ -852,6 +881,7 @@ public class XmlParser extends BaseParser implements IParser {
 		}
 
 		theEventWriter.writeEndElement();
+		setEncodeFilter(previousFilter);
 	}
 
 	@Override
@@ -1027,9 +1057,17 @@ public class XmlParser extends BaseParser implements IParser {
 
 	private Bundle parseBundle(XMLEventReader theStreamReader, Class<? extends IBaseResource> theResourceType) {
 		ParserState<Bundle> parserState = ParserState.getPreAtomInstance(myContext, theResourceType, false, getErrorHandler());
+		parserState.setElementFilter(getCompiledElementFilter());
 		return doXmlLoop(theStreamReader, parserState);
 	}
 
+	@Override
+	public <T extends IBaseBundle> IBundleEntryReader<T> parseBundleEntries(Class<T> theBundleType, Reader theReader) {
+		Validate.notNull(theBundleType, "theBundleType must not be null");
+		Validate.notNull(theReader, "theReader must not be null");
+		return new XmlBundleEntryReader<T>(theBundleType, theReader);
+	}
+
 	@Override
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
 		XMLEventReader streamReader = createStreamReader(theReader);
@@ -1038,6 +1076,7 @@ public class XmlParser extends BaseParser implements IParser {
 
 	private <T extends IBaseResource> T parseResource(Class<T> theResourceType, XMLEventReader theStreamReader) {
 		ParserState<T> parserState = ParserState.getPreResourceInstance(theResourceType, myContext, false, getErrorHandler());
+		parserState.setElementFilter(getCompiledElementFilter());
 		return doXmlLoop(theStreamReader, parserState);
 	}
 
@@ -1134,4 +1173,38 @@ public class XmlParser extends BaseParser implements IParser {
 		}
 		theEventWriter.writeEndElement();
 	}
+
+	private class XmlBundleEntryReader<T extends IBaseBundle> extends BaseBundleEntryReader<T> {
+
+		private final Reader myReader;
+		private XMLEventReader myStreamReader;
+
+		public XmlBundleEntryReader(Class<T> theBundleType, Reader theReader) {
+			super(XmlParser.this, myContext, theBundleType, false);
+			myReader = theReader;
+		}
+
+		@Override
+		protected boolean readEntries() {
+			if (myStreamReader == null) {
+				myStreamReader = createStreamReader(myReader);
+			}
+			try {
+				while (myStreamReader.hasNext()) {
+					XMLEvent nextEvent = myStreamReader.nextEvent();
+					if (doXmlEvent(nextEvent, getState())) {
+						return false;
+					}
+					if (nextEvent.isEndElement() && hasQueuedEntries()) {
+						return true;
+					}
+				}
+				return false;
+			} catch (XMLStreamException e) {
+				throw new DataFormatException(e);
+			}
+		}
+
+	}
+
 }
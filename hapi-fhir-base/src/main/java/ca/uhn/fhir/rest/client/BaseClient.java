@@ -21,6 +21,7 @@ package ca.uhn.fhir.rest.client;
  */
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -33,6 +34,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -54,6 +56,7 @@ import ca.uhn.fhir.rest.client.api.IRestfulClient;
 import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
 import ca.uhn.fhir.rest.method.IClientResponseHandler;
 import ca.uhn.fhir.rest.method.IClientResponseHandlerHandlesBinary;
+import ca.uhn.fhir.rest.method.IClientResponseHandlerStreamsResponse;
 import ca.uhn.fhir.rest.server.Constants;
 import ca.uhn.fhir.rest.server.EncodingEnum;
 import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
@@ -79,6 +82,10 @@ public abstract class BaseClient implements IRestfulClient {
 		myFactory = theFactory;
 	}
 
+	ExecutorService getAsyncExecutor() {
+		return myFactory.getAsyncExecutor();
+	}
+
 	protected Map<String, List<String>> createExtraParams() {
 		HashMap<String, List<String>> retVal = new LinkedHashMap<String, List<String>>();
 
@@ -86,6 +93,8 @@ public abstract class BaseClient implements IRestfulClient {
 			retVal.put(Constants.PARAM_FORMAT, Collections.singletonList("xml"));
 		} else if (getEncoding() == EncodingEnum.JSON) {
 			retVal.put(Constants.PARAM_FORMAT, Collections.singletonList("json"));
+		} else if (getEncoding() == EncodingEnum.BINARY) {
+			retVal.put(Constants.PARAM_FORMAT, Collections.singletonList(Constants.FORMAT_BINARY));
 		}
 
 		if (isPrettyPrint()) {
@@ -174,6 +183,8 @@ public abstract class BaseClient implements IRestfulClient {
 				params.put(Constants.PARAM_FORMAT, Collections.singletonList("xml"));
 			} else if (theEncoding == EncodingEnum.JSON) {
 				params.put(Constants.PARAM_FORMAT, Collections.singletonList("json"));
+			} else if (theEncoding == EncodingEnum.BINARY) {
+				params.put(Constants.PARAM_FORMAT, Collections.singletonList(Constants.FORMAT_BINARY));
 			}
 			
 			if (thePrettyPrint == Boolean.TRUE) {
@@ -215,6 +226,7 @@ public abstract class BaseClient implements IRestfulClient {
 			throw new FhirClientConnectionException(e);
 		}
 
+		boolean closeResponse = true;
 		try {
 			String mimeType;
 			if (Constants.STATUS_HTTP_204_NO_CONTENT == response.getStatusLine().getStatusCode()) {
@@ -308,6 +320,14 @@ public abstract class BaseClient implements IRestfulClient {
 				}
 			}
 
+			if (binding instanceof IClientResponseHandlerStreamsResponse) {
+				keepResponseAndLogIt(theLogRequestAndResponse, response, null);
+				Reader reader = new ResponseReleasingReader(createReaderFromResponse(response), response);
+				T retVal = binding.invokeClient(mimeType, reader, response.getStatusLine().getStatusCode(), headers);
+				closeResponse = false;
+				return retVal;
+			}
+
 			Reader reader = createReaderFromResponse(response);
 
 			if (ourLog.isTraceEnabled() || myKeepResponses || theLogRequestAndResponse) {
@@ -327,12 +347,18 @@ public abstract class BaseClient implements IRestfulClient {
 		} catch (IOException e) {
 			throw new FhirClientConnectionException(e);
 		} finally {
-			if (response instanceof CloseableHttpResponse) {
-				try {
-					((CloseableHttpResponse) response).close();
-				} catch (IOException e) {
-					ourLog.debug("Failed to close response", e);
-				}
+			if (closeResponse) {
+				closeResponse(response);
+			}
+		}
+	}
+
+	private static void closeResponse(HttpResponse theResponse) {
+		if (theResponse instanceof CloseableHttpResponse) {
+			try {
+				((CloseableHttpResponse) theResponse).close();
+			} catch (IOException e) {
+				ourLog.debug("Failed to close response", e);
 			}
 		}
 	}
@@ -432,11 +458,15 @@ public abstract class BaseClient implements IRestfulClient {
 			return new StringReader("");
 		}
 		Charset charset = null;
+		EncodingEnum encoding = null;
 		if (entity.getContentType() != null && entity.getContentType().getElements() != null && entity.getContentType().getElements().length > 0) {
 			ContentType ct = ContentType.get(entity);
 			charset = ct.getCharset();
+			encoding = EncodingEnum.forContentType(ct.getMimeType());
 		}
-		if (charset == null) {
+		if (encoding == EncodingEnum.BINARY) {
+			charset = encoding.getCharset();
+		} else if (charset == null) {
 			if (Constants.STATUS_HTTP_204_NO_CONTENT != theResponse.getStatusLine().getStatusCode()) {
 				ourLog.warn("Response did not specify a charset.");
 			}
@@ -451,4 +481,28 @@ public abstract class BaseClient implements IRestfulClient {
 		return Collections.unmodifiableList(myInterceptors);
 	}
 
+	/**
+	 * Closes the HTTP response along with the reader, for responses which outlive the call to
+	 * {@link BaseClient#invokeClient(FhirContext, IClientResponseHandler, BaseHttpClientInvocation, EncodingEnum, Boolean, boolean)}
+	 */
+	private static class ResponseReleasingReader extends FilterReader {
+
+		private final HttpResponse myResponse;
+
+		ResponseReleasingReader(Reader theReader, HttpResponse theResponse) {
+			super(theReader);
+			myResponse = theResponse;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				closeResponse(myResponse);
+			}
+		}
+
+	}
+
 }
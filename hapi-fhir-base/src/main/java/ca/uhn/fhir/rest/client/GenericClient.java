@@ -31,6 +31,9 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -62,10 +65,13 @@ import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.model.primitive.InstantDt;
 import ca.uhn.fhir.model.primitive.UriDt;
 import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IBundleEntryReader;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.client.exceptions.NonFhirResponseException;
+import ca.uhn.fhir.rest.gclient.IClientBundleEntryReader;
 import ca.uhn.fhir.rest.gclient.IClientExecutable;
+import ca.uhn.fhir.rest.gclient.IClientExecutableCallback;
 import ca.uhn.fhir.rest.gclient.ICreate;
 import ca.uhn.fhir.rest.gclient.ICreateTyped;
 import ca.uhn.fhir.rest.gclient.ICreateWithQuery;
@@ -112,6 +118,7 @@ import ca.uhn.fhir.rest.method.HttpDeleteClientInvocation;
 import ca.uhn.fhir.rest.method.HttpGetClientInvocation;
 import ca.uhn.fhir.rest.method.HttpSimpleGetClientInvocation;
 import ca.uhn.fhir.rest.method.IClientResponseHandler;
+import ca.uhn.fhir.rest.method.IClientResponseHandlerStreamsResponse;
 import ca.uhn.fhir.rest.method.MethodUtil;
 import ca.uhn.fhir.rest.method.OperationMethodBinding;
 import ca.uhn.fhir.rest.method.ReadMethodBinding;
@@ -580,6 +587,35 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			return (T) this;
 		}
 
+		@Override
+		public Future<Y> executeAsync() {
+			return getAsyncExecutor().submit(new Callable<Y>() {
+				@Override
+				public Y call() {
+					return execute();
+				}
+			});
+		}
+
+		@Override
+		public Future<Y> executeAsync(final IClientExecutableCallback<Y> theCallback) {
+			Validate.notNull(theCallback, "theCallback must not be null");
+			return getAsyncExecutor().submit(new Callable<Y>() {
+				@Override
+				public Y call() {
+					Y retVal;
+					try {
+						retVal = execute();
+					} catch (RuntimeException e) {
+						theCallback.onFailure(e);
+						throw e;
+					}
+					theCallback.onSuccess(retVal);
+					return retVal;
+				}
+			});
+		}
+
 		@SuppressWarnings("unchecked")
 		@Override
 		public T encodedXml() {
@@ -625,6 +661,25 @@ public class GenericClient extends BaseClient implements IGenericClient {
 
 	}
 
+	private final class BundleEntryReaderResponseHandler<T extends IBaseBundle> implements IClientResponseHandlerStreamsResponse<IClientBundleEntryReader<T>> {
+
+		private Class<T> myType;
+
+		public BundleEntryReaderResponseHandler(Class<T> theType) {
+			myType = theType;
+		}
+
+		@Override
+		public IClientBundleEntryReader<T> invokeClient(String theResponseMimeType, Reader theResponseReader, int theResponseStatusCode, Map<String, List<String>> theHeaders) throws IOException, BaseServerResponseException {
+			EncodingEnum respType = EncodingEnum.forContentType(theResponseMimeType);
+			if (respType == null) {
+				throw NonFhirResponseException.newInstance(theResponseStatusCode, theResponseMimeType, theResponseReader);
+			}
+			IParser parser = respType.newParser(myContext);
+			return new ClientBundleEntryReader<T>(parser.parseBundleEntries(myType, theResponseReader), theResponseReader);
+		}
+	}
+
 	private final class BundleResponseHandler implements IClientResponseHandler<Bundle> {
 
 		private Class<? extends IBaseResource> myType;
@@ -644,6 +699,60 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		}
 	}
 
+	/**
+	 * Closes the response reader, and so releases the HTTP connection, once the last entry has been read
+	 */
+	private static final class ClientBundleEntryReader<T extends IBaseBundle> implements IClientBundleEntryReader<T> {
+
+		private boolean myClosed;
+		private final IBundleEntryReader<T> myEntryReader;
+		private final Reader myResponseReader;
+
+		public ClientBundleEntryReader(IBundleEntryReader<T> theEntryReader, Reader theResponseReader) {
+			myEntryReader = theEntryReader;
+			myResponseReader = theResponseReader;
+		}
+
+		@Override
+		public void close() {
+			if (!myClosed) {
+				myClosed = true;
+				IOUtils.closeQuietly(myResponseReader);
+			}
+		}
+
+		@Override
+		public T getBundle() {
+			return myEntryReader.getBundle();
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (myClosed) {
+				return false;
+			}
+			boolean retVal = myEntryReader.hasNext();
+			if (!retVal) {
+				close();
+			}
+			return retVal;
+		}
+
+		@Override
+		public IBase next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return myEntryReader.next();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
 	private class CreateInternal extends BaseClientExecutable<ICreateTyped, MethodOutcome> implements ICreate, ICreateTyped, ICreateWithQuery, ICreateWithQueryTyped {
 
 		private CriterionList myCriterionList;
@@ -971,6 +1080,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		private Integer myCount;
 		private IIdType myId;
 		private Class<? extends IBaseBundle> myReturnType;
+		private boolean myReturnBundleEntries;
 		private InstantDt mySince;
 		private Class<? extends IBaseResource> myType;
 
@@ -981,6 +1091,15 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			return this;
 		}
 
+		@SuppressWarnings("unchecked")
+		@Override
+		public IHistoryTyped andReturnBundleEntries(Class theType) {
+			Validate.notNull(theType, "theType must not be null");
+			myReturnType = theType;
+			myReturnBundleEntries = true;
+			return this;
+		}
+
 		@SuppressWarnings("unchecked")
 		@Override
 		public IHistoryTyped andReturnDstu1Bundle() {
@@ -1012,7 +1131,9 @@ public class GenericClient extends BaseClient implements IGenericClient {
 			HttpGetClientInvocation invocation = HistoryMethodBinding.createHistoryInvocation(resourceName, id, mySince, myCount);
 
 			IClientResponseHandler handler;
-			if (myReturnType != null) {
+			if (myReturnBundleEntries) {
+				handler = new BundleEntryReaderResponseHandler(myReturnType);
+			} else if (myReturnType != null) {
 				handler = new ResourceResponseHandler(myReturnType, null);
 			} else {
 				handler = new BundleResponseHandler(null);
@@ -1465,6 +1586,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		private String myResourceId;
 		private String myResourceName;
 		private Class<? extends IBaseResource> myResourceType;
+		private boolean myReturnBundleEntries;
 		private Class<? extends IBaseBundle> myReturnBundleType;
 		private List<Include> myRevInclude = new ArrayList<Include>();
 		private SearchStyleEnum mySearchStyle;
@@ -1482,7 +1604,7 @@ public class GenericClient extends BaseClient implements IGenericClient {
 		}
 
 		@Override
-		public IBase execute() {
+		public Object execute() {
 
 			Map<String, List<String>> params = new LinkedHashMap<String, List<String>>();
 			// Map<String, List<String>> initial = createExtraParams();
@@ -1512,8 +1634,10 @@ public class GenericClient extends BaseClient implements IGenericClient {
 				throw new IllegalArgumentException("When using the client with HL7.org structures, you must specify " + "the bundle return type for the client by adding \".returnBundle(org.hl7.fhir.instance.model.Bundle.class)\" to your search method call before the \".execute()\" method");
 			}
 
-			IClientResponseHandler<? extends IBase> binding;
-			if (myReturnBundleType != null) {
+			IClientResponseHandler<?> binding;
+			if (myReturnBundleEntries) {
+				binding = new BundleEntryReaderResponseHandler(myReturnBundleType);
+			} else if (myReturnBundleType != null) {
 				binding = new ResourceResponseHandler(myReturnBundleType, null);
 			} else {
 				binding = new BundleResponseHandler(myResourceType);
@@ -1566,6 +1690,17 @@ public class GenericClient extends BaseClient implements IGenericClient {
 				throw new NullPointerException("theClass must not be null");
 			}
 			myReturnBundleType = theClass;
+			myReturnBundleEntries = false;
+			return this;
+		}
+
+		@Override
+		public IClientExecutable returnBundleEntries(Class theClass) {
+			if (theClass == null) {
+				throw new NullPointerException("theClass must not be null");
+			}
+			myReturnBundleType = theClass;
+			myReturnBundleEntries = true;
 			return this;
 		}
 
@@ -20,6 +20,8 @@ package ca.uhn.fhir.rest.client;
  * #L%
  */
 
+import java.util.concurrent.ExecutorService;
+
 import org.apache.http.client.HttpClient;
 
 import ca.uhn.fhir.context.ConfigurationException;
@@ -37,6 +39,16 @@ public interface IRestfulClientFactory {
 	 */
 	public static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT = 10000;
 
+	/**
+	 * Default value for {@link #getPoolMaxPerRoute()}
+	 */
+	public static final int DEFAULT_POOL_MAX_PER_ROUTE = 20;
+
+	/**
+	 * Default value for {@link #getPoolMaxTotal()}
+	 */
+	public static final int DEFAULT_POOL_MAX_TOTAL = 20;
+
 	/**
 	 * Default value for {@link #getServerValidationModeEnum()}
 	 */
@@ -47,6 +59,17 @@ public interface IRestfulClientFactory {
 	 */
 	public static final int DEFAULT_SOCKET_TIMEOUT = 10000;
 	
+	/**
+	 * Returns the executor which runs the requests started with
+	 * {@link ca.uhn.fhir.rest.gclient.IClientExecutable#executeAsync()}. If no executor has been set, a pool of
+	 * {@link #getPoolMaxTotal()} daemon threads is created the first time this method is called. This method will not
+	 * return null.
+	 * 
+	 * @see #setAsyncExecutor(ExecutorService)
+	 * @since 1.1
+	 */
+	ExecutorService getAsyncExecutor();
+
 	/**
 	 * Gets the connection request timeout, in milliseconds. This is the amount of time that the HTTPClient connection
 	 * pool may wait for an available connection before failing. This setting typically does not need to be adjusted.
@@ -72,6 +95,26 @@ public interface IRestfulClientFactory {
 	 */
 	HttpClient getHttpClient();
 
+	/**
+	 * Gets the maximum number of connections which the HTTP connection pool will hold open to any one server.
+	 * <p>
+	 * The default value for this setting is defined by {@link #DEFAULT_POOL_MAX_PER_ROUTE}
+	 * </p>
+	 * 
+	 * @since 1.1
+	 */
+	int getPoolMaxPerRoute();
+
+	/**
+	 * Gets the maximum number of connections which the HTTP connection pool will hold open in total.
+	 * <p>
+	 * The default value for this setting is defined by {@link #DEFAULT_POOL_MAX_TOTAL}
+	 * </p>
+	 * 
+	 * @since 1.1
+	 */
+	int getPoolMaxTotal();
+
 	/**
 	 * @deprecated Use {@link #getServerValidationMode()} instead
 	 */
@@ -121,6 +164,18 @@ public interface IRestfulClientFactory {
 	 */
 	IGenericClient newGenericClient(String theServerBase);
 
+	/**
+	 * Sets the executor which runs the requests started with
+	 * {@link ca.uhn.fhir.rest.gclient.IClientExecutable#executeAsync()}. If set to <code>null</code>, a pool of
+	 * {@link #getPoolMaxTotal()} daemon threads will be created when it is first needed. An executor which is set here
+	 * is not shut down by this factory.
+	 * 
+	 * @param theAsyncExecutor
+	 *            The executor to use, or <code>null</code>
+	 * @since 1.1
+	 */
+	void setAsyncExecutor(ExecutorService theAsyncExecutor);
+
 	/**
 	 * Sets the connection request timeout, in milliseconds. This is the amount of time that the HTTPClient connection
 	 * pool may wait for an available connection before failing. This setting typically does not need to be adjusted.
@@ -148,6 +203,28 @@ public interface IRestfulClientFactory {
 	 */
 	void setHttpClient(HttpClient theHttpClient);
 
+	/**
+	 * Sets the maximum number of connections which the HTTP connection pool will hold open to any one server. This
+	 * setting has no effect on an HTTP client which was provided using {@link #setHttpClient(HttpClient)}.
+	 * <p>
+	 * The default value for this setting is defined by {@link #DEFAULT_POOL_MAX_PER_ROUTE}
+	 * </p>
+	 * 
+	 * @since 1.1
+	 */
+	void setPoolMaxPerRoute(int thePoolMaxPerRoute);
+
+	/**
+	 * Sets the maximum number of connections which the HTTP connection pool will hold open in total. This setting has
+	 * no effect on an HTTP client which was provided using {@link #setHttpClient(HttpClient)}.
+	 * <p>
+	 * The default value for this setting is defined by {@link #DEFAULT_POOL_MAX_TOTAL}
+	 * </p>
+	 * 
+	 * @since 1.1
+	 */
+	void setPoolMaxTotal(int thePoolMaxTotal);
+
 	/**
 	 * Sets the HTTP proxy to use for outgoing connections
 	 * 
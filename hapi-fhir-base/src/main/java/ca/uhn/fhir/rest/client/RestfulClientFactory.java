@@ -28,7 +28,11 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -59,11 +63,14 @@ import ca.uhn.fhir.util.FhirTerser;
 public class RestfulClientFactory implements IRestfulClientFactory {
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(RestfulClientFactory.class);
+	private ExecutorService myAsyncExecutor;
 	private int myConnectionRequestTimeout = DEFAULT_CONNECTION_REQUEST_TIMEOUT;
 	private int myConnectTimeout = DEFAULT_CONNECT_TIMEOUT;
 	private FhirContext myContext;
 	private HttpClient myHttpClient;
 	private Map<Class<? extends IRestfulClient>, ClientInvocationHandlerFactory> myInvocationHandlers = new HashMap<Class<? extends IRestfulClient>, ClientInvocationHandlerFactory>();
+	private int myPoolMaxPerRoute = DEFAULT_POOL_MAX_PER_ROUTE;
+	private int myPoolMaxTotal = DEFAULT_POOL_MAX_TOTAL;
 	private HttpHost myProxy;
 	private ServerValidationModeEnum myServerValidationMode = DEFAULT_SERVER_VALIDATION_MODE;
 	private int mySocketTimeout = DEFAULT_SOCKET_TIMEOUT;
@@ -85,6 +92,14 @@ public class RestfulClientFactory implements IRestfulClientFactory {
 		myContext = theFhirContext;
 	}
 
+	@Override
+	public synchronized ExecutorService getAsyncExecutor() {
+		if (myAsyncExecutor == null) {
+			myAsyncExecutor = Executors.newFixedThreadPool(myPoolMaxTotal, new AsyncThreadFactory());
+		}
+		return myAsyncExecutor;
+	}
+
 	@Override
 	public int getConnectionRequestTimeout() {
 		return myConnectionRequestTimeout;
@@ -100,6 +115,8 @@ public class RestfulClientFactory implements IRestfulClientFactory {
 		if (myHttpClient == null) {
 
 			PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5000, TimeUnit.MILLISECONDS);
+			connectionManager.setMaxTotal(myPoolMaxTotal);
+			connectionManager.setDefaultMaxPerRoute(myPoolMaxPerRoute);
 
 			//@formatter:off
 			RequestConfig defaultRequestConfig = RequestConfig.custom()
@@ -139,6 +156,16 @@ public class RestfulClientFactory implements IRestfulClientFactory {
 		myProxyPassword=thePassword;
 	}
 	
+	@Override
+	public int getPoolMaxPerRoute() {
+		return myPoolMaxPerRoute;
+	}
+
+	@Override
+	public int getPoolMaxTotal() {
+		return myPoolMaxTotal;
+	}
+
 	@Override
 	public ServerValidationModeEnum getServerValidationMode() {
 		return myServerValidationMode;
@@ -227,6 +254,11 @@ public class RestfulClientFactory implements IRestfulClientFactory {
 		myHttpClient = null;
 	}
 
+	@Override
+	public synchronized void setAsyncExecutor(ExecutorService theAsyncExecutor) {
+		myAsyncExecutor = theAsyncExecutor;
+	}
+
 	@Override
 	public synchronized void setConnectTimeout(int theConnectTimeout) {
 		myConnectTimeout = theConnectTimeout;
@@ -255,6 +287,20 @@ public class RestfulClientFactory implements IRestfulClientFactory {
 		myHttpClient = theHttpClient;
 	}
 
+	@Override
+	public synchronized void setPoolMaxPerRoute(int thePoolMaxPerRoute) {
+		Validate.isTrue(thePoolMaxPerRoute > 0, "thePoolMaxPerRoute must be greater than 0");
+		myPoolMaxPerRoute = thePoolMaxPerRoute;
+		myHttpClient = null;
+	}
+
+	@Override
+	public synchronized void setPoolMaxTotal(int thePoolMaxTotal) {
+		Validate.isTrue(thePoolMaxTotal > 0, "thePoolMaxTotal must be greater than 0");
+		myPoolMaxTotal = thePoolMaxTotal;
+		myHttpClient = null;
+	}
+
 	@Override
 	public void setProxy(String theHost, Integer thePort) {
 		if (theHost != null) {
@@ -337,4 +383,23 @@ public class RestfulClientFactory implements IRestfulClientFactory {
 		setServerValidationMode(theServerValidationMode);
 	}
 
+	/**
+	 * Creates the daemon threads of the default executor for asynchronous requests, so that they do not keep the JVM
+	 * running
+	 */
+	private static class AsyncThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger ourFactoryCount = new AtomicInteger();
+		private final AtomicInteger myThreadCount = new AtomicInteger();
+		private final String myThreadNamePrefix = "hapi-fhir-client-" + ourFactoryCount.incrementAndGet() + "-";
+
+		@Override
+		public Thread newThread(Runnable theRunnable) {
+			Thread retVal = new Thread(theRunnable, myThreadNamePrefix + myThreadCount.incrementAndGet());
+			retVal.setDaemon(true);
+			return retVal;
+		}
+
+	}
+
 }
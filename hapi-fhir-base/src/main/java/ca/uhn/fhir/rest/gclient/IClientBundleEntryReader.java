@@ -0,0 +1,46 @@
+package ca.uhn.fhir.rest.gclient;
+
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+
+import ca.uhn.fhir.parser.IBundleEntryReader;
+
+/**
+ * An {@link IBundleEntryReader} which reads the entries of a bundle directly from an HTTP response, so that search
+ * and history results of any size can be processed in constant memory.
+ * <p>
+ * The HTTP connection remains open until {@link #hasNext()} has returned <code>false</code> or the reader has been
+ * closed, so callers which stop reading before the last entry must call {@link #close()}.
+ * </p>
+ */
+public interface IClientBundleEntryReader<T extends IBaseBundle> extends IBundleEntryReader<T>, Closeable {
+
+	/**
+	 * Releases the HTTP connection used by this reader. Calling this method more than once has no effect.
+	 */
+	@Override
+	void close();
+
+}
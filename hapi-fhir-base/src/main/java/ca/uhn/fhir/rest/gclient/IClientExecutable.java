@@ -20,11 +20,43 @@ package ca.uhn.fhir.rest.gclient;
  * #L%
  */
 
+import java.util.concurrent.Future;
+
+import ca.uhn.fhir.rest.client.IRestfulClientFactory;
 
 public interface IClientExecutable<T extends IClientExecutable<?,?>, Y> {
 
 	Y execute();
 
+	/**
+	 * Executes the request on a background thread, and returns a handle to its result. The returned
+	 * {@link Future#get()} returns what {@link #execute()} would have returned, or throws an
+	 * {@link java.util.concurrent.ExecutionException} wrapping the exception which {@link #execute()} would have thrown.
+	 * <p>
+	 * Requests are run by the executor of the client factory (see
+	 * {@link IRestfulClientFactory#setAsyncExecutor(java.util.concurrent.ExecutorService)}), so the number of requests
+	 * which are in progress at any time is bounded by the size of that executor and of the HTTP connection pool, and
+	 * any further requests are queued until a thread is free. The request should not be modified after this method has
+	 * been called.
+	 * </p>
+	 * 
+	 * @since 1.1
+	 */
+	Future<Y> executeAsync();
+
+	/**
+	 * Executes the request on a background thread in the same way as {@link #executeAsync()}, and passes its result
+	 * (or the exception it failed with) to the given callback once it is complete. This allows many requests to be in
+	 * progress without a thread of the caller waiting on each of them. The callback is called on the thread which ran
+	 * the request, before the returned {@link Future} is completed. If the callback throws an exception, the
+	 * {@link Future} fails with it.
+	 *
+	 * @param theCallback
+	 *           The callback, must not be <code>null</code>
+	 * @since 1.1
+	 */
+	Future<Y> executeAsync(IClientExecutableCallback<Y> theCallback);
+
 	T encodedJson();
 
 	T encodedXml();
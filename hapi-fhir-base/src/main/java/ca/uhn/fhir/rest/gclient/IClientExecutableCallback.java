@@ -0,0 +1,45 @@
+package ca.uhn.fhir.rest.gclient;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Receives the outcome of a request which was started with
+ * {@link IClientExecutable#executeAsync(IClientExecutableCallback)}. Exactly one of the methods is called, on the
+ * thread which ran the request, so implementations should return quickly and must be thread safe if the same
+ * callback is used for several requests.
+ *
+ * @param <T>
+ *           The type returned by {@link IClientExecutable#execute()}
+ * @since 1.1
+ */
+public interface IClientExecutableCallback<T> {
+
+	/**
+	 * Called if the request failed, with the exception which {@link IClientExecutable#execute()} would have thrown
+	 */
+	void onFailure(Throwable theException);
+
+	/**
+	 * Called if the request succeeded, with the value which {@link IClientExecutable#execute()} would have returned
+	 */
+	void onSuccess(T theResult);
+
+}
@@ -37,5 +37,14 @@ public interface IHistoryUntyped {
 	 * Use this method if you are accessing a DSTU2+ server.
 	 */
 	<T extends IBaseBundle> IHistoryTyped<T> andReturnBundle(Class<T> theType);
+
+	/**
+	 * Request that the method return a reader over the entries of the Bundle resource instead of the parsed bundle,
+	 * so that histories of any size can be processed in constant memory. The reader must be closed if it is not
+	 * read to the end.
+	 * 
+	 * @since 1.1
+	 */
+	<T extends IBaseBundle> IHistoryTyped<IClientBundleEntryReader<T>> andReturnBundleEntries(Class<T> theType);
 	
 }
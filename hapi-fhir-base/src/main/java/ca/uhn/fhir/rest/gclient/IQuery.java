@@ -59,5 +59,15 @@ public interface IQuery<T> extends IClientExecutable<IQuery<T>, T>, IBaseQuery<I
 	 * or <code>ca.uhn.fhir.model.dstu2.resource.Bundle.class</code>
 	 */
 	<B extends IBaseBundle> IClientExecutable<IQuery<B>, B> returnBundle(Class<B> theClass);
+
+	/**
+	 * Request that the client return a reader over the entries of the response bundle instead of the parsed bundle,
+	 * so that results of any size can be processed in constant memory. The reader must be closed if it is not read
+	 * to the end.
+	 * 
+	 * @param theClass The bundle type, e.g. <code>ca.uhn.fhir.model.dstu2.resource.Bundle.class</code>
+	 * @since 1.1
+	 */
+	<B extends IBaseBundle> IClientExecutable<IQuery<IClientBundleEntryReader<B>>, IClientBundleEntryReader<B>> returnBundleEntries(Class<B> theClass);
 	
 }
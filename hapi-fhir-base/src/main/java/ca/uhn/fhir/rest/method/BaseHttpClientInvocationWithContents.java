@@ -231,6 +231,8 @@ abstract class BaseHttpClientInvocationWithContents extends BaseHttpClientInvoca
 
 		if (encoding == EncodingEnum.JSON) {
 			parser = myContext.newJsonParser();
+		} else if (encoding == EncodingEnum.BINARY) {
+			parser = myContext.newBinaryParser();
 		} else {
 			encoding = EncodingEnum.XML;
 			parser = myContext.newXmlParser();
@@ -295,7 +297,7 @@ abstract class BaseHttpClientInvocationWithContents extends BaseHttpClientInvoca
 			 * content type header manually, it makes no difference which one
 			 * we use anyhow.
 			 */
-			entity = new ByteArrayEntity(contents.getBytes(Constants.CHARSET_UTF8));
+			entity = new ByteArrayEntity(contents.getBytes(encoding.getCharset()));
 		}
 
 		HttpRequestBase retVal = createRequest(url, entity);
@@ -303,7 +305,11 @@ abstract class BaseHttpClientInvocationWithContents extends BaseHttpClientInvoca
 		addMatchHeaders(retVal, url);
 
 		if (contentType != null) {
-			retVal.addHeader(Constants.HEADER_CONTENT_TYPE, contentType + Constants.HEADER_SUFFIX_CT_UTF_8);
+			if (encoding == EncodingEnum.BINARY) {
+				retVal.addHeader(Constants.HEADER_CONTENT_TYPE, contentType);
+			} else {
+				retVal.addHeader(Constants.HEADER_CONTENT_TYPE, contentType + Constants.HEADER_SUFFIX_CT_UTF_8);
+			}
 		}
 
 		return retVal;
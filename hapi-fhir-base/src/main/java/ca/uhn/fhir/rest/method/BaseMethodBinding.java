@@ -22,6 +22,7 @@ package ca.uhn.fhir.rest.method;
 
 import static org.apache.commons.lang3.StringUtils.*;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
@@ -33,8 +34,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
 
 import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.io.IOUtils;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -66,6 +69,8 @@ import ca.uhn.fhir.rest.annotation.Validate;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.client.BaseHttpClientInvocation;
 import ca.uhn.fhir.rest.client.exceptions.NonFhirResponseException;
+import ca.uhn.fhir.rest.param.ResourceParameter;
+import ca.uhn.fhir.rest.param.TransactionParameter;
 import ca.uhn.fhir.rest.server.BundleProviders;
 import ca.uhn.fhir.rest.server.Constants;
 import ca.uhn.fhir.rest.server.EncodingEnum;
@@ -91,6 +96,7 @@ public abstract class BaseMethodBinding<T> implements IClientResponseHandler<T>
 	private Method myMethod;
 	private List<IParameter> myParameters;
 	private Object myProvider;
+	private volatile Boolean myRequestContentsStreamed;
 
 	public BaseMethodBinding(Method theMethod, FhirContext theContext, Object theProvider) {
 		assert theMethod != null;
@@ -266,7 +272,50 @@ public abstract class BaseMethodBinding<T> implements IClientResponseHandler<T>
 		}
 	}
 
+	/**
+	 * Returns the contents of the body of the request, or <code>null</code> if the body is not needed before the method
+	 * is invoked. This is the case if no parameter reads the body, or if a single parameter reads it and can parse it
+	 * straight from {@link #getRequestInputStream(RequestDetails) the request stream} as it is read, so that the body
+	 * is never held in memory as bytes.
+	 */
 	protected byte[] loadRequestContents(RequestDetails theRequest) throws IOException {
+		if (isRequestContentsStreamed()) {
+			return null;
+		}
+		InputStream inputStream = getRequestInputStream(theRequest);
+		byte[] requestContents = IOUtils.toByteArray(inputStream);
+		return requestContents;
+	}
+
+	private boolean isRequestContentsStreamed() {
+		Boolean retVal = myRequestContentsStreamed;
+		if (retVal == null) {
+			IParameter reader = null;
+			int readerCount = 0;
+			for (IParameter next : getParameters()) {
+				if (next instanceof ResourceParameter) {
+					if (((ResourceParameter) next).getMode() != ResourceParameter.Mode.ENCODING) {
+						reader = next;
+						readerCount++;
+					}
+				} else if (next instanceof TransactionParameter || next instanceof OperationParameter) {
+					reader = next;
+					readerCount++;
+				}
+			}
+			retVal = readerCount == 0 || (readerCount == 1 && !(reader instanceof OperationParameter));
+			myRequestContentsStreamed = retVal;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns a stream for the body of the request. If the body is gzip compressed, and the server is configured to
+	 * {@link RestfulServer#setDecodeGzipRequests(boolean) decode gzip requests}, the stream returns the uncompressed body.
+	 * If the server has a {@link RestfulServer#setMaxRequestSize(long) maximum request size}, the stream fails with an
+	 * HTTP 413 response once the body is found to be larger.
+	 */
+	public InputStream getRequestInputStream(RequestDetails theRequest) throws IOException {
 		/*
 		 * This is weird, but this class is used both in clients and in servers, and
 		 * we want to avoid needing to depend on servlet-api in clients since there is
@@ -295,10 +344,8 @@ public abstract class BaseMethodBinding<T> implements IClientResponseHandler<T>
 			}
 			ourRequestReader = reader;
 		}
-		
-		InputStream inputStream = reader.getInputStream(theRequest);
-		byte[] requestContents = IOUtils.toByteArray(inputStream);
-		return requestContents;
+
+		return reader.getInputStream(theRequest);
 	}
 
 	protected BaseServerResponseException processNon2xxResponseAndReturnExceptionToThrow(int theStatusCode, String theResponseMimeType, Reader theResponseReader) {
@@ -607,7 +654,91 @@ public abstract class BaseMethodBinding<T> implements IClientResponseHandler<T>
 	static class ActiveRequestReader implements IRequestReader {
 		@Override
 		public InputStream getInputStream(RequestDetails theRequestDetails) throws IOException {
-			return theRequestDetails.getServletRequest().getInputStream();
+			HttpServletRequest request = theRequestDetails.getServletRequest();
+			InputStream retVal = request.getInputStream();
+
+			RestfulServer server = theRequestDetails.getServer();
+			if (server == null) {
+				return retVal;
+			}
+
+			boolean gzip = false;
+			if (server.isDecodeGzipRequests()) {
+				String contentEncoding = request.getHeader(Constants.HEADER_CONTENT_ENCODING);
+				gzip = contentEncoding != null && Constants.ENCODING_GZIP.equalsIgnoreCase(contentEncoding.trim());
+			}
+
+			long maxRequestSize = server.getMaxRequestSize();
+			if (maxRequestSize > 0 && !gzip && request.getContentLength() > maxRequestSize) {
+				throw newRequestTooLargeException(server, maxRequestSize);
+			}
+
+			if (gzip) {
+				retVal = new GZIPInputStream(retVal);
+			}
+			if (maxRequestSize > 0) {
+				retVal = new SizeLimitingInputStream(retVal, server, maxRequestSize);
+			}
+			return retVal;
+		}
+
+		private static UnclassifiedServerFailureException newRequestTooLargeException(RestfulServer theServer, long theMaxRequestSize) {
+			String message = theServer.getFhirContext().getLocalizer().getMessage(BaseMethodBinding.class, "requestTooLarge", Long.toString(theMaxRequestSize));
+			return new UnclassifiedServerFailureException(Constants.STATUS_HTTP_413_REQUEST_ENTITY_TOO_LARGE, message);
+		}
+
+		/**
+		 * Fails with an HTTP 413 response once more than the maximum number of bytes have been read
+		 */
+		private static class SizeLimitingInputStream extends FilterInputStream {
+
+			private long myCount;
+			private final long myMaxRequestSize;
+			private final RestfulServer myServer;
+
+			SizeLimitingInputStream(InputStream theInputStream, RestfulServer theServer, long theMaxRequestSize) {
+				super(theInputStream);
+				myServer = theServer;
+				myMaxRequestSize = theMaxRequestSize;
+			}
+
+			private void count(long theCount) {
+				if (theCount > 0) {
+					myCount += theCount;
+					if (myCount > myMaxRequestSize) {
+						throw newRequestTooLargeException(myServer, myMaxRequestSize);
+					}
+				}
+			}
+
+			@Override
+			public boolean markSupported() {
+				return false;
+			}
+
+			@Override
+			public int read() throws IOException {
+				int retVal = super.read();
+				if (retVal != -1) {
+					count(1);
+				}
+				return retVal;
+			}
+
+			@Override
+			public int read(byte[] theBuffer, int theOffset, int theLength) throws IOException {
+				int retVal = super.read(theBuffer, theOffset, theLength);
+				count(retVal);
+				return retVal;
+			}
+
+			@Override
+			public long skip(long theCount) throws IOException {
+				long retVal = super.skip(theCount);
+				count(retVal);
+				return retVal;
+			}
+
 		}
 	}
 	
@@ -79,6 +79,8 @@ abstract class BaseResourceReturningMethodBinding extends BaseMethodBinding<Obje
 		set.add(Constants.PARAM_SORT_ASC);
 		set.add(Constants.PARAM_SORT_DESC);
 		set.add(Constants.PARAM_COUNT);
+		set.add(Constants.PARAM_ELEMENTS);
+		set.add(Constants.PARAM_SUMMARY);
 		ALLOWED_PARAMS = Collections.unmodifiableSet(set);
 	}
 
@@ -245,6 +247,9 @@ abstract class BaseResourceReturningMethodBinding extends BaseMethodBinding<Obje
 		// Narrative mode
 		NarrativeModeEnum narrativeMode = RestfulServerUtils.determineNarrativeMode(theRequest);
 
+		// Elements to include (_elements and _summary)
+		Set<String> elements = RestfulServerUtils.determineElementFilter(theRequest);
+
 		// Determine response encoding
 		EncodingEnum responseEncoding = RestfulServerUtils.determineResponseEncodingNoDefault(theRequest.getServletRequest());
 
@@ -329,7 +334,7 @@ abstract class BaseResourceReturningMethodBinding extends BaseMethodBinding<Obje
 						return;
 					}
 				}
-				RestfulServerUtils.streamResponseAsResource(theServer, response, resource, responseEncoding, prettyPrint, requestIsBrowser, narrativeMode, Constants.STATUS_HTTP_200_OK, respondGzip,
+				RestfulServerUtils.streamResponseAsResource(theServer, response, resource, responseEncoding, prettyPrint, requestIsBrowser, narrativeMode, elements, Constants.STATUS_HTTP_200_OK, respondGzip,
 						theRequest.getFhirServerBase(), isAddContentLocationHeader());
 				break;
 			} else {
@@ -353,7 +358,7 @@ abstract class BaseResourceReturningMethodBinding extends BaseMethodBinding<Obje
 							return;
 						}
 					}
-					RestfulServerUtils.streamResponseAsBundle(theServer, response, bundle, responseEncoding, theRequest.getFhirServerBase(), prettyPrint, narrativeMode, respondGzip, requestIsBrowser);
+					RestfulServerUtils.streamResponseAsBundle(theServer, response, bundle, responseEncoding, theRequest.getFhirServerBase(), prettyPrint, narrativeMode, elements, respondGzip, requestIsBrowser);
 				} else {
 					IBaseResource resBundle = bundleFactory.getResourceBundle();
 					for (int i = theServer.getInterceptors().size() - 1; i >= 0; i--) {
@@ -364,7 +369,7 @@ abstract class BaseResourceReturningMethodBinding extends BaseMethodBinding<Obje
 							return;
 						}
 					}
-					RestfulServerUtils.streamResponseAsResource(theServer, response, resBundle, responseEncoding, prettyPrint, requestIsBrowser, narrativeMode,
+					RestfulServerUtils.streamResponseAsResource(theServer, response, resBundle, bundleFactory.getStreamedEntries(), responseEncoding, prettyPrint, requestIsBrowser, narrativeMode, elements,
 							Constants.STATUS_HTTP_200_OK, theRequest.isRespondGzip(), theRequest.getFhirServerBase(), isAddContentLocationHeader());
 				}
 
@@ -389,7 +394,7 @@ abstract class BaseResourceReturningMethodBinding extends BaseMethodBinding<Obje
 				}
 			}
 
-			RestfulServerUtils.streamResponseAsResource(theServer, response, resource, responseEncoding, prettyPrint, requestIsBrowser, narrativeMode, Constants.STATUS_HTTP_200_OK, respondGzip,
+			RestfulServerUtils.streamResponseAsResource(theServer, response, resource, responseEncoding, prettyPrint, requestIsBrowser, narrativeMode, elements, Constants.STATUS_HTTP_200_OK, respondGzip,
 					theRequest.getFhirServerBase(), isAddContentLocationHeader());
 			break;
 		}
@@ -0,0 +1,34 @@
+package ca.uhn.fhir.rest.method;
+
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Reader;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A response handler which takes ownership of the response {@link Reader} passed to
+ * {@link #invokeClient(String, Reader, int, Map)} and is responsible for closing it. The client neither buffers nor
+ * closes the response body, and the HTTP connection is only released once the reader has been closed.
+ */
+public interface IClientResponseHandlerStreamsResponse<T> extends IClientResponseHandler<T> {
+}
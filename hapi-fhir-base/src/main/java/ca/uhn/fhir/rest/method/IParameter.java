@@ -45,6 +45,7 @@ public interface IParameter {
 	 *            The incoming request object
 	 * @param theRequestContents
 	 *            The parsed contents of the incoming request. E.g. if the request was an HTTP POST with a resource in the body, this argument would contain the parsed {@link IResource} instance.
+	 *            This is <code>null</code> if the body of the request is read straight from {@link BaseMethodBinding#getRequestInputStream(RequestDetails) the request stream} instead.
 	 * @param theMethodBinding TODO
 	 * @return Returns the argument object as it will be passed to the {@link IResourceProvider} method.
 	 */
@@ -25,6 +25,7 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.lang.reflect.Method;
@@ -107,10 +108,9 @@ public class ResourceParameter implements IParameter {
 		switch (myMode) {
 		case BODY:
 			try {
-				return IOUtils.toString(createRequestReader(theRequest, theRequestContents));
+				return IOUtils.toString(createRequestReader(theRequest, theRequestContents, theMethodBinding));
 			} catch (IOException e) {
-				// Shouldn't happen since we're reading from a byte array
-				throw new InternalErrorException("Failed to load request");
+				throw new InternalErrorException("Failed to load request", e);
 			}
 		case ENCODING:
 			return RestfulServerUtils.determineRequestEncoding(theRequest);
@@ -123,7 +123,7 @@ public class ResourceParameter implements IParameter {
 			String ct = theRequest.getServletRequest().getHeader(Constants.HEADER_CONTENT_TYPE);
 			IBaseBinary binary = (IBaseBinary) ctx.getResourceDefinition("Binary").newInstance();
 			binary.setContentType(ct);
-			binary.setContent(theRequestContents);
+			binary.setContent(loadRequestContents(theRequest, theRequestContents, theMethodBinding));
 			
 			return binary;
 		}
@@ -133,16 +133,41 @@ public class ResourceParameter implements IParameter {
 		return retVal;
 	}
 
-	static Reader createRequestReader(byte[] theRequestContents, Charset charset) {
-		Reader requestReader = new InputStreamReader(new ByteArrayInputStream(theRequestContents), charset);
-		return requestReader;
+	/**
+	 * Returns a stream for the body of the request, which is either the contents which were already loaded, or if
+	 * these are <code>null</code>, the body as it is read from the request
+	 */
+	static InputStream createRequestInputStream(RequestDetails theRequest, byte[] theRequestContents, BaseMethodBinding<?> theMethodBinding) {
+		if (theRequestContents != null) {
+			return new ByteArrayInputStream(theRequestContents);
+		}
+		try {
+			return theMethodBinding.getRequestInputStream(theRequest);
+		} catch (IOException e) {
+			throw new InternalErrorException("Failed to load request", e);
+		}
 	}
 
-	static Reader createRequestReader(RequestDetails theRequest, byte[] theRequestContents) {
-		return createRequestReader(theRequestContents, determineRequestCharset(theRequest));
+	static Reader createRequestReader(RequestDetails theRequest, byte[] theRequestContents, BaseMethodBinding<?> theMethodBinding) {
+		return new InputStreamReader(createRequestInputStream(theRequest, theRequestContents, theMethodBinding), determineRequestCharset(theRequest));
+	}
+
+	private static byte[] loadRequestContents(RequestDetails theRequest, byte[] theRequestContents, BaseMethodBinding<?> theMethodBinding) {
+		if (theRequestContents != null) {
+			return theRequestContents;
+		}
+		try {
+			return IOUtils.toByteArray(createRequestInputStream(theRequest, null, theMethodBinding));
+		} catch (IOException e) {
+			throw new InternalErrorException("Failed to load request", e);
+		}
 	}
 
 	static Charset determineRequestCharset(RequestDetails theRequest) {
+		if (RestfulServerUtils.determineRequestEncodingNoDefault(theRequest) == EncodingEnum.BINARY) {
+			return EncodingEnum.BINARY.getCharset();
+		}
+
 		String ct = theRequest.getServletRequest().getHeader(Constants.HEADER_CONTENT_TYPE);
 
 		Charset charset = null;
@@ -160,7 +185,7 @@ public class ResourceParameter implements IParameter {
 		FhirContext ctx = theRequest.getServer().getFhirContext();
 
 		final Charset charset = determineRequestCharset(theRequest);
-		Reader requestReader = createRequestReader(theRequestContents, charset);
+		byte[] requestContents = theRequestContents;
 		
 		EncodingEnum encoding = RestfulServerUtils.determineRequestEncodingNoDefault(theRequest);
 		if (encoding == null) {
@@ -173,21 +198,15 @@ public class ResourceParameter implements IParameter {
 			}
 			if (isBlank(ctValue)) {
 				/*
-				 * If the client didn't send a content type, try to guess
+				 * If the client didn't send a content type, try to guess. This needs the whole body, so it can't be
+				 * parsed as it is read.
 				 */
-				String body;
-				try {
-					body = IOUtils.toString(requestReader);
-				} catch (IOException e) {
-					// This shouldn't happen since we're reading from a byte array..
-					throw new InternalErrorException(e);
-				}
+				requestContents = loadRequestContents(theRequest, theRequestContents, theMethodBinding);
+				String body = new String(requestContents, charset);
 				encoding = MethodUtil.detectEncodingNoDefault(body);
 				if (encoding == null) {
 					String msg = ctx.getLocalizer().getMessage(ResourceParameter.class, "noContentTypeInRequest", theMethodBinding.getResourceOrSystemOperationType());
 					throw new InvalidRequestException(msg);
-				} else {
-					requestReader = new InputStreamReader(new ByteArrayInputStream(theRequestContents), charset);
 				}
 			} else {
 				String msg = ctx.getLocalizer().getMessage(ResourceParameter.class, "invalidContentTypeInRequest", ctValue, theMethodBinding.getResourceOrSystemOperationType());
@@ -197,8 +216,13 @@ public class ResourceParameter implements IParameter {
 		
 		IParser parser = encoding.newParser(ctx);
 
+		InputStream requestInputStream = createRequestInputStream(theRequest, requestContents, theMethodBinding);
+		Reader requestReader = new InputStreamReader(requestInputStream, charset);
+
 		IBaseResource retVal;
-		if (theResourceType != null) {
+		if (encoding == EncodingEnum.BINARY) {
+			retVal = parser.parseResource(theResourceType, requestInputStream);
+		} else if (theResourceType != null) {
 			retVal = parser.parseResource(theResourceType, requestReader);
 		} else {
 			retVal = parser.parseResource(requestReader);
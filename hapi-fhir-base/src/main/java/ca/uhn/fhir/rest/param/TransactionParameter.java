@@ -105,7 +105,7 @@ public class TransactionParameter implements IParameter {
 
 		IParser parser = encoding.newParser(myContext);
 
-		Reader reader = ResourceParameter.createRequestReader(theRequest, theRequestContents);
+		Reader reader = ResourceParameter.createRequestReader(theRequest, theRequestContents, theMethodBinding);
 		
 		switch (myParamStyle) {
 		case DSTU1_BUNDLE: {
@@ -29,9 +29,12 @@ import java.util.Set;
 
 public class Constants {
 
+	public static final Charset CHARSET_ISO_8859_1;
 	public static final Charset CHARSET_UTF8;
+	public static final String CHARSETNAME_ISO_8859_1 = "ISO-8859-1";
 	public static final String CHARSETNAME_UTF_8 = "UTF-8";
 	public static final String CT_ATOM_XML = "application/atom+xml";
+	public static final String CT_FHIR_BINARY = "application/x-fhir-binary";
 	public static final String CT_FHIR_JSON = "application/json+fhir";
 
 	public static final String CTSUFFIX_CHARSET_UTF8 = "; charset=" + CHARSETNAME_UTF_8;
@@ -48,6 +51,7 @@ public class Constants {
 	public static final String EXTOP_VALIDATE_MODE = "mode";
 	public static final String EXTOP_VALIDATE_PROFILE = "profile";
 	public static final String EXTOP_VALIDATE_RESOURCE = "resource";
+	public static final String FORMAT_BINARY = "binary";
 	public static final String FORMAT_JSON = "json";
 	public static final Set<String> FORMAT_VAL_JSON;
 	public static final Map<String, EncodingEnum> FORMAT_VAL_TO_ENCODING;
@@ -93,6 +97,7 @@ public class Constants {
 	public static final String OPENSEARCH_NS_OLDER = "http://purl.org/atompub/tombstones/1.0";
 	public static final String PARAM_COUNT = "_count";
 	public static final String PARAM_DELETE = "_delete";
+	public static final String PARAM_ELEMENTS = "_elements";
 	public static final String PARAM_FORMAT = "_format";
 	public static final String PARAM_HISTORY = "_history";
 	public static final String PARAM_INCLUDE = "_include";
@@ -108,6 +113,11 @@ public class Constants {
 	public static final String PARAM_SORT = "_sort";
 	public static final String PARAM_SORT_ASC = "_sort:asc";
 	public static final String PARAM_SORT_DESC = "_sort:desc";
+	public static final String PARAM_SUMMARY = "_summary";
+	public static final String PARAM_SUMMARY_COUNT = "count";
+	public static final String PARAM_SUMMARY_DATA = "data";
+	public static final String PARAM_SUMMARY_TEXT = "text";
+	public static final String PARAM_SUMMARY_TRUE = "true";
 	public static final String PARAM_TAGS = "_tags";
 	public static final String PARAM_VALIDATE = "_validate";
 	public static final String PARAMQUALIFIER_MISSING = ":missing";
@@ -127,9 +137,12 @@ public class Constants {
 	public static final int STATUS_HTTP_409_CONFLICT = 409;
 	public static final int STATUS_HTTP_410_GONE = 410;
 	public static final int STATUS_HTTP_412_PRECONDITION_FAILED = 412;
+	public static final int STATUS_HTTP_413_REQUEST_ENTITY_TOO_LARGE = 413;
 	public static final int STATUS_HTTP_422_UNPROCESSABLE_ENTITY = 422;
+	public static final int STATUS_HTTP_429_TOO_MANY_REQUESTS = 429;
 	public static final int STATUS_HTTP_500_INTERNAL_ERROR = 500;
 	public static final int STATUS_HTTP_501_NOT_IMPLEMENTED = 501;
+	public static final int STATUS_HTTP_503_SERVICE_UNAVAILABLE = 503;
 	public static final String URL_TOKEN_HISTORY = "_history";
 	public static final String URL_TOKEN_METADATA = "metadata";
 
@@ -154,9 +167,13 @@ public class Constants {
 			valToEncoding.put(string, EncodingEnum.JSON);
 		}
 
+		valToEncoding.put(CT_FHIR_BINARY, EncodingEnum.BINARY);
+		valToEncoding.put(FORMAT_BINARY, EncodingEnum.BINARY);
+
 		FORMAT_VAL_TO_ENCODING = Collections.unmodifiableMap(valToEncoding);
 		
 		CHARSET_UTF8 = Charset.forName(CHARSETNAME_UTF_8);
+		CHARSET_ISO_8859_1 = Charset.forName(CHARSETNAME_ISO_8859_1);
 	}
 
 }
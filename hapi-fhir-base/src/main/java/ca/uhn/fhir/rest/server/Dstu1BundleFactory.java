@@ -22,12 +22,14 @@ package ca.uhn.fhir.rest.server;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 
@@ -257,6 +259,11 @@ public class Dstu1BundleFactory implements IVersionSpecificBundleFactory {
 		return null;
 	}
 
+	@Override
+	public Iterator<? extends IBase> getStreamedEntries() {
+		return null;
+	}
+
 	@Override
 	public void initializeBundleFromResourceList(String theAuthor, List<? extends IBaseResource> theResult, String theServerBase, String theCompleteUrl, int theTotalResults, BundleTypeEnum theBundleType) {
 		myBundle = new Bundle();
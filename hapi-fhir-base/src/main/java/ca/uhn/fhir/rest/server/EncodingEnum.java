@@ -20,6 +20,7 @@ package ca.uhn.fhir.rest.server;
  * #L%
  */
 
+import java.nio.charset.Charset;
 import java.util.HashMap;
 
 import ca.uhn.fhir.context.FhirContext;
@@ -39,6 +40,21 @@ public enum EncodingEnum {
 		public IParser newParser(FhirContext theContext) {
 			return theContext.newJsonParser();
 		}
+	},
+
+	/**
+	 * The compact binary encoding produced by {@link FhirContext#newBinaryParser()}
+	 */
+	BINARY(Constants.CT_FHIR_BINARY, Constants.CT_FHIR_BINARY, Constants.CT_FHIR_BINARY, Constants.FORMAT_BINARY) {
+		@Override
+		public Charset getCharset() {
+			return Constants.CHARSET_ISO_8859_1;
+		}
+
+		@Override
+		public IParser newParser(FhirContext theContext) {
+			return theContext.newBinaryParser();
+		}
 	}
 
 	;
@@ -77,6 +93,14 @@ public enum EncodingEnum {
 		myFormatContentType = theFormatContentType;
 	}
 
+	/**
+	 * Returns the character set used when content in this encoding is read from or written to characters. This is
+	 * UTF-8 for the text encodings, and ISO-8859-1 for {@link #BINARY} (which maps each byte to one character).
+	 */
+	public Charset getCharset() {
+		return Constants.CHARSET_UTF8;
+	}
+
 	public String getRequestContentType() {
 		return myFormatContentType;
 	}
@@ -0,0 +1,112 @@
+package ca.uhn.fhir.rest.server;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.model.dstu.valueset.RestfulOperationSystemEnum;
+import ca.uhn.fhir.model.dstu.valueset.RestfulOperationTypeEnum;
+import ca.uhn.fhir.rest.method.BaseMethodBinding;
+import ca.uhn.fhir.rest.method.OtherOperationTypeEnum;
+
+/**
+ * The kinds of request which may each be given their own executor, so that they are processed on threads other than
+ * the servlet container's threads
+ * 
+ * @see RestfulServer#setExecutor(ExecutionPoolEnum, java.util.concurrent.ExecutorService)
+ * @since 1.1
+ */
+public enum ExecutionPoolEnum {
+
+	/**
+	 * Read and vread operations, and requests for the tags of a resource
+	 */
+	READ,
+
+	/**
+	 * Search and history operations, at the type, instance or server level
+	 */
+	SEARCH,
+
+	/**
+	 * Create, update, delete and transaction operations, and requests which add or remove tags
+	 */
+	WRITE,
+
+	/**
+	 * Extended operations (e.g. <code>$validate</code> or <code>$everything</code>)
+	 */
+	OPERATION;
+
+	/**
+	 * Returns the pool for requests which are handled by the given method, or <code>null</code> if those requests are
+	 * always processed on the servlet container's thread (as requests for the server's conformance statement are)
+	 */
+	static ExecutionPoolEnum forMethod(BaseMethodBinding<?> theMethod) {
+		RestfulOperationTypeEnum resourceOperationType = theMethod.getResourceOperationType();
+		if (resourceOperationType != null) {
+			switch (resourceOperationType) {
+			case READ:
+			case VREAD:
+				return READ;
+			case SEARCH_TYPE:
+			case HISTORY_TYPE:
+			case HISTORY_INSTANCE:
+				return SEARCH;
+			case CREATE:
+			case UPDATE:
+			case DELETE:
+				return WRITE;
+			case VALIDATE:
+				return OPERATION;
+			}
+		}
+
+		RestfulOperationSystemEnum systemOperationType = theMethod.getSystemOperationType();
+		if (systemOperationType != null) {
+			switch (systemOperationType) {
+			case SEARCH_SYSTEM:
+			case HISTORY_SYSTEM:
+				return SEARCH;
+			case TRANSACTION:
+				return WRITE;
+			}
+		}
+
+		OtherOperationTypeEnum otherOperationType = theMethod.getOtherOperationType();
+		if (otherOperationType != null) {
+			switch (otherOperationType) {
+			case GET_TAGS:
+				return READ;
+			case ADD_TAGS:
+			case DELETE_TAGS:
+				return WRITE;
+			case EXTENDED_OPERATION_SERVER:
+			case EXTENDED_OPERATION_TYPE:
+			case EXTENDED_OPERATION_INSTANCE:
+				return OPERATION;
+			default:
+				break;
+			}
+		}
+
+		return null;
+	}
+
+}
@@ -20,9 +20,11 @@ package ca.uhn.fhir.rest.server;
  * #L%
  */
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import ca.uhn.fhir.model.api.Bundle;
@@ -46,6 +48,15 @@ public interface IVersionSpecificBundleFactory {
 
 	IBaseResource getResourceBundle();
 
+	/**
+	 * Returns the entries of the {@link #getResourceBundle() resource bundle} if these are to be loaded as the bundle is
+	 * encoded (see {@link RestfulServer#setStreamSearchResults(boolean)}), or <code>null</code> if the bundle holds all
+	 * of its entries. The entries are intended to be passed to
+	 * {@link ca.uhn.fhir.parser.IParser#encodeBundleEntriesToWriter(org.hl7.fhir.instance.model.api.IBaseBundle, Iterator, java.io.Writer)}
+	 * and can only be iterated once.
+	 */
+	Iterator<? extends IBase> getStreamedEntries();
+
 	void initializeBundleFromResourceList(String theAuthor, List<? extends IBaseResource> theResult, String theServerBase, String theCompleteUrl, int theTotalResults, BundleTypeEnum theBundleType);
 
 	void initializeWithBundleResource(IBaseResource theResource);
@@ -21,20 +21,36 @@ package ca.uhn.fhir.rest.server;
  */
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+
+import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
 import ca.uhn.fhir.rest.method.BaseMethodBinding;
 import ca.uhn.fhir.rest.method.RequestDetails;
+import ca.uhn.fhir.util.ObjectUtil;
 
 /**
  * Created by dsotnikov on 2/25/2014.
  */
 public class ResourceBinding {
 
+	/**
+	 * The maximum number of request signatures for which the matching method is remembered, so that requests with
+	 * unusual parameter names can not grow the cache without limit
+	 */
+	static final int MAX_CACHED_SIGNATURES = 1000;
+
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ResourceBinding.class);
 
 	private String resourceName;
 	private List<BaseMethodBinding<?>> methods = new ArrayList<BaseMethodBinding<?>>();
+	private final Map<RequestSignature, BaseMethodBinding<?>> myMethodCache = new ConcurrentHashMap<RequestSignature, BaseMethodBinding<?>>();
 
 	public ResourceBinding() {
 	}
@@ -50,10 +66,25 @@ public class ResourceBinding {
 			return null;
 		}
 
+		/*
+		 * Whether a method matches a request depends only on the signature of the request (its type, operation, ID,
+		 * compartment, query name and parameter names), not on the values of its parameters, so the method found for a
+		 * signature is remembered and the methods are only scanned the first time a signature is seen
+		 */
+		RequestSignature signature = new RequestSignature(theRequest);
+		BaseMethodBinding<?> cached = myMethodCache.get(signature);
+		if (cached != null) {
+			ourLog.debug("Handler {} matches", cached);
+			return cached;
+		}
+
 		ourLog.debug("Looking for a handler for {}", theRequest);
 		for (BaseMethodBinding<?> rm : methods) {
 			if (rm.incomingServerRequestMatchesMethod(theRequest)) {
 				ourLog.debug("Handler {} matches", rm);
+				if (myMethodCache.size() < MAX_CACHED_SIGNATURES) {
+					myMethodCache.put(signature, rm);
+				}
 				return rm;
 			} else {
 				ourLog.trace("Handler {} does not match", rm);
@@ -76,10 +107,12 @@ public class ResourceBinding {
 
 	public void setMethods(List<BaseMethodBinding<?>> methods) {
 		this.methods = methods;
+		myMethodCache.clear();
 	}
 
 	public void addMethod(BaseMethodBinding<?> method) {
 		this.methods.add(method);
+		myMethodCache.clear();
 	}
 
 	@Override
@@ -94,4 +127,79 @@ public class ResourceBinding {
 		return 0;
 	}
 
+	/**
+	 * The parts of a request which decide which method it matches
+	 */
+	private static final class RequestSignature {
+
+		private final String myCompartmentName;
+		private final int myHashCode;
+		private final boolean myHasId;
+		private final boolean myIdEmpty;
+		private final boolean myIdVersioned;
+		private final String myOperation;
+		private final Set<String> myParameterNames;
+		private final String myQueryName;
+		private final RequestTypeEnum myRequestType;
+		private final String myResourceName;
+		private final String mySecondaryOperation;
+
+		RequestSignature(RequestDetails theRequest) {
+			myRequestType = theRequest.getRequestType();
+			myResourceName = theRequest.getResourceName();
+			myOperation = theRequest.getOperation();
+			mySecondaryOperation = theRequest.getSecondaryOperation();
+			myCompartmentName = theRequest.getCompartmentName();
+
+			IdDt id = theRequest.getId();
+			myHasId = id != null;
+			myIdEmpty = myHasId && id.isEmpty();
+			myIdVersioned = myHasId && id.hasVersionIdPart();
+
+			Map<String, String[]> parameters = theRequest.getParameters();
+			if (parameters != null) {
+				myParameterNames = new HashSet<String>(parameters.keySet());
+				String[] queryName = parameters.get(Constants.PARAM_QUERY);
+				myQueryName = queryName != null && queryName.length > 0 ? queryName[0] : null;
+			} else {
+				myParameterNames = Collections.emptySet();
+				myQueryName = null;
+			}
+
+			int hashCode = hashCode(myRequestType);
+			hashCode = 31 * hashCode + hashCode(myResourceName);
+			hashCode = 31 * hashCode + hashCode(myOperation);
+			hashCode = 31 * hashCode + hashCode(mySecondaryOperation);
+			hashCode = 31 * hashCode + hashCode(myCompartmentName);
+			hashCode = 31 * hashCode + hashCode(myQueryName);
+			hashCode = 31 * hashCode + (myHasId ? 1 : 0) + (myIdEmpty ? 2 : 0) + (myIdVersioned ? 4 : 0);
+			hashCode = 31 * hashCode + myParameterNames.hashCode();
+			myHashCode = hashCode;
+		}
+
+		@Override
+		public boolean equals(Object theObj) {
+			if (this == theObj) {
+				return true;
+			}
+			if (!(theObj instanceof RequestSignature)) {
+				return false;
+			}
+			RequestSignature other = (RequestSignature) theObj;
+			return myHashCode == other.myHashCode && myRequestType == other.myRequestType && myHasId == other.myHasId && myIdEmpty == other.myIdEmpty && myIdVersioned == other.myIdVersioned
+					&& ObjectUtil.equals(myResourceName, other.myResourceName) && ObjectUtil.equals(myOperation, other.myOperation) && ObjectUtil.equals(mySecondaryOperation, other.mySecondaryOperation)
+					&& ObjectUtil.equals(myCompartmentName, other.myCompartmentName) && ObjectUtil.equals(myQueryName, other.myQueryName) && myParameterNames.equals(other.myParameterNames);
+		}
+
+		@Override
+		public int hashCode() {
+			return myHashCode;
+		}
+
+		private static int hashCode(Object theObject) {
+			return theObject == null ? 0 : theObject.hashCode();
+		}
+
+	}
+
 }
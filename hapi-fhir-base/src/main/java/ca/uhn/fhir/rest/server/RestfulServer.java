@@ -31,13 +31,24 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.UnavailableException;
 import javax.servlet.http.HttpServlet;
@@ -65,6 +76,7 @@ import ca.uhn.fhir.rest.server.exceptions.AuthenticationException;
 import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.NotModifiedException;
+import ca.uhn.fhir.rest.server.exceptions.UnclassifiedServerFailureException;
 import ca.uhn.fhir.rest.server.interceptor.ExceptionHandlingInterceptor;
 import ca.uhn.fhir.rest.server.interceptor.IServerInterceptor;
 import ca.uhn.fhir.util.ReflectionUtil;
@@ -82,12 +94,17 @@ public class RestfulServer extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 	private AddProfileTagEnum myAddProfileTag;
 	private BundleInclusionRule myBundleInclusionRule = BundleInclusionRule.BASED_ON_INCLUDES;
+	private boolean myDecodeGzipRequests = true;
 	private boolean myDefaultPrettyPrint = false;
 	private EncodingEnum myDefaultResponseEncoding = EncodingEnum.XML;
 	private ETagSupportEnum myETagSupport = DEFAULT_ETAG_SUPPORT;
+	private int myExecutorRejectionStatusCode = Constants.STATUS_HTTP_503_SERVICE_UNAVAILABLE;
+	private final Map<ExecutionPoolEnum, ExecutorService> myExecutors = new EnumMap<ExecutionPoolEnum, ExecutorService>(ExecutionPoolEnum.class);
 	private FhirContext myFhirContext;
 	private String myImplementationDescription;
 	private final List<IServerInterceptor> myInterceptors = new ArrayList<IServerInterceptor>();
+	private long myMaxRequestSize;
+	private final List<ExecutorService> myOwnedExecutors = new ArrayList<ExecutorService>();
 	private IPagingProvider myPagingProvider;
 	private Collection<Object> myPlainProviders;
 	private Map<String, ResourceBinding> myResourceNameToProvider = new HashMap<String, ResourceBinding>();
@@ -100,6 +117,7 @@ public class RestfulServer extends HttpServlet {
 	/** This is configurable but by default we just use HAPI version */
 	private String myServerVersion = VersionUtil.getVersion();
 	private boolean myStarted;
+	private boolean myStreamSearchResults;
 	private boolean myUseBrowserFriendlyContentTypes;
 
 	/**
@@ -137,6 +155,13 @@ public class RestfulServer extends HttpServlet {
 				invokeDestroy(iResourceProvider);
 			}
 		}
+		synchronized (myExecutors) {
+			for (ExecutorService next : myOwnedExecutors) {
+				next.shutdown();
+			}
+			myOwnedExecutors.clear();
+			myExecutors.clear();
+		}
 	}
 
 	@Override
@@ -315,6 +340,31 @@ public class RestfulServer extends HttpServlet {
 		return myETagSupport;
 	}
 
+	/**
+	 * Returns the executor which processes requests in the given pool, or <code>null</code> if those requests are
+	 * processed on the servlet container's threads
+	 * 
+	 * @see #setExecutor(ExecutionPoolEnum, ExecutorService)
+	 * @since 1.1
+	 */
+	public ExecutorService getExecutor(ExecutionPoolEnum thePool) {
+		Validate.notNull(thePool, "thePool must not be null");
+		synchronized (myExecutors) {
+			return myExecutors.get(thePool);
+		}
+	}
+
+	/**
+	 * Returns the HTTP status code which is returned when a request can not be processed because the executor for its
+	 * pool is refusing new work. The default is <code>503</code> (Service Unavailable).
+	 * 
+	 * @see #setExecutorRejectionStatusCode(int)
+	 * @since 1.1
+	 */
+	public int getExecutorRejectionStatusCode() {
+		return myExecutorRejectionStatusCode;
+	}
+
 	/**
 	 * Gets the {@link FhirContext} associated with this server. For efficient processing, resource providers and plain
 	 * providers should generally use this context if one is needed, as opposed to creating their own.
@@ -334,6 +384,16 @@ public class RestfulServer extends HttpServlet {
 		return Collections.unmodifiableList(myInterceptors);
 	}
 
+	/**
+	 * Returns the maximum size in bytes of the body of a request, or <code>0</code> if there is no limit
+	 *
+	 * @see #setMaxRequestSize(long)
+	 * @since 1.1
+	 */
+	public long getMaxRequestSize() {
+		return myMaxRequestSize;
+	}
+
 	public IPagingProvider getPagingProvider() {
 		return myPagingProvider;
 	}
@@ -460,6 +520,7 @@ public class RestfulServer extends HttpServlet {
 		boolean prettyPrint = RestfulServerUtils.prettyPrintResponse(this, theRequest);
 		boolean requestIsBrowser = requestIsBrowser(theRequest.getServletRequest());
 		NarrativeModeEnum narrativeMode = RestfulServerUtils.determineNarrativeMode(theRequest);
+		Set<String> elements = RestfulServerUtils.determineElementFilter(theRequest);
 		boolean respondGzip = theRequest.isRespondGzip();
 
 		IVersionSpecificBundleFactory bundleFactory = myFhirContext.newBundleFactory();
@@ -488,7 +549,7 @@ public class RestfulServer extends HttpServlet {
 					return;
 				}
 			}
-			RestfulServerUtils.streamResponseAsBundle(this, theResponse, bundle, responseEncoding, theRequest.getFhirServerBase(), prettyPrint, narrativeMode, respondGzip, requestIsBrowser);
+			RestfulServerUtils.streamResponseAsBundle(this, theResponse, bundle, responseEncoding, theRequest.getFhirServerBase(), prettyPrint, narrativeMode, elements, respondGzip, requestIsBrowser);
 		} else {
 			IBaseResource resBundle = bundleFactory.getResourceBundle();
 			for (int i = getInterceptors().size() - 1; i >= 0; i--) {
@@ -499,7 +560,7 @@ public class RestfulServer extends HttpServlet {
 					return;
 				}
 			}
-			RestfulServerUtils.streamResponseAsResource(this, theResponse, resBundle, responseEncoding, prettyPrint, requestIsBrowser, narrativeMode, Constants.STATUS_HTTP_200_OK, theRequest.isRespondGzip(), theRequest.getFhirServerBase(), false);
+			RestfulServerUtils.streamResponseAsResource(this, theResponse, resBundle, bundleFactory.getStreamedEntries(), responseEncoding, prettyPrint, requestIsBrowser, narrativeMode, elements, Constants.STATUS_HTTP_200_OK, theRequest.isRespondGzip(), theRequest.getFhirServerBase(), false);
 		}
 	}
 
@@ -697,50 +758,48 @@ public class RestfulServer extends HttpServlet {
 				}
 			}
 
-			resourceMethod.invokeServer(this, requestDetails);
-
-		} catch (NotModifiedException e) {
-
-			for (int i = getInterceptors().size() - 1; i >= 0; i--) {
-				IServerInterceptor next = getInterceptors().get(i);
-				if (!next.handleException(requestDetails, e, theRequest, theResponse)) {
-					ourLog.debug("Interceptor {} returned false, not continuing processing");
-					return;
-				}
-			}
-			writeExceptionToResponse(theResponse, e);
-
-		} catch (AuthenticationException e) {
-
-			for (int i = getInterceptors().size() - 1; i >= 0; i--) {
-				IServerInterceptor next = getInterceptors().get(i);
-				if (!next.handleException(requestDetails, e, theRequest, theResponse)) {
-					ourLog.debug("Interceptor {} returned false, not continuing processing");
-					return;
+			ExecutorService executor = null;
+			if (theRequest.isAsyncSupported()) {
+				ExecutionPoolEnum pool = ExecutionPoolEnum.forMethod(resourceMethod);
+				if (pool != null) {
+					executor = getExecutor(pool);
 				}
 			}
 
-			if (requestIsBrowser) {
-				// if request is coming from a browser, prompt the user to enter login credentials
-				theResponse.setHeader("WWW-Authenticate", "BASIC realm=\"FHIR\"");
+			if (executor != null) {
+				invokeServerAsync(executor, resourceMethod, requestDetails, requestIsBrowser);
+			} else {
+				resourceMethod.invokeServer(this, requestDetails);
 			}
-			writeExceptionToResponse(theResponse, e);
 
 		} catch (Throwable e) {
+			handleRequestException(requestDetails, e, theRequest, theResponse, requestIsBrowser);
+		}
+	}
 
-			/*
-			 * We have caught an exception while handling an incoming server request. Start by notifying the interceptors..
-			 */
-			for (int i = getInterceptors().size() - 1; i >= 0; i--) {
-				IServerInterceptor next = getInterceptors().get(i);
-				if (!next.handleException(requestDetails, e, theRequest, theResponse)) {
-					ourLog.debug("Interceptor {} returned false, not continuing processing");
-					return;
-				}
+	private void handleRequestException(RequestDetails theRequestDetails, Throwable theException, HttpServletRequest theRequest, HttpServletResponse theResponse, boolean theRequestIsBrowser) throws ServletException, IOException {
+
+		/*
+		 * We have caught an exception while handling an incoming server request. Start by notifying the interceptors..
+		 */
+		for (int i = getInterceptors().size() - 1; i >= 0; i--) {
+			IServerInterceptor next = getInterceptors().get(i);
+			if (!next.handleException(theRequestDetails, theException, theRequest, theResponse)) {
+				ourLog.debug("Interceptor {} returned false, not continuing processing");
+				return;
 			}
+		}
 
-			new ExceptionHandlingInterceptor().handleException(requestDetails, e, theRequest, theResponse);
-			
+		if (theException instanceof NotModifiedException) {
+			writeExceptionToResponse(theResponse, (NotModifiedException) theException);
+		} else if (theException instanceof AuthenticationException) {
+			if (theRequestIsBrowser) {
+				// if request is coming from a browser, prompt the user to enter login credentials
+				theResponse.setHeader("WWW-Authenticate", "BASIC realm=\"FHIR\"");
+			}
+			writeExceptionToResponse(theResponse, (AuthenticationException) theException);
+		} else {
+			new ExceptionHandlingInterceptor().handleException(theRequestDetails, theException, theRequest, theResponse);
 		}
 	}
 
@@ -820,6 +879,45 @@ public class RestfulServer extends HttpServlet {
 		// nothing by default
 	}
 
+	/**
+	 * Invokes the method on a thread of the given executor, leaving the servlet container's thread free to process
+	 * other requests. If the executor refuses the work, the request fails straight away with
+	 * {@link #getExecutorRejectionStatusCode() the rejection status code}.
+	 */
+	private void invokeServerAsync(ExecutorService theExecutor, final BaseMethodBinding<?> theMethod, final RequestDetails theRequestDetails, final boolean theRequestIsBrowser) throws ServletException, IOException {
+		final HttpServletRequest request = theRequestDetails.getServletRequest();
+		final HttpServletResponse response = theRequestDetails.getServletResponse();
+		final AsyncContext asyncContext = request.startAsync(request, response);
+		asyncContext.setTimeout(0);
+
+		try {
+			theExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						theMethod.invokeServer(RestfulServer.this, theRequestDetails);
+					} catch (Throwable e) {
+						try {
+							handleRequestException(theRequestDetails, e, request, response, theRequestIsBrowser);
+						} catch (Throwable e1) {
+							ourLog.error("Failed to write the response for a failed request", e1);
+						}
+					} finally {
+						asyncContext.complete();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			ourLog.debug("Executor rejected request, returning HTTP {}", myExecutorRejectionStatusCode);
+			try {
+				String message = getFhirContext().getLocalizer().getMessage(RestfulServer.class, "executorRejected");
+				handleRequestException(theRequestDetails, new UnclassifiedServerFailureException(myExecutorRejectionStatusCode, message), request, response, theRequestIsBrowser);
+			} finally {
+				asyncContext.complete();
+			}
+		}
+	}
+
 	private void invokeDestroy(Object theProvider) {
 		Class<?> clazz = theProvider.getClass();
 		invokeDestroy(theProvider, clazz);
@@ -859,6 +957,27 @@ public class RestfulServer extends HttpServlet {
 		return myDefaultPrettyPrint;
 	}
 
+	/**
+	 * Should the server decode request bodies which are sent with a <code>Content-Encoding: gzip</code> header? The
+	 * default is <code>true</code>
+	 *
+	 * @since 1.1
+	 */
+	public boolean isDecodeGzipRequests() {
+		return myDecodeGzipRequests;
+	}
+
+	/**
+	 * Should the entries of search results be encoded as they are loaded, instead of after the whole page has been
+	 * loaded? The default is <code>false</code>
+	 *
+	 * @see #setStreamSearchResults(boolean)
+	 * @since 1.1
+	 */
+	public boolean isStreamSearchResults() {
+		return myStreamSearchResults;
+	}
+
 	public boolean isUseBrowserFriendlyContentTypes() {
 		return myUseBrowserFriendlyContentTypes;
 	}
@@ -908,6 +1027,17 @@ public class RestfulServer extends HttpServlet {
 		myDefaultPrettyPrint = theDefaultPrettyPrint;
 	}
 
+	/**
+	 * Should the server decode request bodies which are sent with a <code>Content-Encoding: gzip</code> header? The
+	 * body is decompressed as it is parsed, so the compressed body is never held in memory. The default is
+	 * <code>true</code>
+	 *
+	 * @since 1.1
+	 */
+	public void setDecodeGzipRequests(boolean theDecodeGzipRequests) {
+		myDecodeGzipRequests = theDecodeGzipRequests;
+	}
+
 	/**
 	 * Sets the default encoding to return (XML/JSON) if an incoming request does not specify a preference (either with
 	 * the <code>_format</code> URL parameter, or with an <code>Accept</code> header in the request. The default is
@@ -932,6 +1062,90 @@ public class RestfulServer extends HttpServlet {
 		myETagSupport = theETagSupport;
 	}
 
+	/**
+	 * Sets the executor which processes requests in the given pool. The method which handles each of these requests
+	 * (along with the encoding of its response) is invoked on a thread of the executor, so that the servlet container's
+	 * threads are not held while it runs, and slow requests in one pool (e.g. searches) do not hold up the requests in
+	 * another (e.g. reads). If the executor rejects a request (e.g. because its queue is full), the request fails
+	 * straight away with {@link #getExecutorRejectionStatusCode() the rejection status code}.
+	 * <p>
+	 * This uses Servlet 3.0 asynchronous processing, so this servlet (and any filters in front of it) must be declared
+	 * with <code>&lt;async-supported&gt;true&lt;/async-supported&gt;</code>, otherwise requests continue to be processed
+	 * on the servlet container's threads. Requests for the server's conformance statement and for further pages of
+	 * results are always processed on the servlet container's threads.
+	 * </p>
+	 * <p>
+	 * An executor which is set here is not shut down by the server.
+	 * </p>
+	 * 
+	 * @param thePool
+	 *            The pool
+	 * @param theExecutor
+	 *            The executor, or <code>null</code> to process requests in the pool on the servlet container's threads
+	 *            (which is the default)
+	 * @since 1.1
+	 */
+	public void setExecutor(ExecutionPoolEnum thePool, ExecutorService theExecutor) {
+		Validate.notNull(thePool, "thePool must not be null");
+		synchronized (myExecutors) {
+			ExecutorService previous;
+			if (theExecutor != null) {
+				previous = myExecutors.put(thePool, theExecutor);
+			} else {
+				previous = myExecutors.remove(thePool);
+			}
+			if (previous != null && myOwnedExecutors.remove(previous)) {
+				previous.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Creates an executor with a fixed number of threads and a bounded queue to process requests in the given pool. Once
+	 * all of the threads are busy and the queue is full, further requests in the pool fail straight away with
+	 * {@link #getExecutorRejectionStatusCode() the rejection status code}. The executor is shut down when this servlet
+	 * is destroyed. See {@link #setExecutor(ExecutionPoolEnum, ExecutorService)} for more information.
+	 * 
+	 * @param thePool
+	 *            The pool
+	 * @param theThreadCount
+	 *            The number of threads which process requests in the pool
+	 * @param theQueueSize
+	 *            The number of requests which may wait for a thread, which may be <code>0</code>
+	 * @since 1.1
+	 */
+	public void setExecutor(ExecutionPoolEnum thePool, int theThreadCount, int theQueueSize) {
+		Validate.notNull(thePool, "thePool must not be null");
+		Validate.isTrue(theThreadCount > 0, "theThreadCount must be greater than 0");
+		Validate.isTrue(theQueueSize >= 0, "theQueueSize must not be negative");
+
+		BlockingQueue<Runnable> queue;
+		if (theQueueSize > 0) {
+			queue = new ArrayBlockingQueue<Runnable>(theQueueSize);
+		} else {
+			queue = new SynchronousQueue<Runnable>();
+		}
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(theThreadCount, theThreadCount, 0L, TimeUnit.MILLISECONDS, queue, new ExecutorThreadFactory(thePool));
+
+		synchronized (myExecutors) {
+			setExecutor(thePool, executor);
+			myOwnedExecutors.add(executor);
+		}
+	}
+
+	/**
+	 * Sets the HTTP status code which is returned when a request can not be processed because the executor for its pool
+	 * is refusing new work, typically <code>503</code> (Service Unavailable, which is the default) or <code>429</code>
+	 * (Too Many Requests).
+	 * 
+	 * @see #setExecutor(ExecutionPoolEnum, ExecutorService)
+	 * @since 1.1
+	 */
+	public void setExecutorRejectionStatusCode(int theExecutorRejectionStatusCode) {
+		Validate.isTrue(theExecutorRejectionStatusCode >= 400 && theExecutorRejectionStatusCode < 600, "theExecutorRejectionStatusCode must be an HTTP error status code");
+		myExecutorRejectionStatusCode = theExecutorRejectionStatusCode;
+	}
+
 	public void setFhirContext(FhirContext theFhirContext) {
 		Validate.notNull(theFhirContext, "FhirContext must not be null");
 		myFhirContext = theFhirContext;
@@ -970,6 +1184,18 @@ public class RestfulServer extends HttpServlet {
 	/**
 	 * Sets the paging provider to use, or <code>null</code> to use no paging (which is the default)
 	 */
+	/**
+	 * Sets the maximum size in bytes of the body of a request. Requests with a larger body (after any gzip decoding) are
+	 * rejected with an HTTP 413 response. The limit is checked against the <code>Content-Length</code> header if one is
+	 * present, and is otherwise enforced as the body is read, so chunked requests are never read past the limit. The
+	 * default is <code>0</code>, which means that there is no limit.
+	 *
+	 * @since 1.1
+	 */
+	public void setMaxRequestSize(long theMaxRequestSize) {
+		myMaxRequestSize = theMaxRequestSize;
+	}
+
 	public void setPagingProvider(IPagingProvider thePagingProvider) {
 		myPagingProvider = thePagingProvider;
 	}
@@ -1060,6 +1286,29 @@ public class RestfulServer extends HttpServlet {
 		myServerVersion = theServerVersion;
 	}
 
+	/**
+	 * Should the entries of search results (and of any other bundle which is built from an {@link IBundleProvider},
+	 * such as history and paging results) be encoded as they are loaded, instead of after the whole page has been
+	 * loaded? When enabled, the bundle is written to the response as soon as the first resources of the page have been
+	 * loaded, and the rest are loaded from the bundle provider a batch at a time as they are written, so that large
+	 * pages are not held in memory. Resources included using <code>_include</code> are written after all of the
+	 * matches.
+	 * <p>
+	 * Note that when this is enabled, {@link IServerInterceptor#outgoingResponse(RequestDetails, IBaseResource, HttpServletRequest, HttpServletResponse) interceptors}
+	 * are passed the bundle without its entries, and that a failure while loading a later batch can not be reported to
+	 * the client with an error response since the response has already been started. This setting is only supported by
+	 * DSTU2 servers.
+	 * </p>
+	 * <p>
+	 * The default is <code>false</code>
+	 * </p>
+	 *
+	 * @since 1.1
+	 */
+	public void setStreamSearchResults(boolean theStreamSearchResults) {
+		myStreamSearchResults = theStreamSearchResults;
+	}
+
 	/**
 	 * If set to <code>true</code> (default is false), the server will use browser friendly content-types (instead of
 	 * standard FHIR ones) when it detects that the request is coming from a browser instead of a FHIR
@@ -1085,6 +1334,25 @@ public class RestfulServer extends HttpServlet {
 		return nextString.length() > 0 && (nextString.charAt(0) == '_' || nextString.charAt(0) == '$');
 	}
 
+	/**
+	 * Names the threads of the executors created by {@link RestfulServer#setExecutor(ExecutionPoolEnum, int, int)}
+	 */
+	private static class ExecutorThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger myThreadCount = new AtomicInteger();
+		private final String myThreadNamePrefix;
+
+		public ExecutorThreadFactory(ExecutionPoolEnum thePool) {
+			myThreadNamePrefix = "hapi-fhir-server-" + thePool.name().toLowerCase() + "-";
+		}
+
+		@Override
+		public Thread newThread(Runnable theRunnable) {
+			return new Thread(theRunnable, myThreadNamePrefix + myThreadCount.incrementAndGet());
+		}
+
+	}
+
     public enum NarrativeModeEnum {
 		NORMAL, ONLY, SUPPRESS;
 
@@ -23,12 +23,15 @@ package ca.uhn.fhir.rest.server;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.net.URLEncoder;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -43,7 +46,9 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.client.utils.DateUtils;
 import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseBinary;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 
@@ -128,6 +133,50 @@ public class RestfulServerUtils {
 		}
 	}
 
+	/**
+	 * Returns the paths of the elements which should be encoded in the response, as requested by the
+	 * <code>_elements</code> and <code>_summary</code> parameters, or <code>null</code> if all elements should be
+	 * 
+	 * @see IParser#setElementFilter(Set)
+	 */
+	public static Set<String> determineElementFilter(RequestDetails theRequest) {
+		Map<String, String[]> requestParams = theRequest.getParameters();
+		Set<String> retVal = null;
+
+		String[] summary = requestParams.get(Constants.PARAM_SUMMARY);
+		if (summary != null && summary.length > 0) {
+			if (Constants.PARAM_SUMMARY_TEXT.equals(summary[0])) {
+				retVal = new HashSet<String>();
+				retVal.add("text");
+			} else if (Constants.PARAM_SUMMARY_COUNT.equals(summary[0])) {
+				retVal = new HashSet<String>();
+				retVal.add("Bundle.type");
+				retVal.add("Bundle.total");
+				retVal.add("Bundle.link");
+			}
+		}
+
+		String[] elements = requestParams.get(Constants.PARAM_ELEMENTS);
+		if (elements != null) {
+			for (String nextValue : elements) {
+				for (String next : nextValue.split(",")) {
+					if (isNotBlank(next)) {
+						if (retVal == null) {
+							retVal = new HashSet<String>();
+						}
+						retVal.add(next.trim());
+					}
+				}
+			}
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Determines the narrative mode from the <code>_narrative</code> parameter. If that is not present, a
+	 * <code>_summary</code> value of <code>true</code> or <code>data</code> suppresses narratives.
+	 */
 	public static RestfulServer.NarrativeModeEnum determineNarrativeMode(RequestDetails theRequest) {
 		Map<String, String[]> requestParams = theRequest.getParameters();
 		String[] narrative = requestParams.get(Constants.PARAM_NARRATIVE);
@@ -141,7 +190,12 @@ public class RestfulServerUtils {
 			}
 		}
 		if (narrativeMode == null) {
-			narrativeMode = RestfulServer.NarrativeModeEnum.NORMAL;
+			String[] summary = requestParams.get(Constants.PARAM_SUMMARY);
+			if (summary != null && summary.length > 0 && (Constants.PARAM_SUMMARY_TRUE.equals(summary[0]) || Constants.PARAM_SUMMARY_DATA.equals(summary[0]))) {
+				narrativeMode = RestfulServer.NarrativeModeEnum.SUPPRESS;
+			} else {
+				narrativeMode = RestfulServer.NarrativeModeEnum.NORMAL;
+			}
 		}
 		return narrativeMode;
 	}
@@ -257,17 +311,40 @@ public class RestfulServerUtils {
 	}
 
 	public static IParser getNewParser(FhirContext theContext, EncodingEnum theResponseEncoding, boolean thePrettyPrint, RestfulServer.NarrativeModeEnum theNarrativeMode) {
+		return getNewParser(theContext, theResponseEncoding, thePrettyPrint, theNarrativeMode, null);
+	}
+
+	/**
+	 * @param theElements
+	 *           The elements to encode (see {@link #determineElementFilter(RequestDetails)}), or <code>null</code> for
+	 *           all elements
+	 */
+	public static IParser getNewParser(FhirContext theContext, EncodingEnum theResponseEncoding, boolean thePrettyPrint, RestfulServer.NarrativeModeEnum theNarrativeMode, Set<String> theElements) {
 		IParser parser;
 		switch (theResponseEncoding) {
 		case JSON:
 			parser = theContext.newJsonParser();
 			break;
+		case BINARY:
+			parser = theContext.newBinaryParser();
+			break;
 		case XML:
 		default:
 			parser = theContext.newXmlParser();
 			break;
 		}
-		return parser.setPrettyPrint(thePrettyPrint).setSuppressNarratives(theNarrativeMode == RestfulServer.NarrativeModeEnum.SUPPRESS);
+		return parser.setPrettyPrint(thePrettyPrint).setSuppressNarratives(theNarrativeMode == RestfulServer.NarrativeModeEnum.SUPPRESS).setElementFilter(theElements);
+	}
+
+	static OutputStream getOutputStream(HttpServletResponse theHttpResponse, boolean theRespondGzip) throws IOException {
+		OutputStream outputStream;
+		if (theRespondGzip) {
+			theHttpResponse.addHeader(Constants.HEADER_CONTENT_ENCODING, Constants.ENCODING_GZIP);
+			outputStream = new GZIPOutputStream(theHttpResponse.getOutputStream());
+		} else {
+			outputStream = theHttpResponse.getOutputStream();
+		}
+		return outputStream;
 	}
 
 	static Writer getWriter(HttpServletResponse theHttpResponse, boolean theRespondGzip) throws UnsupportedEncodingException, IOException {
@@ -308,6 +385,11 @@ public class RestfulServerUtils {
 
 	public static void streamResponseAsBundle(RestfulServer theServer, HttpServletResponse theHttpResponse, Bundle bundle, EncodingEnum theResponseEncoding, String theServerBase,
 			boolean thePrettyPrint, RestfulServer.NarrativeModeEnum theNarrativeMode, boolean theRespondGzip, boolean theRequestIsBrowser) throws IOException {
+		streamResponseAsBundle(theServer, theHttpResponse, bundle, theResponseEncoding, theServerBase, thePrettyPrint, theNarrativeMode, null, theRespondGzip, theRequestIsBrowser);
+	}
+
+	public static void streamResponseAsBundle(RestfulServer theServer, HttpServletResponse theHttpResponse, Bundle bundle, EncodingEnum theResponseEncoding, String theServerBase,
+			boolean thePrettyPrint, RestfulServer.NarrativeModeEnum theNarrativeMode, Set<String> theElements, boolean theRespondGzip, boolean theRequestIsBrowser) throws IOException {
 		assert !theServerBase.endsWith("/");
 
 		theHttpResponse.setStatus(200);
@@ -322,11 +404,20 @@ public class RestfulServerUtils {
 			theHttpResponse.setContentType(responseEncoding.getBundleContentType());
 		}
 
-		theHttpResponse.setCharacterEncoding(Constants.CHARSETNAME_UTF_8);
+		boolean binary = responseEncoding == EncodingEnum.BINARY && theNarrativeMode != RestfulServer.NarrativeModeEnum.ONLY;
+		if (!binary) {
+			theHttpResponse.setCharacterEncoding(Constants.CHARSETNAME_UTF_8);
+		}
 
 		theServer.addHeadersToResponse(theHttpResponse);
 
-		Writer writer = RestfulServerUtils.getWriter(theHttpResponse, theRespondGzip);
+		Writer writer;
+		if (binary) {
+			// The response has no character encoding, the binary encoding maps each byte to one character
+			writer = new OutputStreamWriter(getOutputStream(theHttpResponse, theRespondGzip), responseEncoding.getCharset());
+		} else {
+			writer = RestfulServerUtils.getWriter(theHttpResponse, theRespondGzip);
+		}
 		try {
 			if (theNarrativeMode == RestfulServer.NarrativeModeEnum.ONLY) {
 				for (IResource next : bundle.toListOfResources()) {
@@ -334,7 +425,7 @@ public class RestfulServerUtils {
 					writer.append("<hr/>");
 				}
 			} else {
-				IParser parser = RestfulServerUtils.getNewParser(theServer.getFhirContext(), responseEncoding, thePrettyPrint, theNarrativeMode);
+				IParser parser = RestfulServerUtils.getNewParser(theServer.getFhirContext(), responseEncoding, thePrettyPrint, theNarrativeMode, theElements);
 				parser.setServerBaseUrl(theServerBase);
 				parser.encodeBundleToWriter(bundle, writer);
 			}
@@ -345,6 +436,25 @@ public class RestfulServerUtils {
 
 	public static void streamResponseAsResource(RestfulServer theServer, HttpServletResponse theHttpResponse, IBaseResource theResource, EncodingEnum theResponseEncoding, boolean thePrettyPrint,
 			boolean theRequestIsBrowser, RestfulServer.NarrativeModeEnum theNarrativeMode, int stausCode, boolean theRespondGzip, String theServerBase, boolean theAddContentLocationHeader) throws IOException {
+		streamResponseAsResource(theServer, theHttpResponse, theResource, theResponseEncoding, thePrettyPrint, theRequestIsBrowser, theNarrativeMode, null, stausCode, theRespondGzip, theServerBase,
+				theAddContentLocationHeader);
+	}
+
+	public static void streamResponseAsResource(RestfulServer theServer, HttpServletResponse theHttpResponse, IBaseResource theResource, EncodingEnum theResponseEncoding, boolean thePrettyPrint,
+			boolean theRequestIsBrowser, RestfulServer.NarrativeModeEnum theNarrativeMode, Set<String> theElements, int stausCode, boolean theRespondGzip, String theServerBase,
+			boolean theAddContentLocationHeader) throws IOException {
+		streamResponseAsResource(theServer, theHttpResponse, theResource, null, theResponseEncoding, thePrettyPrint, theRequestIsBrowser, theNarrativeMode, theElements, stausCode, theRespondGzip,
+				theServerBase, theAddContentLocationHeader);
+	}
+
+	/**
+	 * Streams a resource as the response. If <code>theBundleEntries</code> is not <code>null</code>, the resource must be
+	 * a bundle without entries, and each of the given entries is encoded into the bundle as it is returned by the
+	 * iterator (see {@link IVersionSpecificBundleFactory#getStreamedEntries()}).
+	 */
+	public static void streamResponseAsResource(RestfulServer theServer, HttpServletResponse theHttpResponse, IBaseResource theResource, Iterator<? extends IBase> theBundleEntries,
+			EncodingEnum theResponseEncoding, boolean thePrettyPrint, boolean theRequestIsBrowser, RestfulServer.NarrativeModeEnum theNarrativeMode, Set<String> theElements, int stausCode,
+			boolean theRespondGzip, String theServerBase, boolean theAddContentLocationHeader) throws IOException {
 		theHttpResponse.setStatus(stausCode);
 
 		if (theAddContentLocationHeader && theResource.getIdElement() != null && theResource.getIdElement().hasIdPart() && isNotBlank(theServerBase)) {
@@ -397,7 +507,9 @@ public class RestfulServerUtils {
 		} else {
 			theHttpResponse.setContentType(responseEncoding.getResourceContentType());
 		}
-		theHttpResponse.setCharacterEncoding(Constants.CHARSETNAME_UTF_8);
+		if (responseEncoding != EncodingEnum.BINARY || theNarrativeMode == RestfulServer.NarrativeModeEnum.ONLY) {
+			theHttpResponse.setCharacterEncoding(Constants.CHARSETNAME_UTF_8);
+		}
 
 		theServer.addHeadersToResponse(theHttpResponse);
 
@@ -422,17 +534,31 @@ public class RestfulServerUtils {
 			}
 		}
 
-		Writer writer = getWriter(theHttpResponse, theRespondGzip);
-		try {
-			if (theNarrativeMode == RestfulServer.NarrativeModeEnum.ONLY && theResource instanceof IResource) {
+		if (theNarrativeMode == RestfulServer.NarrativeModeEnum.ONLY && theResource instanceof IResource) {
+			Writer writer = getWriter(theHttpResponse, theRespondGzip);
+			try {
 				writer.append(((IResource)theResource).getText().getDiv().getValueAsString());
-			} else {
-				IParser parser = getNewParser(theServer.getFhirContext(), responseEncoding, thePrettyPrint, theNarrativeMode);
+			} finally {
+				writer.close();
+			}
+		} else if (theBundleEntries != null) {
+			Writer writer = new OutputStreamWriter(getOutputStream(theHttpResponse, theRespondGzip), responseEncoding.getCharset());
+			try {
+				IParser parser = getNewParser(theServer.getFhirContext(), responseEncoding, thePrettyPrint, theNarrativeMode, theElements);
 				parser.setServerBaseUrl(theServerBase);
-				parser.encodeResourceToWriter(theResource, writer);
+				parser.encodeBundleEntriesToWriter((IBaseBundle) theResource, theBundleEntries, writer);
+			} finally {
+				writer.close();
+			}
+		} else {
+			OutputStream outputStream = getOutputStream(theHttpResponse, theRespondGzip);
+			try {
+				IParser parser = getNewParser(theServer.getFhirContext(), responseEncoding, thePrettyPrint, theNarrativeMode, theElements);
+				parser.setServerBaseUrl(theServerBase);
+				parser.encodeResourceToOutputStream(theResource, outputStream);
+			} finally {
+				outputStream.close();
 			}
-		} finally {
-			writer.close();
 		}
 	}
 
@@ -195,6 +195,13 @@ public class ResponseHighlighterInterceptor extends InterceptorAdapter {
 			responseEncoding = theRequestDetails.getServer().getDefaultResponseEncoding();
 		}
 
+		/*
+		 * The binary encoding can't be shown as text
+		 */
+		if (responseEncoding == EncodingEnum.BINARY) {
+			return super.outgoingResponse(theRequestDetails, theResponseObject, theServletRequest, theServletResponse);
+		}
+
 		IParser p = responseEncoding.newParser(theRequestDetails.getServer().getFhirContext());
 		p.setPrettyPrint(prettyPrint);
 
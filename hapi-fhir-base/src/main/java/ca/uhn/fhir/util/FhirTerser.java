@@ -50,6 +50,8 @@ import ca.uhn.fhir.parser.DataFormatException;
 
 public class FhirTerser {
 
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirTerser.class);
+
 	private FhirContext myContext;
 
 	public FhirTerser(FhirContext theContext) {
@@ -143,6 +145,90 @@ public class FhirTerser {
         return retVal;
     }
 
+	/**
+	 * Compiles a path (e.g. <code>Patient.name.family</code>) so that it can be evaluated repeatedly against resources
+	 * of the given type without being parsed and resolved each time. The path may be a union of several paths
+	 * separated by <code>|</code>, as is used by search parameters.
+	 *
+	 * @param theResourceType
+	 *            The resource type the path will be evaluated against
+	 * @param thePath
+	 *            The path
+	 * @return The compiled path, which does not hold a reference to this terser and may be cached
+	 * @throws DataFormatException
+	 *             If the path names a child which does not exist
+	 * @throws ConfigurationException
+	 *             If the path is not valid
+	 */
+	public TerserPath compile(Class<? extends IBaseResource> theResourceType, String thePath) throws DataFormatException {
+		Validate.notNull(theResourceType, "theResourceType must not be null");
+		Validate.notBlank(thePath, "thePath must not be blank");
+
+		RuntimeResourceDefinition def = myContext.getResourceDefinition(theResourceType);
+		String[] paths = thePath.split("\\|");
+		TerserPath.Step[][] steps = new TerserPath.Step[paths.length][];
+		for (int i = 0; i < paths.length; i++) {
+			steps[i] = compileSteps(def, thePath, paths[i].trim());
+		}
+
+		return new TerserPath(theResourceType, thePath, steps);
+	}
+
+	/**
+	 * Compiles a path in the same way as {@link #compile(Class, String)}, except that any of the paths in a union
+	 * which are not valid for the resource type are logged and left out, instead of causing the whole path to fail.
+	 * This is used for search parameter paths, which sometimes name elements that the resource type does not have.
+	 * Values are only ever found for the valid paths, so the compiled path can still be cached.
+	 *
+	 * @param theResourceType
+	 *            The resource type the path will be evaluated against
+	 * @param thePath
+	 *            The path
+	 * @return The compiled path, which does not hold a reference to this terser and may be cached
+	 */
+	public TerserPath compileValidPaths(Class<? extends IBaseResource> theResourceType, String thePath) {
+		Validate.notNull(theResourceType, "theResourceType must not be null");
+		Validate.notBlank(thePath, "thePath must not be blank");
+
+		RuntimeResourceDefinition def = myContext.getResourceDefinition(theResourceType);
+		List<TerserPath.Step[]> steps = new ArrayList<TerserPath.Step[]>();
+		for (String nextPath : thePath.split("\\|")) {
+			String nextPathTrimmed = nextPath.trim();
+			try {
+				steps.add(compileSteps(def, thePath, nextPathTrimmed));
+			} catch (ConfigurationException e) {
+				ourLog.warn("Ignoring path[{}] for resource type[{}]: {}", new Object[] { nextPathTrimmed, def.getName(), e.getMessage() });
+			} catch (DataFormatException e) {
+				ourLog.warn("Ignoring path[{}] for resource type[{}]: {}", new Object[] { nextPathTrimmed, def.getName(), e.getMessage() });
+			}
+		}
+
+		return new TerserPath(theResourceType, thePath, steps.toArray(new TerserPath.Step[steps.size()][]));
+	}
+
+	private TerserPath.Step[] compileSteps(RuntimeResourceDefinition theDef, String theFullPath, String thePath) {
+		String[] parts = thePath.split("\\.");
+		if (parts.length < 2) {
+			throw new ConfigurationException("Invalid path: " + theFullPath);
+		}
+
+		TerserPath.Step[] retVal = new TerserPath.Step[parts.length - 1];
+		BaseRuntimeElementCompositeDefinition<?> currentDef = theDef;
+		for (int j = 1; j < parts.length; j++) {
+			String name = parts[j];
+			BaseRuntimeChildDefinition nextDef = currentDef.getChildByNameOrThrowDataFormatException(name);
+			retVal[j - 1] = new TerserPath.Step(nextDef, name);
+			if (j < parts.length - 1) {
+				BaseRuntimeElementDefinition<?> childDef = nextDef.getChildByName(name);
+				if (!(childDef instanceof BaseRuntimeElementCompositeDefinition)) {
+					throw new ConfigurationException("Invalid path: " + theFullPath + " - Element " + name + " has no children");
+				}
+				currentDef = (BaseRuntimeElementCompositeDefinition<?>) childDef;
+			}
+		}
+		return retVal;
+	}
+
     private BaseRuntimeChildDefinition getDefinition(BaseRuntimeElementCompositeDefinition<?> theCurrentDef, List<String> theSubList) {
 		BaseRuntimeChildDefinition nextDef = theCurrentDef.getChildByNameOrThrowDataFormatException(theSubList.get(0));
 
@@ -0,0 +1,149 @@
+package ca.uhn.fhir.util;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.RuntimeChildChoiceDefinition;
+
+/**
+ * A path expression (e.g. <code>Patient.name.family</code>) which has been resolved against the model of a resource
+ * type by {@link FhirTerser#compile(Class, String)}. The child definitions along the path are looked up once when the
+ * path is compiled, so evaluating it only reads the values of the children.
+ * <p>
+ * A compiled path may be a union of several paths separated by <code>|</code>, as is used by search parameters. The
+ * values found by each of the paths are returned in order.
+ * </p>
+ * <p>
+ * Thread safety: Compiled paths are immutable and may be shared between threads
+ * </p>
+ */
+public class TerserPath {
+
+	private final String myPath;
+	private final Class<? extends IBaseResource> myResourceType;
+	private final Step[][] mySteps;
+
+	TerserPath(Class<? extends IBaseResource> theResourceType, String thePath, Step[][] theSteps) {
+		myResourceType = theResourceType;
+		myPath = thePath;
+		mySteps = theSteps;
+	}
+
+	private <T> void addValues(IBase theElement, Step[] theSteps, int theIndex, Class<T> theWantedClass, List<T> theValues) {
+		Step step = theSteps[theIndex];
+		List<? extends IBase> values = step.myChild.getAccessor().getValues(theElement);
+		boolean last = theIndex == theSteps.length - 1;
+		for (IBase next : values) {
+			if (next == null) {
+				continue;
+			}
+			if (step.myChoiceName != null && !step.myChoiceName.equals(step.myChild.getChildNameByDatatype(next.getClass()))) {
+				continue;
+			}
+			if (last) {
+				if (theWantedClass.isInstance(next)) {
+					theValues.add(theWantedClass.cast(next));
+				}
+			} else {
+				addValues(next, theSteps, theIndex + 1, theWantedClass, theValues);
+			}
+		}
+	}
+
+	/**
+	 * Returns the path which was compiled
+	 */
+	public String getPath() {
+		return myPath;
+	}
+
+	/**
+	 * Returns the resource type the path was compiled for
+	 */
+	public Class<? extends IBaseResource> getResourceType() {
+		return myResourceType;
+	}
+
+	/**
+	 * Returns the values found at this path in the given resource
+	 *
+	 * @param theResource
+	 *            The resource, which must be an instance of the type the path was compiled for
+	 */
+	public List<Object> getValues(IBaseResource theResource) {
+		return getValues(theResource, Object.class);
+	}
+
+	/**
+	 * Returns the values found at this path in the given resource which are instances of the given type
+	 *
+	 * @param theResource
+	 *            The resource, which must be an instance of the type the path was compiled for
+	 * @param theWantedClass
+	 *            The type of values to return
+	 */
+	public <T> List<T> getValues(IBaseResource theResource, Class<T> theWantedClass) {
+		Validate.notNull(theResource, "theResource must not be null");
+		Validate.notNull(theWantedClass, "theWantedClass must not be null");
+		if (!myResourceType.isInstance(theResource)) {
+			throw new IllegalArgumentException("Path " + myPath + " was compiled for " + myResourceType.getName() + " and can not be used on " + theResource.getClass().getName());
+		}
+
+		List<T> retVal = new ArrayList<T>();
+		for (Step[] nextSteps : mySteps) {
+			addValues(theResource, nextSteps, 0, theWantedClass, retVal);
+		}
+		return retVal;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + myPath + "]";
+	}
+
+	static class Step {
+		private final BaseRuntimeChildDefinition myChild;
+		private final String myChoiceName;
+
+		/**
+		 * @param theChild
+		 *            The child to read
+		 * @param theName
+		 *            The name used in the path for the child
+		 */
+		Step(BaseRuntimeChildDefinition theChild, String theName) {
+			myChild = theChild;
+			if (theChild instanceof RuntimeChildChoiceDefinition && !theName.endsWith("[x]")) {
+				myChoiceName = theName;
+			} else {
+				myChoiceName = null;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+package ca.uhn.fhir.benchmark;
+
+/*
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ca.uhn.fhir.util.VersionUtil;
+
+/**
+ * Entry point of the benchmarks JAR. Accepts the same arguments as the JMH runner, but unless told otherwise writes
+ * the results as JSON to a file named after the HAPI FHIR version being measured, so that the results of different
+ * versions can be compared. For example:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ParserBenchmark
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] theArgs) throws Exception {
+		List<String> args = new ArrayList<String>(Arrays.asList(theArgs));
+		if (!args.contains("-rf")) {
+			args.add("-rf");
+			args.add("json");
+		}
+		if (!args.contains("-rff")) {
+			args.add("-rff");
+			args.add("hapi-fhir-" + VersionUtil.getVersion() + "-jmh.json");
+		}
+		org.openjdk.jmh.Main.main(args.toArray(new String[args.size()]));
+	}
+
+}
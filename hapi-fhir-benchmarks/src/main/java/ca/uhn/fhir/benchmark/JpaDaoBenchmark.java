@@ -0,0 +1,121 @@
+package ca.uhn.fhir.benchmark;
+
+/*
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
+import ca.uhn.fhir.model.dstu2.resource.Organization;
+import ca.uhn.fhir.model.dstu2.resource.Patient;
+import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+
+/**
+ * Creates, reads and searches for patients using the JPA server DAOs, against an in-memory Derby database. Each
+ * benchmark runs in its own JVM, so the patients created by the create benchmark do not affect the other benchmarks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JpaDaoBenchmark {
+
+	/**
+	 * The number of patients stored before the benchmarks run
+	 */
+	private static final int INITIAL_PATIENTS = 200;
+
+	private ClassPathXmlApplicationContext myAppCtx;
+	private int myNextIndex;
+	private IdDt myOrganizationId;
+	private IFhirResourceDao<Patient> myPatientDao;
+	private IdDt myPatientId;
+
+	@Benchmark
+	public IdDt create() {
+		return myPatientDao.create(newPatient()).getId();
+	}
+
+	private synchronized Patient newPatient() {
+		Patient retVal = SampleResources.createPatientDstu2(myNextIndex++);
+		retVal.setId(new IdDt());
+		retVal.getManagingOrganization().setReference(myOrganizationId);
+		return retVal;
+	}
+
+	@Benchmark
+	public Patient read() {
+		return myPatientDao.read(myPatientId);
+	}
+
+	/**
+	 * Searches for family names starting with "Family1" (which matches 111 of the initial patients), and loads the
+	 * matching resources as a server would in order to return them
+	 */
+	@Benchmark
+	public List<IBaseResource> search() {
+		IBundleProvider results = myPatientDao.search(Patient.SP_FAMILY, new StringParam("Family1"));
+		return results.getResources(0, results.size());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Setup
+	public void setup() {
+		myAppCtx = new ClassPathXmlApplicationContext("hapi-fhir-server-resourceproviders-dstu2.xml", "hapi-fhir-benchmark-jpa-config.xml");
+		myPatientDao = myAppCtx.getBean("myPatientDaoDstu2", IFhirResourceDao.class);
+		IFhirResourceDao<Organization> organizationDao = myAppCtx.getBean("myOrganizationDaoDstu2", IFhirResourceDao.class);
+
+		Organization org = new Organization();
+		org.setName("Benchmark Organization");
+		myOrganizationId = organizationDao.create(org).getId().toUnqualifiedVersionless();
+
+		for (int i = 0; i < INITIAL_PATIENTS; i++) {
+			IdDt id = create();
+			if (myPatientId == null) {
+				myPatientId = id.toUnqualifiedVersionless();
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		myAppCtx.close();
+	}
+
+}
@@ -0,0 +1,68 @@
+package ca.uhn.fhir.benchmark;
+
+/*
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+
+/**
+ * Measures the time taken for a new context to scan the model classes needed for a few common resources. Each
+ * measurement is made once in a new JVM, since the scanning of the first context in a JVM (which includes loading the
+ * model classes) is what an application sees at startup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class ModelScannerBenchmark {
+
+	private static final String[] RESOURCE_NAMES = { "Patient", "Observation", "Organization" };
+
+	@Param({ "DSTU1", "DSTU2", "DSTU2_HL7ORG" })
+	public FhirVersionEnum myVersion;
+
+	@Benchmark
+	public RuntimeResourceDefinition newContext() {
+		FhirContext ctx = new FhirContext(myVersion);
+		RuntimeResourceDefinition retVal = null;
+		for (String next : RESOURCE_NAMES) {
+			retVal = ctx.getResourceDefinition(next);
+		}
+		return retVal;
+	}
+
+}
@@ -0,0 +1,116 @@
+package ca.uhn.fhir.benchmark;
+
+/*
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.model.api.Bundle;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.server.EncodingEnum;
+
+/**
+ * Parses and encodes the sample resources with the JSON and XML parsers, for each version of the structures. A new
+ * parser is created for each operation, as parsers are not thread safe and are normally created for each message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({ "JSON", "XML", "BINARY" })
+	public EncodingEnum myEncoding;
+
+	@Param({ "Patient", "Observation", "Bundle" })
+	public String myResourceType;
+
+	@Param({ "DSTU1", "DSTU2", "DSTU2_HL7ORG" })
+	public FhirVersionEnum myVersion;
+
+	private Bundle myBundle;
+	private FhirContext myContext;
+	private String myEncoded;
+	private IBaseResource myResource;
+	private Class<? extends IBaseResource> myResourceClass;
+
+	/**
+	 * DSTU1 has no Bundle resource, so the DSTU1 bundle is an atom bundle which is encoded with the bundle methods of
+	 * the parser
+	 */
+	private boolean isAtomBundle() {
+		return myVersion == FhirVersionEnum.DSTU1 && "Bundle".equals(myResourceType);
+	}
+
+	@Benchmark
+	public String encode() {
+		if (isAtomBundle()) {
+			return newParser().encodeBundleToString(myBundle);
+		}
+		return newParser().encodeResourceToString(myResource);
+	}
+
+	private IParser newParser() {
+		return myEncoding.newParser(myContext);
+	}
+
+	@Benchmark
+	public Object parse() {
+		if (isAtomBundle()) {
+			return newParser().parseBundle(myEncoded);
+		}
+		return newParser().parseResource(myResourceClass, myEncoded);
+	}
+
+	@Setup
+	public void setup() {
+		myContext = new FhirContext(myVersion);
+		if (isAtomBundle()) {
+			myBundle = SampleResources.createBundleDstu1();
+			myEncoded = newParser().encodeBundleToString(myBundle);
+		} else {
+			if (myVersion == FhirVersionEnum.DSTU1) {
+				myResource = SampleResources.createResourceDstu1(myResourceType);
+			} else {
+				myResource = SampleResources.createResource(myContext, myResourceType);
+			}
+			myResourceClass = myResource.getClass();
+			myEncoded = newParser().encodeResourceToString(myResource);
+		}
+	}
+
+}
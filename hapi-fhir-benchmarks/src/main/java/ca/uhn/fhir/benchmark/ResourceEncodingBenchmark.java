@@ -0,0 +1,78 @@
+package ca.uhn.fhir.benchmark;
+
+/*
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.entity.ResourceEncodingEnum;
+
+/**
+ * Converts the text of the sample resources to and from the bytes stored by the JPA server, for each
+ * {@link ResourceEncodingEnum}. The text is written with the parser of the encoding being measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceEncodingBenchmark {
+
+	@Param({ "JSON", "JSONC", "JSONZ", "BIN" })
+	public ResourceEncodingEnum myEncoding;
+
+	@Param({ "Patient", "Observation", "Bundle" })
+	public String myResourceType;
+
+	private byte[] myEncoded;
+	private String myText;
+
+	@Benchmark
+	public String decode() {
+		return myEncoding.decode(myEncoded);
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return myEncoding.encode(myText);
+	}
+
+	@Setup
+	public void setup() {
+		FhirContext ctx = FhirContext.forDstu2();
+		myText = myEncoding.newParser(ctx).encodeResourceToString(SampleResources.createResource(ctx, myResourceType));
+		myEncoded = myEncoding.encode(myText);
+	}
+
+}
@@ -0,0 +1,133 @@
+package ca.uhn.fhir.benchmark;
+
+/*
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.dstu2.resource.Bundle;
+import ca.uhn.fhir.model.dstu2.resource.Patient;
+import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Read;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.client.IGenericClient;
+import ca.uhn.fhir.rest.client.ServerValidationModeEnum;
+import ca.uhn.fhir.rest.server.EncodingEnum;
+import ca.uhn.fhir.rest.server.IResourceProvider;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.util.PortUtil;
+
+/**
+ * Reads and searches for patients using the generic client, against a {@link RestfulServer} running in an embedded
+ * Jetty server in the same JVM. The resource provider returns the sample resources without doing any work, so the
+ * measurements cover the client, the HTTP transport, the server and the parsers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RestRoundTripBenchmark {
+
+	@Param({ "JSON", "XML" })
+	public EncodingEnum myEncoding;
+
+	private IGenericClient myClient;
+	private Server myServer;
+
+	@Benchmark
+	public Patient read() {
+		return myClient.read().resource(Patient.class).withId("pat0").execute();
+	}
+
+	@Benchmark
+	public Bundle search() {
+		return myClient.search().forResource(Patient.class).returnBundle(Bundle.class).execute();
+	}
+
+	@Setup
+	public void setup() throws Exception {
+		int port = PortUtil.findFreePort();
+		myServer = new Server(port);
+
+		FhirContext ctx = FhirContext.forDstu2();
+		RestfulServer servlet = new RestfulServer(ctx);
+		servlet.setResourceProviders(new SamplePatientResourceProvider());
+		ServletHandler proxyHandler = new ServletHandler();
+		proxyHandler.addServletWithMapping(new ServletHolder(servlet), "/*");
+		myServer.setHandler(proxyHandler);
+		myServer.start();
+
+		ctx.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
+		myClient = ctx.newRestfulGenericClient("http://localhost:" + port + "/");
+		myClient.setEncoding(myEncoding);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		myServer.stop();
+	}
+
+	public static class SamplePatientResourceProvider implements IResourceProvider {
+
+		@Override
+		public Class<? extends IResource> getResourceType() {
+			return Patient.class;
+		}
+
+		@Read
+		public Patient read(@IdParam IdDt theId) {
+			return SampleResources.createPatientDstu2(0);
+		}
+
+		@Search
+		public List<Patient> search() {
+			List<Patient> retVal = new ArrayList<Patient>();
+			for (int i = 0; i < SampleResources.BUNDLE_SIZE; i++) {
+				retVal.add(SampleResources.createPatientDstu2(i));
+			}
+			return retVal;
+		}
+
+	}
+
+}
@@ -0,0 +1,202 @@
+package ca.uhn.fhir.benchmark;
+
+/*
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.model.api.Bundle;
+import ca.uhn.fhir.model.api.BundleEntry;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.dstu.composite.CodeableConceptDt;
+import ca.uhn.fhir.model.dstu.valueset.AdministrativeGenderCodesEnum;
+import ca.uhn.fhir.model.dstu.valueset.ContactSystemEnum;
+import ca.uhn.fhir.model.dstu.valueset.IdentifierUseEnum;
+import ca.uhn.fhir.model.dstu2.composite.QuantityDt;
+import ca.uhn.fhir.model.dstu2.composite.ResourceReferenceDt;
+import ca.uhn.fhir.model.dstu2.resource.Bundle.Entry;
+import ca.uhn.fhir.model.dstu2.resource.Observation;
+import ca.uhn.fhir.model.dstu2.resource.Patient;
+import ca.uhn.fhir.model.dstu2.valueset.AdministrativeGenderEnum;
+import ca.uhn.fhir.model.dstu2.valueset.BundleTypeEnum;
+import ca.uhn.fhir.model.dstu2.valueset.ContactPointSystemEnum;
+import ca.uhn.fhir.model.dstu2.valueset.ObservationStatusEnum;
+import ca.uhn.fhir.model.dstu2.valueset.SearchEntryModeEnum;
+import ca.uhn.fhir.model.primitive.DateDt;
+import ca.uhn.fhir.model.primitive.DateTimeDt;
+import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.model.primitive.StringDt;
+
+/**
+ * Creates the resources used by the benchmarks: a patient with typical demographics, a laboratory observation, and a
+ * search result bundle containing both
+ */
+public class SampleResources {
+
+	/**
+	 * The number of resources in the sample bundle
+	 */
+	public static final int BUNDLE_SIZE = 50;
+
+	/**
+	 * Returns an atom bundle of sample resources, for use with DSTU1 structures
+	 */
+	public static Bundle createBundleDstu1() {
+		Bundle retVal = new Bundle();
+		retVal.getTitle().setValue("Search results");
+		retVal.getTotalResults().setValue(BUNDLE_SIZE);
+		for (int i = 0; i < BUNDLE_SIZE; i++) {
+			IResource resource = (i % 2 == 0) ? createPatientDstu1(i) : createObservationDstu1(i);
+			BundleEntry entry = retVal.addEntry();
+			entry.setResource(resource);
+		}
+		return retVal;
+	}
+
+	private static ca.uhn.fhir.model.dstu.resource.Observation createObservationDstu1(int theIndex) {
+		ca.uhn.fhir.model.dstu.resource.Observation retVal = new ca.uhn.fhir.model.dstu.resource.Observation();
+		retVal.setId(new IdDt("Observation", "obs" + theIndex, "1"));
+		retVal.setName(new CodeableConceptDt("http://loinc.org", "789-8"));
+		retVal.getName().setText("Erythrocytes [#/volume] in Blood by Automated count");
+		retVal.setValue(new ca.uhn.fhir.model.dstu.composite.QuantityDt(4.12 + theIndex).setUnits("10*12/L").setSystem("http://unitsofmeasure.org").setCode("10*12/L"));
+		retVal.setStatus(ca.uhn.fhir.model.dstu.valueset.ObservationStatusEnum.FINAL);
+		retVal.setReliability(ca.uhn.fhir.model.dstu.valueset.ObservationReliabilityEnum.OK);
+		retVal.setApplies(new DateTimeDt("2015-02-07T13:28:17-05:00"));
+		retVal.setSubject(new ca.uhn.fhir.model.dstu.composite.ResourceReferenceDt("Patient/pat" + theIndex));
+		return retVal;
+	}
+
+	private static ca.uhn.fhir.model.dstu.resource.Patient createPatientDstu1(int theIndex) {
+		ca.uhn.fhir.model.dstu.resource.Patient retVal = new ca.uhn.fhir.model.dstu.resource.Patient();
+		retVal.setId(new IdDt("Patient", "pat" + theIndex, "1"));
+		retVal.addIdentifier(IdentifierUseEnum.OFFICIAL, "urn:oid:1.2.36.146.595.217.0.1", "MRN" + theIndex, "MRN");
+		retVal.addIdentifier(IdentifierUseEnum.SECONDARY, "http://example.com/national-id", "NID" + theIndex, null);
+		retVal.addName().addFamily("Family" + theIndex).addGiven("Peter").addGiven("James");
+		retVal.setGender(AdministrativeGenderCodesEnum.M);
+		retVal.setBirthDate(new DateTimeDt("1974-12-25"));
+		retVal.addTelecom().setSystem(ContactSystemEnum.PHONE).setValue("(03) 5555 6473");
+		retVal.addTelecom().setSystem(ContactSystemEnum.EMAIL).setValue("patient" + theIndex + "@example.com");
+		retVal.addAddress().addLine("534 Erewhon St").setCity("PleasantVille").setState("Vic").setZip("3999");
+		retVal.setManagingOrganization(new ca.uhn.fhir.model.dstu.composite.ResourceReferenceDt("Organization/1"));
+		retVal.addUndeclaredExtension(false, "http://example.com/extensions#nickname", new StringDt("Pete"));
+		return retVal;
+	}
+
+	/**
+	 * Returns a searchset bundle of sample resources, for use with DSTU2 structures
+	 */
+	public static ca.uhn.fhir.model.dstu2.resource.Bundle createBundleDstu2() {
+		ca.uhn.fhir.model.dstu2.resource.Bundle retVal = new ca.uhn.fhir.model.dstu2.resource.Bundle();
+		retVal.setId("b4b3a4d4-2c3e-4ff4-9c43-8b5c6e2b1c59");
+		retVal.setType(BundleTypeEnum.SEARCH_RESULTS);
+		retVal.setTotal(BUNDLE_SIZE);
+		retVal.addLink().setRelation("self").setUrl("http://example.com/base/Patient?_count=" + BUNDLE_SIZE);
+		for (int i = 0; i < BUNDLE_SIZE; i++) {
+			Entry entry = retVal.addEntry();
+			entry.setResource((i % 2 == 0) ? createPatientDstu2(i) : createObservationDstu2(i));
+			entry.getSearch().setMode(SearchEntryModeEnum.MATCH);
+		}
+		return retVal;
+	}
+
+	public static Observation createObservationDstu2(int theIndex) {
+		Observation retVal = new Observation();
+		retVal.setId(new IdDt("Observation", "obs" + theIndex, "1"));
+		retVal.getCode().addCoding().setSystem("http://loinc.org").setCode("789-8").setDisplay("Erythrocytes [#/volume] in Blood by Automated count");
+		retVal.setValue(new QuantityDt(4.12 + theIndex).setUnits("10*12/L").setSystem("http://unitsofmeasure.org").setCode("10*12/L"));
+		retVal.setStatus(ObservationStatusEnum.FINAL);
+		retVal.setApplies(new DateTimeDt("2015-02-07T13:28:17-05:00"));
+		retVal.setSubject(new ResourceReferenceDt("Patient/pat" + theIndex));
+		retVal.addPerformer().setReference("Practitioner/1");
+		return retVal;
+	}
+
+	public static Patient createPatientDstu2(int theIndex) {
+		Patient retVal = new Patient();
+		retVal.setId(new IdDt("Patient", "pat" + theIndex, "1"));
+		retVal.addIdentifier().setSystem("urn:oid:1.2.36.146.595.217.0.1").setValue("MRN" + theIndex);
+		retVal.addIdentifier().setSystem("http://example.com/national-id").setValue("NID" + theIndex);
+		retVal.addName().addFamily("Family" + theIndex).addGiven("Peter").addGiven("James");
+		retVal.setGender(AdministrativeGenderEnum.MALE);
+		retVal.setBirthDate(new DateDt("1974-12-25"));
+		retVal.setActive(true);
+		retVal.addTelecom().setSystem(ContactPointSystemEnum.PHONE).setValue("(03) 5555 6473");
+		retVal.addTelecom().setSystem(ContactPointSystemEnum.EMAIL).setValue("patient" + theIndex + "@example.com");
+		retVal.addAddress().addLine("534 Erewhon St").setCity("PleasantVille").setState("Vic").setPostalCode("3999");
+		retVal.getManagingOrganization().setReference("Organization/1");
+		retVal.addUndeclaredExtension(false, "http://example.com/extensions#nickname", new StringDt("Pete"));
+		return retVal;
+	}
+
+	/**
+	 * Returns a sample resource for the structures used by the given context
+	 *
+	 * @param theContext
+	 *            The context, which must use DSTU2 or DSTU2_HL7ORG structures
+	 * @param theResourceType
+	 *            "Patient", "Observation" or "Bundle"
+	 */
+	public static IBaseResource createResource(FhirContext theContext, String theResourceType) {
+		IBaseResource retVal;
+		if ("Patient".equals(theResourceType)) {
+			retVal = createPatientDstu2(0);
+		} else if ("Observation".equals(theResourceType)) {
+			retVal = createObservationDstu2(0);
+		} else if ("Bundle".equals(theResourceType)) {
+			retVal = createBundleDstu2();
+		} else {
+			throw new IllegalArgumentException("Unknown resource type: " + theResourceType);
+		}
+
+		FhirVersionEnum version = theContext.getVersion().getVersion();
+		if (version == FhirVersionEnum.DSTU2) {
+			return retVal;
+		}
+
+		/*
+		 * The HL7.org structures use the same wire format as the HAPI DSTU2 structures, so the sample is converted
+		 * instead of being built a second time
+		 */
+		if (version == FhirVersionEnum.DSTU2_HL7ORG) {
+			String encoded = FhirContext.forDstu2().newJsonParser().encodeResourceToString(retVal);
+			return theContext.newJsonParser().parseResource(encoded);
+		}
+
+		throw new IllegalArgumentException("Unsupported FHIR version: " + version);
+	}
+
+	/**
+	 * Returns a sample resource for DSTU1 structures
+	 *
+	 * @param theResourceType
+	 *            "Patient" or "Observation"
+	 */
+	public static IResource createResourceDstu1(String theResourceType) {
+		if ("Patient".equals(theResourceType)) {
+			return createPatientDstu1(0);
+		} else if ("Observation".equals(theResourceType)) {
+			return createObservationDstu1(0);
+		}
+		throw new IllegalArgumentException("Unknown resource type: " + theResourceType);
+	}
+
+}
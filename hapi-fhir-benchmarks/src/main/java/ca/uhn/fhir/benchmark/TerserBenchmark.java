@@ -0,0 +1,81 @@
+package ca.uhn.fhir.benchmark;
+
+/*
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.util.FhirTerser;
+import ca.uhn.fhir.util.TerserPath;
+
+/**
+ * Reads values from the sample resources with {@link FhirTerser#getValues(IBaseResource, String)}, and with the same
+ * path compiled in advance using {@link FhirTerser#compile(Class, String)}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TerserBenchmark {
+
+	@Param({ "Patient.name.family", "Patient.identifier", "Observation.valueQuantity", "Observation.subject" })
+	public String myPath;
+
+	private TerserPath myCompiledPath;
+	private IBaseResource myResource;
+	private FhirTerser myTerser;
+
+	@Benchmark
+	public List<Object> getValues() {
+		return myTerser.getValues(myResource, myPath);
+	}
+
+	@Benchmark
+	public List<Object> getValuesCompiled() {
+		return myCompiledPath.getValues(myResource);
+	}
+
+	@Setup
+	public void setup() {
+		FhirContext ctx = FhirContext.forDstu2();
+		String resourceType = myPath.substring(0, myPath.indexOf('.'));
+		myResource = SampleResources.createResource(ctx, resourceType);
+		myTerser = ctx.newTerser();
+		myCompiledPath = myTerser.compile(myResource.getClass(), myPath);
+	}
+
+}
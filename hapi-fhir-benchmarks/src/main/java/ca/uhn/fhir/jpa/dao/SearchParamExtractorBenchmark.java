@@ -0,0 +1,72 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR - Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.uhn.fhir.benchmark.SampleResources;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.entity.ResourceTable;
+import ca.uhn.fhir.model.api.IResource;
+
+/**
+ * Extracts the search parameter index rows of the sample resources, as is done by the JPA server each time a resource
+ * is stored. This class is in the same package as the extractor since the extractor is not public.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchParamExtractorBenchmark {
+
+	@Param({ "Patient", "Observation" })
+	public String myResourceType;
+
+	private ISearchParamExtractor myExtractor;
+	private IResource myResource;
+
+	@Benchmark
+	public ResourceIndexedSearchParams extractSearchParams() {
+		return myExtractor.extractSearchParams(new ResourceTable(), myResource);
+	}
+
+	@Setup
+	public void setup() {
+		FhirContext ctx = FhirContext.forDstu2();
+		myExtractor = new SearchParamExtractorDstu2(ctx);
+		myResource = (IResource) SampleResources.createResource(ctx, myResourceType);
+	}
+
+}
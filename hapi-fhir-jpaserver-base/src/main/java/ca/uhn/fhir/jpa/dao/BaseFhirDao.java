@@ -22,9 +22,10 @@ package ca.uhn.fhir.jpa.dao;
 
 import static org.apache.commons.lang3.StringUtils.*;
 
-import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.MessageDigest;
 import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -33,6 +34,7 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,6 +50,8 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.http.NameValuePair;
@@ -58,6 +62,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import ca.uhn.fhir.context.ConfigurationException;
@@ -84,6 +90,7 @@ import ca.uhn.fhir.jpa.entity.TagDefinition;
 import ca.uhn.fhir.jpa.entity.TagTypeEnum;
 import ca.uhn.fhir.jpa.util.StopWatch;
 import ca.uhn.fhir.model.api.IQueryParameterAnd;
+import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
 import ca.uhn.fhir.model.api.Tag;
@@ -98,8 +105,9 @@ import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.rest.method.MethodUtil;
 import ca.uhn.fhir.rest.method.QualifiedParamList;
 import ca.uhn.fhir.rest.method.RestSearchParameterTypeEnum;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.Constants;
 import ca.uhn.fhir.rest.server.IBundleProvider;
-import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
@@ -109,10 +117,18 @@ import com.google.common.base.Function;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
 
 public abstract class BaseFhirDao implements IDao {
 
+	/**
+	 * Maximum number of values in a single SQL <code>IN</code> clause
+	 */
+	static final int MAX_IDS_PER_QUERY = 500;
 	public static final String NS_JPA_PROFILE = "https://github.com/jamesagnew/hapi-fhir/ns/jpa/profile";
+	private static final Object ourDeferFlushKey = new Object();
+	private static final Object ourPreExtractedSearchParamsKey = new Object();
+	private static final Object ourTransactionLookupsKey = new Object();
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseFhirDao.class);
 
 	private static final Map<FhirVersionEnum, FhirContext> ourRetrievalContexts = new HashMap<FhirVersionEnum, FhirContext>();
@@ -175,7 +191,7 @@ public abstract class BaseFhirDao implements IDao {
 				multiType = true;
 			}
 
-			for (Object nextObject : extractValues(nextPathsUnsplit, theResource)) {
+			for (Object nextObject : extractValues(def, nextSpDef, theResource)) {
 				if (nextObject == null) {
 					continue;
 				}
@@ -265,20 +281,12 @@ public abstract class BaseFhirDao implements IDao {
 		return mySearchParamExtractor.extractSearchParamTokens(theEntity, theResource);
 	}
 
-	private List<Object> extractValues(String thePaths, IResource theResource) {
-		List<Object> values = new ArrayList<Object>();
-		String[] nextPathsSplit = thePaths.split("\\|");
-		FhirTerser t = getContext().newTerser();
-		for (String nextPath : nextPathsSplit) {
-			String nextPathTrimmed = nextPath.trim();
-			try {
-				values.addAll(t.getValues(theResource, nextPathTrimmed));
-			} catch (Exception e) {
-				RuntimeResourceDefinition def = myContext.getResourceDefinition(theResource);
-				ourLog.warn("Failed to index values from path[{}] in resource type[{}]: ", nextPathTrimmed, def.getName(), e.toString());
-			}
-		}
-		return values;
+	/**
+	 * Returns the values at the path of the given search parameter. Paths which are not valid for the resource type
+	 * are left out when the path is compiled, and the compiled path is cached in the search parameter.
+	 */
+	private List<Object> extractValues(RuntimeResourceDefinition theResourceDef, RuntimeSearchParam theSearchParam, IResource theResource) {
+		return theResourceDef.getSearchParamPath(theSearchParam).getValues(theResource);
 	}
 
 	private void findMatchingTagIds(String theResourceName, IdDt theResourceId, Set<Long> tagIds, Class<? extends BaseTag> entityClass) {
@@ -512,16 +520,11 @@ public abstract class BaseFhirDao implements IDao {
 	}
 
 	protected List<IBaseResource> loadResourcesById(Set<? extends IIdType> theIncludePids) {
-		Set<Long> pids = new HashSet<Long>();
+		Map<String, Long> idToPid = translateForcedIdsToPids(theIncludePids);
+		Set<Long> pids = new HashSet<Long>(idToPid.values());
 		for (IIdType next : theIncludePids) {
-			if (next.isIdPartValidLong()) {
-				pids.add(next.getIdPartAsLong());
-			} else {
-				try {
-					pids.add(translateForcedIdToPid(next));
-				} catch (ResourceNotFoundException e) {
-					ourLog.warn("Failed to translate forced ID [{}] to PID", next.getValue());
-				}
+			if (!idToPid.containsKey(next.getIdPart())) {
+				ourLog.warn("Failed to translate forced ID [{}] to PID", next.getValue());
 			}
 		}
 
@@ -548,6 +551,184 @@ public abstract class BaseFhirDao implements IDao {
 		return retVal;
 	}
 
+	/**
+	 * Stops {@link #updateEntity(IResource, ResourceTable, boolean, Date, boolean, boolean)} from flushing after each
+	 * resource for the rest of the current transaction. This is used when a large number of resources are written in
+	 * one transaction, so that all of their rows are sent to the database together (in JDBC batches) instead of a few
+	 * at a time. Queries made in the meantime still see the pending writes, since the session is automatically flushed
+	 * before any query against a table with pending changes.
+	 */
+	protected static void deferFlushUntilCommit() {
+		if (TransactionSynchronizationManager.hasResource(ourDeferFlushKey)) {
+			return;
+		}
+		TransactionSynchronizationManager.bindResource(ourDeferFlushKey, Boolean.TRUE);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int theStatus) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(ourDeferFlushKey);
+			}
+		});
+	}
+
+	/**
+	 * Binds index rows which were extracted from resources before the current transaction started (see
+	 * {@link #extractSearchParams(IResource)}), so that storing those resources in this transaction uses them instead
+	 * of extracting them again. The map is keyed on resource identity, and each entry is used at most once.
+	 */
+	static void bindPreExtractedSearchParams(Map<IResource, ResourceIndexedSearchParams> theSearchParams) {
+		TransactionSynchronizationManager.bindResource(ourPreExtractedSearchParamsKey, theSearchParams);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int theStatus) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(ourPreExtractedSearchParamsKey);
+			}
+		});
+	}
+
+	/**
+	 * Extracts the string, token, number, quantity and date index rows of a resource before its entity is known, so
+	 * that it can be done outside of a transaction. The rows point to a transient placeholder entity until they are
+	 * passed to {@link #bindPreExtractedSearchParams(Map)} and the resource is stored.
+	 */
+	ResourceIndexedSearchParams extractSearchParams(IResource theResource) {
+		ResourceTable placeholder = new ResourceTable();
+		placeholder.setResourceType(toResourceName(theResource));
+		return mySearchParamExtractor.extractSearchParams(placeholder, theResource);
+	}
+
+	/**
+	 * Returns the lookups bound to the current transaction by {@link #bindTransactionLookups()}, or <code>null</code>
+	 * if there are none
+	 */
+	static TransactionLookups getTransactionLookups() {
+		return (TransactionLookups) TransactionSynchronizationManager.getResource(ourTransactionLookupsKey);
+	}
+
+	/**
+	 * Binds a {@link TransactionLookups} to the current transaction (if one is not already bound) so that forced IDs
+	 * and match URLs resolved up front are used by {@link #translateForcedIdToPid(IIdType)} and
+	 * {@link #processMatchUrl(String, Class)} for the rest of the transaction
+	 */
+	static TransactionLookups bindTransactionLookups() {
+		TransactionLookups retVal = getTransactionLookups();
+		if (retVal != null) {
+			return retVal;
+		}
+		retVal = new TransactionLookups();
+		TransactionSynchronizationManager.bindResource(ourTransactionLookupsKey, retVal);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int theStatus) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(ourTransactionLookupsKey);
+			}
+		});
+		return retVal;
+	}
+
+	/**
+	 * Resolves a number of IDs and match URLs in as few queries as possible, and records the results in the lookups
+	 * bound to the current transaction. The resources they resolve to are also loaded into the persistence context, so
+	 * that reading them later doesn't need a query either.
+	 * <p>
+	 * Forced IDs are loaded with {@link #translateForcedIdsToPids(Collection)}. Match URLs which consist of a single
+	 * token parameter with a single value (e.g. <code>Patient?identifier=system|value</code>) are resolved together
+	 * with one query per resource type and parameter. Any other match URL is left to be resolved when it is used.
+	 * </p>
+	 * 
+	 * @param theIds
+	 *           IDs of resources which may exist (IDs which don't exist are ignored)
+	 * @param theMatchUrls
+	 *           Match URLs, keyed by the resource type they select
+	 */
+	void preloadTransactionLookups(Collection<? extends IIdType> theIds, Multimap<Class<? extends IBaseResource>, String> theMatchUrls) {
+		TransactionLookups lookups = bindTransactionLookups();
+		Set<Long> pids = new HashSet<Long>();
+
+		if (!theIds.isEmpty()) {
+			Map<String, Long> forcedIdToPid = translateForcedIdsToPids(theIds);
+			lookups.addForcedIds(forcedIdToPid);
+			pids.addAll(forcedIdToPid.values());
+		}
+
+		for (Class<? extends IBaseResource> nextType : theMatchUrls.keySet()) {
+			RuntimeResourceDefinition resourceDef = getContext().getResourceDefinition(nextType);
+			Map<String, Map<String, TokenParam>> paramNameToUrlToToken = new HashMap<String, Map<String, TokenParam>>();
+			for (String nextUrl : theMatchUrls.get(nextType)) {
+				SearchParameterMap paramMap;
+				try {
+					paramMap = translateMatchUrl(nextUrl, resourceDef);
+				} catch (InvalidRequestException e) {
+					// This will be reported when the URL is used
+					continue;
+				}
+				if (paramMap.size() != 1) {
+					continue;
+				}
+				String paramName = paramMap.keySet().iterator().next();
+				RuntimeSearchParam paramDef = resourceDef.getSearchParam(paramName);
+				if (paramName.startsWith("_") || paramDef == null || paramDef.getParamType() != RestSearchParameterTypeEnum.TOKEN) {
+					continue;
+				}
+				List<List<? extends IQueryParameterType>> andList = paramMap.get(paramName);
+				if (andList.size() != 1 || andList.get(0).size() != 1 || !(andList.get(0).get(0) instanceof TokenParam)) {
+					continue;
+				}
+				TokenParam token = (TokenParam) andList.get(0).get(0);
+				if (token.isText() || token.getMissing() != null || isBlank(token.getValue()) || token.getValue().length() > ResourceIndexedSearchParamToken.MAX_LENGTH
+						|| (token.getSystem() != null && token.getSystem().length() > ResourceIndexedSearchParamToken.MAX_LENGTH)) {
+					continue;
+				}
+				Map<String, TokenParam> urlToToken = paramNameToUrlToToken.get(paramName);
+				if (urlToToken == null) {
+					urlToToken = new HashMap<String, TokenParam>();
+					paramNameToUrlToToken.put(paramName, urlToToken);
+				}
+				urlToToken.put(nextUrl, token);
+			}
+
+			for (Map.Entry<String, Map<String, TokenParam>> nextParam : paramNameToUrlToToken.entrySet()) {
+				Set<String> values = new HashSet<String>();
+				for (TokenParam next : nextParam.getValue().values()) {
+					values.add(next.getValue());
+				}
+
+				ArrayListMultimap<String, Object[]> valueToRows = ArrayListMultimap.create();
+				for (List<String> nextChunk : Lists.partition(new ArrayList<String>(values), MAX_IDS_PER_QUERY)) {
+					String sql = "SELECT t.myResourcePid, t.mySystem, t.myValue FROM ResourceIndexedSearchParamToken t WHERE t.myResourceType = :type AND t.myParamName = :name AND t.myValue IN (:values)";
+					TypedQuery<Object[]> q = myEntityManager.createQuery(sql, Object[].class);
+					q.setParameter("type", resourceDef.getName());
+					q.setParameter("name", nextParam.getKey());
+					q.setParameter("values", nextChunk);
+					for (Object[] next : q.getResultList()) {
+						valueToRows.put((String) next[2], next);
+					}
+				}
+
+				for (Map.Entry<String, TokenParam> nextUrl : nextParam.getValue().entrySet()) {
+					String system = nextUrl.getValue().getSystem();
+					Set<Long> matches = new HashSet<Long>();
+					for (Object[] next : valueToRows.get(nextUrl.getValue().getValue())) {
+						String rowSystem = (String) next[1];
+						// Same rules as a token search: no system matches any system, and an empty system only matches no system
+						if (system == null || (system.length() == 0 && rowSystem == null) || system.equals(rowSystem)) {
+							matches.add((Long) next[0]);
+						}
+					}
+					lookups.addMatches(resourceDef.getName(), nextUrl.getKey(), matches);
+					pids.addAll(matches);
+				}
+			}
+		}
+
+		// The results are kept by the persistence context, so later finds don't go to the database
+		for (List<Long> nextChunk : Lists.partition(new ArrayList<Long>(pids), MAX_IDS_PER_QUERY)) {
+			TypedQuery<ResourceTable> q = myEntityManager.createQuery("SELECT r FROM ResourceTable r WHERE r.myId IN (:pids)", ResourceTable.class);
+			q.setParameter("pids", nextChunk);
+			q.getResultList();
+		}
+	}
+
 	protected void notifyWriteCompleted() {
 		for (IDaoListener next : myListeners) {
 			next.writeCompleted();
@@ -576,18 +757,7 @@ public abstract class BaseFhirDao implements IDao {
 		ResourceEncodingEnum encoding = myConfig.getResourceEncoding();
 		theEntity.setEncoding(encoding);
 		theEntity.setFhirVersion(myContext.getVersion().getVersion());
-		try {
-			switch (encoding) {
-			case JSON:
-				theEntity.setResource(encoded.getBytes("UTF-8"));
-				break;
-			case JSONC:
-				theEntity.setResource(GZipUtil.compress(encoded));
-				break;
-			}
-		} catch (UnsupportedEncodingException e) {
-			throw new InternalErrorException(e);
-		}
+		theEntity.setResource(encoding.encode(encoded));
 
 		TagList tagList = ResourceMetadataKeyEnum.TAG_LIST.get(theResource);
 		if (tagList != null) {
@@ -627,11 +797,23 @@ public abstract class BaseFhirDao implements IDao {
 	protected Set<Long> processMatchUrl(String theMatchUrl, Class<? extends IBaseResource> theResourceType) {
 		RuntimeResourceDefinition resourceDef = getContext().getResourceDefinition(theResourceType);
 
+		TransactionLookups lookups = getTransactionLookups();
+		if (lookups != null) {
+			Set<Long> resolved = lookups.getMatches(resourceDef.getName(), theMatchUrl);
+			if (resolved != null) {
+				return resolved;
+			}
+		}
+
 		SearchParameterMap paramMap = translateMatchUrl(theMatchUrl, resourceDef);
 
 		IFhirResourceDao<? extends IResource> dao = getDao(theResourceType);
 		Set<Long> ids = dao.searchForIdsWithAndOr(paramMap);
 
+		if (lookups != null) {
+			lookups.addMatches(resourceDef.getName(), theMatchUrl, ids);
+		}
+
 		return ids;
 	}
 
@@ -869,19 +1051,7 @@ public abstract class BaseFhirDao implements IDao {
 	}
 	
 	protected <T extends IBaseResource> T toResource(Class<T> theResourceType, BaseHasResource theEntity) {
-		String resourceText = null;
-		switch (theEntity.getEncoding()) {
-		case JSON:
-			try {
-				resourceText = new String(theEntity.getResource(), "UTF-8");
-			} catch (UnsupportedEncodingException e) {
-				throw new Error("Should not happen", e);
-			}
-			break;
-		case JSONC:
-			resourceText = GZipUtil.decompress(theEntity.getResource());
-			break;
-		}
+		String resourceText = theEntity.getEncoding().decode(theEntity.getResource());
 
 		IParser parser = theEntity.getEncoding().newParser(getContext(theEntity.getFhirVersion()));
 		T retVal;
@@ -966,23 +1136,112 @@ public abstract class BaseFhirDao implements IDao {
 		if (isValidPid(theId)) {
 			return theId.getIdPartAsLong();
 		} else {
+			String forcedId = theId.getIdPart();
+			Long retVal = myConfig.getForcedIdCache().getPid(forcedId);
+			if (retVal != null) {
+				return retVal;
+			}
+			TransactionLookups lookups = getTransactionLookups();
+			if (lookups != null) {
+				retVal = lookups.getPid(forcedId);
+				if (retVal != null) {
+					return retVal;
+				}
+			}
+
 			TypedQuery<ForcedId> q = myEntityManager.createNamedQuery("Q_GET_FORCED_ID", ForcedId.class);
-			q.setParameter("ID", theId.getIdPart());
+			q.setParameter("ID", forcedId);
 			try {
-				return q.getSingleResult().getResourcePid();
+				retVal = q.getSingleResult().getResourcePid();
 			} catch (NoResultException e) {
 				throw new ResourceNotFoundException(theId);
 			}
+			cacheForcedIdsAfterCommit(Collections.singletonMap(forcedId, retVal));
+			return retVal;
 		}
 	}
 
+	/**
+	 * Translates a number of IDs to resource PIDs, loading any forced IDs which are not already cached in a single
+	 * query (per {@value #MAX_IDS_PER_QUERY} IDs) instead of one query each.
+	 * 
+	 * @return A map from the ID part of each given ID to its resource PID. IDs which do not exist are not included.
+	 */
+	protected Map<String, Long> translateForcedIdsToPids(Collection<? extends IIdType> theIds) {
+		Map<String, Long> retVal = new HashMap<String, Long>();
+		Set<String> toLoad = new LinkedHashSet<String>();
+		ForcedIdCache cache = myConfig.getForcedIdCache();
+		for (IIdType next : theIds) {
+			String idPart = next.getIdPart();
+			if (isValidPid(next)) {
+				retVal.put(idPart, next.getIdPartAsLong());
+			} else {
+				Long cached = cache.getPid(idPart);
+				if (cached != null) {
+					retVal.put(idPart, cached);
+				} else {
+					toLoad.add(idPart);
+				}
+			}
+		}
+
+		if (!toLoad.isEmpty()) {
+			Map<String, Long> loaded = new HashMap<String, Long>();
+			for (List<String> nextChunk : Lists.partition(new ArrayList<String>(toLoad), MAX_IDS_PER_QUERY)) {
+				TypedQuery<ForcedId> q = myEntityManager.createNamedQuery("Q_GET_FORCED_IDS", ForcedId.class);
+				q.setParameter("IDS", nextChunk);
+				for (ForcedId next : q.getResultList()) {
+					loaded.put(next.getForcedId(), next.getResourcePid());
+				}
+			}
+			cacheForcedIdsAfterCommit(loaded);
+			retVal.putAll(loaded);
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Adds the given forced IDs to the cache once the current transaction commits, since a forced ID which is rolled
+	 * back could later be assigned to a different resource
+	 */
+	private void cacheForcedIdsAfterCommit(final Map<String, Long> theForcedIdToPid) {
+		if (theForcedIdToPid.isEmpty()) {
+			return;
+		}
+		final ForcedIdCache cache = myConfig.getForcedIdCache();
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			for (Map.Entry<String, Long> next : theForcedIdToPid.entrySet()) {
+				cache.put(next.getKey(), next.getValue());
+			}
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				for (Map.Entry<String, Long> next : theForcedIdToPid.entrySet()) {
+					cache.put(next.getKey(), next.getValue());
+				}
+			}
+		});
+	}
+
 	protected String translatePidIdToForcedId(Long theId) {
-		ForcedId forcedId = myEntityManager.find(ForcedId.class, theId);
-		if (forcedId != null) {
-			return forcedId.getForcedId();
-		} else {
+		String retVal = myConfig.getForcedIdCache().getForcedId(theId);
+		if (retVal != null) {
+			return retVal;
+		}
+
+		TypedQuery<ForcedId> q = myEntityManager.createNamedQuery("Q_GET_FORCED_ID_FOR_RESOURCE", ForcedId.class);
+		q.setParameter("RESOURCE_PID", theId);
+		List<ForcedId> forcedIds = q.getResultList();
+		if (forcedIds.isEmpty()) {
 			return theId.toString();
 		}
+
+		retVal = forcedIds.get(0).getForcedId();
+		cacheForcedIdsAfterCommit(Collections.singletonMap(retVal, theId));
+		return retVal;
 	}
 
 	protected ResourceTable updateEntity(final IResource theResource, ResourceTable entity, boolean theUpdateHistory, Date theDeletedTimestampOrNull) {
@@ -1012,12 +1271,12 @@ public abstract class BaseFhirDao implements IDao {
 			entity.setVersion(entity.getVersion() + 1);
 		}
 
-		Collection<ResourceIndexedSearchParamString> paramsString = new ArrayList<ResourceIndexedSearchParamString>(entity.getParamsString());
-		Collection<ResourceIndexedSearchParamToken> paramsToken = new ArrayList<ResourceIndexedSearchParamToken>(entity.getParamsToken());
-		Collection<ResourceIndexedSearchParamNumber> paramsNumber = new ArrayList<ResourceIndexedSearchParamNumber>(entity.getParamsNumber());
-		Collection<ResourceIndexedSearchParamQuantity> paramsQuantity = new ArrayList<ResourceIndexedSearchParamQuantity>(entity.getParamsQuantity());
-		Collection<ResourceIndexedSearchParamDate> paramsDate = new ArrayList<ResourceIndexedSearchParamDate>(entity.getParamsDate());
-		Collection<ResourceLink> resourceLinks = new ArrayList<ResourceLink>(entity.getResourceLinks());
+		Collection<ResourceIndexedSearchParamString> paramsString = null;
+		Collection<ResourceIndexedSearchParamToken> paramsToken = null;
+		Collection<ResourceIndexedSearchParamNumber> paramsNumber = null;
+		Collection<ResourceIndexedSearchParamQuantity> paramsQuantity = null;
+		Collection<ResourceIndexedSearchParamDate> paramsDate = null;
+		Collection<ResourceLink> resourceLinks = null;
 
 		List<ResourceIndexedSearchParamString> stringParams = null;
 		List<ResourceIndexedSearchParamToken> tokenParams = null;
@@ -1026,14 +1285,29 @@ public abstract class BaseFhirDao implements IDao {
 		List<ResourceIndexedSearchParamDate> dateParams = null;
 		List<ResourceLink> links = null;
 
+		boolean indexChanged = true;
 		if (theDeletedTimestampOrNull != null) {
 
+			paramsString = existingRows(entity.isParamsStringPopulated(), entity.getParamsString());
+			paramsToken = existingRows(entity.isParamsTokenPopulated(), entity.getParamsToken());
+			paramsNumber = existingRows(entity.isParamsNumberPopulated(), entity.getParamsNumber());
+			paramsQuantity = existingRows(entity.isParamsQuantityPopulated(), entity.getParamsQuantity());
+			paramsDate = existingRows(entity.isParamsDatePopulated(), entity.getParamsDate());
+			resourceLinks = existingRows(entity.isHasLinks(), entity.getResourceLinks());
+
 			stringParams = Collections.emptyList();
 			tokenParams = Collections.emptyList();
 			numberParams = Collections.emptyList();
 			quantityParams = Collections.emptyList();
 			dateParams = Collections.emptyList();
 			links = Collections.emptyList();
+			entity.setParamsStringPopulated(false);
+			entity.setParamsTokenPopulated(false);
+			entity.setParamsNumberPopulated(false);
+			entity.setParamsQuantityPopulated(false);
+			entity.setParamsDatePopulated(false);
+			entity.setHasLinks(false);
+			entity.setIndexHash(null);
 			entity.setDeleted(theDeletedTimestampOrNull);
 			entity.setUpdated(theDeletedTimestampOrNull);
 
@@ -1043,38 +1317,69 @@ public abstract class BaseFhirDao implements IDao {
 
 			if (thePerformIndexing) {
 
-				stringParams = extractSearchParamStrings(entity, theResource);
-				numberParams = extractSearchParamNumber(entity, theResource);
-				quantityParams = extractSearchParamQuantity(entity, theResource);
-				dateParams = extractSearchParamDates(entity, theResource);
+				/*
+				 * The existing rows have to be read before extracting, since the extractors update the populated flags
+				 * of the entity
+				 */
+				boolean stringPopulated = entity.isParamsStringPopulated();
+				boolean tokenPopulated = entity.isParamsTokenPopulated();
+				boolean numberPopulated = entity.isParamsNumberPopulated();
+				boolean quantityPopulated = entity.isParamsQuantityPopulated();
+				boolean datePopulated = entity.isParamsDatePopulated();
+				boolean hasLinks = entity.isHasLinks();
+
+				ResourceIndexedSearchParams params = removePreExtractedSearchParams(theResource);
+				if (params != null) {
+					params.setResource(entity);
+				} else {
+					params = mySearchParamExtractor.extractSearchParams(entity, theResource);
+				}
+				stringParams = params.getStringParams();
+				tokenParams = params.getTokenParams();
+				numberParams = params.getNumberParams();
+				quantityParams = params.getQuantityParams();
+				dateParams = params.getDateParams();
 
 //				ourLog.info("Indexing resource: {}", entity.getId());
 				ourLog.trace("Storing string indexes: {}", stringParams);
-				
-				tokenParams = new ArrayList<ResourceIndexedSearchParamToken>();
-				for (BaseResourceIndexedSearchParam next : extractSearchParamTokens(entity, theResource)) {
-					if (next instanceof ResourceIndexedSearchParamToken) {
-						tokenParams.add((ResourceIndexedSearchParamToken) next);
-					} else {
-						stringParams.add((ResourceIndexedSearchParamString) next);
-					}
-				}
 
 				links = extractResourceLinks(entity, theResource);
 				populateResourceIntoEntity(theResource, entity);
 				entity.setUpdated(new Date());
 				entity.setLanguage(theResource.getLanguage().getValue());
-				entity.setParamsString(stringParams);
+
+				/*
+				 * If none of the indexed values have changed since the previous version, the existing rows are left
+				 * alone without being loaded
+				 */
+				String indexHash = calculateIndexHash(stringParams, tokenParams, numberParams, quantityParams, dateParams, links);
+				indexChanged = entity.getId() == null || !indexHash.equals(entity.getIndexHash());
+				entity.setIndexHash(indexHash);
+
+				if (indexChanged) {
+					/*
+					 * The populated flags let us skip loading the existing rows of any index table that this resource
+					 * has never been written to
+					 */
+					paramsString = existingRows(stringPopulated, entity.getParamsString());
+					paramsToken = existingRows(tokenPopulated, entity.getParamsToken());
+					paramsNumber = existingRows(numberPopulated, entity.getParamsNumber());
+					paramsQuantity = existingRows(quantityPopulated, entity.getParamsQuantity());
+					paramsDate = existingRows(datePopulated, entity.getParamsDate());
+					resourceLinks = existingRows(hasLinks, entity.getResourceLinks());
+
+					entity.setParamsString(stringParams);
+					entity.setParamsToken(tokenParams);
+					entity.setParamsNumber(numberParams);
+					entity.setParamsQuantity(quantityParams);
+					entity.setParamsDate(dateParams);
+					entity.setResourceLinks(links);
+				}
 				entity.setParamsStringPopulated(stringParams.isEmpty() == false);
-				entity.setParamsToken(tokenParams);
 				entity.setParamsTokenPopulated(tokenParams.isEmpty() == false);
-				entity.setParamsNumber(numberParams);
 				entity.setParamsNumberPopulated(numberParams.isEmpty() == false);
-				entity.setParamsQuantity(quantityParams);
 				entity.setParamsQuantityPopulated(quantityParams.isEmpty() == false);
-				entity.setParamsDate(dateParams);
 				entity.setParamsDatePopulated(dateParams.isEmpty() == false);
-				entity.setResourceLinks(links);
 				entity.setHasLinks(links.isEmpty() == false);
 
 			} else {
@@ -1092,77 +1397,149 @@ public abstract class BaseFhirDao implements IDao {
 
 			if (entity.getForcedId() != null) {
 				myEntityManager.persist(entity.getForcedId());
+				cacheForcedIdsAfterCommit(Collections.singletonMap(entity.getForcedId().getForcedId(), entity.getId()));
 			}
 
 		} else {
 			entity = myEntityManager.merge(entity);
 		}
 
-		if (thePerformIndexing) {
+		if (thePerformIndexing && indexChanged) {
 
-			if (entity.isParamsStringPopulated()) {
-				for (ResourceIndexedSearchParamString next : paramsString) {
-					myEntityManager.remove(next);
-				}
-			}
-			for (ResourceIndexedSearchParamString next : stringParams) {
-				myEntityManager.persist(next);
-			}
+			/*
+			 * Only the rows which have actually changed are written, and the remaining inserts and deletes are sent to
+			 * the database in JDBC batches when the flush below happens
+			 */
+			entity.setParamsString(writeIndexRows(paramsString, stringParams));
+			entity.setParamsToken(writeIndexRows(paramsToken, tokenParams));
+			entity.setParamsNumber(writeIndexRows(paramsNumber, numberParams));
+			entity.setParamsQuantity(writeIndexRows(paramsQuantity, quantityParams));
+			entity.setParamsDate(writeIndexRows(paramsDate, dateParams));
+			entity.setResourceLinks(writeIndexRows(resourceLinks, links));
 
-			if (entity.isParamsTokenPopulated()) {
-				for (ResourceIndexedSearchParamToken next : paramsToken) {
-					myEntityManager.remove(next);
-				}
-			}
-			for (ResourceIndexedSearchParamToken next : tokenParams) {
-				myEntityManager.persist(next);
-			}
+		} // if thePerformIndexing
 
-			if (entity.isParamsNumberPopulated()) {
-				for (ResourceIndexedSearchParamNumber next : paramsNumber) {
-					myEntityManager.remove(next);
-				}
-			}
-			for (ResourceIndexedSearchParamNumber next : numberParams) {
-				myEntityManager.persist(next);
-			}
+		if (!TransactionSynchronizationManager.hasResource(ourDeferFlushKey)) {
+			myEntityManager.flush();
+		}
 
-			if (entity.isParamsQuantityPopulated()) {
-				for (ResourceIndexedSearchParamQuantity next : paramsQuantity) {
-					myEntityManager.remove(next);
-				}
-			}
-			for (ResourceIndexedSearchParamQuantity next : quantityParams) {
-				myEntityManager.persist(next);
+		myConfig.getSearchResultCache().invalidate(entity.getResourceType());
+		if (thePerformIndexing) {
+			TransactionLookups lookups = getTransactionLookups();
+			if (lookups != null) {
+				lookups.invalidateMatches(entity.getResourceType());
 			}
+		}
 
-			if (entity.isParamsDatePopulated()) {
-				for (ResourceIndexedSearchParamDate next : paramsDate) {
-					myEntityManager.remove(next);
-				}
-			}
-			for (ResourceIndexedSearchParamDate next : dateParams) {
-				myEntityManager.persist(next);
-			}
+		if (theResource != null) {
+			theResource.setId(entity.getIdDt());
+		}
 
-			if (entity.isHasLinks()) {
-				for (ResourceLink next : resourceLinks) {
-					myEntityManager.remove(next);
-				}
+		return entity;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ResourceIndexedSearchParams removePreExtractedSearchParams(IResource theResource) {
+		Map<IResource, ResourceIndexedSearchParams> preExtracted = (Map<IResource, ResourceIndexedSearchParams>) TransactionSynchronizationManager.getResource(ourPreExtractedSearchParamsKey);
+		if (preExtracted == null) {
+			return null;
+		}
+		return preExtracted.remove(theResource);
+	}
+
+	/**
+	 * Removes the existing index rows which are not among the new ones, and persists the new rows which do not already
+	 * exist. Rows are matched on their indexed values (see the <code>equals</code> implementations of the index
+	 * entities), so rows which are unchanged by an update are left alone.
+	 *
+	 * @return The rows which are indexed for the resource after the update
+	 */
+	private <T> List<T> writeIndexRows(Collection<T> theExistingRows, Collection<T> theNewRows) {
+		Set<T> existing = new HashSet<T>(theExistingRows);
+		Set<T> wanted = new HashSet<T>(theNewRows);
+
+		List<T> retVal = new ArrayList<T>(theNewRows.size());
+		for (T next : theExistingRows) {
+			if (wanted.contains(next)) {
+				retVal.add(next);
+			} else {
+				myEntityManager.remove(next);
 			}
-			for (ResourceLink next : links) {
+		}
+		for (T next : theNewRows) {
+			if (!existing.contains(next)) {
 				myEntityManager.persist(next);
+				retVal.add(next);
 			}
+		}
+		return retVal;
+	}
 
-		} // if thePerformIndexing
+	/**
+	 * Calculates a digest of the indexed values of the given rows, which does not depend on the order of the rows
+	 */
+	static String calculateIndexHash(Collection<ResourceIndexedSearchParamString> theStringParams, Collection<ResourceIndexedSearchParamToken> theTokenParams,
+			Collection<ResourceIndexedSearchParamNumber> theNumberParams, Collection<ResourceIndexedSearchParamQuantity> theQuantityParams, Collection<ResourceIndexedSearchParamDate> theDateParams,
+			Collection<ResourceLink> theLinks) {
+		List<String> keys = new ArrayList<String>();
+		for (ResourceIndexedSearchParamString next : theStringParams) {
+			keys.add(indexKey("S", next.getParamName(), next.getValueNormalized(), next.getValueExact()));
+		}
+		for (ResourceIndexedSearchParamToken next : theTokenParams) {
+			keys.add(indexKey("T", next.getParamName(), next.getSystem(), next.getValue()));
+		}
+		for (ResourceIndexedSearchParamNumber next : theNumberParams) {
+			keys.add(indexKey("N", next.getParamName(), toIndexKey(next.getValue())));
+		}
+		for (ResourceIndexedSearchParamQuantity next : theQuantityParams) {
+			keys.add(indexKey("Q", next.getParamName(), toIndexKey(next.getValue()), next.getSystem(), next.getUnits()));
+		}
+		for (ResourceIndexedSearchParamDate next : theDateParams) {
+			keys.add(indexKey("D", next.getParamName(), toIndexKey(next.getValueLow()), toIndexKey(next.getValueHigh())));
+		}
+		for (ResourceLink next : theLinks) {
+			Long targetPid = next.getTargetResource() != null ? next.getTargetResource().getId() : next.getTargetResourcePid();
+			keys.add(indexKey("L", next.getSourcePath(), targetPid != null ? targetPid.toString() : null));
+		}
+		Collections.sort(keys);
 
-		myEntityManager.flush();
+		MessageDigest digest = DigestUtils.getSha256Digest();
+		for (String next : keys) {
+			digest.update(next.getBytes(Constants.CHARSET_UTF8));
+		}
+		return Hex.encodeHexString(digest.digest());
+	}
 
-		if (theResource != null) {
-			theResource.setId(entity.getIdDt());
+	/**
+	 * Each value is prefixed with its length so that the key can not be produced by any other combination of values
+	 */
+	private static String indexKey(String theType, String... theValues) {
+		StringBuilder b = new StringBuilder();
+		b.append(theType);
+		for (String next : theValues) {
+			if (next == null) {
+				b.append("-");
+			} else {
+				b.append(next.length()).append(':').append(next);
+			}
 		}
+		b.append('\n');
+		return b.toString();
+	}
 
-		return entity;
+	private static String toIndexKey(BigDecimal theValue) {
+		return theValue != null ? theValue.stripTrailingZeros().toPlainString() : null;
+	}
+
+	private static String toIndexKey(Date theValue) {
+		return theValue != null ? Long.toString(theValue.getTime()) : null;
+	}
+
+	private static <T> Collection<T> existingRows(boolean thePopulated, Collection<T> theRows) {
+		if (!thePopulated || theRows == null) {
+			return new ArrayList<T>();
+		}
+		return new ArrayList<T>(theRows);
 	}
 
 	protected static String normalizeString(String theString) {
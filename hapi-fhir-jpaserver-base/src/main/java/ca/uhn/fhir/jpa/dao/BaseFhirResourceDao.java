@@ -29,7 +29,6 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -42,6 +41,7 @@ import javax.persistence.PersistenceContextType;
 import javax.persistence.TemporalType;
 import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
+import javax.persistence.criteria.AbstractQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Expression;
@@ -51,6 +51,7 @@ import javax.persistence.criteria.Order;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
 import javax.persistence.criteria.Subquery;
 
 import org.apache.commons.lang3.NotImplementedException;
@@ -66,6 +67,8 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import com.google.common.collect.Lists;
+
 import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
 import ca.uhn.fhir.context.ConfigurationException;
 import ca.uhn.fhir.context.FhirVersionEnum;
@@ -75,6 +78,7 @@ import ca.uhn.fhir.context.RuntimeSearchParam;
 import ca.uhn.fhir.jpa.entity.BaseHasResource;
 import ca.uhn.fhir.jpa.entity.BaseResourceIndexedSearchParam;
 import ca.uhn.fhir.jpa.entity.BaseTag;
+import ca.uhn.fhir.jpa.entity.ForcedId;
 import ca.uhn.fhir.jpa.entity.ResourceHistoryTable;
 import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamDate;
 import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamNumber;
@@ -142,13 +146,12 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 	private Class<T> myResourceType;
 	private String mySecondaryPrimaryKeyParamName;
 
-	private Set<Long> addPredicateComposite(RuntimeSearchParam theParamDef, Set<Long> thePids, List<? extends IQueryParameterType> theNextAnd) {
+	private Predicate addPredicateComposite(RuntimeSearchParam theParamDef, List<? extends IQueryParameterType> theNextAnd, CriteriaBuilder theBuilder, AbstractQuery<?> theQuery, Root<ResourceTable> theRoot) {
 		// TODO: fail if missing is set for a composite query
 
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceTable> from = cq.from(ResourceTable.class);
-		cq.select(from.get("myId").as(Long.class));
+		Subquery<Long> subQ = theQuery.subquery(Long.class);
+		Root<ResourceTable> from = subQ.from(ResourceTable.class);
+		subQ.select(from.get("myId").as(Long.class));
 
 		IQueryParameterType or = theNextAnd.get(0);
 		if (!(or instanceof CompositeParam<?, ?>)) {
@@ -158,106 +161,87 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 
 		RuntimeSearchParam left = theParamDef.getCompositeOf().get(0);
 		IQueryParameterType leftValue = cp.getLeftValue();
-		Predicate leftPredicate = createCompositeParamPart(builder, from, left, leftValue);
+		Predicate leftPredicate = createCompositeParamPart(theBuilder, from, left, leftValue);
 
 		RuntimeSearchParam right = theParamDef.getCompositeOf().get(1);
 		IQueryParameterType rightValue = cp.getRightValue();
-		Predicate rightPredicate = createCompositeParamPart(builder, from, right, rightValue);
-
-		Predicate type = builder.equal(from.get("myResourceType"), myResourceName);
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myResourcePid").in(thePids));
-			cq.where(builder.and(type, leftPredicate, rightPredicate, inPids));
-		} else {
-			cq.where(builder.and(type, leftPredicate, rightPredicate));
-		}
+		Predicate rightPredicate = createCompositeParamPart(theBuilder, from, right, rightValue);
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+		Predicate type = theBuilder.equal(from.get("myResourceType"), myResourceName);
+		subQ.where(theBuilder.and(type, leftPredicate, rightPredicate));
 
+		return theRoot.get("myId").in(subQ);
 	}
 
-	private Set<Long> addPredicateDate(String theParamName, Set<Long> thePids, List<? extends IQueryParameterType> theList) {
+	private Predicate addPredicateDate(String theParamName, List<? extends IQueryParameterType> theList, CriteriaBuilder theBuilder, AbstractQuery<?> theQuery, Root<ResourceTable> theRoot) {
 		if (theList == null || theList.isEmpty()) {
-			return thePids;
+			return null;
 		}
 
 		if (Boolean.TRUE.equals(theList.get(0).getMissing())) {
-			return addPredicateParamMissing(thePids, "myParamsDate", theParamName, ResourceIndexedSearchParamDate.class);
+			return addPredicateParamMissing(theParamName, ResourceIndexedSearchParamDate.class, theBuilder, theQuery, theRoot);
 		}
 
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceIndexedSearchParamDate> from = cq.from(ResourceIndexedSearchParamDate.class);
-		cq.select(from.get("myResourcePid").as(Long.class));
+		Subquery<Long> subQ = theQuery.subquery(Long.class);
+		Root<ResourceIndexedSearchParamDate> from = subQ.from(ResourceIndexedSearchParamDate.class);
+		subQ.select(from.get("myResourcePid").as(Long.class));
 
 		List<Predicate> codePredicates = new ArrayList<Predicate>();
 		for (IQueryParameterType nextOr : theList) {
-			if (addPredicateMissingFalseIfPresent(builder, theParamName, from, codePredicates, nextOr)) {
+			if (addPredicateMissingFalseIfPresent(theBuilder, theParamName, from, codePredicates, nextOr)) {
 				continue;
 			}
 
 			IQueryParameterType params = nextOr;
-			Predicate p = createPredicateDate(builder, from, params);
+			Predicate p = createPredicateDate(theBuilder, from, params);
 			codePredicates.add(p);
 		}
 
-		Predicate masterCodePredicate = builder.or(codePredicates.toArray(new Predicate[0]));
+		Predicate masterCodePredicate = theBuilder.or(codePredicates.toArray(new Predicate[0]));
 
-		Predicate type = builder.equal(from.get("myResourceType"), myResourceName);
-		Predicate name = builder.equal(from.get("myParamName"), theParamName);
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myResourcePid").in(thePids));
-			cq.where(builder.and(type, name, masterCodePredicate, inPids));
-		} else {
-			cq.where(builder.and(type, name, masterCodePredicate));
-		}
+		Predicate type = theBuilder.equal(from.get("myResourceType"), myResourceName);
+		Predicate name = theBuilder.equal(from.get("myParamName"), theParamName);
+		subQ.where(theBuilder.and(type, name, masterCodePredicate));
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+		return theRoot.get("myId").in(subQ);
 	}
 
-	private Set<Long> addPredicateId(Set<Long> theExistingPids, Set<Long> thePids) {
-		if (thePids == null || thePids.isEmpty()) {
-			return Collections.emptySet();
+	private Predicate addPredicateId(List<List<? extends IQueryParameterType>> theList, CriteriaBuilder theBuilder, Root<ResourceTable> theRoot) {
+		if (theList == null || theList.isEmpty()) {
+			return null;
+		}
+		if (theList.size() > 1) {
+			throw new InvalidRequestException("AND queries not supported for _id (Multiple instances of this param found)");
 		}
 
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceTable> from = cq.from(ResourceTable.class);
-		cq.select(from.get("myId").as(Long.class));
-
-		Predicate typePredicate = builder.equal(from.get("myResourceType"), myResourceName);
-		Predicate idPrecidate = from.get("myId").in(thePids);
+		List<? extends IQueryParameterType> nextValue = theList.get(0);
+		if (nextValue == null || nextValue.size() == 0) {
+			return null;
+		}
 
-		cq.where(builder.and(typePredicate, idPrecidate));
+		List<IdDt> valueIds = new ArrayList<IdDt>(nextValue.size());
+		for (IQueryParameterType next : nextValue) {
+			valueIds.add(new IdDt(next.getValueAsQueryToken()));
+		}
+		// IDs which don't exist aren't an error, they just mean no result found
+		Set<Long> joinPids = new HashSet<Long>(translateForcedIdsToPids(valueIds).values());
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		HashSet<Long> found = new HashSet<Long>(q.getResultList());
-		if (!theExistingPids.isEmpty()) {
-			theExistingPids.retainAll(found);
+		if (joinPids.isEmpty()) {
+			// None of the requested IDs exist, so nothing can match
+			return theBuilder.disjunction();
 		}
 
-		return found;
+		return theRoot.get("myId").in(joinPids);
 	}
 
-	// private Set<Long> addPredicateComposite(String theParamName, Set<Long> thePids, List<? extends
-	// IQueryParameterType> theList) {
-	// }
-
-	private Set<Long> addPredicateLanguage(Set<Long> thePids, List<List<? extends IQueryParameterType>> theList) {
+	private Predicate addPredicateLanguage(List<List<? extends IQueryParameterType>> theList, CriteriaBuilder theBuilder, Root<ResourceTable> theRoot) {
 		if (theList == null || theList.isEmpty()) {
-			return thePids;
+			return null;
 		}
 		if (theList.size() > 1) {
 			throw new InvalidRequestException("Language parameter can not have more than one AND value, found " + theList.size());
 		}
 
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceTable> from = cq.from(ResourceTable.class);
-		cq.select(from.get("myId").as(Long.class));
-
 		Set<String> values = new HashSet<String>();
 		for (IQueryParameterType next : theList.get(0)) {
 			if (next instanceof StringParam) {
@@ -272,52 +256,39 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 		}
 
 		if (values.isEmpty()) {
-			return thePids;
+			return null;
 		}
 
-		Predicate typePredicate = builder.equal(from.get("myResourceType"), myResourceName);
-		Predicate langPredicate = from.get("myLanguage").as(String.class).in(values);
-		Predicate masterCodePredicate = builder.and(typePredicate, langPredicate);
-
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myId").in(thePids));
-			cq.where(builder.and(masterCodePredicate, inPids));
-		} else {
-			cq.where(masterCodePredicate);
-		}
-
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+		return theRoot.get("myLanguage").as(String.class).in(values);
 	}
 
-	private Set<Long> addPredicateNumber(String theParamName, Set<Long> thePids, List<? extends IQueryParameterType> theList) {
+	private Predicate addPredicateNumber(String theParamName, List<? extends IQueryParameterType> theList, CriteriaBuilder theBuilder, AbstractQuery<?> theQuery, Root<ResourceTable> theRoot) {
 		if (theList == null || theList.isEmpty()) {
-			return thePids;
+			return null;
 		}
 
 		if (Boolean.TRUE.equals(theList.get(0).getMissing())) {
-			return addPredicateParamMissing(thePids, "myParamsNumber", theParamName, ResourceIndexedSearchParamNumber.class);
+			return addPredicateParamMissing(theParamName, ResourceIndexedSearchParamNumber.class, theBuilder, theQuery, theRoot);
 		}
 
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceIndexedSearchParamNumber> from = cq.from(ResourceIndexedSearchParamNumber.class);
-		cq.select(from.get("myResourcePid").as(Long.class));
+		Subquery<Long> subQ = theQuery.subquery(Long.class);
+		Root<ResourceIndexedSearchParamNumber> from = subQ.from(ResourceIndexedSearchParamNumber.class);
+		subQ.select(from.get("myResourcePid").as(Long.class));
 
 		List<Predicate> codePredicates = new ArrayList<Predicate>();
 		for (IQueryParameterType nextOr : theList) {
 			IQueryParameterType params = nextOr;
 
-			if (addPredicateMissingFalseIfPresent(builder, theParamName, from, codePredicates, nextOr)) {
+			if (addPredicateMissingFalseIfPresent(theBuilder, theParamName, from, codePredicates, nextOr)) {
 				continue;
 			}
-			
+
 			if (params instanceof NumberParam) {
 				NumberParam param = (NumberParam) params;
 
 				BigDecimal value = param.getValue();
 				if (value == null) {
-					return thePids;
+					return null;
 				}
 
 				Path<Object> fromObj = from.get("myValue");
@@ -325,22 +296,22 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 					double mul = value.doubleValue() * 1.01;
 					double low = value.doubleValue() - mul;
 					double high = value.doubleValue() + mul;
-					Predicate lowPred = builder.ge(fromObj.as(Long.class), low);
-					Predicate highPred = builder.le(fromObj.as(Long.class), high);
-					codePredicates.add(builder.and(lowPred, highPred));
+					Predicate lowPred = theBuilder.ge(fromObj.as(Long.class), low);
+					Predicate highPred = theBuilder.le(fromObj.as(Long.class), high);
+					codePredicates.add(theBuilder.and(lowPred, highPred));
 				} else {
 					switch (param.getComparator()) {
 					case GREATERTHAN:
-						codePredicates.add(builder.greaterThan(fromObj.as(BigDecimal.class), value));
+						codePredicates.add(theBuilder.greaterThan(fromObj.as(BigDecimal.class), value));
 						break;
 					case GREATERTHAN_OR_EQUALS:
-						codePredicates.add(builder.ge(fromObj.as(BigDecimal.class), value));
+						codePredicates.add(theBuilder.ge(fromObj.as(BigDecimal.class), value));
 						break;
 					case LESSTHAN:
-						codePredicates.add(builder.lessThan(fromObj.as(BigDecimal.class), value));
+						codePredicates.add(theBuilder.lessThan(fromObj.as(BigDecimal.class), value));
 						break;
 					case LESSTHAN_OR_EQUALS:
-						codePredicates.add(builder.le(fromObj.as(BigDecimal.class), value));
+						codePredicates.add(theBuilder.le(fromObj.as(BigDecimal.class), value));
 						break;
 					}
 				}
@@ -350,107 +321,63 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 
 		}
 
-		Predicate masterCodePredicate = builder.or(codePredicates.toArray(new Predicate[0]));
+		Predicate masterCodePredicate = theBuilder.or(codePredicates.toArray(new Predicate[0]));
 
-		Predicate type = builder.equal(from.get("myResourceType"), myResourceName);
-		Predicate name = builder.equal(from.get("myParamName"), theParamName);
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myResourcePid").in(thePids));
-			cq.where(builder.and(type, name, masterCodePredicate, inPids));
-		} else {
-			cq.where(builder.and(type, name, masterCodePredicate));
-		}
+		Predicate type = theBuilder.equal(from.get("myResourceType"), myResourceName);
+		Predicate name = theBuilder.equal(from.get("myParamName"), theParamName);
+		subQ.where(theBuilder.and(type, name, masterCodePredicate));
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+		return theRoot.get("myId").in(subQ);
 	}
 
-	private Set<Long> addPredicateParamMissing(Set<Long> thePids, String joinName, String theParamName, Class<? extends BaseResourceIndexedSearchParam> theParamTable) {
-		String resourceType = getContext().getResourceDefinition(getResourceType()).getName();
-
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceTable> from = cq.from(ResourceTable.class);
-		cq.select(from.get("myId").as(Long.class));
-
-		Subquery<Long> subQ = cq.subquery(Long.class);
-		Root<? extends BaseResourceIndexedSearchParam> subQfrom = subQ.from(theParamTable); 
+	private Predicate addPredicateParamMissing(String theParamName, Class<? extends BaseResourceIndexedSearchParam> theParamTable, CriteriaBuilder theBuilder, AbstractQuery<?> theQuery, Root<ResourceTable> theRoot) {
+		Subquery<Long> subQ = theQuery.subquery(Long.class);
+		Root<? extends BaseResourceIndexedSearchParam> subQfrom = subQ.from(theParamTable);
 		subQ.select(subQfrom.get("myResourcePid").as(Long.class));
-		Predicate subQname = builder.equal(subQfrom.get("myParamName"), theParamName);
-		Predicate subQtype = builder.equal(subQfrom.get("myResourceType"), resourceType);
-		subQ.where(builder.and(subQtype, subQname));
+		Predicate subQname = theBuilder.equal(subQfrom.get("myParamName"), theParamName);
+		Predicate subQtype = theBuilder.equal(subQfrom.get("myResourceType"), myResourceName);
+		subQ.where(theBuilder.and(subQtype, subQname));
+
+		Predicate joinPredicate = theBuilder.not(theBuilder.in(theRoot.get("myId")).value(subQ));
+		Predicate notDeletedPredicate = theBuilder.isNull(theRoot.get("myDeleted"));
 
-		Predicate joinPredicate = builder.not(builder.in(from.get("myId")).value(subQ));
-		Predicate typePredicate = builder.equal(from.get("myResourceType"), resourceType);
-		Predicate notDeletedPredicate = builder.isNull(from.get("myDeleted"));
-		
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myId").in(thePids));
-			cq.where(builder.and(inPids, typePredicate, joinPredicate, notDeletedPredicate));
-		} else {
-			cq.where(builder.and(typePredicate, joinPredicate, notDeletedPredicate));
-		}
-		
 		ourLog.info("Adding :missing qualifier for parameter '{}'", theParamName);
-		
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		List<Long> resultList = q.getResultList();
-		HashSet<Long> retVal = new HashSet<Long>(resultList);
-		return retVal;
+
+		return theBuilder.and(joinPredicate, notDeletedPredicate);
 	}
 
-	private Set<Long> addPredicateParamMissingResourceLink(Set<Long> thePids, String joinName, String theParamName) {
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceTable> from = cq.from(ResourceTable.class);
-		cq.select(from.get("myId").as(Long.class));
-		
-		Subquery<Long> subQ = cq.subquery(Long.class);
-		Root<ResourceLink> subQfrom = subQ.from(ResourceLink.class); 
+	private Predicate addPredicateParamMissingResourceLink(String theParamName, CriteriaBuilder theBuilder, AbstractQuery<?> theQuery, Root<ResourceTable> theRoot) {
+		Subquery<Long> subQ = theQuery.subquery(Long.class);
+		Root<ResourceLink> subQfrom = subQ.from(ResourceLink.class);
 		subQ.select(subQfrom.get("mySourceResourcePid").as(Long.class));
-		
-//		subQ.where(builder.equal(subQfrom.get("myParamName"), theParamName));
-		Predicate path = createResourceLinkPathPredicate(theParamName, builder, subQfrom);
+
+		Predicate path = createResourceLinkPathPredicate(theParamName, theBuilder, subQfrom);
 		subQ.where(path);
-		
-		Predicate joinPredicate = builder.not(builder.in(from.get("myId")).value(subQ));
-		Predicate typePredicate = builder.equal(from.get("myResourceType"), myResourceName);
 
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myId").in(thePids));
-			cq.where(builder.and(inPids, typePredicate, joinPredicate));
-		} else {
-			cq.where(builder.and(typePredicate, joinPredicate));
-		}
-		
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		List<Long> resultList = q.getResultList();
-		HashSet<Long> retVal = new HashSet<Long>(resultList);
-		return retVal;
+		return theBuilder.not(theBuilder.in(theRoot.get("myId")).value(subQ));
 	}
 
-	private Set<Long> addPredicateQuantity(String theParamName, Set<Long> thePids, List<? extends IQueryParameterType> theList) {
+	private Predicate addPredicateQuantity(String theParamName, List<? extends IQueryParameterType> theList, CriteriaBuilder theBuilder, AbstractQuery<?> theQuery, Root<ResourceTable> theRoot) {
 		if (theList == null || theList.isEmpty()) {
-			return thePids;
+			return null;
 		}
-		
+
 		if (Boolean.TRUE.equals(theList.get(0).getMissing())) {
-			return addPredicateParamMissing(thePids, "myParamsQuantity", theParamName, ResourceIndexedSearchParamQuantity.class);
+			return addPredicateParamMissing(theParamName, ResourceIndexedSearchParamQuantity.class, theBuilder, theQuery, theRoot);
 		}
 
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceIndexedSearchParamQuantity> from = cq.from(ResourceIndexedSearchParamQuantity.class);
-		cq.select(from.get("myResourcePid").as(Long.class));
+		Subquery<Long> subQ = theQuery.subquery(Long.class);
+		Root<ResourceIndexedSearchParamQuantity> from = subQ.from(ResourceIndexedSearchParamQuantity.class);
+		subQ.select(from.get("myResourcePid").as(Long.class));
 
 		List<Predicate> codePredicates = new ArrayList<Predicate>();
 		for (IQueryParameterType nextOr : theList) {
 			IQueryParameterType params = nextOr;
 
-			if (addPredicateMissingFalseIfPresent(builder, theParamName, from, codePredicates, nextOr)) {
+			if (addPredicateMissingFalseIfPresent(theBuilder, theParamName, from, codePredicates, nextOr)) {
 				continue;
 			}
-			
+
 			String systemValue;
 			String unitsValue;
 			QuantityCompararatorEnum cmpValue;
@@ -476,12 +403,12 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 
 			Predicate system = null;
 			if (!isBlank(systemValue)) {
-				system = builder.equal(from.get("mySystem"), systemValue);
+				system = theBuilder.equal(from.get("mySystem"), systemValue);
 			}
 
 			Predicate code = null;
 			if (!isBlank(unitsValue)) {
-				code = builder.equal(from.get("myUnits"), unitsValue);
+				code = theBuilder.equal(from.get("myUnits"), unitsValue);
 			}
 
 			Predicate num;
@@ -489,26 +416,26 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 				BigDecimal mul = approx ? new BigDecimal(0.1) : new BigDecimal(0.01);
 				BigDecimal low = valueValue.subtract(valueValue.multiply(mul));
 				BigDecimal high = valueValue.add(valueValue.multiply(mul));
-				Predicate lowPred = builder.gt(from.get("myValue").as(BigDecimal.class), low);
-				Predicate highPred = builder.lt(from.get("myValue").as(BigDecimal.class), high);
-				num = builder.and(lowPred, highPred);
+				Predicate lowPred = theBuilder.gt(from.get("myValue").as(BigDecimal.class), low);
+				Predicate highPred = theBuilder.lt(from.get("myValue").as(BigDecimal.class), high);
+				num = theBuilder.and(lowPred, highPred);
 			} else {
 				switch (cmpValue) {
 				case GREATERTHAN:
 					Expression<Number> path = from.get("myValue");
-					num = builder.gt(path, valueValue);
+					num = theBuilder.gt(path, valueValue);
 					break;
 				case GREATERTHAN_OR_EQUALS:
 					path = from.get("myValue");
-					num = builder.ge(path, valueValue);
+					num = theBuilder.ge(path, valueValue);
 					break;
 				case LESSTHAN:
 					path = from.get("myValue");
-					num = builder.lt(path, valueValue);
+					num = theBuilder.lt(path, valueValue);
 					break;
 				case LESSTHAN_OR_EQUALS:
 					path = from.get("myValue");
-					num = builder.le(path, valueValue);
+					num = theBuilder.le(path, valueValue);
 					break;
 				default:
 					throw new IllegalStateException(cmpValue.getCode());
@@ -518,58 +445,50 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 			if (system == null && code == null) {
 				codePredicates.add(num);
 			} else if (system == null) {
-				Predicate singleCode = builder.and(code, num);
+				Predicate singleCode = theBuilder.and(code, num);
 				codePredicates.add(singleCode);
 			} else if (code == null) {
-				Predicate singleCode = builder.and(system, num);
+				Predicate singleCode = theBuilder.and(system, num);
 				codePredicates.add(singleCode);
 			} else {
-				Predicate singleCode = builder.and(system, code, num);
+				Predicate singleCode = theBuilder.and(system, code, num);
 				codePredicates.add(singleCode);
 			}
 		}
 
-		Predicate masterCodePredicate = builder.or(codePredicates.toArray(new Predicate[0]));
+		Predicate masterCodePredicate = theBuilder.or(codePredicates.toArray(new Predicate[0]));
 
-		Predicate type = builder.equal(from.get("myResourceType"), myResourceName);
-		Predicate name = builder.equal(from.get("myParamName"), theParamName);
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myResourcePid").in(thePids));
-			cq.where(builder.and(type, name, masterCodePredicate, inPids));
-		} else {
-			cq.where(builder.and(type, name, masterCodePredicate));
-		}
+		Predicate type = theBuilder.equal(from.get("myResourceType"), myResourceName);
+		Predicate name = theBuilder.equal(from.get("myParamName"), theParamName);
+		subQ.where(theBuilder.and(type, name, masterCodePredicate));
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+		return theRoot.get("myId").in(subQ);
 	}
 
-	private Set<Long> addPredicateReference(String theParamName, Set<Long> thePids, List<? extends IQueryParameterType> theList) {
+	private Predicate addPredicateReference(String theParamName, List<? extends IQueryParameterType> theList, CriteriaBuilder theBuilder, AbstractQuery<?> theQuery, Root<ResourceTable> theRoot) {
 		assert theParamName.contains(".") == false;
 
-		Set<Long> pidsToRetain = thePids;
 		if (theList == null || theList.isEmpty()) {
-			return pidsToRetain;
+			return null;
 		}
 
 		if (Boolean.TRUE.equals(theList.get(0).getMissing())) {
-			return addPredicateParamMissingResourceLink(thePids, "myResourceLinks", theParamName);
+			return addPredicateParamMissingResourceLink(theParamName, theBuilder, theQuery, theRoot);
 		}
 
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceLink> from = cq.from(ResourceLink.class);
-		cq.select(from.get("mySourceResourcePid").as(Long.class));
+		Subquery<Long> subQ = theQuery.subquery(Long.class);
+		Root<ResourceLink> from = subQ.from(ResourceLink.class);
+		subQ.select(from.get("mySourceResourcePid").as(Long.class));
 
 		List<Predicate> codePredicates = new ArrayList<Predicate>();
 
 		for (IQueryParameterType nextOr : theList) {
 			IQueryParameterType params = nextOr;
 
-			if (addPredicateMissingFalseIfPresentForResourceLink(builder, theParamName, from, codePredicates, nextOr)) {
+			if (addPredicateMissingFalseIfPresentForResourceLink(theBuilder, theParamName, from, codePredicates, nextOr)) {
 				continue;
 			}
-			
+
 			if (params instanceof ReferenceParam) {
 				ReferenceParam ref = (ReferenceParam) params;
 
@@ -582,7 +501,7 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 					}
 					Long targetPid = translateForcedIdToPid(new IdDt(resourceId));
 					ourLog.info("Searching for resource link with target PID: {}", targetPid);
-					Predicate eq = builder.equal(from.get("myTargetResourcePid"), targetPid);
+					Predicate eq = theBuilder.equal(from.get("myTargetResourcePid"), targetPid);
 
 					codePredicates.add(eq);
 
@@ -632,18 +551,12 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 
 		}
 
-		Predicate masterCodePredicate = builder.or(codePredicates.toArray(new Predicate[0]));
+		Predicate masterCodePredicate = theBuilder.or(codePredicates.toArray(new Predicate[0]));
 
-		Predicate type = createResourceLinkPathPredicate(theParamName, builder, from);
-		if (pidsToRetain.size() > 0) {
-			Predicate inPids = (from.get("mySourceResourcePid").in(pidsToRetain));
-			cq.where(builder.and(type, masterCodePredicate, inPids));
-		} else {
-			cq.where(builder.and(type, masterCodePredicate));
-		}
+		Predicate type = createResourceLinkPathPredicate(theParamName, theBuilder, from);
+		subQ.where(theBuilder.and(type, masterCodePredicate));
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+		return theRoot.get("myId").in(subQ);
 	}
 
 	private Predicate createResourceLinkPathPredicate(String theParamName, CriteriaBuilder builder, Root<? extends ResourceLink> from) {
@@ -653,44 +566,37 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 		return type;
 	}
 
-	private Set<Long> addPredicateString(String theParamName, Set<Long> thePids, List<? extends IQueryParameterType> theList) {
+	private Predicate addPredicateString(String theParamName, List<? extends IQueryParameterType> theList, CriteriaBuilder theBuilder, AbstractQuery<?> theQuery, Root<ResourceTable> theRoot) {
 		if (theList == null || theList.isEmpty()) {
-			return thePids;
+			return null;
 		}
 
 		if (Boolean.TRUE.equals(theList.get(0).getMissing())) {
-			return addPredicateParamMissing(thePids, "myParamsString", theParamName, ResourceIndexedSearchParamString.class);
+			return addPredicateParamMissing(theParamName, ResourceIndexedSearchParamString.class, theBuilder, theQuery, theRoot);
 		}
 
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceIndexedSearchParamString> from = cq.from(ResourceIndexedSearchParamString.class);
-		cq.select(from.get("myResourcePid").as(Long.class));
+		Subquery<Long> subQ = theQuery.subquery(Long.class);
+		Root<ResourceIndexedSearchParamString> from = subQ.from(ResourceIndexedSearchParamString.class);
+		subQ.select(from.get("myResourcePid").as(Long.class));
 
 		List<Predicate> codePredicates = new ArrayList<Predicate>();
 		for (IQueryParameterType nextOr : theList) {
 			IQueryParameterType theParameter = nextOr;
-			if (addPredicateMissingFalseIfPresent(builder, theParamName, from, codePredicates, nextOr)) {
+			if (addPredicateMissingFalseIfPresent(theBuilder, theParamName, from, codePredicates, nextOr)) {
 				continue;
 			}
-			
-			Predicate singleCode = createPredicateString(theParameter, theParamName, builder, from);
+
+			Predicate singleCode = createPredicateString(theParameter, theParamName, theBuilder, from);
 			codePredicates.add(singleCode);
 		}
 
-		Predicate masterCodePredicate = builder.or(codePredicates.toArray(new Predicate[0]));
+		Predicate masterCodePredicate = theBuilder.or(codePredicates.toArray(new Predicate[0]));
 
-		Predicate type = builder.equal(from.get("myResourceType"), myResourceName);
-		Predicate name = builder.equal(from.get("myParamName"), theParamName);
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myResourcePid").in(thePids));
-			cq.where(builder.and(type, name, masterCodePredicate, inPids));
-		} else {
-			cq.where(builder.and(type, name, masterCodePredicate));
-		}
+		Predicate type = theBuilder.equal(from.get("myResourceType"), myResourceName);
+		Predicate name = theBuilder.equal(from.get("myParamName"), theParamName);
+		subQ.where(theBuilder.and(type, name, masterCodePredicate));
 
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
+		return theRoot.get("myId").in(subQ);
 	}
 
 	private boolean addPredicateMissingFalseIfPresent(CriteriaBuilder theBuilder, String theParamName, Root<? extends BaseResourceIndexedSearchParam> from, List<Predicate> codePredicates, IQueryParameterType nextOr) {
@@ -721,62 +627,43 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 		return missingFalse;
 	}
 
-	private Set<Long> addPredicateToken(String theParamName, Set<Long> thePids, List<? extends IQueryParameterType> theList) {
+	private Predicate addPredicateToken(String theParamName, List<? extends IQueryParameterType> theList, CriteriaBuilder theBuilder, AbstractQuery<?> theQuery, Root<ResourceTable> theRoot) {
 		if (theList == null || theList.isEmpty()) {
-			return thePids;
+			return null;
 		}
 
 		if (Boolean.TRUE.equals(theList.get(0).getMissing())) {
-			return addPredicateParamMissing(thePids, "myParamsToken", theParamName, ResourceIndexedSearchParamToken.class);
+			return addPredicateParamMissing(theParamName, ResourceIndexedSearchParamToken.class, theBuilder, theQuery, theRoot);
 		}
 
-		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
-		Root<ResourceIndexedSearchParamToken> from = cq.from(ResourceIndexedSearchParamToken.class);
-		cq.select(from.get("myResourcePid").as(Long.class));
+		Subquery<Long> subQ = theQuery.subquery(Long.class);
+		Root<ResourceIndexedSearchParamToken> from = subQ.from(ResourceIndexedSearchParamToken.class);
+		subQ.select(from.get("myResourcePid").as(Long.class));
 
 		List<Predicate> codePredicates = new ArrayList<Predicate>();
 		for (IQueryParameterType nextOr : theList) {
-			if (addPredicateMissingFalseIfPresent(builder, theParamName, from, codePredicates, nextOr)) {
+			if (addPredicateMissingFalseIfPresent(theBuilder, theParamName, from, codePredicates, nextOr)) {
 				continue;
 			}
-			
+
 			if (nextOr instanceof TokenParam) {
 				TokenParam id = (TokenParam) nextOr;
 				if (id.isText()) {
-					return addPredicateString(theParamName, thePids, theList);
+					return addPredicateString(theParamName, theList, theBuilder, theQuery, theRoot);
 				}
 			}
 
-			Predicate singleCode = createPredicateToken(nextOr, theParamName, builder, from);
+			Predicate singleCode = createPredicateToken(nextOr, theParamName, theBuilder, from);
 			codePredicates.add(singleCode);
 		}
 
-		Predicate masterCodePredicate = builder.or(codePredicates.toArray(new Predicate[0]));
+		Predicate masterCodePredicate = theBuilder.or(codePredicates.toArray(new Predicate[0]));
 
-		Predicate type = builder.equal(from.get("myResourceType"), myResourceName);
-		Predicate name = builder.equal(from.get("myParamName"), theParamName);
-		if (thePids.size() > 0) {
-			Predicate inPids = (from.get("myResourcePid").in(thePids));
-			cq.where(builder.and(type, name, masterCodePredicate, inPids));
-		} else {
-			cq.where(builder.and(type, name, masterCodePredicate));
-		}
-
-		TypedQuery<Long> q = myEntityManager.createQuery(cq);
-		return new HashSet<Long>(q.getResultList());
-	}
+		Predicate type = theBuilder.equal(from.get("myResourceType"), myResourceName);
+		Predicate name = theBuilder.equal(from.get("myParamName"), theParamName);
+		subQ.where(theBuilder.and(type, name, masterCodePredicate));
 
-	private List<IBaseResource> addResourcesAsIncludesById(List<IBaseResource> theListToPopulate, Set<? extends IIdType> includePids, List<IBaseResource> resources) {
-		if (!includePids.isEmpty()) {
-			ourLog.info("Loading {} included resources", includePids.size());
-			resources = loadResourcesById(includePids);
-			for (IBaseResource next : resources) {
-				ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put((IResource) next, BundleEntrySearchModeEnum.INCLUDE);
-			}
-			theListToPopulate.addAll(resources);
-		}
-		return resources;
+		return theRoot.get("myId").in(subQ);
 	}
 
 	@Override
@@ -1002,59 +889,116 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 		return singleCode;
 	}
 
-	private void createSort(CriteriaBuilder theBuilder, Root<ResourceTable> theFrom, SortSpec theSort, List<Order> theOrders, List<Predicate> thePredicates) {
+	/**
+	 * Adds the ORDER BY clauses (and the aggregate selections backing them) for a sort specification. The query this is
+	 * applied to must be grouped by resource ID, since a resource may have several indexed values for the sort
+	 * parameter: ascending sorts use the lowest value and descending sorts use the highest one.
+	 * <p>
+	 * The first sort parameter joins only the rows for that parameter (via <code>thePredicates</code>), so the query
+	 * must already be restricted to resources which have a value for it. Chained sort parameters may be missing, so
+	 * they are joined as outer joins and pick out their own rows using a CASE expression.
+	 * </p>
+	 */
+	private void createSort(CriteriaBuilder theBuilder, Root<ResourceTable> theFrom, SortSpec theSort, List<Selection<?>> theSelections, List<Order> theOrders, List<Predicate> thePredicates) {
 		if (theSort == null || isBlank(theSort.getParamName())) {
 			return;
 		}
 
+		boolean ascending = theSort.getOrder() == null || theSort.getOrder() == SortOrderEnum.ASC;
+
 		if ("_id".equals(theSort.getParamName())) {
-			From<?, ?> forcedIdJoin = theFrom.join("myForcedId", JoinType.LEFT);
-			if (theSort.getOrder() == null || theSort.getOrder() == SortOrderEnum.ASC) {
-				theOrders.add(theBuilder.asc(forcedIdJoin.get("myForcedId")));
+			From<ResourceTable, ForcedId> forcedIdJoin = theFrom.join("myForcedId", JoinType.LEFT);
+			Expression<String> forcedId = ascending ? theBuilder.least(forcedIdJoin.<String> get("myForcedId")) : theBuilder.greatest(forcedIdJoin.<String> get("myForcedId"));
+			theSelections.add(forcedId);
+			if (ascending) {
+				theOrders.add(theBuilder.asc(forcedId));
 				theOrders.add(theBuilder.asc(theFrom.get("myId")));
 			} else {
-				theOrders.add(theBuilder.desc(forcedIdJoin.get("myForcedId")));
+				theOrders.add(theBuilder.desc(forcedId));
 				theOrders.add(theBuilder.desc(theFrom.get("myId")));
 			}
 
-			createSort(theBuilder, theFrom, theSort.getChain(), theOrders, null);
+			createSort(theBuilder, theFrom, theSort.getChain(), theSelections, theOrders, null);
 			return;
 		}
 
-		RuntimeResourceDefinition resourceDef = getContext().getResourceDefinition(myResourceType);
-		RuntimeSearchParam param = resourceDef.getSearchParam(theSort.getParamName());
-		if (param == null) {
-			throw new InvalidRequestException("Unknown sort parameter '" + theSort.getParamName() + "'");
+		JoinType joinType = thePredicates != null ? JoinType.INNER : JoinType.LEFT;
+		Expression<?> sortValue;
+		switch (getSortParamType(theSort)) {
+		case STRING: {
+			From<ResourceTable, ResourceIndexedSearchParamString> join = theFrom.join("myParamsString", joinType);
+			Expression<String> value = createSortValue(theBuilder, join, "myValueExact", String.class, theSort.getParamName(), thePredicates);
+			sortValue = ascending ? theBuilder.least(value) : theBuilder.greatest(value);
+			break;
+		}
+		case DATE:
+		default: {
+			From<ResourceTable, ResourceIndexedSearchParamDate> join = theFrom.join("myParamsDate", joinType);
+			Expression<Date> value = createSortValue(theBuilder, join, "myValueLow", Date.class, theSort.getParamName(), thePredicates);
+			sortValue = ascending ? theBuilder.least(value) : theBuilder.greatest(value);
+			break;
+		}
 		}
 
-		String joinAttrName;
-		String sortAttrName;
+		theSelections.add(sortValue);
+		if (ascending) {
+			theOrders.add(theBuilder.asc(sortValue));
+		} else {
+			theOrders.add(theBuilder.desc(sortValue));
+		}
 
-		switch (param.getParamType()) {
+		createSort(theBuilder, theFrom, theSort.getChain(), theSelections, theOrders, null);
+	}
+
+	private <X> Expression<X> createSortValue(CriteriaBuilder theBuilder, From<?, ?> theJoin, String theSortAttrName, Class<X> theType, String theParamName, List<Predicate> thePredicates) {
+		Predicate nameMatches = theBuilder.equal(theJoin.get("myParamName"), theParamName);
+		if (thePredicates != null) {
+			thePredicates.add(nameMatches);
+			return theJoin.<X> get(theSortAttrName);
+		}
+		return theBuilder.<X> selectCase().when(nameMatches, theJoin.<X> get(theSortAttrName)).otherwise(theBuilder.nullLiteral(theType));
+	}
+
+	/**
+	 * Creates a predicate matching resources which have at least one indexed value for the (non <code>_id</code>) sort
+	 * parameter
+	 */
+	private Predicate createSortValuePresentPredicate(SortSpec theSort, CriteriaBuilder theBuilder, AbstractQuery<?> theQuery, Root<ResourceTable> theRoot) {
+		Class<? extends BaseResourceIndexedSearchParam> paramTable;
+		switch (getSortParamType(theSort)) {
 		case STRING:
-			joinAttrName = "myParamsString";
-			sortAttrName = "myValueExact";
+			paramTable = ResourceIndexedSearchParamString.class;
 			break;
 		case DATE:
-			joinAttrName = "myParamsDate";
-			sortAttrName = "myValueLow";
-			break;
 		default:
-			throw new NotImplementedException("This server does not support _sort specifications of type " + param.getParamType() + " - Can't serve _sort=" + theSort.getParamName());
+			paramTable = ResourceIndexedSearchParamDate.class;
+			break;
 		}
 
-		From<?, ?> stringJoin = theFrom.join(joinAttrName, JoinType.INNER);
-		// Predicate p = theBuilder.equal(stringJoin.get("myParamName"), theSort.getParamName());
-		// Predicate pn = theBuilder.isNull(stringJoin.get("myParamName"));
-		// thePredicates.add(theBuilder.or(p, pn));
+		Subquery<Long> subQ = theQuery.subquery(Long.class);
+		Root<? extends BaseResourceIndexedSearchParam> subQfrom = subQ.from(paramTable);
+		subQ.select(subQfrom.get("myResourcePid").as(Long.class));
+		Predicate subQname = theBuilder.equal(subQfrom.get("myParamName"), theSort.getParamName());
+		Predicate subQtype = theBuilder.equal(subQfrom.get("myResourceType"), myResourceName);
+		subQ.where(theBuilder.and(subQtype, subQname));
 
-		if (theSort.getOrder() == null || theSort.getOrder() == SortOrderEnum.ASC) {
-			theOrders.add(theBuilder.asc(stringJoin.get(sortAttrName)));
-		} else {
-			theOrders.add(theBuilder.desc(stringJoin.get(sortAttrName)));
+		return theBuilder.in(theRoot.get("myId")).value(subQ);
+	}
+
+	private RestSearchParameterTypeEnum getSortParamType(SortSpec theSort) {
+		RuntimeResourceDefinition resourceDef = getContext().getResourceDefinition(myResourceType);
+		RuntimeSearchParam param = resourceDef.getSearchParam(theSort.getParamName());
+		if (param == null) {
+			throw new InvalidRequestException("Unknown sort parameter '" + theSort.getParamName() + "'");
 		}
 
-		createSort(theBuilder, theFrom, theSort.getChain(), theOrders, null);
+		switch (param.getParamType()) {
+		case STRING:
+		case DATE:
+			return param.getParamType();
+		default:
+			throw new NotImplementedException("This server does not support _sort specifications of type " + param.getParamType() + " - Can't serve _sort=" + theSort.getParamName());
+		}
 	}
 
 	@Override
@@ -1154,6 +1098,15 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 		return tags;
 	}
 
+	/**
+	 * Returns the source paths of the indexed resource links (see {@link ResourceLink#getSourcePath()}) which the given
+	 * include follows, or <code>null</code> if the include does not correspond to a reference search parameter and so
+	 * must be resolved by examining the resources themselves using
+	 * {@link #getIncludeValues(FhirTerser, Include, IBaseResource, RuntimeResourceDefinition)}. The wildcard include
+	 * is handled separately and is never passed to this method.
+	 */
+	protected abstract Set<String> getIncludeLinkPaths(Include theInclude);
+
 	protected abstract List<Object> getIncludeValues(FhirTerser theTerser, Include theInclude, IBaseResource theResource, RuntimeResourceDefinition theResourceDef);
 
 	public Class<T> getResourceType() {
@@ -1314,6 +1267,125 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 		}
 	}
 
+	@Override
+	public List<IBaseResource> loadSearchPage(List<Long> thePids, Set<Include> theIncludes) {
+		// Execute the query and make sure we return distinct results
+		List<IBaseResource> retVal = new ArrayList<IBaseResource>();
+		loadResourcesByPid(thePids, retVal, BundleEntrySearchModeEnum.MATCH);
+
+		/*
+		 * Load _include resources - Note that _revincludes are handled differently than _include ones, as they are counted towards the total count and paged, so they are loaded
+		 * outside the bundle provider
+		 */
+		if (theIncludes != null && theIncludes.isEmpty() == false) {
+			boolean includeAllLinks = false;
+			Set<String> linkPaths = new HashSet<String>();
+			List<Include> unindexedIncludes = new ArrayList<Include>();
+			for (Include next : theIncludes) {
+				if ("*".equals(next.getValue())) {
+					includeAllLinks = true;
+					continue;
+				}
+				Set<String> paths = getIncludeLinkPaths(next);
+				if (paths != null) {
+					linkPaths.addAll(paths);
+				} else {
+					unindexedIncludes.add(next);
+				}
+			}
+
+			Set<Long> previouslyLoadedPids = new HashSet<Long>(thePids);
+			Collection<Long> sourcePids = thePids;
+			List<IBaseResource> resources = retVal;
+			Set<Long> includePids = new HashSet<Long>();
+			do {
+				includePids.clear();
+
+				if (includeAllLinks || linkPaths.isEmpty() == false) {
+					includePids.addAll(loadIncludedPidsFromLinks(sourcePids, includeAllLinks ? null : linkPaths));
+				}
+				if (unindexedIncludes.isEmpty() == false) {
+					includePids.addAll(loadIncludedPidsFromResources(resources, unindexedIncludes));
+				}
+				includePids.removeAll(previouslyLoadedPids);
+				previouslyLoadedPids.addAll(includePids);
+
+				if (includePids.isEmpty() == false) {
+					ourLog.info("Loading {} included resources", includePids.size());
+				}
+				int firstIncluded = retVal.size();
+				loadResourcesByPid(includePids, retVal, BundleEntrySearchModeEnum.INCLUDE);
+				resources = new ArrayList<IBaseResource>(retVal.subList(firstIncluded, retVal.size()));
+				sourcePids = new ArrayList<Long>(includePids);
+			} while (includePids.size() > 0 && previouslyLoadedPids.size() < getConfig().getIncludeLimit());
+
+			if (previouslyLoadedPids.size() >= getConfig().getIncludeLimit()) {
+				OperationOutcome oo = new OperationOutcome();
+				oo.addIssue().setSeverity(IssueSeverityEnum.WARNING)
+						.setDetails("Not all _include resources were actually included as the request surpassed the limit of " + getConfig().getIncludeLimit() + " resources");
+				retVal.add(0, oo);
+			}
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Returns the PIDs of the resources which are linked to from the given resources, using the indexed links instead
+	 * of parsing the resources. If <code>theSourcePaths</code> is null, links from all reference search parameters are
+	 * followed.
+	 */
+	private Set<Long> loadIncludedPidsFromLinks(Collection<Long> theSourcePids, Set<String> theSourcePaths) {
+		Set<Long> retVal = new HashSet<Long>();
+		for (List<Long> nextChunk : Lists.partition(new ArrayList<Long>(theSourcePids), MAX_IDS_PER_QUERY)) {
+			TypedQuery<Long> q;
+			if (theSourcePaths == null) {
+				String sql = "SELECT r.myTargetResourcePid FROM ResourceLink r WHERE r.mySourceResourcePid IN (:src_pids)";
+				q = myEntityManager.createQuery(sql, Long.class);
+			} else {
+				String sql = "SELECT r.myTargetResourcePid FROM ResourceLink r WHERE r.mySourcePath IN (:src_paths) AND r.mySourceResourcePid IN (:src_pids)";
+				q = myEntityManager.createQuery(sql, Long.class);
+				q.setParameter("src_paths", theSourcePaths);
+			}
+			q.setParameter("src_pids", nextChunk);
+			retVal.addAll(q.getResultList());
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the PIDs of the resources which are referenced by the given resources at the paths of includes which
+	 * can not be resolved using the indexed links (see {@link #getIncludeLinkPaths(Include)})
+	 */
+	private Collection<Long> loadIncludedPidsFromResources(List<IBaseResource> theResources, List<Include> theIncludes) {
+		Set<IdDt> includeIds = new HashSet<IdDt>();
+		FhirTerser t = getContext().newTerser();
+		for (Include next : theIncludes) {
+			for (IBaseResource nextResource : theResources) {
+				RuntimeResourceDefinition def = getContext().getResourceDefinition(nextResource);
+				List<Object> values = getIncludeValues(t, next, nextResource, def);
+
+				for (Object object : values) {
+					if (object == null) {
+						continue;
+					}
+					if (!(object instanceof BaseResourceReferenceDt)) {
+						throw new InvalidRequestException("Path '" + next.getValue() + "' produced non ResourceReferenceDt value: " + object.getClass());
+					}
+					BaseResourceReferenceDt rr = (BaseResourceReferenceDt) object;
+					if (rr.getReference().isEmpty()) {
+						continue;
+					}
+					if (rr.getReference().isLocal()) {
+						continue;
+					}
+					includeIds.add(rr.getReference().toUnqualified());
+				}
+			}
+		}
+		return translateForcedIdsToPids(includeIds).values();
+	}
+
 	protected void loadReverseIncludes(List<Long> theMatches, Set<Include> theRevIncludes) {
 		if (theMatches.size() == 0) {
 			return;
@@ -1598,171 +1670,316 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 		StopWatch w = new StopWatch();
 		final InstantDt now = InstantDt.withCurrentTime();
 
-		Set<Long> loadPids;
-		if (theParams.isEmpty()) {
-			loadPids = new HashSet<Long>();
-			CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-			CriteriaQuery<Tuple> cq = builder.createTupleQuery();
-			Root<ResourceTable> from = cq.from(ResourceTable.class);
-			cq.multiselect(from.get("myId").as(Long.class));
-			Predicate typeEquals = builder.equal(from.get("myResourceType"), myResourceName);
-			Predicate notDeleted = builder.isNull(from.get("myDeleted"));
-			cq.where(builder.and(typeEquals, notDeleted));
-
-			TypedQuery<Tuple> query = myEntityManager.createQuery(cq);
-			for (Tuple next : query.getResultList()) {
-				loadPids.add(next.get(0, Long.class));
+		for (SortSpec nextSort = theParams.getSort(); nextSort != null && isNotBlank(nextSort.getParamName()); nextSort = nextSort.getChain()) {
+			if (!"_id".equals(nextSort.getParamName())) {
+				getSortParamType(nextSort);
 			}
+		}
+
+		IBundleProvider retVal;
+		final List<Long> pids = loadAllSearchPidsIfSmallOrNeeded(theParams);
+		if (pids != null) {
+
+			retVal = new IPersistableBundleProvider() {
+				@Override
+				public Set<Include> getIncludes() {
+					return theParams.getIncludes();
+				}
+
+				@Override
+				public InstantDt getPublished() {
+					return now;
+				}
+
+				@Override
+				public Class<? extends IResource> getResourceType() {
+					return myResourceType;
+				}
+
+				@Override
+				public List<Long> loadResourcePids(int theFromIndex, int theToIndex) {
+					return new ArrayList<Long>(pids.subList(theFromIndex, Math.min(theToIndex, pids.size())));
+				}
+
+				@Override
+				public List<IBaseResource> getResources(final int theFromIndex, final int theToIndex) {
+					TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+					return template.execute(new TransactionCallback<List<IBaseResource>>() {
+						@Override
+						public List<IBaseResource> doInTransaction(TransactionStatus theStatus) {
+							return loadSearchPage(pids.subList(theFromIndex, theToIndex), theParams.getIncludes());
+						}
+					});
+				}
+
+				@Override
+				public Integer preferredPageSize() {
+					return theParams.getCount();
+				}
+
+				@Override
+				public int size() {
+					return pids.size();
+				}
+			};
+
 		} else {
-			loadPids = searchForIdsWithAndOr(theParams);
-			if (loadPids.isEmpty()) {
+
+			/*
+			 * The first count happens up front so that any problems with the search parameters are reported here, and
+			 * searches which can't match anything short circuit
+			 */
+			final Integer countUpTo = getConfig().getCountSearchResultsUpTo();
+			final int initialSize = countUpTo != null ? countSearchPidsUpTo(theParams, countUpTo) : countSearchPids(theParams, null);
+			if (initialSize == 0) {
 				return new SimpleBundleProvider();
 			}
-		}
 
-		final List<Long> pids;
-
-		// Handle sorting if any was provided
-		if (theParams.getSort() != null && isNotBlank(theParams.getSort().getParamName())) {
-			List<Order> orders = new ArrayList<Order>();
-			List<Predicate> predicates = new ArrayList<Predicate>();
-			CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
-			CriteriaQuery<Tuple> cq = builder.createTupleQuery();
-			Root<ResourceTable> from = cq.from(ResourceTable.class);
-			predicates.add(from.get("myId").in(loadPids));
-			createSort(builder, from, theParams.getSort(), orders, predicates);
-			if (orders.size() > 0) {
-				Set<Long> originalPids = loadPids;
-				loadPids = new LinkedHashSet<Long>();
-				cq.multiselect(from.get("myId").as(Long.class));
-				cq.where(predicates.toArray(new Predicate[0]));
-				cq.orderBy(orders);
-
-				TypedQuery<Tuple> query = myEntityManager.createQuery(cq);
-
-				for (Tuple next : query.getResultList()) {
-					loadPids.add(next.get(0, Long.class));
+			retVal = new IPersistableBundleProvider() {
+				private int myHighestRequestedIndex;
+				private int mySize = initialSize;
+				private int mySizeCountedUpTo = countUpTo != null ? countUpTo : 0;
+
+				@Override
+				public Set<Include> getIncludes() {
+					return theParams.getIncludes();
 				}
 
-				ourLog.info("Sort PID order is now: {}", loadPids);
+				@Override
+				public InstantDt getPublished() {
+					return now;
+				}
 
-				pids = new ArrayList<Long>(loadPids);
+				@Override
+				public Class<? extends IResource> getResourceType() {
+					return myResourceType;
+				}
 
-				// Any ressources which weren't matched by the sort get added to the bottom
-				for (Long next : originalPids) {
-					if (loadPids.contains(next) == false) {
-						pids.add(next);
+				@Override
+				public List<Long> loadResourcePids(final int theFromIndex, final int theToIndex) {
+					TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+					return template.execute(new TransactionCallback<List<Long>>() {
+						@Override
+						public List<Long> doInTransaction(TransactionStatus theStatus) {
+							return loadSearchPids(theParams, theFromIndex, theToIndex - theFromIndex);
+						}
+					});
+				}
+
+				@Override
+				public List<IBaseResource> getResources(final int theFromIndex, final int theToIndex) {
+					synchronized (this) {
+						myHighestRequestedIndex = Math.max(myHighestRequestedIndex, theToIndex);
 					}
+
+					TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+					return template.execute(new TransactionCallback<List<IBaseResource>>() {
+						@Override
+						public List<IBaseResource> doInTransaction(TransactionStatus theStatus) {
+							List<Long> pids = loadSearchPids(theParams, theFromIndex, theToIndex - theFromIndex);
+							return loadSearchPage(pids, theParams.getIncludes());
+						}
+					});
 				}
 
-			} else {
-				pids = new ArrayList<Long>(loadPids);
+				@Override
+				public Integer preferredPageSize() {
+					return theParams.getCount();
+				}
+
+				@Override
+				public synchronized int size() {
+					if (countUpTo == null) {
+						return mySize;
+					}
+
+					/*
+					 * Only count as far as the client has paged plus the configured limit. If the previous count hit its
+					 * limit and the client has since moved further along, count again.
+					 */
+					final int limit = myHighestRequestedIndex + countUpTo;
+					if (mySize == mySizeCountedUpTo && limit > mySizeCountedUpTo) {
+						TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+						mySize = template.execute(new TransactionCallback<Integer>() {
+							@Override
+							public Integer doInTransaction(TransactionStatus theStatus) {
+								return countSearchPidsUpTo(theParams, limit);
+							}
+						});
+						mySizeCountedUpTo = limit;
+					}
+					return mySize;
+				}
+			};
+
+		}
+
+		ourLog.info("Processed search for {} on {} in {}ms", new Object[] { myResourceName, theParams, w.getMillisAndRestart() });
+
+		return retVal;
+	}
+
+	/**
+	 * Loads the complete list of PIDs for a search up front when it is needed or can be reused, or returns
+	 * <code>null</code> if the search should be paged through in the database instead.
+	 * <p>
+	 * The list is needed for _revinclude searches, since _revinclude resources are counted towards the total and
+	 * paged along with the matches. It is reused when {@link DaoConfig#getReuseCachedSearchResultsForMillis() search
+	 * result caching} is enabled and an identical recent search was cached. Searches small enough to be cached are
+	 * also loaded in full so that they can be cached.
+	 * </p>
+	 */
+	private List<Long> loadAllSearchPidsIfSmallOrNeeded(SearchParameterMap theParams) {
+		boolean hasRevIncludes = theParams.getRevIncludes() != null && theParams.getRevIncludes().isEmpty() == false;
+		Long reuseCachedResultsFor = getConfig().getReuseCachedSearchResultsForMillis();
+		if (!hasRevIncludes && reuseCachedResultsFor == null) {
+			return null;
+		}
+
+		SearchResultCache cache = getConfig().getSearchResultCache();
+		String cacheKey = null;
+		if (reuseCachedResultsFor != null) {
+			cacheKey = myResourceType.getName() + '?' + theParams.toNormalizedQueryString();
+			List<Long> retVal = cache.get(cacheKey, reuseCachedResultsFor);
+			if (retVal != null) {
+				ourLog.debug("Reusing {} cached results for search {}", retVal.size(), cacheKey);
+				return retVal;
+			}
+
+			// Check whether the search has more matches than can be cached, without loading or counting them all
+			if (!hasRevIncludes && querySearchPids(theParams, null, null, cache.getMaxResultsPerEntry(), 1).size() > 0) {
+				return null;
 			}
-		} else {
-			pids = new ArrayList<Long>(loadPids);
 		}
 
-		// Load _revinclude resources
-		if (theParams.getRevIncludes() != null && theParams.getRevIncludes().isEmpty() == false) {
-			loadReverseIncludes(pids, theParams.getRevIncludes());
+		List<Long> retVal = loadSearchPids(theParams, 0, null);
+		if (hasRevIncludes) {
+			loadReverseIncludes(retVal, theParams.getRevIncludes());
 		}
 
-		IBundleProvider retVal = new IBundleProvider() {
-			@Override
-			public InstantDt getPublished() {
-				return now;
+		if (cacheKey != null) {
+			cache.put(cacheKey, myResourceName, hasRevIncludes || hasChainedParams(theParams), retVal);
+		}
+
+		return retVal;
+	}
+
+	private static boolean hasChainedParams(SearchParameterMap theParams) {
+		for (List<List<? extends IQueryParameterType>> nextAndList : theParams.values()) {
+			for (List<? extends IQueryParameterType> nextOrList : nextAndList) {
+				for (IQueryParameterType next : nextOrList) {
+					if (next instanceof ReferenceParam && isNotBlank(((ReferenceParam) next).getChain())) {
+						return true;
+					}
+				}
 			}
+		}
+		return false;
+	}
 
-			@Override
-			public List<IBaseResource> getResources(final int theFromIndex, final int theToIndex) {
-				TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
-				return template.execute(new TransactionCallback<List<IBaseResource>>() {
-					@Override
-					public List<IBaseResource> doInTransaction(TransactionStatus theStatus) {
-						List<Long> pidsSubList = pids.subList(theFromIndex, theToIndex);
-
-						// Execute the query and make sure we return distinct results
-						List<IBaseResource> retVal = new ArrayList<IBaseResource>();
-						loadResourcesByPid(pidsSubList, retVal, BundleEntrySearchModeEnum.MATCH);
-
-						/*
-						 * Load _include resources - Note that _revincludes are handled differently than _include ones, as they are counted towards the total count and paged, so they are loaded
-						 * outside the bundle provider
-						 */
-						if (theParams.getIncludes() != null && theParams.getIncludes().isEmpty() == false) {
-							Set<IIdType> previouslyLoadedPids = new HashSet<IIdType>();
-							for (IBaseResource next : retVal) {
-								previouslyLoadedPids.add(next.getIdElement().toUnqualifiedVersionless());
-							}
+	/**
+	 * Loads one page of the PIDs matching a search, in the order requested by the search's sort specification (or in
+	 * PID order if none was given).
+	 * <p>
+	 * When sorting by a search parameter, resources with a value for that parameter are returned first and those
+	 * without one follow. Each of these two groups is paged by the database independently and the page is stitched
+	 * together here.
+	 * </p>
+	 * 
+	 * @param theMaxResults
+	 *           The maximum number of PIDs to return, or <code>null</code> to return all of them
+	 */
+	private List<Long> loadSearchPids(SearchParameterMap theParams, int theFirstResult, Integer theMaxResults) {
+		SortSpec sort = theParams.getSort();
+		if (sort == null || isBlank(sort.getParamName())) {
+			return querySearchPids(theParams, null, null, theFirstResult, theMaxResults);
+		}
+		if ("_id".equals(sort.getParamName())) {
+			return querySearchPids(theParams, sort, null, theFirstResult, theMaxResults);
+		}
 
-							Set<IdDt> includePids = new HashSet<IdDt>();
-							List<IBaseResource> resources = retVal;
-							do {
-								includePids.clear();
-
-								FhirTerser t = getContext().newTerser();
-								for (Include next : theParams.getIncludes()) {
-									for (IBaseResource nextResource : resources) {
-										RuntimeResourceDefinition def = getContext().getResourceDefinition(nextResource);
-										List<Object> values = getIncludeValues(t, next, nextResource, def);
-
-										for (Object object : values) {
-											if (object == null) {
-												continue;
-											}
-											if (!(object instanceof BaseResourceReferenceDt)) {
-												throw new InvalidRequestException("Path '" + next.getValue() + "' produced non ResourceReferenceDt value: " + object.getClass());
-											}
-											BaseResourceReferenceDt rr = (BaseResourceReferenceDt) object;
-											if (rr.getReference().isEmpty()) {
-												continue;
-											}
-											if (rr.getReference().isLocal()) {
-												continue;
-											}
-
-											IdDt nextId = rr.getReference().toUnqualified();
-											if (!previouslyLoadedPids.contains(nextId)) {
-												includePids.add(nextId);
-												previouslyLoadedPids.add(nextId);
-											}
-										}
-									}
-								}
-
-								resources = addResourcesAsIncludesById(retVal, includePids, resources);
-							} while (includePids.size() > 0 && previouslyLoadedPids.size() < getConfig().getIncludeLimit());
-
-							if (previouslyLoadedPids.size() >= getConfig().getIncludeLimit()) {
-								OperationOutcome oo = new OperationOutcome();
-								oo.addIssue().setSeverity(IssueSeverityEnum.WARNING)
-										.setDetails("Not all _include resources were actually included as the request surpassed the limit of " + getConfig().getIncludeLimit() + " resources");
-								retVal.add(0, oo);
-							}
-						}
+		List<Long> retVal = querySearchPids(theParams, sort, Boolean.TRUE, theFirstResult, theMaxResults);
+		if (theMaxResults != null && retVal.size() >= theMaxResults) {
+			return retVal;
+		}
 
-						return retVal;
-					}
+		int countWithSortValue;
+		if (retVal.size() > 0 || theFirstResult == 0) {
+			countWithSortValue = theFirstResult + retVal.size();
+		} else {
+			countWithSortValue = countSearchPids(theParams, Boolean.TRUE);
+		}
 
-				});
-			}
+		int firstWithoutSortValue = Math.max(0, theFirstResult - countWithSortValue);
+		Integer maxWithoutSortValue = theMaxResults != null ? theMaxResults - retVal.size() : null;
+		retVal.addAll(querySearchPids(theParams, null, Boolean.FALSE, firstWithoutSortValue, maxWithoutSortValue));
+		return retVal;
+	}
 
-			@Override
-			public Integer preferredPageSize() {
-				return theParams.getCount();
-			}
+	private List<Long> querySearchPids(SearchParameterMap theParams, SortSpec theSort, Boolean theHasSortValue, int theFirstResult, Integer theMaxResults) {
+		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> cq = builder.createTupleQuery();
+		Root<ResourceTable> from = cq.from(ResourceTable.class);
 
-			@Override
-			public int size() {
-				return pids.size();
-			}
-		};
+		List<Predicate> predicates = createSearchRootPredicates(theParams, theHasSortValue, builder, cq, from);
+		if (predicates == null) {
+			return new ArrayList<Long>();
+		}
 
-		ourLog.info("Processed search for {} on {} in {}ms", new Object[] { myResourceName, theParams, w.getMillisAndRestart() });
+		List<Selection<?>> selections = new ArrayList<Selection<?>>();
+		selections.add(from.get("myId").as(Long.class));
+		List<Order> orders = new ArrayList<Order>();
+		createSort(builder, from, theSort, selections, orders, predicates);
+		if (orders.size() > 0) {
+			cq.groupBy(from.get("myId"));
+		}
+
+		// Always finish with the PID so that paging through equal sort values is stable
+		orders.add(builder.asc(from.get("myId")));
+
+		cq.multiselect(selections);
+		cq.where(builder.and(predicates.toArray(new Predicate[0])));
+		cq.orderBy(orders);
 
+		TypedQuery<Tuple> q = myEntityManager.createQuery(cq);
+		q.setFirstResult(theFirstResult);
+		if (theMaxResults != null) {
+			q.setMaxResults(theMaxResults);
+		}
+
+		List<Long> retVal = new ArrayList<Long>();
+		for (Tuple next : q.getResultList()) {
+			retVal.add(next.get(0, Long.class));
+		}
 		return retVal;
 	}
 
+	/**
+	 * Counts the resources matching a search, but stops at <code>theUpTo</code>. This is done by probing for a row at
+	 * that offset first, so that the (potentially expensive) COUNT query only runs for small result sets.
+	 */
+	private int countSearchPidsUpTo(SearchParameterMap theParams, int theUpTo) {
+		if (querySearchPids(theParams, null, null, theUpTo - 1, 1).size() > 0) {
+			return theUpTo;
+		}
+		return countSearchPids(theParams, null);
+	}
+
+	private int countSearchPids(SearchParameterMap theParams, Boolean theHasSortValue) {
+		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
+		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
+		Root<ResourceTable> from = cq.from(ResourceTable.class);
+
+		List<Predicate> predicates = createSearchRootPredicates(theParams, theHasSortValue, builder, cq, from);
+		if (predicates == null) {
+			return 0;
+		}
+
+		cq.select(builder.count(from));
+		cq.where(builder.and(predicates.toArray(new Predicate[0])));
+		return myEntityManager.createQuery(cq).getSingleResult().intValue();
+	}
+
 	@Override
 	public IBundleProvider search(String theParameterName, IQueryParameterType theValue) {
 		return search(Collections.singletonMap(theParameterName, theValue));
@@ -1789,122 +2006,115 @@ public abstract class BaseFhirResourceDao<T extends IResource> extends BaseFhirD
 			params = new SearchParameterMap();
 		}
 
-		RuntimeResourceDefinition resourceDef = getContext().getResourceDefinition(myResourceType);
+		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
+		CriteriaQuery<Long> cq = builder.createQuery(Long.class);
+		Root<ResourceTable> from = cq.from(ResourceTable.class);
+		cq.select(from.get("myId").as(Long.class));
 
-		Set<Long> pids = new HashSet<Long>();
+		List<Predicate> predicates = createSearchPredicates(params, builder, cq, from);
+		if (predicates.isEmpty()) {
+			return new HashSet<Long>();
+		}
 
-		for (Entry<String, List<List<? extends IQueryParameterType>>> nextParamEntry : params.entrySet()) {
-			String nextParamName = nextParamEntry.getKey();
-			if (nextParamName.equals("_id")) {
+		predicates.add(0, builder.equal(from.get("myResourceType"), myResourceName));
+		cq.where(builder.and(predicates.toArray(new Predicate[0])));
 
-				if (nextParamEntry.getValue().isEmpty()) {
-					continue;
-				} else if (nextParamEntry.getValue().size() > 1) {
-					throw new InvalidRequestException("AND queries not supported for _id (Multiple instances of this param found)");
-				} else {
-					Set<Long> joinPids = new HashSet<Long>();
-					List<? extends IQueryParameterType> nextValue = nextParamEntry.getValue().get(0);
-					if (nextValue == null || nextValue.size() == 0) {
-						continue;
-					} else {
-						for (IQueryParameterType next : nextValue) {
-							String value = next.getValueAsQueryToken();
-							IdDt valueId = new IdDt(value);
-							try {
-								long valueLong = translateForcedIdToPid(valueId);
-								joinPids.add(valueLong);
-							} catch (ResourceNotFoundException e) {
-								// This isn't an error, just means no result found
-							}
-						}
-						if (joinPids.isEmpty()) {
-							continue;
-						}
-					}
+		TypedQuery<Long> q = myEntityManager.createQuery(cq);
+		return new HashSet<Long>(q.getResultList());
+	}
 
-					pids = addPredicateId(pids, joinPids);
-					if (pids.isEmpty()) {
-						return new HashSet<Long>();
-					}
+	/**
+	 * Creates the full set of predicates selecting the resources which match a search, including the resource type.
+	 * 
+	 * @param theHasSortValue
+	 *           If not <code>null</code>, restricts the results to resources which do (or do not) have a value for the
+	 *           search's sort parameter
+	 * @return The predicates, or <code>null</code> if the search can not match anything
+	 */
+	private List<Predicate> createSearchRootPredicates(SearchParameterMap theParams, Boolean theHasSortValue, CriteriaBuilder theBuilder, AbstractQuery<?> theQuery, Root<ResourceTable> theRoot) {
+		List<Predicate> retVal;
+		if (theParams.isEmpty()) {
+			retVal = new ArrayList<Predicate>();
+			retVal.add(theBuilder.isNull(theRoot.get("myDeleted")));
+		} else {
+			retVal = createSearchPredicates(theParams, theBuilder, theQuery, theRoot);
+			if (retVal.isEmpty()) {
+				return null;
+			}
+		}
 
-					if (pids.isEmpty()) {
-						pids.addAll(joinPids);
-					} else {
-						pids.retainAll(joinPids);
-					}
-				}
+		retVal.add(0, theBuilder.equal(theRoot.get("myResourceType"), myResourceName));
+
+		if (theHasSortValue != null) {
+			Predicate hasSortValue = createSortValuePresentPredicate(theParams.getSort(), theBuilder, theQuery, theRoot);
+			retVal.add(theHasSortValue ? hasSortValue : theBuilder.not(hasSortValue));
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Translates every parameter in the given map into a predicate against <code>theRoot</code>. Each AND clause becomes
+	 * its own subquery against the relevant index table, so the database performs the intersection and the whole search
+	 * can be executed as a single statement.
+	 *
+	 * @return The predicates to AND together (never <code>null</code>). An empty list means that no parameter
+	 *         contributed a criterion.
+	 */
+	private List<Predicate> createSearchPredicates(SearchParameterMap theParams, CriteriaBuilder theBuilder, AbstractQuery<?> theQuery, Root<ResourceTable> theRoot) {
+		RuntimeResourceDefinition resourceDef = getContext().getResourceDefinition(myResourceType);
+
+		List<Predicate> retVal = new ArrayList<Predicate>();
+		for (Entry<String, List<List<? extends IQueryParameterType>>> nextParamEntry : theParams.entrySet()) {
+			String nextParamName = nextParamEntry.getKey();
+			if (nextParamName.equals("_id")) {
+
+				addIfNotNull(retVal, addPredicateId(nextParamEntry.getValue(), theBuilder, theRoot));
 
 			} else if (nextParamName.equals("_language")) {
 
-				pids = addPredicateLanguage(pids, nextParamEntry.getValue());
+				addIfNotNull(retVal, addPredicateLanguage(nextParamEntry.getValue(), theBuilder, theRoot));
 
 			} else {
 
 				RuntimeSearchParam nextParamDef = resourceDef.getSearchParam(nextParamName);
 				if (nextParamDef != null) {
-					switch (nextParamDef.getParamType()) {
-					case DATE:
-						for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
-							pids = addPredicateDate(nextParamName, pids, nextAnd);
-							if (pids.isEmpty()) {
-								return new HashSet<Long>();
-							}
+					for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
+						switch (nextParamDef.getParamType()) {
+						case DATE:
+							addIfNotNull(retVal, addPredicateDate(nextParamName, nextAnd, theBuilder, theQuery, theRoot));
+							break;
+						case QUANTITY:
+							addIfNotNull(retVal, addPredicateQuantity(nextParamName, nextAnd, theBuilder, theQuery, theRoot));
+							break;
+						case REFERENCE:
+							addIfNotNull(retVal, addPredicateReference(nextParamName, nextAnd, theBuilder, theQuery, theRoot));
+							break;
+						case STRING:
+							addIfNotNull(retVal, addPredicateString(nextParamName, nextAnd, theBuilder, theQuery, theRoot));
+							break;
+						case TOKEN:
+							addIfNotNull(retVal, addPredicateToken(nextParamName, nextAnd, theBuilder, theQuery, theRoot));
+							break;
+						case NUMBER:
+							addIfNotNull(retVal, addPredicateNumber(nextParamName, nextAnd, theBuilder, theQuery, theRoot));
+							break;
+						case COMPOSITE:
+							addIfNotNull(retVal, addPredicateComposite(nextParamDef, nextAnd, theBuilder, theQuery, theRoot));
+							break;
 						}
-						break;
-					case QUANTITY:
-						for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
-							pids = addPredicateQuantity(nextParamName, pids, nextAnd);
-							if (pids.isEmpty()) {
-								return new HashSet<Long>();
-							}
-						}
-						break;
-					case REFERENCE:
-						for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
-							pids = addPredicateReference(nextParamName, pids, nextAnd);
-							if (pids.isEmpty()) {
-								return new HashSet<Long>();
-							}
-						}
-						break;
-					case STRING:
-						for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
-							pids = addPredicateString(nextParamName, pids, nextAnd);
-							if (pids.isEmpty()) {
-								return new HashSet<Long>();
-							}
-						}
-						break;
-					case TOKEN:
-						for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
-							pids = addPredicateToken(nextParamName, pids, nextAnd);
-							if (pids.isEmpty()) {
-								return new HashSet<Long>();
-							}
-						}
-						break;
-					case NUMBER:
-						for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
-							pids = addPredicateNumber(nextParamName, pids, nextAnd);
-							if (pids.isEmpty()) {
-								return new HashSet<Long>();
-							}
-						}
-						break;
-					case COMPOSITE:
-						for (List<? extends IQueryParameterType> nextAnd : nextParamEntry.getValue()) {
-							pids = addPredicateComposite(nextParamDef, pids, nextAnd);
-							if (pids.isEmpty()) {
-								return new HashSet<Long>();
-							}
-						}
-						break;
 					}
 				}
 			}
 		}
 
-		return pids;
+		return retVal;
+	}
+
+	private static void addIfNotNull(List<Predicate> thePredicates, Predicate thePredicate) {
+		if (thePredicate != null) {
+			thePredicates.add(thePredicate);
+		}
 	}
 
 	@SuppressWarnings("unchecked")
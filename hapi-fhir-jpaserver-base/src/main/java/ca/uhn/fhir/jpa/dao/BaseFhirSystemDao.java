@@ -20,11 +20,29 @@ package ca.uhn.fhir.jpa.dao;
  * #L%
  */
 
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.annotation.PreDestroy;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Tuple;
@@ -33,15 +51,23 @@ import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import ca.uhn.fhir.jpa.entity.ResourceTable;
 import ca.uhn.fhir.jpa.util.StopWatch;
+import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.TagList;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.model.primitive.InstantDt;
 import ca.uhn.fhir.rest.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 
 public abstract class BaseFhirSystemDao<T> extends BaseFhirDao implements IFhirSystemDao<T> {
@@ -56,6 +82,11 @@ public abstract class BaseFhirSystemDao<T> extends BaseFhirDao implements IFhirS
 	@PersistenceContext()
 	protected EntityManager myEntityManager;
 
+	private ThreadPoolExecutor myImportParserPool;
+
+	@Autowired
+	private PlatformTransactionManager myPlatformTransactionManager;
+
 	protected boolean hasValue(InstantDt theInstantDt) {
 		return theInstantDt != null && theInstantDt.isEmpty() == false;
 	}
@@ -110,4 +141,308 @@ public abstract class BaseFhirSystemDao<T> extends BaseFhirDao implements IFhirS
 		return retVal;
 	}
 
+	@Override
+	public ImportOutcome importResources(Reader theNdjson) {
+		StopWatch w = new StopWatch();
+		ImportOutcome retVal = new ImportOutcome();
+		BufferedReader reader = new BufferedReader(theNdjson);
+		ExecutorService parserPool = getImportParserPool();
+		NdjsonChunk chunk = null;
+		NdjsonChunk nextChunk = null;
+		try {
+			/*
+			 * The next chunk is submitted to the parser pool before the current one is stored, so that parsing and
+			 * index extraction overlap with storing
+			 */
+			nextChunk = parseNdjsonChunk(reader, 1, parserPool);
+			while (!nextChunk.getEntries().isEmpty()) {
+				chunk = nextChunk;
+				nextChunk = parseNdjsonChunk(reader, chunk.getFirstLineNumber() + chunk.getEntries().size(), parserPool);
+
+				List<Future<ParsedResource>> entries = chunk.getEntries();
+				List<IResource> resources = new ArrayList<IResource>(entries.size());
+				List<Integer> entryNumbers = new ArrayList<Integer>(entries.size());
+				Map<IResource, ResourceIndexedSearchParams> searchParams = new IdentityHashMap<IResource, ResourceIndexedSearchParams>(entries.size());
+				for (int i = 0; i < entries.size(); i++) {
+					Future<ParsedResource> next = entries.get(i);
+					if (next == null) {
+						continue;
+					}
+					int lineNumber = chunk.getFirstLineNumber() + i;
+					try {
+						ParsedResource parsed = next.get();
+						resources.add(parsed.getResource());
+						entryNumbers.add(lineNumber);
+						searchParams.put(parsed.getResource(), parsed.getSearchParams());
+					} catch (ExecutionException e) {
+						retVal.addError(lineNumber, e.getCause().getMessage());
+					}
+				}
+				importChunk(resources, entryNumbers, searchParams, retVal);
+			}
+		} catch (IOException e) {
+			throw new InternalErrorException(e);
+		} catch (InterruptedException e) {
+			throw new InternalErrorException(e);
+		} finally {
+			// The pool is shared, so only the tasks of this import are cancelled if it fails part way through
+			if (chunk != null) {
+				chunk.cancel();
+			}
+			if (nextChunk != null) {
+				nextChunk.cancel();
+			}
+		}
+
+		ourLog.info("Imported {} resources ({} created, {} updated, {} failed) in {}ms", new Object[] { retVal.getCreatedCount() + retVal.getUpdatedCount() + retVal.getFailedCount(),
+				retVal.getCreatedCount(), retVal.getUpdatedCount(), retVal.getFailedCount(), w.getMillisAndRestart() });
+		return retVal;
+	}
+
+	@Override
+	public ImportOutcome importResources(T theResources) {
+		StopWatch w = new StopWatch();
+		ImportOutcome retVal = new ImportOutcome();
+
+		List<IResource> resources = toImportResources(theResources);
+		int chunkSize = getConfig().getImportChunkSize();
+		for (int from = 0; from < resources.size(); from += chunkSize) {
+			int to = Math.min(from + chunkSize, resources.size());
+			List<IResource> chunk = new ArrayList<IResource>(to - from);
+			List<Integer> entryNumbers = new ArrayList<Integer>(to - from);
+			for (int i = from; i < to; i++) {
+				IResource next = resources.get(i);
+				if (next == null) {
+					retVal.addError(i + 1, "Entry has no resource");
+					continue;
+				}
+				chunk.add(next);
+				entryNumbers.add(i + 1);
+			}
+			importChunk(chunk, entryNumbers, null, retVal);
+		}
+
+		ourLog.info("Imported {} resources ({} created, {} updated, {} failed) in {}ms", new Object[] { resources.size(), retVal.getCreatedCount(), retVal.getUpdatedCount(), retVal.getFailedCount(),
+				w.getMillisAndRestart() });
+		return retVal;
+	}
+
+	@PreDestroy
+	public synchronized void stopImportParserPool() {
+		if (myImportParserPool != null) {
+			myImportParserPool.shutdownNow();
+			myImportParserPool = null;
+		}
+	}
+
+	/**
+	 * Returns the resources in the given bundle which should be stored by {@link #importResources(Object)}, in order
+	 * (<code>null</code> for an entry with no resource)
+	 */
+	protected abstract List<IResource> toImportResources(T theResources);
+
+	/**
+	 * Returns the pool which parses NDJSON lines and extracts their index rows during bulk imports. It is created the first time it is needed and
+	 * shared by all imports on this DAO. Its threads are stopped when they have been idle for a minute.
+	 */
+	private synchronized ExecutorService getImportParserPool() {
+		int threadCount = getConfig().getImportParserThreadCount();
+		if (myImportParserPool == null) {
+			myImportParserPool = new ThreadPoolExecutor(threadCount, threadCount, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				private final AtomicInteger myThreadNumber = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable theRunnable) {
+					Thread retVal = new Thread(theRunnable, "hapi-fhir-jpa-import-parser-" + myThreadNumber.incrementAndGet());
+					retVal.setDaemon(true);
+					return retVal;
+				}
+			});
+			myImportParserPool.allowCoreThreadTimeOut(true);
+		} else if (myImportParserPool.getMaximumPoolSize() != threadCount) {
+			if (threadCount > myImportParserPool.getMaximumPoolSize()) {
+				myImportParserPool.setMaximumPoolSize(threadCount);
+				myImportParserPool.setCorePoolSize(threadCount);
+			} else {
+				myImportParserPool.setCorePoolSize(threadCount);
+				myImportParserPool.setMaximumPoolSize(threadCount);
+			}
+		}
+		return myImportParserPool;
+	}
+
+	/**
+	 * Reads up to {@link DaoConfig#getImportChunkSize()} lines and submits each one to the parser pool, which parses
+	 * it and extracts its string, token, number, quantity and date index rows. Resource links are left to be extracted
+	 * when the resource is stored, since resolving their targets needs the persistence context. Blank lines are
+	 * returned as <code>null</code> entries so that the position of each entry in the chunk matches its line number.
+	 */
+	private NdjsonChunk parseNdjsonChunk(BufferedReader theReader, int theFirstLineNumber, ExecutorService theParserPool) throws IOException {
+		int chunkSize = getConfig().getImportChunkSize();
+		NdjsonChunk retVal = new NdjsonChunk(theFirstLineNumber, chunkSize);
+		while (retVal.getEntries().size() < chunkSize) {
+			final String nextLine = theReader.readLine();
+			if (nextLine == null) {
+				break;
+			}
+			if (isBlank(nextLine)) {
+				retVal.getEntries().add(null);
+				continue;
+			}
+			retVal.getEntries().add(theParserPool.submit(new Callable<ParsedResource>() {
+				@Override
+				public ParsedResource call() throws Exception {
+					// Parsers are not thread safe, so each task gets its own
+					IResource resource = (IResource) getContext().newJsonParser().parseResource(nextLine);
+					return new ParsedResource(resource, extractSearchParams(resource));
+				}
+			}));
+		}
+		return retVal;
+	}
+
+	/**
+	 * Stores a chunk of resources in a single transaction. If that fails, the chunk is rolled back and its resources
+	 * are stored one per transaction instead, so that the entries which caused the failure can be reported.
+	 * 
+	 * @param theSearchParams
+	 *           The index rows already extracted from the resources, or <code>null</code>. These are only used by the
+	 *           chunk transaction, since rows which it persisted can't be reused after it has been rolled back.
+	 */
+	private void importChunk(final List<IResource> theResources, List<Integer> theEntryNumbers, final Map<IResource, ResourceIndexedSearchParams> theSearchParams, ImportOutcome theOutcome) {
+		if (theResources.isEmpty()) {
+			return;
+		}
+
+		StopWatch w = new StopWatch();
+
+		// Storing a resource assigns its ID, so the original IDs are needed if the chunk has to be retried
+		List<IdDt> originalIds = new ArrayList<IdDt>(theResources.size());
+		for (IResource next : theResources) {
+			originalIds.add(next.getId());
+		}
+
+		TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+		try {
+			int created = template.execute(new TransactionCallback<Integer>() {
+				@Override
+				public Integer doInTransaction(TransactionStatus theStatus) {
+					// The whole chunk is sent to the database in JDBC batches when the transaction commits
+					deferFlushUntilCommit();
+					if (theSearchParams != null) {
+						bindPreExtractedSearchParams(theSearchParams);
+					}
+
+					int retVal = 0;
+					for (IResource next : theResources) {
+						if (importResource(next)) {
+							retVal++;
+						}
+					}
+					return retVal;
+				}
+			});
+			theOutcome.addChunk(created, theResources.size() - created);
+		} catch (RuntimeException e) {
+			ourLog.warn("Failed to import chunk, retrying its {} resources individually: {}", theResources.size(), e.toString());
+			int created = 0;
+			int updated = 0;
+			for (int i = 0; i < theResources.size(); i++) {
+				final IResource next = theResources.get(i);
+				next.setId(originalIds.get(i));
+				try {
+					boolean wasCreated = template.execute(new TransactionCallback<Boolean>() {
+						@Override
+						public Boolean doInTransaction(TransactionStatus theStatus) {
+							return importResource(next);
+						}
+					});
+					if (wasCreated) {
+						created++;
+					} else {
+						updated++;
+					}
+				} catch (RuntimeException e2) {
+					theOutcome.addError(theEntryNumbers.get(i), e2.getMessage());
+				}
+			}
+			theOutcome.addChunk(created, updated);
+		}
+
+		ourLog.info("Imported chunk {} of {} resources in {}ms ({} failed so far)", new Object[] { theOutcome.getChunkCount(), theResources.size(), w.getMillisAndRestart(), theOutcome.getFailedCount() });
+	}
+
+	/**
+	 * @return <code>true</code> if the resource was created, or <code>false</code> if it updated an existing resource
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private boolean importResource(IResource theResource) {
+		IFhirResourceDao dao = getDao(theResource.getClass());
+		if (dao == null) {
+			throw new InvalidRequestException("Unable to import resource of type " + toResourceName(theResource.getClass()));
+		}
+
+		IdDt id = theResource.getId();
+		if (id != null && id.hasIdPart()) {
+			theResource.setId(new IdDt(toResourceName(theResource.getClass()), id.getIdPart()));
+			return dao.update(theResource).getCreated().booleanValue();
+		}
+
+		dao.create(theResource);
+		return true;
+	}
+
+	/**
+	 * A chunk of NDJSON lines which have been submitted for parsing, along with the line number of the first one
+	 */
+	private static class NdjsonChunk {
+		private final List<Future<ParsedResource>> myEntries;
+		private final int myFirstLineNumber;
+
+		public NdjsonChunk(int theFirstLineNumber, int theChunkSize) {
+			myFirstLineNumber = theFirstLineNumber;
+			myEntries = new ArrayList<Future<ParsedResource>>(theChunkSize);
+		}
+
+		public void cancel() {
+			for (Future<ParsedResource> next : myEntries) {
+				if (next != null) {
+					next.cancel(true);
+				}
+			}
+		}
+
+		/**
+		 * Returns one entry per line, or <code>null</code> for a blank line
+		 */
+		public List<Future<ParsedResource>> getEntries() {
+			return myEntries;
+		}
+
+		public int getFirstLineNumber() {
+			return myFirstLineNumber;
+		}
+	}
+
+	/**
+	 * A resource parsed from an NDJSON line, along with the index rows extracted from it
+	 */
+	private static class ParsedResource {
+		private final IResource myResource;
+		private final ResourceIndexedSearchParams mySearchParams;
+
+		public ParsedResource(IResource theResource, ResourceIndexedSearchParams theSearchParams) {
+			myResource = theResource;
+			mySearchParams = theSearchParams;
+		}
+
+		public IResource getResource() {
+			return myResource;
+		}
+
+		public ResourceIndexedSearchParams getSearchParams() {
+			return mySearchParams;
+		}
+	}
+
 }
@@ -25,6 +25,7 @@ import java.util.List;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.context.RuntimeSearchParam;
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.util.FhirTerser;
 
@@ -40,6 +41,15 @@ public class BaseSearchParamExtractor {
 		return myContext;
 	}
 
+	/**
+	 * Returns the values at the path of the given search parameter, using the compiled path which is cached in the
+	 * search parameter. Paths which are not valid for the resource type are logged and left out once, when the path is
+	 * compiled, rather than each time a resource is indexed.
+	 */
+	protected List<Object> extractValues(RuntimeResourceDefinition theResourceDef, RuntimeSearchParam theSearchParam, IResource theResource) {
+		return theResourceDef.getSearchParamPath(theSearchParam).getValues(theResource);
+	}
+
 	protected List<Object> extractValues(String thePaths, IResource theResource) {
 		List<Object> values = new ArrayList<Object>();
 		String[] nextPathsSplit = thePaths.split("\\|");
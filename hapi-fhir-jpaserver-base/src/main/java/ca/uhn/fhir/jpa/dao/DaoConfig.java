@@ -20,6 +20,9 @@ package ca.uhn.fhir.jpa.dao;
  * #L%
  */
 
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
+
 import ca.uhn.fhir.jpa.entity.ResourceEncodingEnum;
 
 public class DaoConfig {
@@ -28,6 +31,170 @@ public class DaoConfig {
 	private int myHardTagListLimit = 1000;
 	private ResourceEncodingEnum myResourceEncoding=ResourceEncodingEnum.JSONC;
 	private int myIncludeLimit = 2000;
+	private Integer myCountSearchResultsUpTo;
+	private long myExpireSearchResultsAfterMillis = DateUtils.MILLIS_PER_HOUR;
+	private Long myReuseCachedSearchResultsForMillis;
+	private int myReuseCachedSearchResultsMaxSize = SearchResultCache.DEFAULT_MAX_RESULTS_PER_ENTRY;
+	private int mySearchResultPagesStoredUpFront = 3;
+	private int myImportChunkSize = 500;
+	private int myImportParserThreadCount = Runtime.getRuntime().availableProcessors();
+	private final SearchResultCache mySearchResultCache = new SearchResultCache();
+	private int myForcedIdCacheSize = 10000;
+	private final ForcedIdCache myForcedIdCache = new ForcedIdCache(myForcedIdCacheSize);
+
+	/**
+	 * See {@link #setCountSearchResultsUpTo(Integer)}
+	 */
+	public Integer getCountSearchResultsUpTo() {
+		return myCountSearchResultsUpTo;
+	}
+
+	/**
+	 * If set to a non-null value (default is <code>null</code>), search results are not counted exactly. Instead
+	 * the server only counts this many results past the furthest point that the client has paged to, and reports that
+	 * number as the total if more resources match. The total grows as the client pages further through the results.
+	 * This avoids a full COUNT over very large result sets, at the cost of an approximate total.
+	 */
+	public void setCountSearchResultsUpTo(Integer theCountSearchResultsUpTo) {
+		Validate.isTrue(theCountSearchResultsUpTo == null || theCountSearchResultsUpTo > 0, "theCountSearchResultsUpTo must be greater than 0");
+		myCountSearchResultsUpTo = theCountSearchResultsUpTo;
+	}
+
+	/**
+	 * See {@link #setExpireSearchResultsAfterMillis(long)}
+	 */
+	public long getExpireSearchResultsAfterMillis() {
+		return myExpireSearchResultsAfterMillis;
+	}
+
+	/**
+	 * Sets the number of milliseconds that search results stored by {@link DatabaseBackedPagingProvider} are kept for
+	 * after the last page was requested, before they are purged and can no longer be paged through. Default is one
+	 * hour.
+	 */
+	public void setExpireSearchResultsAfterMillis(long theExpireSearchResultsAfterMillis) {
+		Validate.isTrue(theExpireSearchResultsAfterMillis > 0, "theExpireSearchResultsAfterMillis must be greater than 0");
+		myExpireSearchResultsAfterMillis = theExpireSearchResultsAfterMillis;
+	}
+
+	/**
+	 * See {@link #setForcedIdCacheSize(int)}
+	 */
+	public int getForcedIdCacheSize() {
+		return myForcedIdCacheSize;
+	}
+
+	/**
+	 * Sets the maximum number of client assigned (forced) IDs whose resource PIDs are cached in memory, so that reads,
+	 * _id searches and references using them do not need to look them up in the database each time. Default is 10000.
+	 * Set to 0 to disable the cache.
+	 */
+	public void setForcedIdCacheSize(int theForcedIdCacheSize) {
+		Validate.isTrue(theForcedIdCacheSize >= 0, "theForcedIdCacheSize must not be negative");
+		myForcedIdCacheSize = theForcedIdCacheSize;
+		myForcedIdCache.setMaxEntries(theForcedIdCacheSize);
+	}
+
+	ForcedIdCache getForcedIdCache() {
+		return myForcedIdCache;
+	}
+
+	/**
+	 * See {@link #setImportChunkSize(int)}
+	 */
+	public int getImportChunkSize() {
+		return myImportChunkSize;
+	}
+
+	/**
+	 * Sets the number of resources which are stored in each database transaction by a bulk import (see
+	 * {@link IFhirSystemDao#importResources(java.io.Reader)}). Default is 500.
+	 */
+	public void setImportChunkSize(int theImportChunkSize) {
+		Validate.isTrue(theImportChunkSize > 0, "theImportChunkSize must be greater than 0");
+		myImportChunkSize = theImportChunkSize;
+	}
+
+	/**
+	 * See {@link #setImportParserThreadCount(int)}
+	 */
+	public int getImportParserThreadCount() {
+		return myImportParserThreadCount;
+	}
+
+	/**
+	 * Sets the number of threads which parse NDJSON input and extract its search index values during a bulk import
+	 * while the previous chunk is being stored. Default is the number of available processors.
+	 */
+	public void setImportParserThreadCount(int theImportParserThreadCount) {
+		Validate.isTrue(theImportParserThreadCount > 0, "theImportParserThreadCount must be greater than 0");
+		myImportParserThreadCount = theImportParserThreadCount;
+	}
+
+	/**
+	 * See {@link #setReuseCachedSearchResultsForMillis(Long)}
+	 */
+	public Long getReuseCachedSearchResultsForMillis() {
+		return myReuseCachedSearchResultsForMillis;
+	}
+
+	/**
+	 * If set to a non-null value (default is <code>null</code>), the PIDs matched by each search are kept in memory
+	 * and an identical search (same parameters, sort, includes and revincludes) made within this many milliseconds
+	 * reuses them instead of querying the index tables again. Cached results are discarded as soon as a resource
+	 * they depend on is written on this server, but writes made by other servers sharing the same database are only
+	 * seen once the cached results are older than this window.
+	 */
+	public void setReuseCachedSearchResultsForMillis(Long theReuseCachedSearchResultsForMillis) {
+		Validate.isTrue(theReuseCachedSearchResultsForMillis == null || theReuseCachedSearchResultsForMillis > 0, "theReuseCachedSearchResultsForMillis must be greater than 0");
+		myReuseCachedSearchResultsForMillis = theReuseCachedSearchResultsForMillis;
+	}
+
+	/**
+	 * See {@link #setSearchResultPagesStoredUpFront(int)}
+	 */
+	public int getSearchResultPagesStoredUpFront() {
+		return mySearchResultPagesStoredUpFront;
+	}
+
+	/**
+	 * Sets the number of pages of results which {@link DatabaseBackedPagingProvider} stores in the database before a
+	 * search is returned. The remaining results are stored in the background, so the first page of a search matching
+	 * a large number of resources is not delayed by storing all of them. Default is 3.
+	 * <p>
+	 * Until the remaining results have been stored, pages past this point can be served straight away only by the
+	 * server which ran the search. Other servers wait for the page to be stored.
+	 * </p>
+	 */
+	public void setSearchResultPagesStoredUpFront(int theSearchResultPagesStoredUpFront) {
+		Validate.isTrue(theSearchResultPagesStoredUpFront > 0, "theSearchResultPagesStoredUpFront must be greater than 0");
+		mySearchResultPagesStoredUpFront = theSearchResultPagesStoredUpFront;
+	}
+
+	/**
+	 * See {@link #setReuseCachedSearchResultsMaxSize(int)}
+	 */
+	public int getReuseCachedSearchResultsMaxSize() {
+		return myReuseCachedSearchResultsMaxSize;
+	}
+
+	/**
+	 * Sets the largest number of matching resources that a search may have for its results to be cached when
+	 * {@link #setReuseCachedSearchResultsForMillis(Long) search result caching} is enabled. Larger searches are not
+	 * cached, and are paged through in the database like any other search. Default is 1000.
+	 */
+	public void setReuseCachedSearchResultsMaxSize(int theReuseCachedSearchResultsMaxSize) {
+		Validate.isTrue(theReuseCachedSearchResultsMaxSize > 0, "theReuseCachedSearchResultsMaxSize must be greater than 0");
+		myReuseCachedSearchResultsMaxSize = theReuseCachedSearchResultsMaxSize;
+		mySearchResultCache.setMaxResultsPerEntry(theReuseCachedSearchResultsMaxSize);
+	}
+
+	/**
+	 * The cache is held here since this object is shared by all of the DAOs of a server
+	 */
+	SearchResultCache getSearchResultCache() {
+		return mySearchResultCache;
+	}
 
 	/**
 	 * This is the maximum number of resources that will be added to a single page of 
@@ -62,7 +229,15 @@ public class DaoConfig {
 		return myResourceEncoding;
 	}
 
+	/**
+	 * Sets the encoding which new resource versions are stored in. Default is {@link ResourceEncodingEnum#JSONC}.
+	 * Versions which are already stored are always read using the encoding they were written with, so this can be
+	 * changed at any time. {@link ResourceEncodingEnum#JSONZ} is smaller and considerably faster to read and write, but
+	 * servers running older versions of HAPI can not read resources stored with it. {@link ResourceEncodingEnum#BIN}
+	 * is the cheapest to read and write, at the cost of storing larger rows than the compressed encodings.
+	 */
 	public void setResourceEncoding(ResourceEncodingEnum theResourceEncoding) {
+		Validate.notNull(theResourceEncoding, "theResourceEncoding must not be null");
 		myResourceEncoding = theResourceEncoding;
 	}
 
@@ -0,0 +1,498 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceContextType;
+import javax.persistence.TypedQuery;
+
+import org.apache.commons.lang3.time.DateUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.entity.SearchInclude;
+import ca.uhn.fhir.jpa.entity.SearchResult;
+import ca.uhn.fhir.jpa.util.StopWatch;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.server.FifoMemoryPagingProvider;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
+
+/**
+ * Paging provider which stores the ordered list of resource PIDs for each search in the database (in the
+ * HFJ_SEARCH and HFJ_SEARCH_RESULT tables), so that any server node sharing that database can serve pages of the
+ * results.
+ * <p>
+ * Only the first {@link DaoConfig#getSearchResultPagesStoredUpFront() few pages} of PIDs are stored before the search
+ * is returned. The remaining PIDs are stored by a background task, and until it has finished the search is kept in
+ * memory so that this node can serve any page straight away. Other nodes wait for the pages they are asked for to be
+ * stored.
+ * </p>
+ * <p>
+ * Stored searches expire once no page has been requested for {@link DaoConfig#getExpireSearchResultsAfterMillis()},
+ * and are deleted by a background job. Result lists which don't come from a JPA search (e.g. history results) can't be stored this way,
+ * so they are kept in memory as they would be by {@link FifoMemoryPagingProvider}.
+ * </p>
+ * <p>
+ * This class must be created as a Spring bean alongside the JPA DAOs.
+ * </p>
+ */
+public class DatabaseBackedPagingProvider extends FifoMemoryPagingProvider {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(DatabaseBackedPagingProvider.class);
+
+	private static final long PURGE_INTERVAL_MILLIS = DateUtils.MILLIS_PER_MINUTE;
+
+	/**
+	 * The number of PIDs stored in each transaction by the background task
+	 */
+	static final int STORE_CHUNK_SIZE = 1000;
+
+	private static final long STORE_POLL_MILLIS = 100;
+
+	/**
+	 * How long a node which does not hold a search in memory waits for a requested page to be stored
+	 */
+	private static final long STORE_WAIT_MILLIS = 10 * DateUtils.MILLIS_PER_SECOND;
+
+	@Autowired
+	private DaoConfig myDaoConfig;
+
+	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
+	private EntityManager myEntityManager;
+
+	@Autowired
+	private PlatformTransactionManager myPlatformTransactionManager;
+
+	private ScheduledExecutorService myPurgeExecutor;
+
+	@Autowired
+	private List<IFhirResourceDao<?>> myResourceDaos;
+
+	private Map<String, IFhirResourceDao<?>> myResourceClassToDao;
+
+	private ExecutorService myStoreExecutor;
+
+	private final LinkedHashMap<String, IPersistableBundleProvider> myLiveSearches;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param theSize
+	 *           The number of result lists which can't be stored in the database to keep in memory, and also the
+	 *           number of searches which are kept in memory while the PIDs past the pages stored up front are being
+	 *           stored
+	 */
+	public DatabaseBackedPagingProvider(final int theSize) {
+		super(theSize);
+		myLiveSearches = new LinkedHashMap<String, IPersistableBundleProvider>(theSize) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, IPersistableBundleProvider> theEldest) {
+				return size() > theSize;
+			}
+		};
+	}
+
+	/**
+	 * Deletes any stored searches which have expired
+	 * 
+	 * @return The number of searches deleted
+	 */
+	public int purgeExpiredSearches() {
+		final Date cutoff = new Date(System.currentTimeMillis() - myDaoConfig.getExpireSearchResultsAfterMillis());
+
+		TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+		int retVal = template.execute(new TransactionCallback<Integer>() {
+			@Override
+			public Integer doInTransaction(TransactionStatus theStatus) {
+				String expiredSearches = "SELECT s.myId FROM Search s WHERE s.myLastAccessed < :cutoff";
+				myEntityManager.createQuery("DELETE FROM SearchResult r WHERE r.mySearchPid IN (" + expiredSearches + ")").setParameter("cutoff", cutoff).executeUpdate();
+				myEntityManager.createQuery("DELETE FROM SearchInclude i WHERE i.mySearchPid IN (" + expiredSearches + ")").setParameter("cutoff", cutoff).executeUpdate();
+				return myEntityManager.createQuery("DELETE FROM Search s WHERE s.myLastAccessed < :cutoff").setParameter("cutoff", cutoff).executeUpdate();
+			}
+		});
+
+		if (retVal > 0) {
+			ourLog.info("Purged {} expired searches", retVal);
+		}
+		return retVal;
+	}
+
+	@Override
+	public IBundleProvider retrieveResultList(String theId) {
+		IBundleProvider retVal = super.retrieveResultList(theId);
+		if (retVal != null) {
+			return retVal;
+		}
+
+		final Search search = findSearch(theId);
+		if (search == null) {
+			return null;
+		}
+		if (search.getLastAccessed().getTime() < System.currentTimeMillis() - myDaoConfig.getExpireSearchResultsAfterMillis()) {
+			ourLog.info("Search ID[{}] has expired", theId);
+			return null;
+		}
+		touchSearch(search);
+
+		final IFhirResourceDao<?> dao = myResourceClassToDao.get(search.getResourceClass());
+		if (dao == null) {
+			ourLog.warn("No DAO found for resource type {} of stored search ID[{}]", search.getResourceClass(), theId);
+			return null;
+		}
+
+		final Set<Include> includes = findIncludes(search);
+		final IPersistableBundleProvider liveSearch;
+		synchronized (myLiveSearches) {
+			liveSearch = myLiveSearches.get(search.getUuid());
+		}
+
+		return new IBundleProvider() {
+			@Override
+			public InstantDt getPublished() {
+				return new InstantDt(search.getCreated());
+			}
+
+			@Override
+			public List<IBaseResource> getResources(final int theFromIndex, final int theToIndex) {
+				final int expected = Math.max(0, Math.min(theToIndex, size()) - theFromIndex);
+				TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+				List<Long> pids = template.execute(new TransactionCallback<List<Long>>() {
+					@Override
+					public List<Long> doInTransaction(TransactionStatus theStatus) {
+						return loadStoredPids(search, theFromIndex, theToIndex);
+					}
+				});
+				if (pids.size() < expected) {
+					if (liveSearch != null) {
+						pids = loadAndStorePids(search, liveSearch, theFromIndex, theToIndex);
+					} else {
+						pids = waitForStoredPids(search, theFromIndex, theToIndex, expected);
+					}
+				}
+
+				final List<Long> pagePids = pids;
+				return template.execute(new TransactionCallback<List<IBaseResource>>() {
+					@Override
+					public List<IBaseResource> doInTransaction(TransactionStatus theStatus) {
+						return dao.loadSearchPage(pagePids, includes);
+					}
+				});
+			}
+
+			@Override
+			public Integer preferredPageSize() {
+				return search.getPreferredPageSize();
+			}
+
+			@Override
+			public int size() {
+				if (liveSearch != null) {
+					return liveSearch.size();
+				}
+				return search.getTotalCount();
+			}
+		};
+	}
+
+	@PostConstruct
+	public void start() {
+		myResourceClassToDao = new HashMap<String, IFhirResourceDao<?>>();
+		for (IFhirResourceDao<?> next : myResourceDaos) {
+			myResourceClassToDao.put(next.getResourceType().getName(), next);
+		}
+
+		myPurgeExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable theRunnable) {
+				Thread retVal = new Thread(theRunnable, "hapi-fhir-jpa-search-purge");
+				retVal.setDaemon(true);
+				return retVal;
+			}
+		});
+		myPurgeExecutor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					purgeExpiredSearches();
+				} catch (Exception e) {
+					ourLog.error("Failed to purge expired searches", e);
+				}
+			}
+		}, PURGE_INTERVAL_MILLIS, PURGE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+		myStoreExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable theRunnable) {
+				Thread retVal = new Thread(theRunnable, "hapi-fhir-jpa-search-store");
+				retVal.setDaemon(true);
+				return retVal;
+			}
+		});
+	}
+
+	@PreDestroy
+	public void stop() {
+		myPurgeExecutor.shutdownNow();
+		myStoreExecutor.shutdownNow();
+	}
+
+	@Override
+	public String storeResultList(IBundleProvider theList) {
+		if (!(theList instanceof IPersistableBundleProvider)) {
+			return super.storeResultList(theList);
+		}
+
+		final IPersistableBundleProvider list = (IPersistableBundleProvider) theList;
+		StopWatch w = new StopWatch();
+
+		int pageSize = list.preferredPageSize() != null ? Math.min(list.preferredPageSize(), getMaximumPageSize()) : getDefaultPageSize();
+		final int totalCount = list.size();
+		final int storeUpTo = Math.min(totalCount, pageSize * myDaoConfig.getSearchResultPagesStoredUpFront());
+
+		TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+		final Search search = template.execute(new TransactionCallback<Search>() {
+			@Override
+			public Search doInTransaction(TransactionStatus theStatus) {
+				List<Long> pids = list.loadResourcePids(0, storeUpTo);
+
+				Date now = new Date();
+				Search search = new Search();
+				search.setUuid(UUID.randomUUID().toString());
+				search.setCreated(now);
+				search.setLastAccessed(now);
+				search.setTotalCount(totalCount);
+				search.setPreferredPageSize(list.preferredPageSize());
+				search.setResourceClass(list.getResourceType().getName());
+				myEntityManager.persist(search);
+
+				if (list.getIncludes() != null) {
+					for (Include next : list.getIncludes()) {
+						myEntityManager.persist(new SearchInclude(search, next.getValue()));
+					}
+				}
+
+				int order = 0;
+				for (Long next : pids) {
+					myEntityManager.persist(new SearchResult(search, order++, next));
+				}
+
+				return search;
+			}
+		});
+
+		ourLog.info("Stored {} of {} results for search ID[{}] in {}ms", new Object[] { storeUpTo, search.getTotalCount(), search.getUuid(), w.getMillisAndRestart() });
+
+		if (storeUpTo < totalCount) {
+			synchronized (myLiveSearches) {
+				myLiveSearches.put(search.getUuid(), list);
+			}
+			myStoreExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						storeRemainingPids(search, list, storeUpTo);
+					} catch (Exception e) {
+						ourLog.error("Failed to store results of search ID[" + search.getUuid() + "]", e);
+					} finally {
+						synchronized (myLiveSearches) {
+							myLiveSearches.remove(search.getUuid());
+						}
+					}
+				}
+			});
+		}
+
+		return search.getUuid();
+	}
+
+	private Set<Include> findIncludes(final Search theSearch) {
+		TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+		Collection<String> includes = template.execute(new TransactionCallback<Collection<String>>() {
+			@Override
+			public Collection<String> doInTransaction(TransactionStatus theStatus) {
+				TypedQuery<String> q = myEntityManager.createQuery("SELECT i.myInclude FROM SearchInclude i WHERE i.mySearchPid = :search", String.class);
+				q.setParameter("search", theSearch.getId());
+				return q.getResultList();
+			}
+		});
+
+		Set<Include> retVal = new HashSet<Include>();
+		for (String next : includes) {
+			retVal.add(new Include(next));
+		}
+		return retVal;
+	}
+
+	private Search findSearch(final String theUuid) {
+		TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+		return template.execute(new TransactionCallback<Search>() {
+			@Override
+			public Search doInTransaction(TransactionStatus theStatus) {
+				TypedQuery<Search> q = myEntityManager.createQuery("SELECT s FROM Search s WHERE s.myUuid = :uuid", Search.class);
+				q.setParameter("uuid", theUuid);
+				List<Search> results = q.getResultList();
+				return results.isEmpty() ? null : results.get(0);
+			}
+		});
+	}
+
+	/**
+	 * Loads a range of PIDs which have not been stored yet from the search which produced them, and stores them so
+	 * that the range can be served from the database from now on
+	 */
+	private List<Long> loadAndStorePids(final Search theSearch, final IPersistableBundleProvider theLiveSearch, final int theFromIndex, final int theToIndex) {
+		if (theLiveSearch == null) {
+			throw new ResourceGoneException("Results " + theFromIndex + "-" + theToIndex + " of search ID[" + theSearch.getUuid() + "] were not stored and are no longer available");
+		}
+
+		synchronized (theLiveSearch) {
+			TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+			return template.execute(new TransactionCallback<List<Long>>() {
+				@Override
+				public List<Long> doInTransaction(TransactionStatus theStatus) {
+					String sql = "SELECT r.myOrder FROM SearchResult r WHERE r.mySearchPid = :search AND r.myOrder >= :from AND r.myOrder < :to";
+					TypedQuery<Integer> q = myEntityManager.createQuery(sql, Integer.class);
+					q.setParameter("search", theSearch.getId());
+					q.setParameter("from", theFromIndex);
+					q.setParameter("to", theToIndex);
+					Set<Integer> storedOrders = new HashSet<Integer>(q.getResultList());
+
+					List<Long> retVal = theLiveSearch.loadResourcePids(theFromIndex, theToIndex);
+					Search search = myEntityManager.getReference(Search.class, theSearch.getId());
+					for (int i = 0; i < retVal.size(); i++) {
+						int order = theFromIndex + i;
+						if (!storedOrders.contains(order)) {
+							myEntityManager.persist(new SearchResult(search, order, retVal.get(i)));
+						}
+					}
+
+					ourLog.debug("Stored results {}-{} of search ID[{}]", new Object[] { theFromIndex, theFromIndex + retVal.size(), theSearch.getUuid() });
+					return retVal;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Stores the PIDs of a search from the given index to the end of the results, one chunk per transaction. If the
+	 * search turns out to have a different number of results than the total which was stored with it (which can
+	 * happen when {@link DaoConfig#getCountSearchResultsUpTo() counting is limited}), the total is corrected.
+	 */
+	private void storeRemainingPids(final Search theSearch, IPersistableBundleProvider theLiveSearch, int theFromIndex) {
+		StopWatch w = new StopWatch();
+		int from = theFromIndex;
+		while (true) {
+			List<Long> pids = loadAndStorePids(theSearch, theLiveSearch, from, from + STORE_CHUNK_SIZE);
+			from += pids.size();
+			if (pids.size() < STORE_CHUNK_SIZE) {
+				break;
+			}
+		}
+
+		final int totalCount = from;
+		if (totalCount != theSearch.getTotalCount()) {
+			TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+			template.execute(new TransactionCallback<Integer>() {
+				@Override
+				public Integer doInTransaction(TransactionStatus theStatus) {
+					String sql = "UPDATE Search s SET s.myTotalCount = :total WHERE s.myId = :id";
+					return myEntityManager.createQuery(sql).setParameter("total", totalCount).setParameter("id", theSearch.getId()).executeUpdate();
+				}
+			});
+		}
+
+		ourLog.info("Stored remaining {} results for search ID[{}] in {}ms", new Object[] { totalCount - theFromIndex, theSearch.getUuid(), w.getMillisAndRestart() });
+	}
+
+	/**
+	 * Waits for a range of PIDs which another node is storing in the background to appear in the database
+	 */
+	private List<Long> waitForStoredPids(final Search theSearch, final int theFromIndex, final int theToIndex, int theExpected) {
+		TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+		long giveUpAt = System.currentTimeMillis() + STORE_WAIT_MILLIS;
+		while (System.currentTimeMillis() < giveUpAt) {
+			try {
+				Thread.sleep(STORE_POLL_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			List<Long> retVal = template.execute(new TransactionCallback<List<Long>>() {
+				@Override
+				public List<Long> doInTransaction(TransactionStatus theStatus) {
+					return loadStoredPids(theSearch, theFromIndex, theToIndex);
+				}
+			});
+			if (retVal.size() >= theExpected) {
+				return retVal;
+			}
+		}
+		throw new ResourceGoneException("Results " + theFromIndex + "-" + theToIndex + " of search ID[" + theSearch.getUuid() + "] were not stored and are no longer available");
+	}
+
+	private void touchSearch(final Search theSearch) {
+		TransactionTemplate template = new TransactionTemplate(myPlatformTransactionManager);
+		template.execute(new TransactionCallback<Integer>() {
+			@Override
+			public Integer doInTransaction(TransactionStatus theStatus) {
+				String sql = "UPDATE Search s SET s.myLastAccessed = :now WHERE s.myId = :id";
+				return myEntityManager.createQuery(sql).setParameter("now", new Date()).setParameter("id", theSearch.getId()).executeUpdate();
+			}
+		});
+	}
+
+	private List<Long> loadStoredPids(Search theSearch, int theFromIndex, int theToIndex) {
+		String sql = "SELECT r.myResourcePid FROM SearchResult r WHERE r.mySearchPid = :search AND r.myOrder >= :from AND r.myOrder < :to ORDER BY r.myOrder";
+		TypedQuery<Long> q = myEntityManager.createQuery(sql, Long.class);
+		q.setParameter("search", theSearch.getId());
+		q.setParameter("from", theFromIndex);
+		q.setParameter("to", theToIndex);
+		return q.getResultList();
+	}
+
+}
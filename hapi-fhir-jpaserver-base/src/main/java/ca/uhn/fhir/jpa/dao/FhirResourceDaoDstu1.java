@@ -23,17 +23,48 @@ package ca.uhn.fhir.jpa.dao;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.context.RuntimeSearchParam;
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.model.base.composite.BaseResourceReferenceDt;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.rest.method.RestSearchParameterTypeEnum;
 import ca.uhn.fhir.util.FhirTerser;
 
 public class FhirResourceDaoDstu1<T extends IResource> extends BaseFhirResourceDao<T> {
 
+	/**
+	 * DSTU1 includes are paths, which can only use the indexed links if a reference search parameter has that path
+	 */
+	@Override
+	protected Set<String> getIncludeLinkPaths(Include theInclude) {
+		String value = theInclude.getValue();
+		int dotIdx = value.indexOf('.');
+		if (dotIdx < 1) {
+			return null;
+		}
+
+		RuntimeResourceDefinition def;
+		try {
+			def = getContext().getResourceDefinition(value.substring(0, dotIdx));
+		} catch (DataFormatException e) {
+			return Collections.emptySet();
+		}
+
+		for (RuntimeSearchParam next : def.getSearchParams()) {
+			if (next.getParamType() == RestSearchParameterTypeEnum.REFERENCE && next.getPathsSplit().size() == 1 && value.equals(next.getPath())) {
+				return Collections.singleton(next.getPath());
+			}
+		}
+		return null;
+	}
+
+
 	protected List<Object> getIncludeValues(FhirTerser t, Include next, IBaseResource nextResource, RuntimeResourceDefinition def) {
 		List<Object> values;
 		if ("*".equals(next.getValue())) {
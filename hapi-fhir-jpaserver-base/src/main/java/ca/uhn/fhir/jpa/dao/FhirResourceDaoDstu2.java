@@ -23,6 +23,7 @@ package ca.uhn.fhir.jpa.dao;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
@@ -31,10 +32,39 @@ import ca.uhn.fhir.context.RuntimeSearchParam;
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.model.base.composite.BaseResourceReferenceDt;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.rest.method.RestSearchParameterTypeEnum;
 import ca.uhn.fhir.util.FhirTerser;
 
 public class FhirResourceDaoDstu2<T extends IResource> extends BaseFhirResourceDao<T> {
 
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirResourceDaoDstu2.class);
+
+	@Override
+	protected Set<String> getIncludeLinkPaths(Include theInclude) {
+		String value = theInclude.getValue();
+		int colonIdx = value.indexOf(':');
+		if (colonIdx < 1) {
+			return Collections.emptySet();
+		}
+
+		RuntimeResourceDefinition def;
+		try {
+			def = getContext().getResourceDefinition(value.substring(0, colonIdx));
+		} catch (DataFormatException e) {
+			ourLog.warn("Unknown resource type in _include=" + value);
+			return Collections.emptySet();
+		}
+
+		RuntimeSearchParam sp = def.getSearchParam(value.substring(colonIdx + 1));
+		if (sp == null || sp.getParamType() != RestSearchParameterTypeEnum.REFERENCE) {
+			ourLog.warn("Unknown reference param name in _include=" + value);
+			return Collections.emptySet();
+		}
+		return Collections.singleton(sp.getPath());
+	}
+
+
 	protected List<Object> getIncludeValues(FhirTerser theTerser, Include theInclude, IBaseResource theResource, RuntimeResourceDefinition theResourceDef) {
 		List<Object> values;
 		if ("*".equals(theInclude.getValue())) {
@@ -43,9 +73,7 @@ public class FhirResourceDaoDstu2<T extends IResource> extends BaseFhirResourceD
 		} else if (theInclude.getValue().startsWith(theResourceDef.getName() + ":")) {
 			values = new ArrayList<Object>();
 			RuntimeSearchParam sp = theResourceDef.getSearchParam(theInclude.getValue().substring(theInclude.getValue().indexOf(':')+1));
-			for (String nextPath : sp.getPathsSplit()) {
-				values.addAll(theTerser.getValues(theResource, nextPath));
-			}
+			values.addAll(theResourceDef.getSearchParamPath(sp).getValues(theResource));
 		} else {
 			values = Collections.emptyList();
 		}
@@ -272,5 +272,9 @@ public class FhirSystemDaoDstu1 extends BaseFhirSystemDao<List<IResource>> {
 		throw new NotImplementedOperationException("meta not supported in DSTU1");
 	}
 
+	@Override
+	protected List<IResource> toImportResources(List<IResource> theResources) {
+		return theResources;
+	}
 
 }
@@ -22,6 +22,7 @@ package ca.uhn.fhir.jpa.dao;
 
 import static org.apache.commons.lang3.StringUtils.*;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -57,6 +58,9 @@ import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.util.FhirTerser;
 
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
+
 public class FhirSystemDaoDstu2 extends BaseFhirSystemDao<Bundle> {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirSystemDaoDstu2.class);
 
@@ -136,6 +140,18 @@ public class FhirSystemDaoDstu2 extends BaseFhirSystemDao<Bundle> {
 		ourLog.info("Beginning transaction with {} resources", theResources.getEntry().size());
 		long start = System.currentTimeMillis();
 
+		/*
+		 * Every entry is written twice (once as it is processed, and again with its indexes once all of the IDs in the
+		 * bundle are known), so rows are only sent to the database once all entries have been processed
+		 */
+		deferFlushUntilCommit();
+
+		/*
+		 * Resolve the IDs and conditional URLs used by the bundle in a few batched queries before anything is written,
+		 * rather than one query per entry (each of which would also flush the pending writes)
+		 */
+		preloadEntryLookups(theResources);
+
 		Set<IdDt> allIds = new LinkedHashSet<IdDt>();
 		Map<IdDt, IdDt> idSubstitutions = new HashMap<IdDt, IdDt>();
 		Map<IdDt, DaoMethodOutcome> idToPersistedOutcome = new HashMap<IdDt, DaoMethodOutcome>();
@@ -295,6 +311,8 @@ public class FhirSystemDaoDstu2 extends BaseFhirSystemDao<Bundle> {
 			updateEntity(nextResource, nextOutcome.getEntity(), false, deletedTimestampOrNull, true, false);
 		}
 
+		myEntityManager.flush();
+
 		long delay = System.currentTimeMillis() - start;
 		ourLog.info("Transaction completed in {}ms", new Object[] { delay });
 
@@ -329,6 +347,63 @@ public class FhirSystemDaoDstu2 extends BaseFhirSystemDao<Bundle> {
 		return retVal;
 	}
 
+	@Override
+	protected List<IResource> toImportResources(Bundle theResources) {
+		List<IResource> retVal = new ArrayList<IResource>(theResources.getEntry().size());
+		for (Entry next : theResources.getEntry()) {
+			retVal.add(next.getResource());
+		}
+		return retVal;
+	}
+
+	/**
+	 * Collects the existing resource IDs (from entry URLs and from references in the entry resources) and the
+	 * conditional URLs used by a transaction bundle, and resolves them up front. Anything which is invalid is skipped
+	 * here and reported when its entry is processed.
+	 */
+	private void preloadEntryLookups(Bundle theResources) {
+		List<IdDt> ids = new ArrayList<IdDt>();
+		Multimap<Class<? extends IBaseResource>, String> matchUrls = LinkedHashMultimap.create();
+		FhirTerser terser = getContext().newTerser();
+
+		for (Entry nextEntry : theResources.getEntry()) {
+			IResource res = nextEntry.getResource();
+			HTTPVerbEnum verb = nextEntry.getTransaction().getMethodElement().getValueAsEnum();
+			String url = nextEntry.getTransaction().getUrl();
+
+			if (verb == HTTPVerbEnum.POST) {
+				String ifNoneExist = nextEntry.getTransaction().getIfNoneExist();
+				if (res != null && isNotBlank(ifNoneExist)) {
+					matchUrls.put(res.getClass(), ifNoneExist);
+				}
+			} else if (verb != null && isNotBlank(url)) {
+				UrlParts parts;
+				try {
+					parts = parseUrl(verb.getCode(), url);
+				} catch (InvalidRequestException e) {
+					continue;
+				}
+				if (parts.getResourceId() != null) {
+					ids.add(new IdDt(parts.getResourceType(), parts.getResourceId()));
+				} else if (verb == HTTPVerbEnum.PUT || verb == HTTPVerbEnum.DELETE) {
+					matchUrls.put(parts.getDao().getResourceType(), parts.getResourceType() + '?' + parts.getParams());
+				}
+			}
+
+			if (res != null) {
+				for (BaseResourceReferenceDt nextRef : terser.getAllPopulatedChildElementsOfType(res, BaseResourceReferenceDt.class)) {
+					IdDt nextId = nextRef.getReference();
+					if (nextId.isEmpty() || nextId.isLocal() || nextId.hasBaseUrl() || !nextId.hasResourceType() || !nextId.hasIdPart() || nextId.getValue().startsWith("#")) {
+						continue;
+					}
+					ids.add(nextId);
+				}
+			}
+		}
+
+		preloadTransactionLookups(ids, matchUrls);
+	}
+
 	private String extractTransactionUrlOrThrowException(Entry nextEntry, HTTPVerbEnum verb) {
 		String url = nextEntry.getTransaction().getUrl();
 		if (isBlank(url)) {
@@ -0,0 +1,88 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * In-memory cache of the mapping between client assigned (forced) IDs and resource PIDs, in both directions. Forced
+ * IDs can not be changed or removed once they have been assigned (deleting a resource only marks it as deleted), so
+ * entries never become stale. Entries must only be added once the transaction which created them has committed
+ * though, since a rolled back ID may later be assigned to a different resource.
+ */
+class ForcedIdCache {
+
+	private int myMaxEntries;
+	private final LinkedHashMap<Long, String> myPidToForcedId;
+	private final LinkedHashMap<String, Long> myForcedIdToPid;
+
+	ForcedIdCache(int theMaxEntries) {
+		myMaxEntries = theMaxEntries;
+		myForcedIdToPid = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Long> theEldest) {
+				return size() > myMaxEntries;
+			}
+		};
+		myPidToForcedId = new LinkedHashMap<Long, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, String> theEldest) {
+				return size() > myMaxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the forced ID of the resource with the given PID, or <code>null</code> if it is not cached
+	 */
+	synchronized String getForcedId(Long thePid) {
+		return myPidToForcedId.get(thePid);
+	}
+
+	/**
+	 * Returns the PID of the resource with the given forced ID, or <code>null</code> if it is not cached
+	 */
+	synchronized Long getPid(String theForcedId) {
+		return myForcedIdToPid.get(theForcedId);
+	}
+
+	synchronized void put(String theForcedId, Long thePid) {
+		if (myMaxEntries == 0) {
+			return;
+		}
+		myForcedIdToPid.put(theForcedId, thePid);
+		myPidToForcedId.put(thePid, theForcedId);
+	}
+
+	synchronized void setMaxEntries(int theMaxEntries) {
+		Validate.isTrue(theMaxEntries >= 0, "theMaxEntries must not be negative");
+		myMaxEntries = theMaxEntries;
+		myForcedIdToPid.clear();
+		myPidToForcedId.clear();
+	}
+
+}
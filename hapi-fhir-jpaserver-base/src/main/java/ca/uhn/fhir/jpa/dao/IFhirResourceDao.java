@@ -21,11 +21,15 @@ package ca.uhn.fhir.jpa.dao;
  */
 
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
 import ca.uhn.fhir.jpa.entity.BaseHasResource;
 import ca.uhn.fhir.jpa.entity.TagTypeEnum;
+import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.api.TagList;
@@ -81,6 +85,13 @@ public interface IFhirResourceDao<T extends IResource> extends IDao {
 	 */
 	BaseHasResource readEntity(IdDt theId, boolean theCheckForForcedId);
 
+	/**
+	 * Loads the resources with the given PIDs in the given order, along with any resources matching the given
+	 * <code>_include</code> specifications. This is used to load a page of a search which was stored by
+	 * {@link DatabaseBackedPagingProvider}.
+	 */
+	List<IBaseResource> loadSearchPage(List<Long> thePids, Set<Include> theIncludes);
+
 	void removeTag(IdDt theId, TagTypeEnum theTagType, String theScheme, String theTerm);
 
 	IBundleProvider search(Map<String, IQueryParameterType> theParams);
@@ -20,6 +20,7 @@ package ca.uhn.fhir.jpa.dao;
  * #L%
  */
 
+import java.io.Reader;
 import java.util.Date;
 import java.util.Map;
 
@@ -36,6 +37,23 @@ public interface IFhirSystemDao<T> extends IDao {
 
 	IBundleProvider history(Date theDate);
 
+	/**
+	 * Bulk loads resources which are encoded as NDJSON (one JSON resource per line). Resources with an ID are stored
+	 * as updates (creating them with that ID if they do not already exist) and resources without one are created.
+	 * <p>
+	 * Unlike {@link #transaction(Object)}, the import is not atomic: lines are parsed on a pool of worker threads and
+	 * stored in chunks of {@link DaoConfig#getImportChunkSize()} resources, each in its own database transaction. If a
+	 * chunk fails, its resources are retried one at a time so that a bad entry only affects itself, and the failure is
+	 * reported in the returned outcome.
+	 * </p>
+	 */
+	ImportOutcome importResources(Reader theNdjson);
+
+	/**
+	 * Bulk loads the resources in the given bundle. See {@link #importResources(Reader)} for details.
+	 */
+	ImportOutcome importResources(T theResources);
+
 	TagList getAllTags();
 
 	Map<String, Long> getResourceCounts();
@@ -0,0 +1,57 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.List;
+import java.util.Set;
+
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+
+/**
+ * A search result list which is backed by resources in the database, and can therefore be stored by
+ * {@link DatabaseBackedPagingProvider} as a list of resource PIDs
+ */
+public interface IPersistableBundleProvider extends IBundleProvider {
+
+	/**
+	 * Returns the <code>_include</code> specifications which should be applied to each page of results
+	 */
+	Set<Include> getIncludes();
+
+	/**
+	 * Returns the type of resource which was searched for. Pages of stored results are loaded back using the DAO
+	 * for this type.
+	 */
+	Class<? extends IResource> getResourceType();
+
+	/**
+	 * Loads the PIDs of the resources between the given indexes of this result list, in order
+	 * 
+	 * @param theFromIndex
+	 *           The index of the first PID to load (inclusive)
+	 * @param theToIndex
+	 *           The index of the last PID to load (exclusive). May be past the end of the list.
+	 */
+	List<Long> loadResourcePids(int theFromIndex, int theToIndex);
+
+}
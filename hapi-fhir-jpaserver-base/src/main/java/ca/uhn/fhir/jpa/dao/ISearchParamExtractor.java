@@ -43,4 +43,9 @@ interface ISearchParamExtractor {
 
 	public abstract List<BaseResourceIndexedSearchParam> extractSearchParamTokens(ResourceTable theEntity, IResource theResource);
 
+	/**
+	 * Extracts the index rows of every type for the given resource
+	 */
+	public abstract ResourceIndexedSearchParams extractSearchParams(ResourceTable theEntity, IResource theResource);
+
 }
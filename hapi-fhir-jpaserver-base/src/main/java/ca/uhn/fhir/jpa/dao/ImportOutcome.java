@@ -0,0 +1,85 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a bulk import (see {@link IFhirSystemDao#importResources(java.io.Reader)})
+ */
+public class ImportOutcome {
+
+	/**
+	 * Only this many errors are kept in {@link #getErrors()}, so that a feed which fails completely does not exhaust
+	 * the heap. {@link #getFailedCount()} always counts every failure.
+	 */
+	static final int MAX_REPORTED_ERRORS = 1000;
+
+	private int myChunkCount;
+	private int myCreatedCount;
+	private final List<String> myErrors = new ArrayList<String>();
+	private int myFailedCount;
+	private int myUpdatedCount;
+
+	void addChunk(int theCreatedCount, int theUpdatedCount) {
+		myChunkCount++;
+		myCreatedCount += theCreatedCount;
+		myUpdatedCount += theUpdatedCount;
+	}
+
+	void addError(int theEntryNumber, String theMessage) {
+		myFailedCount++;
+		if (myErrors.size() < MAX_REPORTED_ERRORS) {
+			myErrors.add("Entry " + theEntryNumber + ": " + theMessage);
+		}
+	}
+
+	/**
+	 * Returns the number of chunks (each of which is stored in its own database transaction) that the import was split
+	 * into
+	 */
+	public int getChunkCount() {
+		return myChunkCount;
+	}
+
+	public int getCreatedCount() {
+		return myCreatedCount;
+	}
+
+	/**
+	 * Returns a description of each entry which could not be stored, prefixed with its entry number (starting at 1,
+	 * which for NDJSON input is the line number)
+	 */
+	public List<String> getErrors() {
+		return Collections.unmodifiableList(myErrors);
+	}
+
+	public int getFailedCount() {
+		return myFailedCount;
+	}
+
+	public int getUpdatedCount() {
+		return myUpdatedCount;
+	}
+
+}
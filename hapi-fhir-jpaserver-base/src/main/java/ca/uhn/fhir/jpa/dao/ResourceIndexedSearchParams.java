@@ -0,0 +1,97 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.uhn.fhir.jpa.entity.BaseResourceIndexedSearchParam;
+import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamDate;
+import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamNumber;
+import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamQuantity;
+import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.jpa.entity.ResourceTable;
+
+/**
+ * The index rows of every type extracted from a resource by
+ * {@link ISearchParamExtractor#extractSearchParams(ca.uhn.fhir.jpa.entity.ResourceTable, ca.uhn.fhir.model.api.IResource)}
+ */
+class ResourceIndexedSearchParams {
+
+	private final List<ResourceIndexedSearchParamDate> myDateParams = new ArrayList<ResourceIndexedSearchParamDate>();
+	private final List<ResourceIndexedSearchParamNumber> myNumberParams = new ArrayList<ResourceIndexedSearchParamNumber>();
+	private final List<ResourceIndexedSearchParamQuantity> myQuantityParams = new ArrayList<ResourceIndexedSearchParamQuantity>();
+	private final List<ResourceIndexedSearchParamString> myStringParams = new ArrayList<ResourceIndexedSearchParamString>();
+	private final List<ResourceIndexedSearchParamToken> myTokenParams = new ArrayList<ResourceIndexedSearchParamToken>();
+
+	/**
+	 * Adds the rows extracted for token parameters, which are token rows and also string rows for the text of coded
+	 * values
+	 */
+	public void addTokenParams(List<BaseResourceIndexedSearchParam> theParams) {
+		for (BaseResourceIndexedSearchParam next : theParams) {
+			if (next instanceof ResourceIndexedSearchParamToken) {
+				myTokenParams.add((ResourceIndexedSearchParamToken) next);
+			} else {
+				myStringParams.add((ResourceIndexedSearchParamString) next);
+			}
+		}
+	}
+
+	public List<ResourceIndexedSearchParamDate> getDateParams() {
+		return myDateParams;
+	}
+
+	public List<ResourceIndexedSearchParamNumber> getNumberParams() {
+		return myNumberParams;
+	}
+
+	public List<ResourceIndexedSearchParamQuantity> getQuantityParams() {
+		return myQuantityParams;
+	}
+
+	public List<ResourceIndexedSearchParamString> getStringParams() {
+		return myStringParams;
+	}
+
+	public List<ResourceIndexedSearchParamToken> getTokenParams() {
+		return myTokenParams;
+	}
+
+	/**
+	 * Sets the entity which every row belongs to, for rows which were extracted before the entity was known
+	 */
+	public void setResource(ResourceTable theEntity) {
+		setResource(theEntity, myDateParams);
+		setResource(theEntity, myNumberParams);
+		setResource(theEntity, myQuantityParams);
+		setResource(theEntity, myStringParams);
+		setResource(theEntity, myTokenParams);
+	}
+
+	private static void setResource(ResourceTable theEntity, List<? extends BaseResourceIndexedSearchParam> theParams) {
+		for (BaseResourceIndexedSearchParam next : theParams) {
+			next.setResource(theEntity);
+		}
+	}
+
+}
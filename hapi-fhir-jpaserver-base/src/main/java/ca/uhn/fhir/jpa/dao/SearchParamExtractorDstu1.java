@@ -71,6 +71,17 @@ class SearchParamExtractorDstu1 extends BaseSearchParamExtractor implements ISea
 		super(theContext);
 	}
 
+	@Override
+	public ResourceIndexedSearchParams extractSearchParams(ResourceTable theEntity, IResource theResource) {
+		ResourceIndexedSearchParams retVal = new ResourceIndexedSearchParams();
+		retVal.getStringParams().addAll(extractSearchParamStrings(theEntity, theResource));
+		retVal.getNumberParams().addAll(extractSearchParamNumber(theEntity, theResource));
+		retVal.getQuantityParams().addAll(extractSearchParamQuantity(theEntity, theResource));
+		retVal.getDateParams().addAll(extractSearchParamDates(theEntity, theResource));
+		retVal.addTokenParams(extractSearchParamTokens(theEntity, theResource));
+		return retVal;
+	}
+
 	@Override
 	public List<ResourceIndexedSearchParamDate> extractSearchParamDates(ResourceTable theEntity, IResource theResource) {
 		ArrayList<ResourceIndexedSearchParamDate> retVal = new ArrayList<ResourceIndexedSearchParamDate>();
@@ -91,7 +102,7 @@ class SearchParamExtractorDstu1 extends BaseSearchParamExtractor implements ISea
 				multiType = true;
 			}
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : extractValues(def, nextSpDef, theResource)) {
 				if (nextObject == null) {
 					continue;
 				}
@@ -143,7 +154,7 @@ class SearchParamExtractorDstu1 extends BaseSearchParamExtractor implements ISea
 				continue;
 			}
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : extractValues(def, nextSpDef, theResource)) {
 				if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
 					continue;
 				}
@@ -240,7 +251,7 @@ class SearchParamExtractorDstu1 extends BaseSearchParamExtractor implements ISea
 				continue;
 			}
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : extractValues(def, nextSpDef, theResource)) {
 				if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
 					continue;
 				}
@@ -291,7 +302,7 @@ class SearchParamExtractorDstu1 extends BaseSearchParamExtractor implements ISea
 				continue;
 			}
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : extractValues(def, nextSpDef, theResource)) {
 				if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
 					continue;
 				}
@@ -386,7 +397,7 @@ class SearchParamExtractorDstu1 extends BaseSearchParamExtractor implements ISea
 			List<String> systems = new ArrayList<String>();
 			List<String> codes = new ArrayList<String>();
 
-			for (Object nextObject : extractValues(nextPath, theResource)) {
+			for (Object nextObject : extractValues(def, nextSpDef, theResource)) {
 				if (nextObject instanceof IdentifierDt) {
 					IdentifierDt nextValue = (IdentifierDt) nextObject;
 					if (nextValue.isEmpty()) {
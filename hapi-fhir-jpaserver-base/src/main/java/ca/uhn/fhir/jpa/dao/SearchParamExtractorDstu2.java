@@ -72,6 +72,41 @@ class SearchParamExtractorDstu2 extends BaseSearchParamExtractor implements ISea
 		super(theContext);
 	}
 
+	/**
+	 * Extracts the index rows of every type in a single pass over the search parameters of the resource type
+	 */
+	@Override
+	public ResourceIndexedSearchParams extractSearchParams(ResourceTable theEntity, IResource theResource) {
+		ResourceIndexedSearchParams retVal = new ResourceIndexedSearchParams();
+		List<BaseResourceIndexedSearchParam> tokenParams = new ArrayList<BaseResourceIndexedSearchParam>();
+
+		RuntimeResourceDefinition def = getContext().getResourceDefinition(theResource);
+		for (RuntimeSearchParam nextSpDef : def.getSearchParams()) {
+			switch (nextSpDef.getParamType()) {
+			case DATE:
+				extractDates(theEntity, def, nextSpDef, theResource, retVal.getDateParams());
+				break;
+			case NUMBER:
+				extractNumber(theEntity, def, nextSpDef, theResource, retVal.getNumberParams());
+				break;
+			case QUANTITY:
+				extractQuantity(theEntity, def, nextSpDef, theResource, retVal.getQuantityParams());
+				break;
+			case STRING:
+				extractStrings(theEntity, def, nextSpDef, theResource, retVal.getStringParams());
+				break;
+			case TOKEN:
+				extractTokens(theEntity, def, nextSpDef, theResource, tokenParams);
+				break;
+			default:
+				break;
+			}
+		}
+		retVal.addTokenParams(tokenParams);
+
+		return retVal;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -88,46 +123,7 @@ class SearchParamExtractorDstu2 extends BaseSearchParamExtractor implements ISea
 				continue;
 			}
 
-			String nextPath = nextSpDef.getPath();
-			if (isBlank(nextPath)) {
-				continue;
-			}
-
-			boolean multiType = false;
-			if (nextPath.endsWith("[x]")) {
-				multiType = true;
-			}
-
-			for (Object nextObject : extractValues(nextPath, theResource)) {
-				if (nextObject == null) {
-					continue;
-				}
-
-				ResourceIndexedSearchParamDate nextEntity;
-				if (nextObject instanceof BaseDateTimeDt) {
-					BaseDateTimeDt nextValue = (BaseDateTimeDt) nextObject;
-					if (nextValue.isEmpty()) {
-						continue;
-					}
-					nextEntity = new ResourceIndexedSearchParamDate(nextSpDef.getName(), nextValue.getValue(), nextValue.getValue());
-				} else if (nextObject instanceof PeriodDt) {
-					PeriodDt nextValue = (PeriodDt) nextObject;
-					if (nextValue.isEmpty()) {
-						continue;
-					}
-					nextEntity = new ResourceIndexedSearchParamDate(nextSpDef.getName(), nextValue.getStart(), nextValue.getEnd());
-				} else {
-					if (!multiType) {
-						throw new ConfigurationException("Search param " + nextSpDef.getName() + " is of unexpected datatype: " + nextObject.getClass());
-					} else {
-						continue;
-					}
-				}
-				if (nextEntity != null) {
-					nextEntity.setResource(theEntity);
-					retVal.add(nextEntity);
-				}
-			}
+			extractDates(theEntity, def, nextSpDef, theResource, retVal);
 		}
 
 		theEntity.setParamsDatePopulated(retVal.size() > 0);
@@ -151,86 +147,7 @@ class SearchParamExtractorDstu2 extends BaseSearchParamExtractor implements ISea
 				continue;
 			}
 
-			String nextPath = nextSpDef.getPath();
-			if (isBlank(nextPath)) {
-				continue;
-			}
-
-			for (Object nextObject : extractValues(nextPath, theResource)) {
-				if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
-					continue;
-				}
-
-				String resourceName = nextSpDef.getName();
-				boolean multiType = false;
-				if (nextPath.endsWith("[x]")) {
-					multiType = true;
-				}
-
-				if (nextObject instanceof DurationDt) {
-					DurationDt nextValue = (DurationDt) nextObject;
-					if (nextValue.getValueElement().isEmpty()) {
-						continue;
-					}
-
-					if (new UriDt(BaseFhirDao.UCUM_NS).equals(nextValue.getSystemElement())) {
-						if (isNotBlank(nextValue.getCode())) {
-
-							Unit<? extends Quantity> unit = Unit.valueOf(nextValue.getCode());
-							javax.measure.converter.UnitConverter dayConverter = unit.getConverterTo(NonSI.DAY);
-							double dayValue = dayConverter.convert(nextValue.getValue().doubleValue());
-							DurationDt newValue = new DurationDt();
-							newValue.setSystem(BaseFhirDao.UCUM_NS);
-							newValue.setCode(NonSI.DAY.toString());
-							newValue.setValue(dayValue);
-							nextValue = newValue;
-
-							/*
-							 * @SuppressWarnings("unchecked") PhysicsUnit<? extends
-							 * org.unitsofmeasurement.quantity.Quantity<?>> unit = (PhysicsUnit<? extends
-							 * org.unitsofmeasurement.quantity.Quantity<?>>)
-							 * UCUMFormat.getCaseInsensitiveInstance().parse(nextValue.getCode().getValue(), null); if
-							 * (unit.isCompatible(UCUM.DAY)) {
-							 * 
-							 * @SuppressWarnings("unchecked") PhysicsUnit<org.unitsofmeasurement.quantity.Time> timeUnit
-							 * = (PhysicsUnit<Time>) unit; UnitConverter conv = timeUnit.getConverterTo(UCUM.DAY);
-							 * double dayValue = conv.convert(nextValue.getValue().getValue().doubleValue()); DurationDt
-							 * newValue = new DurationDt(); newValue.setSystem(UCUM_NS);
-							 * newValue.setCode(UCUM.DAY.getSymbol()); newValue.setValue(dayValue); nextValue=newValue;
-							 * }
-							 */
-						}
-					}
-
-					ResourceIndexedSearchParamNumber nextEntity = new ResourceIndexedSearchParamNumber(resourceName, nextValue.getValue());
-					nextEntity.setResource(theEntity);
-					retVal.add(nextEntity);
-				} else if (nextObject instanceof QuantityDt) {
-					QuantityDt nextValue = (QuantityDt) nextObject;
-					if (nextValue.getValueElement().isEmpty()) {
-						continue;
-					}
-
-					ResourceIndexedSearchParamNumber nextEntity = new ResourceIndexedSearchParamNumber(resourceName, nextValue.getValue());
-					nextEntity.setResource(theEntity);
-					retVal.add(nextEntity);
-				} else if (nextObject instanceof IntegerDt) {
-					IntegerDt nextValue = (IntegerDt) nextObject;
-					if (nextValue.getValue() == null) {
-						continue;
-					}
-
-					ResourceIndexedSearchParamNumber nextEntity = new ResourceIndexedSearchParamNumber(resourceName, new BigDecimal(nextValue.getValue()));
-					nextEntity.setResource(theEntity);
-					retVal.add(nextEntity);
-				} else {
-					if (!multiType) {
-						throw new ConfigurationException("Search param " + resourceName + " is of unexpected datatype: " + nextObject.getClass());
-					} else {
-						continue;
-					}
-				}
-			}
+			extractNumber(theEntity, def, nextSpDef, theResource, retVal);
 		}
 
 		theEntity.setParamsNumberPopulated(retVal.size() > 0);
@@ -254,39 +171,7 @@ class SearchParamExtractorDstu2 extends BaseSearchParamExtractor implements ISea
 				continue;
 			}
 
-			String nextPath = nextSpDef.getPath();
-			if (isBlank(nextPath)) {
-				continue;
-			}
-
-			for (Object nextObject : extractValues(nextPath, theResource)) {
-				if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
-					continue;
-				}
-
-				String resourceName = nextSpDef.getName();
-				boolean multiType = false;
-				if (nextPath.endsWith("[x]")) {
-					multiType = true;
-				}
-
-				if (nextObject instanceof QuantityDt) {
-					QuantityDt nextValue = (QuantityDt) nextObject;
-					if (nextValue.getValueElement().isEmpty()) {
-						continue;
-					}
-
-					ResourceIndexedSearchParamQuantity nextEntity = new ResourceIndexedSearchParamQuantity(resourceName, nextValue.getValueElement().getValue(), nextValue.getSystemElement().getValueAsString(), nextValue.getCode());
-					nextEntity.setResource(theEntity);
-					retVal.add(nextEntity);
-				} else {
-					if (!multiType) {
-						throw new ConfigurationException("Search param " + resourceName + " is of unexpected datatype: " + nextObject.getClass());
-					} else {
-						continue;
-					}
-				}
-			}
+			extractQuantity(theEntity, def, nextSpDef, theResource, retVal);
 		}
 
 		theEntity.setParamsNumberPopulated(retVal.size() > 0);
@@ -310,77 +195,7 @@ class SearchParamExtractorDstu2 extends BaseSearchParamExtractor implements ISea
 				continue;
 			}
 
-			String nextPath = nextSpDef.getPath();
-			if (isBlank(nextPath)) {
-				// TODO: implement phonetic, and any others that have no path
-				continue;
-			}
-
-			for (Object nextObject : extractValues(nextPath, theResource)) {
-				if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
-					continue;
-				}
-
-				String resourceName = nextSpDef.getName();
-				boolean multiType = false;
-				if (nextPath.endsWith("[x]")) {
-					multiType = true;
-				}
-
-				if (nextObject instanceof IPrimitiveDatatype<?>) {
-					IPrimitiveDatatype<?> nextValue = (IPrimitiveDatatype<?>) nextObject;
-					String searchTerm = nextValue.getValueAsString();
-					if (searchTerm.length() > ResourceIndexedSearchParamString.MAX_LENGTH) {
-						searchTerm = searchTerm.substring(0, ResourceIndexedSearchParamString.MAX_LENGTH);
-					}
-
-					ResourceIndexedSearchParamString nextEntity = new ResourceIndexedSearchParamString(resourceName, BaseFhirDao.normalizeString(searchTerm), searchTerm);
-					nextEntity.setResource(theEntity);
-					retVal.add(nextEntity);
-				} else {
-					if (nextObject instanceof BaseHumanNameDt) {
-						ArrayList<StringDt> allNames = new ArrayList<StringDt>();
-						HumanNameDt nextHumanName = (HumanNameDt) nextObject;
-						allNames.addAll(nextHumanName.getFamily());
-						allNames.addAll(nextHumanName.getGiven());
-						for (StringDt nextName : allNames) {
-							if (nextName.isEmpty()) {
-								continue;
-							}
-							ResourceIndexedSearchParamString nextEntity = new ResourceIndexedSearchParamString(resourceName, BaseFhirDao.normalizeString(nextName.getValueAsString()), nextName.getValueAsString());
-							nextEntity.setResource(theEntity);
-							retVal.add(nextEntity);
-						}
-					} else if (nextObject instanceof AddressDt) {
-						ArrayList<StringDt> allNames = new ArrayList<StringDt>();
-						AddressDt nextAddress = (AddressDt) nextObject;
-						allNames.addAll(nextAddress.getLine());
-						allNames.add(nextAddress.getCityElement());
-						allNames.add(nextAddress.getStateElement());
-						allNames.add(nextAddress.getCountryElement());
-						allNames.add(nextAddress.getPostalCodeElement());
-						for (StringDt nextName : allNames) {
-							if (nextName.isEmpty()) {
-								continue;
-							}
-							ResourceIndexedSearchParamString nextEntity = new ResourceIndexedSearchParamString(resourceName, BaseFhirDao.normalizeString(nextName.getValueAsString()), nextName.getValueAsString());
-							nextEntity.setResource(theEntity);
-							retVal.add(nextEntity);
-						}
-					} else if (nextObject instanceof ContactPointDt) {
-						ContactPointDt nextContact = (ContactPointDt) nextObject;
-						if (nextContact.getValueElement().isEmpty() == false) {
-							ResourceIndexedSearchParamString nextEntity = new ResourceIndexedSearchParamString(resourceName, BaseFhirDao.normalizeString(nextContact.getValueElement().getValueAsString()), nextContact.getValue());
-							nextEntity.setResource(theEntity);
-							retVal.add(nextEntity);
-						}
-					} else {
-						if (!multiType) {
-							throw new ConfigurationException("Search param " + resourceName + " is of unexpected datatype: " + nextObject.getClass());
-						}
-					}
-				}
-			}
+			extractStrings(theEntity, def, nextSpDef, theResource, retVal);
 		}
 
 		theEntity.setParamsStringPopulated(retVal.size() > 0);
@@ -404,134 +219,374 @@ class SearchParamExtractorDstu2 extends BaseSearchParamExtractor implements ISea
 				continue;
 			}
 
-			String nextPath = nextSpDef.getPath();
-			if (isBlank(nextPath)) {
+			extractTokens(theEntity, def, nextSpDef, theResource, retVal);
+		}
+
+		theEntity.setParamsTokenPopulated(retVal.size() > 0);
+
+		return retVal;
+	}
+
+	private void extractDates(ResourceTable theEntity, RuntimeResourceDefinition theResourceDef, RuntimeSearchParam theSearchParam, IResource theResource, List<ResourceIndexedSearchParamDate> theParams) {
+		String nextPath = theSearchParam.getPath();
+		if (isBlank(nextPath)) {
+			return;
+		}
+
+		boolean multiType = false;
+		if (nextPath.endsWith("[x]")) {
+			multiType = true;
+		}
+
+		for (Object nextObject : extractValues(theResourceDef, theSearchParam, theResource)) {
+			if (nextObject == null) {
+				continue;
+			}
+
+			ResourceIndexedSearchParamDate nextEntity;
+			if (nextObject instanceof BaseDateTimeDt) {
+				BaseDateTimeDt nextValue = (BaseDateTimeDt) nextObject;
+				if (nextValue.isEmpty()) {
+					continue;
+				}
+				nextEntity = new ResourceIndexedSearchParamDate(theSearchParam.getName(), nextValue.getValue(), nextValue.getValue());
+			} else if (nextObject instanceof PeriodDt) {
+				PeriodDt nextValue = (PeriodDt) nextObject;
+				if (nextValue.isEmpty()) {
+					continue;
+				}
+				nextEntity = new ResourceIndexedSearchParamDate(theSearchParam.getName(), nextValue.getStart(), nextValue.getEnd());
+			} else {
+				if (!multiType) {
+					throw new ConfigurationException("Search param " + theSearchParam.getName() + " is of unexpected datatype: " + nextObject.getClass());
+				} else {
+					continue;
+				}
+			}
+			if (nextEntity != null) {
+				nextEntity.setResource(theEntity);
+				theParams.add(nextEntity);
+			}
+		}
+	}
+
+	private void extractNumber(ResourceTable theEntity, RuntimeResourceDefinition theResourceDef, RuntimeSearchParam theSearchParam, IResource theResource, List<ResourceIndexedSearchParamNumber> theParams) {
+		String nextPath = theSearchParam.getPath();
+		if (isBlank(nextPath)) {
+			return;
+		}
+
+		for (Object nextObject : extractValues(theResourceDef, theSearchParam, theResource)) {
+			if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
 				continue;
 			}
 
+			String resourceName = theSearchParam.getName();
 			boolean multiType = false;
 			if (nextPath.endsWith("[x]")) {
 				multiType = true;
 			}
 
-			List<String> systems = new ArrayList<String>();
-			List<String> codes = new ArrayList<String>();
-
-			for (Object nextObject : extractValues(nextPath, theResource)) {
-				
-				// Patient:language 
-				if (nextObject instanceof Patient.Communication) {
-					Communication nextValue = (Patient.Communication) nextObject;
-					nextObject= nextValue.getLanguage();
+			if (nextObject instanceof DurationDt) {
+				DurationDt nextValue = (DurationDt) nextObject;
+				if (nextValue.getValueElement().isEmpty()) {
+					continue;
 				}
-				
-				if (nextObject instanceof IdentifierDt) {
-					IdentifierDt nextValue = (IdentifierDt) nextObject;
-					if (nextValue.isEmpty()) {
-						continue;
+
+				if (new UriDt(BaseFhirDao.UCUM_NS).equals(nextValue.getSystemElement())) {
+					if (isNotBlank(nextValue.getCode())) {
+
+						Unit<? extends Quantity> unit = Unit.valueOf(nextValue.getCode());
+						javax.measure.converter.UnitConverter dayConverter = unit.getConverterTo(NonSI.DAY);
+						double dayValue = dayConverter.convert(nextValue.getValue().doubleValue());
+						DurationDt newValue = new DurationDt();
+						newValue.setSystem(BaseFhirDao.UCUM_NS);
+						newValue.setCode(NonSI.DAY.toString());
+						newValue.setValue(dayValue);
+						nextValue = newValue;
+
+						/*
+						 * @SuppressWarnings("unchecked") PhysicsUnit<? extends
+						 * org.unitsofmeasurement.quantity.Quantity<?>> unit = (PhysicsUnit<? extends
+						 * org.unitsofmeasurement.quantity.Quantity<?>>)
+						 * UCUMFormat.getCaseInsensitiveInstance().parse(nextValue.getCode().getValue(), null); if
+						 * (unit.isCompatible(UCUM.DAY)) {
+						 * 
+						 * @SuppressWarnings("unchecked") PhysicsUnit<org.unitsofmeasurement.quantity.Time> timeUnit
+						 * = (PhysicsUnit<Time>) unit; UnitConverter conv = timeUnit.getConverterTo(UCUM.DAY);
+						 * double dayValue = conv.convert(nextValue.getValue().getValue().doubleValue()); DurationDt
+						 * newValue = new DurationDt(); newValue.setSystem(UCUM_NS);
+						 * newValue.setCode(UCUM.DAY.getSymbol()); newValue.setValue(dayValue); nextValue=newValue;
+						 * }
+						 */
 					}
-					systems.add(nextValue.getSystemElement().getValueAsString());
-					codes.add(nextValue.getValueElement().getValue());
-				} else if (nextObject instanceof ContactPointDt) {
-						ContactPointDt nextValue = (ContactPointDt) nextObject;
-						if (nextValue.isEmpty()) {
+				}
+
+				ResourceIndexedSearchParamNumber nextEntity = new ResourceIndexedSearchParamNumber(resourceName, nextValue.getValue());
+				nextEntity.setResource(theEntity);
+				theParams.add(nextEntity);
+			} else if (nextObject instanceof QuantityDt) {
+				QuantityDt nextValue = (QuantityDt) nextObject;
+				if (nextValue.getValueElement().isEmpty()) {
+					continue;
+				}
+
+				ResourceIndexedSearchParamNumber nextEntity = new ResourceIndexedSearchParamNumber(resourceName, nextValue.getValue());
+				nextEntity.setResource(theEntity);
+				theParams.add(nextEntity);
+			} else if (nextObject instanceof IntegerDt) {
+				IntegerDt nextValue = (IntegerDt) nextObject;
+				if (nextValue.getValue() == null) {
+					continue;
+				}
+
+				ResourceIndexedSearchParamNumber nextEntity = new ResourceIndexedSearchParamNumber(resourceName, new BigDecimal(nextValue.getValue()));
+				nextEntity.setResource(theEntity);
+				theParams.add(nextEntity);
+			} else {
+				if (!multiType) {
+					throw new ConfigurationException("Search param " + resourceName + " is of unexpected datatype: " + nextObject.getClass());
+				} else {
+					continue;
+				}
+			}
+		}
+	}
+
+	private void extractQuantity(ResourceTable theEntity, RuntimeResourceDefinition theResourceDef, RuntimeSearchParam theSearchParam, IResource theResource, List<ResourceIndexedSearchParamQuantity> theParams) {
+		String nextPath = theSearchParam.getPath();
+		if (isBlank(nextPath)) {
+			return;
+		}
+
+		for (Object nextObject : extractValues(theResourceDef, theSearchParam, theResource)) {
+			if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
+				continue;
+			}
+
+			String resourceName = theSearchParam.getName();
+			boolean multiType = false;
+			if (nextPath.endsWith("[x]")) {
+				multiType = true;
+			}
+
+			if (nextObject instanceof QuantityDt) {
+				QuantityDt nextValue = (QuantityDt) nextObject;
+				if (nextValue.getValueElement().isEmpty()) {
+					continue;
+				}
+
+				ResourceIndexedSearchParamQuantity nextEntity = new ResourceIndexedSearchParamQuantity(resourceName, nextValue.getValueElement().getValue(), nextValue.getSystemElement().getValueAsString(), nextValue.getCode());
+				nextEntity.setResource(theEntity);
+				theParams.add(nextEntity);
+			} else {
+				if (!multiType) {
+					throw new ConfigurationException("Search param " + resourceName + " is of unexpected datatype: " + nextObject.getClass());
+				} else {
+					continue;
+				}
+			}
+		}
+	}
+
+	private void extractStrings(ResourceTable theEntity, RuntimeResourceDefinition theResourceDef, RuntimeSearchParam theSearchParam, IResource theResource, List<ResourceIndexedSearchParamString> theParams) {
+		String nextPath = theSearchParam.getPath();
+		if (isBlank(nextPath)) {
+			// TODO: implement phonetic, and any others that have no path
+			return;
+		}
+
+		for (Object nextObject : extractValues(theResourceDef, theSearchParam, theResource)) {
+			if (nextObject == null || ((IDatatype) nextObject).isEmpty()) {
+				continue;
+			}
+
+			String resourceName = theSearchParam.getName();
+			boolean multiType = false;
+			if (nextPath.endsWith("[x]")) {
+				multiType = true;
+			}
+
+			if (nextObject instanceof IPrimitiveDatatype<?>) {
+				IPrimitiveDatatype<?> nextValue = (IPrimitiveDatatype<?>) nextObject;
+				String searchTerm = nextValue.getValueAsString();
+				if (searchTerm.length() > ResourceIndexedSearchParamString.MAX_LENGTH) {
+					searchTerm = searchTerm.substring(0, ResourceIndexedSearchParamString.MAX_LENGTH);
+				}
+
+				ResourceIndexedSearchParamString nextEntity = new ResourceIndexedSearchParamString(resourceName, BaseFhirDao.normalizeString(searchTerm), searchTerm);
+				nextEntity.setResource(theEntity);
+				theParams.add(nextEntity);
+			} else {
+				if (nextObject instanceof BaseHumanNameDt) {
+					ArrayList<StringDt> allNames = new ArrayList<StringDt>();
+					HumanNameDt nextHumanName = (HumanNameDt) nextObject;
+					allNames.addAll(nextHumanName.getFamily());
+					allNames.addAll(nextHumanName.getGiven());
+					for (StringDt nextName : allNames) {
+						if (nextName.isEmpty()) {
 							continue;
 						}
-						systems.add(nextValue.getSystemElement().getValueAsString());
-						codes.add(nextValue.getValueElement().getValue());
-				} else if (nextObject instanceof IPrimitiveDatatype<?>) {
-					IPrimitiveDatatype<?> nextValue = (IPrimitiveDatatype<?>) nextObject;
-					if (nextValue.isEmpty()) {
-						continue;
-					}
-					systems.add(null);
-					codes.add(nextValue.getValueAsString());
-				} else if (nextObject instanceof CodingDt) {
-					CodingDt nextValue = (CodingDt) nextObject;
-					if (nextValue.isEmpty()) {
-						continue;
-					}
-					String nextSystem = nextValue.getSystemElement().getValueAsString();
-					String nextCode = nextValue.getCodeElement().getValue();
-					if (isNotBlank(nextSystem) || isNotBlank(nextCode)) {
-						systems.add(nextSystem);
-						codes.add(nextCode);
-					}
-
-					if (!nextValue.getDisplayElement().isEmpty()) {
-						systems.add(null);
-						codes.add(nextValue.getDisplayElement().getValue());
-					}
-				} else if (nextObject instanceof CodeableConceptDt) {
-					CodeableConceptDt nextCC = (CodeableConceptDt) nextObject;
-					if (!nextCC.getTextElement().isEmpty()) {
-						ResourceIndexedSearchParamString nextEntity = new ResourceIndexedSearchParamString(nextSpDef.getName(), BaseFhirDao.normalizeString(nextCC.getTextElement().getValue()), nextCC.getTextElement().getValue());
+						ResourceIndexedSearchParamString nextEntity = new ResourceIndexedSearchParamString(resourceName, BaseFhirDao.normalizeString(nextName.getValueAsString()), nextName.getValueAsString());
 						nextEntity.setResource(theEntity);
-						retVal.add(nextEntity);
+						theParams.add(nextEntity);
 					}
-
-					for (CodingDt nextCoding : nextCC.getCoding()) {
-						if (nextCoding.isEmpty()) {
+				} else if (nextObject instanceof AddressDt) {
+					ArrayList<StringDt> allNames = new ArrayList<StringDt>();
+					AddressDt nextAddress = (AddressDt) nextObject;
+					allNames.addAll(nextAddress.getLine());
+					allNames.add(nextAddress.getCityElement());
+					allNames.add(nextAddress.getStateElement());
+					allNames.add(nextAddress.getCountryElement());
+					allNames.add(nextAddress.getPostalCodeElement());
+					for (StringDt nextName : allNames) {
+						if (nextName.isEmpty()) {
 							continue;
 						}
-
-						String nextSystem = nextCoding.getSystemElement().getValueAsString();
-						String nextCode = nextCoding.getCodeElement().getValue();
-						if (isNotBlank(nextSystem) || isNotBlank(nextCode)) {
-							systems.add(nextSystem);
-							codes.add(nextCode);
-						}
-
-						if (!nextCoding.getDisplayElement().isEmpty()) {
-							systems.add(null);
-							codes.add(nextCoding.getDisplayElement().getValue());
-						}
-
+						ResourceIndexedSearchParamString nextEntity = new ResourceIndexedSearchParamString(resourceName, BaseFhirDao.normalizeString(nextName.getValueAsString()), nextName.getValueAsString());
+						nextEntity.setResource(theEntity);
+						theParams.add(nextEntity);
+					}
+				} else if (nextObject instanceof ContactPointDt) {
+					ContactPointDt nextContact = (ContactPointDt) nextObject;
+					if (nextContact.getValueElement().isEmpty() == false) {
+						ResourceIndexedSearchParamString nextEntity = new ResourceIndexedSearchParamString(resourceName, BaseFhirDao.normalizeString(nextContact.getValueElement().getValueAsString()), nextContact.getValue());
+						nextEntity.setResource(theEntity);
+						theParams.add(nextEntity);
 					}
 				} else {
 					if (!multiType) {
-						throw new ConfigurationException("Search param " + nextSpDef.getName() + " is of unexpected datatype: " + nextObject.getClass());
-					} else {
-						continue;
+						throw new ConfigurationException("Search param " + resourceName + " is of unexpected datatype: " + nextObject.getClass());
 					}
 				}
 			}
+		}
+	}
+
+	private void extractTokens(ResourceTable theEntity, RuntimeResourceDefinition theResourceDef, RuntimeSearchParam theSearchParam, IResource theResource, List<BaseResourceIndexedSearchParam> theParams) {
+		String nextPath = theSearchParam.getPath();
+		if (isBlank(nextPath)) {
+			return;
+		}
+
+		boolean multiType = false;
+		if (nextPath.endsWith("[x]")) {
+			multiType = true;
+		}
 
-			assert systems.size() == codes.size() : "Systems contains " + systems + ", codes contains: " + codes;
+		List<String> systems = new ArrayList<String>();
+		List<String> codes = new ArrayList<String>();
 
-			Set<Pair<String, String>> haveValues = new HashSet<Pair<String, String>>();
-			for (int i = 0; i < systems.size(); i++) {
-				String system = systems.get(i);
-				String code = codes.get(i);
-				if (isBlank(system) && isBlank(code)) {
+		for (Object nextObject : extractValues(theResourceDef, theSearchParam, theResource)) {
+			
+			// Patient:language 
+			if (nextObject instanceof Patient.Communication) {
+				Communication nextValue = (Patient.Communication) nextObject;
+				nextObject= nextValue.getLanguage();
+			}
+			
+			if (nextObject instanceof IdentifierDt) {
+				IdentifierDt nextValue = (IdentifierDt) nextObject;
+				if (nextValue.isEmpty()) {
+					continue;
+				}
+				systems.add(nextValue.getSystemElement().getValueAsString());
+				codes.add(nextValue.getValueElement().getValue());
+			} else if (nextObject instanceof ContactPointDt) {
+					ContactPointDt nextValue = (ContactPointDt) nextObject;
+					if (nextValue.isEmpty()) {
+						continue;
+					}
+					systems.add(nextValue.getSystemElement().getValueAsString());
+					codes.add(nextValue.getValueElement().getValue());
+			} else if (nextObject instanceof IPrimitiveDatatype<?>) {
+				IPrimitiveDatatype<?> nextValue = (IPrimitiveDatatype<?>) nextObject;
+				if (nextValue.isEmpty()) {
+					continue;
+				}
+				systems.add(null);
+				codes.add(nextValue.getValueAsString());
+			} else if (nextObject instanceof CodingDt) {
+				CodingDt nextValue = (CodingDt) nextObject;
+				if (nextValue.isEmpty()) {
 					continue;
 				}
+				String nextSystem = nextValue.getSystemElement().getValueAsString();
+				String nextCode = nextValue.getCodeElement().getValue();
+				if (isNotBlank(nextSystem) || isNotBlank(nextCode)) {
+					systems.add(nextSystem);
+					codes.add(nextCode);
+				}
 
-				if (system != null && system.length() > ResourceIndexedSearchParamToken.MAX_LENGTH) {
-					system = system.substring(0, ResourceIndexedSearchParamToken.MAX_LENGTH);
+				if (!nextValue.getDisplayElement().isEmpty()) {
+					systems.add(null);
+					codes.add(nextValue.getDisplayElement().getValue());
 				}
-				if (code != null && code.length() > ResourceIndexedSearchParamToken.MAX_LENGTH) {
-					code = code.substring(0, ResourceIndexedSearchParamToken.MAX_LENGTH);
+			} else if (nextObject instanceof CodeableConceptDt) {
+				CodeableConceptDt nextCC = (CodeableConceptDt) nextObject;
+				if (!nextCC.getTextElement().isEmpty()) {
+					ResourceIndexedSearchParamString nextEntity = new ResourceIndexedSearchParamString(theSearchParam.getName(), BaseFhirDao.normalizeString(nextCC.getTextElement().getValue()), nextCC.getTextElement().getValue());
+					nextEntity.setResource(theEntity);
+					theParams.add(nextEntity);
 				}
 
-				Pair<String, String> nextPair = Pair.of(system, code);
-				if (haveValues.contains(nextPair)) {
+				for (CodingDt nextCoding : nextCC.getCoding()) {
+					if (nextCoding.isEmpty()) {
+						continue;
+					}
+
+					String nextSystem = nextCoding.getSystemElement().getValueAsString();
+					String nextCode = nextCoding.getCodeElement().getValue();
+					if (isNotBlank(nextSystem) || isNotBlank(nextCode)) {
+						systems.add(nextSystem);
+						codes.add(nextCode);
+					}
+
+					if (!nextCoding.getDisplayElement().isEmpty()) {
+						systems.add(null);
+						codes.add(nextCoding.getDisplayElement().getValue());
+					}
+
+				}
+			} else {
+				if (!multiType) {
+					throw new ConfigurationException("Search param " + theSearchParam.getName() + " is of unexpected datatype: " + nextObject.getClass());
+				} else {
 					continue;
 				}
-				haveValues.add(nextPair);
+			}
+		}
 
-				ResourceIndexedSearchParamToken nextEntity;
-				nextEntity = new ResourceIndexedSearchParamToken(nextSpDef.getName(), system, code);
-				nextEntity.setResource(theEntity);
-				retVal.add(nextEntity);
+		assert systems.size() == codes.size() : "Systems contains " + systems + ", codes contains: " + codes;
 
+		Set<Pair<String, String>> haveValues = new HashSet<Pair<String, String>>();
+		for (int i = 0; i < systems.size(); i++) {
+			String system = systems.get(i);
+			String code = codes.get(i);
+			if (isBlank(system) && isBlank(code)) {
+				continue;
 			}
 
-		}
+			if (system != null && system.length() > ResourceIndexedSearchParamToken.MAX_LENGTH) {
+				system = system.substring(0, ResourceIndexedSearchParamToken.MAX_LENGTH);
+			}
+			if (code != null && code.length() > ResourceIndexedSearchParamToken.MAX_LENGTH) {
+				code = code.substring(0, ResourceIndexedSearchParamToken.MAX_LENGTH);
+			}
 
-		theEntity.setParamsTokenPopulated(retVal.size() > 0);
+			Pair<String, String> nextPair = Pair.of(system, code);
+			if (haveValues.contains(nextPair)) {
+				continue;
+			}
+			haveValues.add(nextPair);
+
+			ResourceIndexedSearchParamToken nextEntity;
+			nextEntity = new ResourceIndexedSearchParamToken(theSearchParam.getName(), system, code);
+			nextEntity.setResource(theEntity);
+			theParams.add(nextEntity);
+
+		}
 
-		return retVal;
 	}
 
 }
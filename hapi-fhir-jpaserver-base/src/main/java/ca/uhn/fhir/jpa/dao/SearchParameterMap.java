@@ -21,11 +21,15 @@ package ca.uhn.fhir.jpa.dao;
  */
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
@@ -122,6 +126,42 @@ public class SearchParameterMap extends HashMap<String, List<List<? extends IQue
 		mySort = theSort;
 	}
 
+	/**
+	 * Returns a canonical string form of this search, in which the order that parameters, values, includes and
+	 * revincludes were added in does not matter. Two maps which would return the same results produce the same
+	 * string. The count is not included since it doesn't affect which resources match.
+	 */
+	public String toNormalizedQueryString() {
+		List<String> params = new ArrayList<String>();
+		for (Map.Entry<String, List<List<? extends IQueryParameterType>>> nextEntry : entrySet()) {
+			for (List<? extends IQueryParameterType> nextAnd : nextEntry.getValue()) {
+				List<String> values = new ArrayList<String>();
+				for (IQueryParameterType nextOr : nextAnd) {
+					StringBuilder b = new StringBuilder();
+					b.append(StringUtils.defaultString(nextOr.getQueryParameterQualifier()));
+					b.append('=');
+					b.append(StringUtils.defaultString(nextOr.getValueAsQueryToken()));
+					if (nextOr.getMissing() != null) {
+						b.append(":missing=").append(nextOr.getMissing());
+					}
+					values.add(b.toString());
+				}
+				Collections.sort(values);
+				params.add(nextEntry.getKey() + values);
+			}
+		}
+		Collections.sort(params);
+
+		StringBuilder b = new StringBuilder();
+		b.append(params);
+		for (SortSpec nextSort = mySort; nextSort != null; nextSort = nextSort.getChain()) {
+			b.append("&_sort=").append(nextSort.getParamName()).append(':').append(nextSort.getOrder());
+		}
+		b.append("&_include=").append(toSortedValues(myIncludes));
+		b.append("&_revinclude=").append(toSortedValues(myRevIncludes));
+		return b.toString();
+	}
+
 	@Override
 	public String toString() {
 		ToStringBuilder b = new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE);
@@ -134,4 +174,15 @@ public class SearchParameterMap extends HashMap<String, List<List<? extends IQue
 		return b.toString();
 	}
 
+	private static List<String> toSortedValues(Collection<Include> theIncludes) {
+		List<String> retVal = new ArrayList<String>();
+		if (theIncludes != null) {
+			for (Include next : theIncludes) {
+				retVal.add(next.getValue());
+			}
+		}
+		Collections.sort(retVal);
+		return retVal;
+	}
+
 }
@@ -0,0 +1,120 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory cache of the PIDs matched by recent searches, keyed on the resource type and the normalized form of the
+ * search (see {@link SearchParameterMap#toNormalizedQueryString()}). Entries are dropped when they are older than the
+ * freshness window in {@link DaoConfig#getReuseCachedSearchResultsForMillis()}, and when a resource of a type they
+ * depend on is written. Searches matching more than {@link #setMaxResultsPerEntry(int) a maximum number} of
+ * resources are not cached, so that the cache's memory use stays bounded.
+ * <p>
+ * Invalidation happens as resources are written, before the writing transaction commits, so a search running
+ * concurrently with a write can still cache results which don't include it. Such entries are never served for
+ * longer than the freshness window.
+ * </p>
+ */
+class SearchResultCache {
+
+	static final int DEFAULT_MAX_RESULTS_PER_ENTRY = 1000;
+	private static final int MAX_ENTRIES = 100;
+
+	private final LinkedHashMap<String, CacheEntry> myEntries = new LinkedHashMap<String, CacheEntry>(MAX_ENTRIES, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> theEldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	private volatile int myMaxResultsPerEntry = DEFAULT_MAX_RESULTS_PER_ENTRY;
+
+	/**
+	 * Returns the cached PIDs for the given search, or <code>null</code> if there is no entry younger than
+	 * <code>theMaxAgeMillis</code>
+	 */
+	synchronized List<Long> get(String theKey, long theMaxAgeMillis) {
+		CacheEntry entry = myEntries.get(theKey);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.myCreated < System.currentTimeMillis() - theMaxAgeMillis) {
+			myEntries.remove(theKey);
+			return null;
+		}
+		return entry.myPids;
+	}
+
+	int getMaxResultsPerEntry() {
+		return myMaxResultsPerEntry;
+	}
+
+	/**
+	 * Removes every entry which depends on the given resource type
+	 */
+	synchronized void invalidate(String theResourceType) {
+		for (Iterator<CacheEntry> iter = myEntries.values().iterator(); iter.hasNext();) {
+			CacheEntry next = iter.next();
+			if (next.myDependsOnOtherTypes || next.myResourceType.equals(theResourceType)) {
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * Stores the results of a search, unless there are more of them than {@link #getMaxResultsPerEntry()}
+	 * 
+	 * @param theResourceType
+	 *           The name of the resource type which was searched for
+	 * @param theDependsOnOtherTypes
+	 *           Should be <code>true</code> if the results can change when resources of types other than
+	 *           <code>theResourceType</code> are written (e.g. because of chained parameters or _revinclude)
+	 */
+	synchronized void put(String theKey, String theResourceType, boolean theDependsOnOtherTypes, List<Long> thePids) {
+		if (thePids.size() > myMaxResultsPerEntry) {
+			return;
+		}
+		CacheEntry entry = new CacheEntry();
+		entry.myCreated = System.currentTimeMillis();
+		entry.myResourceType = theResourceType;
+		entry.myDependsOnOtherTypes = theDependsOnOtherTypes;
+		entry.myPids = Collections.unmodifiableList(thePids);
+		myEntries.put(theKey, entry);
+	}
+
+	void setMaxResultsPerEntry(int theMaxResultsPerEntry) {
+		myMaxResultsPerEntry = theMaxResultsPerEntry;
+	}
+
+	private static class CacheEntry {
+		private long myCreated;
+		private boolean myDependsOnOtherTypes;
+		private List<Long> myPids;
+		private String myResourceType;
+	}
+
+}
@@ -0,0 +1,88 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Forced IDs and match URLs which have been resolved up front for the rest of a database transaction, so that a
+ * transaction bundle can look them up in a few batched queries before it writes anything, instead of one query per
+ * entry (each of which would also flush the writes made so far).
+ * <p>
+ * Forced IDs can never be reassigned, so resolved forced IDs stay valid. Match URL results only stay valid while the
+ * index rows of their resource type are unchanged, so they are discarded as soon as a resource of that type is
+ * indexed (including when it is deleted).
+ * </p>
+ * <p>
+ * Instances are bound to the current transaction (see {@link BaseFhirDao#bindTransactionLookups()}) and are only
+ * ever used by the thread running that transaction.
+ * </p>
+ */
+class TransactionLookups {
+
+	private final Map<String, Long> myForcedIdToPid = new HashMap<String, Long>();
+	private final Map<String, Set<Long>> myMatchUrlToPids = new HashMap<String, Set<Long>>();
+
+	void addForcedIds(Map<String, Long> theForcedIdToPid) {
+		myForcedIdToPid.putAll(theForcedIdToPid);
+	}
+
+	void addMatches(String theResourceType, String theMatchUrl, Set<Long> thePids) {
+		myMatchUrlToPids.put(toKey(theResourceType, theMatchUrl), new HashSet<Long>(thePids));
+	}
+
+	/**
+	 * Returns a copy of the PIDs matched by the given URL, or <code>null</code> if it has not been resolved (or its
+	 * results are no longer valid)
+	 */
+	Set<Long> getMatches(String theResourceType, String theMatchUrl) {
+		Set<Long> retVal = myMatchUrlToPids.get(toKey(theResourceType, theMatchUrl));
+		return retVal != null ? new HashSet<Long>(retVal) : null;
+	}
+
+	/**
+	 * Returns the PID of the resource with the given forced ID, or <code>null</code> if it has not been resolved
+	 */
+	Long getPid(String theForcedId) {
+		return myForcedIdToPid.get(theForcedId);
+	}
+
+	/**
+	 * Discards the match URL results for the given resource type, since its index rows have changed
+	 */
+	void invalidateMatches(String theResourceType) {
+		String prefix = theResourceType + '|';
+		for (Iterator<String> iter = myMatchUrlToPids.keySet().iterator(); iter.hasNext();) {
+			if (iter.next().startsWith(prefix)) {
+				iter.remove();
+			}
+		}
+	}
+
+	private static String toKey(String theResourceType, String theMatchUrl) {
+		return theResourceType + '|' + theMatchUrl;
+	}
+
+}
@@ -21,6 +21,7 @@ package ca.uhn.fhir.jpa.entity;
  */
 
 import java.io.Serializable;
+import java.math.BigDecimal;
 
 import javax.persistence.Column;
 import javax.persistence.GeneratedValue;
@@ -30,6 +31,11 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.MappedSuperclass;
 
+/**
+ * Subclasses implement <code>equals</code> and <code>hashCode</code> in terms of the parameter name and the indexed
+ * value only (not the primary key or the owning resource), so that the rows extracted from a new version of a resource
+ * can be matched against the rows already stored for it.
+ */
 @MappedSuperclass
 public abstract class BaseResourceIndexedSearchParam implements Serializable {
 
@@ -72,4 +78,15 @@ public abstract class BaseResourceIndexedSearchParam implements Serializable {
 		myResourceType = theResource.getResourceType();
 	}
 
+	/**
+	 * Compares numerically, since values read back from the database may have a different scale than the values
+	 * they were created from
+	 */
+	static boolean valuesEqual(BigDecimal theValue1, BigDecimal theValue2) {
+		if (theValue1 == null || theValue2 == null) {
+			return theValue1 == theValue2;
+		}
+		return theValue1.compareTo(theValue2) == 0;
+	}
+
 }
@@ -0,0 +1,137 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import ca.uhn.fhir.parser.DataFormatException;
+
+/**
+ * Codec which stores resources as zlib streams compressed against a preset dictionary of strings which occur in
+ * most FHIR JSON resources. Because resources are small, a dictionary gives a much better ratio than plain deflate
+ * at a faster compression level.
+ * <p>
+ * Deflaters and inflaters hold native memory until they are ended, so a small number of idle ones are kept in a
+ * pool and reused, and any others are ended as soon as they have been used.
+ * </p>
+ * <p>
+ * The zlib header of each stored value identifies the dictionary which was used to compress it, so the dictionary
+ * for an encoding may never be changed once rows have been written with it. An improved dictionary needs a new
+ * {@link ResourceEncodingEnum} constant.
+ * </p>
+ */
+class DeflateDictionaryResourceEncodingCodec implements IResourceEncodingCodec {
+
+	/**
+	 * The maximum number of idle deflaters (and of idle inflaters) which are kept for reuse
+	 */
+	static final int MAX_POOLED = 8;
+
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+
+	private final ArrayBlockingQueue<Deflater> myDeflaters = new ArrayBlockingQueue<Deflater>(MAX_POOLED);
+	private final byte[] myDictionary;
+	private final int myDictionaryId;
+	private final ArrayBlockingQueue<Inflater> myInflaters = new ArrayBlockingQueue<Inflater>(MAX_POOLED);
+	private final int myLevel;
+
+	DeflateDictionaryResourceEncodingCodec(String theDictionary, int theLevel) {
+		myDictionary = theDictionary.getBytes(Utf8ResourceEncodingCodec.UTF8);
+		myLevel = theLevel;
+
+		Deflater deflater = new Deflater(theLevel);
+		deflater.setDictionary(myDictionary);
+		myDictionaryId = deflater.getAdler();
+		deflater.end();
+	}
+
+	@Override
+	public String decode(byte[] theBytes) {
+		Inflater inflater = myInflaters.poll();
+		if (inflater == null) {
+			inflater = new Inflater();
+		}
+		try {
+			inflater.setInput(theBytes);
+
+			byte[] buffer = new byte[Math.max(INITIAL_BUFFER_SIZE, theBytes.length * 4)];
+			int length = 0;
+			while (!inflater.finished()) {
+				if (length == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+				int count = inflater.inflate(buffer, length, buffer.length - length);
+				if (count == 0) {
+					if (inflater.needsDictionary()) {
+						if (inflater.getAdler() != myDictionaryId) {
+							throw new DataFormatException("Failed to decompress contents, they were compressed using an unknown dictionary");
+						}
+						inflater.setDictionary(myDictionary);
+					} else if (inflater.needsInput() && !inflater.finished()) {
+						throw new DataFormatException("Failed to decompress contents, they are truncated");
+					}
+				}
+				length += count;
+			}
+			return new String(buffer, 0, length, Utf8ResourceEncodingCodec.UTF8);
+		} catch (java.util.zip.DataFormatException e) {
+			throw new DataFormatException("Failed to decompress contents", e);
+		} finally {
+			inflater.reset();
+			if (!myInflaters.offer(inflater)) {
+				inflater.end();
+			}
+		}
+	}
+
+	@Override
+	public byte[] encode(String theResourceText) {
+		Deflater deflater = myDeflaters.poll();
+		if (deflater == null) {
+			deflater = new Deflater(myLevel);
+		}
+		try {
+			deflater.setDictionary(myDictionary);
+			byte[] input = theResourceText.getBytes(Utf8ResourceEncodingCodec.UTF8);
+			deflater.setInput(input);
+			deflater.finish();
+
+			byte[] buffer = new byte[Math.max(INITIAL_BUFFER_SIZE, input.length / 2)];
+			int length = 0;
+			while (!deflater.finished()) {
+				if (length == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+				length += deflater.deflate(buffer, length, buffer.length - length);
+			}
+			return Arrays.copyOf(buffer, length);
+		} finally {
+			deflater.reset();
+			if (!myDeflaters.offer(deflater)) {
+				deflater.end();
+			}
+		}
+	}
+
+}
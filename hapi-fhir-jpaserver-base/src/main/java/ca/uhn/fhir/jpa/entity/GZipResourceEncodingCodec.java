@@ -0,0 +1,63 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import ca.uhn.fhir.parser.DataFormatException;
+
+class GZipResourceEncodingCodec implements IResourceEncodingCodec {
+
+	@Override
+	public String decode(byte[] theBytes) {
+		try {
+			GZIPInputStream is = new GZIPInputStream(new ByteArrayInputStream(theBytes));
+			ByteArrayOutputStream os = new ByteArrayOutputStream(theBytes.length * 4);
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = is.read(buffer)) != -1) {
+				os.write(buffer, 0, count);
+			}
+			return new String(os.toByteArray(), Utf8ResourceEncodingCodec.UTF8);
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to decompress contents", e);
+		}
+	}
+
+	@Override
+	public byte[] encode(String theResourceText) {
+		try {
+			byte[] bytes = theResourceText.getBytes(Utf8ResourceEncodingCodec.UTF8);
+			ByteArrayOutputStream os = new ByteArrayOutputStream(bytes.length / 4 + 32);
+			GZIPOutputStream gos = new GZIPOutputStream(os);
+			gos.write(bytes);
+			gos.close();
+			return os.toByteArray();
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to compress contents", e);
+		}
+	}
+
+}
@@ -0,0 +1,37 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Converts the encoded text of a resource to and from the bytes which are stored in the RES_TEXT column. Each
+ * {@link ResourceEncodingEnum} has a codec, and the name of the enum constant is stored alongside the bytes in
+ * RES_ENCODING so that rows are always decoded by the codec which wrote them.
+ * <p>
+ * Implementations must be thread safe.
+ * </p>
+ */
+public interface IResourceEncodingCodec {
+
+	String decode(byte[] theBytes);
+
+	byte[] encode(String theResourceText);
+
+}
@@ -20,16 +20,75 @@ package ca.uhn.fhir.jpa.entity;
  * #L%
  */
 
+import java.util.zip.Deflater;
+
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.parser.IParser;
 
+/**
+ * The encodings which resource bodies may be stored in. The name of the constant is stored in the RES_ENCODING
+ * column (so it may be at most 5 characters long) and the constant's {@link IResourceEncodingCodec} converts the
+ * resource text to and from the bytes stored in RES_TEXT. Constants must never be removed or renamed, since
+ * existing rows refer to them by name.
+ */
 public enum ResourceEncodingEnum {
 
 	/** Json */
-	JSON,
+	JSON(new Utf8ResourceEncodingCodec()),
 	
 	/** Json Compressed */
-	JSONC;
+	JSONC(new GZipResourceEncodingCodec()),
+
+	/** Json Compressed using a preset dictionary of common FHIR JSON strings */
+	JSONZ(new DeflateDictionaryResourceEncodingCodec(ResourceEncodingEnum.JSONZ_DICTIONARY, Deflater.BEST_SPEED)),
+
+	/** The compact binary encoding of {@link FhirContext#newBinaryParser()} */
+	BIN(new Latin1ResourceEncodingCodec()) {
+		@Override
+		public IParser newParser(FhirContext theContext) {
+			return theContext.newBinaryParser();
+		}
+	};
+
+	/**
+	 * Strings which appear in most resources, with the most common ones last since the compressor can refer to
+	 * these with the shortest distances. This may never be changed, see {@link DeflateDictionaryResourceEncodingCodec}.
+	 */
+	private static final String JSONZ_DICTIONARY = "" + 
+		"\"period\":{\"start\":\"\"end\":\"\"telecom\":[{\"system\":\"phone\",\"value\":\"\"use\":\"work\"}\"use\":\"home\"}" + 
+		"\"address\":[{\"use\":\"home\",\"line\":[\"\"city\":\"\"state\":\"\"postalCode\":\"\"country\":\"" + 
+		"\"name\":[{\"use\":\"official\",\"family\":[\"\"given\":[\"\"gender\":\"male\"\"gender\":\"female\"\"birthDate\":\"" + 
+		"\"effectiveDateTime\":\"\"issued\":\"\"valueQuantity\":{\"value\":\"unit\":\"\"system\":\"http://unitsofmeasure.org\",\"code\":\"" + 
+		"\"category\":{\"coding\":[{\"\"type\":{\"coding\":[{\"\"code\":{\"coding\":[{\"system\":\"http://loinc.org\",\"code\":\"" + 
+		"\"system\":\"http://snomed.info/sct\",\"code\":\"\"status\":\"final\"\"status\":\"active\"\"active\":true" + 
+		"\"subject\":{\"reference\":\"Patient/\"patient\":{\"reference\":\"Patient/\"encounter\":{\"reference\":\"Encounter/" + 
+		"\"performer\":[{\"reference\":\"Practitioner/\"managingOrganization\":{\"reference\":\"Organization/" + 
+		"\"contained\":[{\"resourceType\":\"\"extension\":[{\"url\":\"http://hl7.org/fhir/StructureDefinition/" + 
+		"\"identifier\":[{\"use\":\"official\",\"system\":\"urn:oid:\"identifier\":[{\"system\":\"" + 
+		"\"text\":{\"status\":\"generated\",\"div\":\"<div xmlns=\\\"http://www.w3.org/1999/xhtml\\\">" + 
+		"<table><tbody><tr><td></td></tr></tbody></table></div>\"}," + 
+		"\"meta\":{\"versionId\":\"\"lastUpdated\":\"\"profile\":[\"\"security\":[{\"\"tag\":[{\"" + 
+		"\"display\":\"\"reference\":\"\"valueString\":\"\"valueCode\":\"\"text\":\"\"value\":\"" + 
+		"\"}],\"\"},\"\"}]}],\"\"},{\"system\":\"\"coding\":[{\"system\":\"http://\",\"code\":\"" + 
+		"{\"resourceType\":\"\",\"id\":\"";
+
+	private final IResourceEncodingCodec myCodec;
+
+	private ResourceEncodingEnum(IResourceEncodingCodec theCodec) {
+		myCodec = theCodec;
+	}
+
+	public String decode(byte[] theBytes) {
+		return myCodec.decode(theBytes);
+	}
+
+	public byte[] encode(String theResourceText) {
+		return myCodec.encode(theResourceText);
+	}
+
+	public IResourceEncodingCodec getCodec() {
+		return myCodec;
+	}
 
 	public IParser newParser(FhirContext theContext) {
 		return theContext.newJsonParser();
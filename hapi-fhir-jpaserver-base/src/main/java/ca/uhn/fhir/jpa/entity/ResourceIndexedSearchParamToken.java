@@ -25,6 +25,8 @@ import javax.persistence.Entity;
 import javax.persistence.Table;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 @Entity
 @Table(name = "HFJ_SPIDX_TOKEN" /* , indexes = { @Index(name = "IDX_SP_TOKEN", columnList = "SP_SYSTEM,SP_VALUE") } */)
@@ -69,4 +71,29 @@ public class ResourceIndexedSearchParamToken extends BaseResourceIndexedSearchPa
 		myValue = StringUtils.defaultIfBlank(theValue, null);
 	}
 
+	@Override
+	public boolean equals(Object theObj) {
+		if (this == theObj) {
+			return true;
+		}
+		if (!(theObj instanceof ResourceIndexedSearchParamToken)) {
+			return false;
+		}
+		ResourceIndexedSearchParamToken obj = (ResourceIndexedSearchParamToken) theObj;
+		EqualsBuilder b = new EqualsBuilder();
+		b.append(getParamName(), obj.getParamName());
+		b.append(getSystem(), obj.getSystem());
+		b.append(getValue(), obj.getValue());
+		return b.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		HashCodeBuilder b = new HashCodeBuilder();
+		b.append(getParamName());
+		b.append(getSystem());
+		b.append(getValue());
+		return b.toHashCode();
+	}
+
 }
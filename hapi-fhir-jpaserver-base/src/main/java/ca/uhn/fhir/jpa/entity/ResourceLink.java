@@ -32,6 +32,8 @@ import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 @Entity
 @Table(name = "HFJ_RES_LINK"/*, indexes= {@Index(name="IDX_RL_TPATHRES", columnList= "SRC_PATH,TARGET_RESOURCE_ID")}*/)
@@ -127,4 +129,31 @@ public class ResourceLink implements Serializable {
 		myTargetResourcePid = theTargetResourcePid;
 	}
 
+	@Override
+	public boolean equals(Object theObj) {
+		if (this == theObj) {
+			return true;
+		}
+		if (!(theObj instanceof ResourceLink)) {
+			return false;
+		}
+		ResourceLink obj = (ResourceLink) theObj;
+		EqualsBuilder b = new EqualsBuilder();
+		b.append(mySourcePath, obj.mySourcePath);
+		b.append(getTargetPid(), obj.getTargetPid());
+		return b.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		HashCodeBuilder b = new HashCodeBuilder();
+		b.append(mySourcePath);
+		b.append(getTargetPid());
+		return b.toHashCode();
+	}
+
+	private Long getTargetPid() {
+		return myTargetResource != null ? myTargetResource.getId() : myTargetResourcePid;
+	}
+
 }
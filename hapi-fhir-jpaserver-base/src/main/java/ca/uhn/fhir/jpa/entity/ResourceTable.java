@@ -59,6 +59,7 @@ import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
 public class ResourceTable extends BaseHasResource implements Serializable {
 	private static final int MAX_LANGUAGE_LENGTH = 20;
 	private static final int MAX_PROFILE_LENGTH = 200;
+	static final int INDEX_HASH_LENGTH = 64;
 
 	private static final long serialVersionUID = 1L;
 
@@ -75,6 +76,13 @@ public class ResourceTable extends BaseHasResource implements Serializable {
 	@OneToMany(mappedBy = "myTargetResource", cascade = {}, fetch = FetchType.LAZY, orphanRemoval = false)
 	private Collection<ResourceLink> myIncomingResourceLinks;
 
+	/**
+	 * Digest of the values of all of the index rows of this resource, used to skip rewriting the rows when an update
+	 * does not change them
+	 */
+	@Column(name = "SP_INDEX_HASH", length = INDEX_HASH_LENGTH, nullable = true)
+	private String myIndexHash;
+
 	@OneToMany(mappedBy = "myResource", cascade = {}, fetch = FetchType.LAZY, orphanRemoval = false)
 	private Collection<ResourceIndexedSearchParamDate> myParamsDate;
 
@@ -228,6 +236,10 @@ public class ResourceTable extends BaseHasResource implements Serializable {
 		return false;
 	}
 
+	public String getIndexHash() {
+		return myIndexHash;
+	}
+
 	public boolean isHasLinks() {
 		return myHasLinks;
 	}
@@ -256,6 +268,10 @@ public class ResourceTable extends BaseHasResource implements Serializable {
 		myHasLinks = theHasLinks;
 	}
 
+	public void setIndexHash(String theIndexHash) {
+		myIndexHash = theIndexHash;
+	}
+
 	public void setId(Long theId) {
 		myId = theId;
 	}
@@ -0,0 +1,140 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.UniqueConstraint;
+
+import org.hibernate.annotations.Index;
+
+/**
+ * A search whose results have been stored so that they can be paged through by any server node
+ */
+//@formatter:off
+@Entity
+@Table(name = "HFJ_SEARCH", uniqueConstraints = {
+		@UniqueConstraint(name = "IDX_SEARCH_UUID", columnNames = {"SEARCH_UUID"})
+})
+@org.hibernate.annotations.Table(appliesTo = "HFJ_SEARCH", indexes = {
+		@Index(name = "IDX_SEARCH_LASTACCESSED", columnNames = {"LAST_ACCESSED"})
+})
+//@formatter:on
+public class Search implements Serializable {
+
+	public static final int MAX_RESOURCE_CLASS_LENGTH = 200;
+	public static final int UUID_COLUMN_LENGTH = 40;
+
+	private static final long serialVersionUID = 1L;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "CREATED", nullable = false)
+	private Date myCreated;
+
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	@Id
+	@Column(name = "PID")
+	private Long myId;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "LAST_ACCESSED", nullable = false)
+	private Date myLastAccessed;
+
+	@Column(name = "PREFERRED_PAGE_SIZE", nullable = true)
+	private Integer myPreferredPageSize;
+
+	@Column(name = "RESOURCE_CLASS", length = MAX_RESOURCE_CLASS_LENGTH, nullable = false)
+	private String myResourceClass;
+
+	@Column(name = "TOTAL_COUNT", nullable = false)
+	private int myTotalCount;
+
+	@Column(name = "SEARCH_UUID", length = UUID_COLUMN_LENGTH, nullable = false, updatable = false)
+	private String myUuid;
+
+	public Date getCreated() {
+		return myCreated;
+	}
+
+	public Long getId() {
+		return myId;
+	}
+
+	/**
+	 * The time at which a page of this search was last requested. Searches expire a fixed time after this.
+	 */
+	public Date getLastAccessed() {
+		return myLastAccessed;
+	}
+
+	public Integer getPreferredPageSize() {
+		return myPreferredPageSize;
+	}
+
+	/**
+	 * The implementing class of the resource type which was searched for
+	 */
+	public String getResourceClass() {
+		return myResourceClass;
+	}
+
+	public int getTotalCount() {
+		return myTotalCount;
+	}
+
+	public String getUuid() {
+		return myUuid;
+	}
+
+	public void setCreated(Date theCreated) {
+		myCreated = theCreated;
+	}
+
+	public void setLastAccessed(Date theLastAccessed) {
+		myLastAccessed = theLastAccessed;
+	}
+
+	public void setPreferredPageSize(Integer thePreferredPageSize) {
+		myPreferredPageSize = thePreferredPageSize;
+	}
+
+	public void setResourceClass(String theResourceClass) {
+		myResourceClass = theResourceClass;
+	}
+
+	public void setTotalCount(int theTotalCount) {
+		myTotalCount = theTotalCount;
+	}
+
+	public void setUuid(String theUuid) {
+		myUuid = theUuid;
+	}
+
+}
@@ -0,0 +1,81 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+/**
+ * An <code>_include</code> specification which applies to each page of a {@link Search}
+ */
+@Entity
+@Table(name = "HFJ_SEARCH_INCLUDE")
+public class SearchInclude implements Serializable {
+
+	public static final int MAX_INCLUDE_LENGTH = 200;
+
+	private static final long serialVersionUID = 1L;
+
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	@Id
+	@Column(name = "PID")
+	private Long myId;
+
+	@Column(name = "SEARCH_INCLUDE", length = MAX_INCLUDE_LENGTH, nullable = false)
+	private String myInclude;
+
+	@ManyToOne(optional = false)
+	@JoinColumn(name = "SEARCH_PID", referencedColumnName = "PID", nullable = false)
+	private Search mySearch;
+
+	@Column(name = "SEARCH_PID", insertable = false, updatable = false, nullable = false)
+	private Long mySearchPid;
+
+	public SearchInclude() {
+		// nothing
+	}
+
+	public SearchInclude(Search theSearch, String theInclude) {
+		mySearch = theSearch;
+		myInclude = theInclude;
+	}
+
+	public String getInclude() {
+		return myInclude;
+	}
+
+	public Search getSearch() {
+		return mySearch;
+	}
+
+	public Long getSearchPid() {
+		return mySearchPid;
+	}
+
+}
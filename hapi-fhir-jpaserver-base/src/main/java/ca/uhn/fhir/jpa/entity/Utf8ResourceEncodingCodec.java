@@ -0,0 +1,39 @@
+package ca.uhn.fhir.jpa.entity;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2015 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.charset.Charset;
+
+class Utf8ResourceEncodingCodec implements IResourceEncodingCodec {
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Override
+	public String decode(byte[] theBytes) {
+		return new String(theBytes, UTF8);
+	}
+
+	@Override
+	public byte[] encode(String theResourceText) {
+		return theResourceText.getBytes(UTF8);
+	}
+
+}
@@ -22,9 +22,13 @@ package ca.uhn.fhir.jpa.provider;
 
 import javax.servlet.http.HttpServletRequest;
 
+import ca.uhn.fhir.jpa.dao.ImportOutcome;
 import ca.uhn.fhir.model.dstu2.composite.MetaDt;
 import ca.uhn.fhir.model.dstu2.resource.Bundle;
+import ca.uhn.fhir.model.dstu2.resource.OperationOutcome;
 import ca.uhn.fhir.model.dstu2.resource.Parameters;
+import ca.uhn.fhir.model.dstu2.valueset.IssueSeverityEnum;
+import ca.uhn.fhir.model.primitive.IntegerDt;
 import ca.uhn.fhir.rest.annotation.Operation;
 import ca.uhn.fhir.rest.annotation.OperationParam;
 import ca.uhn.fhir.rest.annotation.Transaction;
@@ -43,6 +47,46 @@ public class JpaSystemProviderDstu2 extends BaseJpaSystemProvider<Bundle> {
 		return parameters;
 	}
 	
+	/**
+	 * Bulk loads the entries of the given bundle. Unlike a transaction, the entries are stored in chunks which
+	 * succeed or fail independently, and the counts of created, updated and failed entries are returned along with
+	 * an OperationOutcome describing each failure.
+	 */
+	//@formatter:off
+	@Operation(name="$import", idempotent=false, returnParameters= {
+		@OperationParam(name="created", type=IntegerDt.class, min=1, max=1),
+		@OperationParam(name="updated", type=IntegerDt.class, min=1, max=1),
+		@OperationParam(name="failed", type=IntegerDt.class, min=1, max=1),
+		@OperationParam(name="outcome", type=OperationOutcome.class, min=1, max=1)
+	})
+	//@formatter:on
+	public Parameters importResources(HttpServletRequest theRequest, @OperationParam(name="input", min=1, max=1) Bundle theInput) {
+		startRequest(theRequest);
+		try {
+			ImportOutcome outcome = getDao().importResources(theInput);
+
+			OperationOutcome oo = new OperationOutcome();
+			for (String next : outcome.getErrors()) {
+				oo.addIssue().setSeverity(IssueSeverityEnum.ERROR).setDetails(next);
+			}
+			if (outcome.getErrors().size() < outcome.getFailedCount()) {
+				oo.addIssue().setSeverity(IssueSeverityEnum.WARNING).setDetails((outcome.getFailedCount() - outcome.getErrors().size()) + " further failures were not reported");
+			}
+			if (oo.getIssue().isEmpty()) {
+				oo.addIssue().setSeverity(IssueSeverityEnum.INFORMATION).setDetails("Imported " + (outcome.getCreatedCount() + outcome.getUpdatedCount()) + " resources");
+			}
+
+			Parameters parameters = new Parameters();
+			parameters.addParameter().setName("created").setValue(new IntegerDt(outcome.getCreatedCount()));
+			parameters.addParameter().setName("updated").setValue(new IntegerDt(outcome.getUpdatedCount()));
+			parameters.addParameter().setName("failed").setValue(new IntegerDt(outcome.getFailedCount()));
+			parameters.addParameter().setName("outcome").setResource(oo);
+			return parameters;
+		} finally {
+			endRequest(theRequest);
+		}
+	}
+
 	@Transaction
 	public Bundle transaction(HttpServletRequest theRequest, @TransactionParam Bundle theResources) {
 		startRequest(theRequest);
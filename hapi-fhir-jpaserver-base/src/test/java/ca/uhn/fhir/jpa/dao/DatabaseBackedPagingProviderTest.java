@@ -0,0 +1,233 @@
+package ca.uhn.fhir.jpa.dao;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import ca.uhn.fhir.model.dstu2.resource.Organization;
+import ca.uhn.fhir.model.dstu2.resource.Patient;
+import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.IBundleProvider;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+
+public class DatabaseBackedPagingProviderTest {
+
+	private static ClassPathXmlApplicationContext ourCtx;
+	private static DaoConfig ourDaoConfig;
+	private static EntityManagerFactory ourEntityManagerFactory;
+	private static IFhirResourceDao<Organization> ourOrganizationDao;
+	private static DatabaseBackedPagingProvider ourPagingProvider;
+	private static IFhirResourceDao<Patient> ourPatientDao;
+
+	@Test
+	public void testExpiredSearchIsPurged() throws InterruptedException {
+		String methodName = "testExpiredSearchIsPurged";
+		for (int i = 0; i < 3; i++) {
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue(methodName);
+			ourPatientDao.create(p);
+		}
+
+		String searchId = ourPagingProvider.storeResultList(ourPatientDao.search(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName)));
+		assertNotNull(ourPagingProvider.retrieveResultList(searchId));
+
+		long expiry = ourDaoConfig.getExpireSearchResultsAfterMillis();
+		ourDaoConfig.setExpireSearchResultsAfterMillis(1);
+		try {
+			Thread.sleep(10);
+			assertNull(ourPagingProvider.retrieveResultList(searchId));
+			assertTrue(ourPagingProvider.purgeExpiredSearches() > 0);
+		} finally {
+			ourDaoConfig.setExpireSearchResultsAfterMillis(expiry);
+		}
+
+		assertNull(ourPagingProvider.retrieveResultList(searchId));
+	}
+
+	@Test
+	public void testLargeSearchStoresRemainingPagesInBackground() throws InterruptedException {
+		String methodName = "testLargeSearchStoresRemainingPagesInBackground";
+
+		List<IdDt> expected = new ArrayList<IdDt>();
+		for (int i = 0; i < 30; i++) {
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue(methodName);
+			expected.add(ourPatientDao.create(p).getId().toUnqualifiedVersionless());
+		}
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName));
+		params.setCount(5);
+		String searchId = ourPagingProvider.storeResultList(ourPatientDao.search(params));
+
+		int storedUpFront = 5 * ourDaoConfig.getSearchResultPagesStoredUpFront();
+		assertTrue(storedUpFront < 30);
+		assertTrue(countStoredResults(searchId) >= storedUpFront);
+
+		IBundleProvider retrieved = ourPagingProvider.retrieveResultList(searchId);
+		assertEquals(30, retrieved.size());
+
+		List<IBaseResource> page = retrieved.getResources(25, 30);
+		assertEquals(5, page.size());
+		for (int i = 0; i < 5; i++) {
+			assertEquals(expected.get(25 + i), page.get(i).getIdElement().toUnqualifiedVersionless());
+		}
+
+		for (int i = 0; i < 100 && countStoredResults(searchId) < 30; i++) {
+			Thread.sleep(100);
+		}
+		assertEquals(30, countStoredResults(searchId));
+
+		// Stored pages are served from the database without storing them again
+		page = retrieved.getResources(0, 5);
+		assertEquals(expected.get(0), page.get(0).getIdElement().toUnqualifiedVersionless());
+		assertEquals(30, countStoredResults(searchId));
+	}
+
+	@Test
+	public void testPagesServedByAnotherNode() {
+		String methodName = "testPagesServedByAnotherNode";
+
+		List<IdDt> expected = new ArrayList<IdDt>();
+		for (int i = 0; i < 30; i++) {
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue(methodName);
+			expected.add(ourPatientDao.create(p).getId().toUnqualifiedVersionless());
+		}
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName));
+		params.setCount(5);
+		String searchId = ourPagingProvider.storeResultList(ourPatientDao.search(params));
+
+		// A second provider shares the database but not the searches held in memory
+		DatabaseBackedPagingProvider otherNode = new DatabaseBackedPagingProvider(10);
+		AutowireCapableBeanFactory beanFactory = ourCtx.getAutowireCapableBeanFactory();
+		beanFactory.autowireBean(otherNode);
+		beanFactory.initializeBean(otherNode, "otherNode");
+		try {
+			IBundleProvider retrieved = otherNode.retrieveResultList(searchId);
+			assertEquals(30, retrieved.size());
+
+			List<IBaseResource> page = retrieved.getResources(25, 30);
+			assertEquals(5, page.size());
+			for (int i = 0; i < 5; i++) {
+				assertEquals(expected.get(25 + i), page.get(i).getIdElement().toUnqualifiedVersionless());
+			}
+		} finally {
+			otherNode.stop();
+		}
+	}
+
+	@Test
+	public void testRetrieveUpdatesLastAccessed() throws InterruptedException {
+		String methodName = "testRetrieveUpdatesLastAccessed";
+		Patient p = new Patient();
+		p.addIdentifier().setSystem("urn:system").setValue(methodName);
+		ourPatientDao.create(p);
+
+		String searchId = ourPagingProvider.storeResultList(ourPatientDao.search(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName)));
+		Date created = loadLastAccessed(searchId);
+
+		Thread.sleep(10);
+		assertNotNull(ourPagingProvider.retrieveResultList(searchId));
+		assertTrue(loadLastAccessed(searchId).getTime() > created.getTime());
+	}
+
+	@Test
+	public void testNonPersistableResultsKeptInMemory() {
+		SimpleBundleProvider list = new SimpleBundleProvider(new ArrayList<IBaseResource>());
+		String searchId = ourPagingProvider.storeResultList(list);
+		assertSame(list, ourPagingProvider.retrieveResultList(searchId));
+	}
+
+	@Test
+	public void testRetrieveUnknownSearch() {
+		assertNull(ourPagingProvider.retrieveResultList("FOO"));
+	}
+
+	@Test
+	public void testStoreAndRetrieveSearch() {
+		String methodName = "testStoreAndRetrieveSearch";
+
+		Organization org = new Organization();
+		org.setName(methodName);
+		IdDt orgId = ourOrganizationDao.create(org).getId().toUnqualifiedVersionless();
+
+		List<IdDt> expected = new ArrayList<IdDt>();
+		for (int i = 0; i < 5; i++) {
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue(methodName);
+			p.addName().addFamily(methodName + (4 - i));
+			p.getManagingOrganization().setReference(orgId);
+			expected.add(0, ourPatientDao.create(p).getId().toUnqualifiedVersionless());
+		}
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName));
+		params.setSort(new SortSpec(Patient.SP_FAMILY));
+		params.addInclude(Patient.INCLUDE_ORGANIZATION);
+		String searchId = ourPagingProvider.storeResultList(ourPatientDao.search(params));
+
+		IBundleProvider retrieved = ourPagingProvider.retrieveResultList(searchId);
+		assertNotNull(retrieved);
+		assertEquals(5, retrieved.size());
+
+		List<IBaseResource> page = retrieved.getResources(2, 4);
+		assertEquals(3, page.size());
+		assertEquals(expected.get(2), page.get(0).getIdElement().toUnqualifiedVersionless());
+		assertEquals(expected.get(3), page.get(1).getIdElement().toUnqualifiedVersionless());
+		assertEquals(orgId, page.get(2).getIdElement().toUnqualifiedVersionless());
+	}
+
+	private static long countStoredResults(String theSearchUuid) {
+		EntityManager entityManager = ourEntityManagerFactory.createEntityManager();
+		try {
+			String sql = "SELECT COUNT(r) FROM SearchResult r WHERE r.mySearch.myUuid = :uuid";
+			return entityManager.createQuery(sql, Long.class).setParameter("uuid", theSearchUuid).getSingleResult();
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	private static Date loadLastAccessed(String theSearchUuid) {
+		EntityManager entityManager = ourEntityManagerFactory.createEntityManager();
+		try {
+			String sql = "SELECT s.myLastAccessed FROM Search s WHERE s.myUuid = :uuid";
+			return entityManager.createQuery(sql, Date.class).setParameter("uuid", theSearchUuid).getSingleResult();
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		ourCtx.close();
+	}
+
+	@SuppressWarnings("unchecked")
+	@BeforeClass
+	public static void beforeClass() {
+		ourCtx = new ClassPathXmlApplicationContext("hapi-fhir-server-resourceproviders-dstu2.xml", "fhir-jpabase-spring-test-config.xml");
+		ourDaoConfig = ourCtx.getBean(DaoConfig.class);
+		ourEntityManagerFactory = ourCtx.getBean(EntityManagerFactory.class);
+		ourPagingProvider = ourCtx.getBean(DatabaseBackedPagingProvider.class);
+		ourPatientDao = ourCtx.getBean("myPatientDaoDstu2", IFhirResourceDao.class);
+		ourOrganizationDao = ourCtx.getBean("myOrganizationDaoDstu2", IFhirResourceDao.class);
+	}
+
+}
@@ -4,9 +4,11 @@ import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.containsInRelativeOrder;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -26,7 +28,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+
 import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.time.DateUtils;
 import org.hamcrest.core.StringContains;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.junit.AfterClass;
@@ -35,7 +42,9 @@ import org.junit.Test;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.entity.ResourceEncodingEnum;
 import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.entity.ResourceTable;
 import ca.uhn.fhir.jpa.entity.TagTypeEnum;
 import ca.uhn.fhir.model.api.IQueryParameterType;
 import ca.uhn.fhir.model.api.IResource;
@@ -68,6 +77,7 @@ import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.model.primitive.InstantDt;
 import ca.uhn.fhir.model.primitive.StringDt;
 import ca.uhn.fhir.model.primitive.UriDt;
+import ca.uhn.fhir.model.valueset.BundleEntrySearchModeEnum;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.api.SortOrderEnum;
 import ca.uhn.fhir.rest.api.SortSpec;
@@ -77,6 +87,7 @@ import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.NumberParam;
 import ca.uhn.fhir.rest.param.QuantityParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringOrListParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenOrListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
@@ -1173,6 +1184,30 @@ public class FhirResourceDaoDstu2Test {
 
 	}
 
+	@Test
+	public void testSearchByIdParamWithMultipleForcedIds() {
+		String methodName = "testSearchByIdParamWithMultipleForcedIds";
+		Patient patient = new Patient();
+		patient.setId(methodName + "A");
+		IdDt id1 = ourPatientDao.update(patient).getId().toUnqualifiedVersionless();
+		patient = new Patient();
+		patient.setId(methodName + "B");
+		IdDt id2 = ourPatientDao.update(patient).getId().toUnqualifiedVersionless();
+		IdDt id3 = ourPatientDao.create(new Patient()).getId().toUnqualifiedVersionless();
+
+		StringOrListParam ids = new StringOrListParam();
+		ids.add(new StringParam(id1.getIdPart()));
+		ids.add(new StringParam(id2.getIdPart()));
+		ids.add(new StringParam(id3.getIdPart()));
+		ids.add(new StringParam(methodName + "Unknown"));
+		SearchParameterMap map = new SearchParameterMap();
+		map.add("_id", ids);
+
+		// Run twice so that the second search uses the cached IDs
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(map)), containsInAnyOrder(id1, id2, id3));
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(map)), containsInAnyOrder(id1, id2, id3));
+	}
+
 	@Test
 	public void testSearchCompositeParam() {
 		Observation o1 = new Observation();
@@ -1235,6 +1270,155 @@ public class FhirResourceDaoDstu2Test {
 
 	}
 
+	@Test
+	public void testReadVersionsStoredWithDifferentEncodings() {
+		String methodName = "testReadVersionsStoredWithDifferentEncodings";
+		DaoConfig config = ourCtx.getBean(DaoConfig.class);
+		ResourceEncodingEnum defaultEncoding = config.getResourceEncoding();
+
+		Patient p = new Patient();
+		p.addName().addFamily(methodName + "1");
+		IdDt id1 = ourPatientDao.create(p).getId();
+
+		config.setResourceEncoding(ResourceEncodingEnum.JSONZ);
+		IdDt id2;
+		IdDt id3;
+		try {
+			p = new Patient();
+			p.setId(id1.toUnqualifiedVersionless());
+			p.addName().addFamily(methodName + "2");
+			id2 = ourPatientDao.update(p).getId();
+
+			config.setResourceEncoding(ResourceEncodingEnum.BIN);
+			p = new Patient();
+			p.setId(id1.toUnqualifiedVersionless());
+			p.addName().addFamily(methodName + "3\u00e9\u4e2d");
+			id3 = ourPatientDao.update(p).getId();
+		} finally {
+			config.setResourceEncoding(defaultEncoding);
+		}
+
+		assertEquals(methodName + "1", ourPatientDao.read(id1).getNameFirstRep().getFamilyAsSingleString());
+		assertEquals(methodName + "2", ourPatientDao.read(id2).getNameFirstRep().getFamilyAsSingleString());
+		assertEquals(methodName + "3\u00e9\u4e2d", ourPatientDao.read(id3).getNameFirstRep().getFamilyAsSingleString());
+		assertEquals(methodName + "3\u00e9\u4e2d", ourPatientDao.read(id1.toVersionless()).getNameFirstRep().getFamilyAsSingleString());
+	}
+
+	@Test
+	public void testSearchCountsResultsUpToConfiguredLimit() {
+		String methodName = "testSearchCountsResultsUpToConfiguredLimit";
+		for (int i = 0; i < 5; i++) {
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue(methodName);
+			ourPatientDao.create(p);
+		}
+
+		DaoConfig config = ourCtx.getBean(DaoConfig.class);
+		config.setCountSearchResultsUpTo(2);
+		try {
+			IBundleProvider found = ourPatientDao.search(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName));
+			assertEquals(2, found.size());
+			assertEquals(2, found.getResources(0, 2).size());
+			assertEquals(4, found.size());
+			assertEquals(2, found.getResources(2, 4).size());
+			assertEquals(5, found.size());
+		} finally {
+			config.setCountSearchResultsUpTo(null);
+		}
+	}
+
+	@Test
+	public void testSearchDoesNotCacheLargeResults() {
+		String methodName = "testSearchDoesNotCacheLargeResults";
+		List<IdDt> ids = new ArrayList<IdDt>();
+		for (int i = 0; i < 3; i++) {
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue(methodName);
+			p.addIdentifier().setSystem("urn:system").setValue(methodName + i);
+			ids.add(ourPatientDao.create(p).getId().toUnqualifiedVersionless());
+		}
+
+		DaoConfig config = ourCtx.getBean(DaoConfig.class);
+		config.setReuseCachedSearchResultsForMillis(DateUtils.MILLIS_PER_MINUTE);
+		config.setReuseCachedSearchResultsMaxSize(2);
+		try {
+			SearchParameterMap map = new SearchParameterMap();
+			map.add(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName));
+			String cacheKey = Patient.class.getName() + '?' + map.toNormalizedQueryString();
+			assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(map)), containsInAnyOrder(ids.toArray()));
+			assertNull(config.getSearchResultCache().get(cacheKey, DateUtils.MILLIS_PER_MINUTE));
+
+			TokenOrListParam or = new TokenOrListParam();
+			or.add("urn:system", methodName + 0);
+			or.add("urn:system", methodName + 1);
+			map = new SearchParameterMap();
+			map.add(Patient.SP_IDENTIFIER, or);
+			cacheKey = Patient.class.getName() + '?' + map.toNormalizedQueryString();
+			assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(map)), containsInAnyOrder(ids.get(0), ids.get(1)));
+			assertNotNull(config.getSearchResultCache().get(cacheKey, DateUtils.MILLIS_PER_MINUTE));
+		} finally {
+			config.setReuseCachedSearchResultsForMillis(null);
+			config.setReuseCachedSearchResultsMaxSize(SearchResultCache.DEFAULT_MAX_RESULTS_PER_ENTRY);
+		}
+	}
+
+	@Test
+	public void testSearchReusesCachedResultsUntilTypeIsWritten() {
+		String methodName = "testSearchReusesCachedResultsUntilTypeIsWritten";
+		Patient p = new Patient();
+		p.addIdentifier().setSystem("urn:system").setValue(methodName);
+		IdDt id1 = ourPatientDao.create(p).getId().toUnqualifiedVersionless();
+
+		DaoConfig config = ourCtx.getBean(DaoConfig.class);
+		config.setReuseCachedSearchResultsForMillis(DateUtils.MILLIS_PER_MINUTE);
+		try {
+			SearchParameterMap map = new SearchParameterMap();
+			map.add(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName));
+			String cacheKey = Patient.class.getName() + '?' + map.toNormalizedQueryString();
+
+			assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(map)), contains(id1));
+			assertNotNull(config.getSearchResultCache().get(cacheKey, DateUtils.MILLIS_PER_MINUTE));
+			assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(map)), contains(id1));
+
+			// Writing another type leaves the cached results alone
+			Organization org = new Organization();
+			org.setName(methodName);
+			ourOrganizationDao.create(org);
+			assertNotNull(config.getSearchResultCache().get(cacheKey, DateUtils.MILLIS_PER_MINUTE));
+
+			// Writing a patient discards them
+			p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue(methodName);
+			IdDt id2 = ourPatientDao.create(p).getId().toUnqualifiedVersionless();
+			assertNull(config.getSearchResultCache().get(cacheKey, DateUtils.MILLIS_PER_MINUTE));
+			assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(map)), containsInAnyOrder(id1, id2));
+		} finally {
+			config.setReuseCachedSearchResultsForMillis(null);
+		}
+	}
+
+	@Test
+	public void testSearchParameterMapNormalizedQueryStringIgnoresOrder() {
+		SearchParameterMap map1 = new SearchParameterMap();
+		map1.add(Patient.SP_FAMILY, new StringParam("smith"));
+		TokenOrListParam or1 = new TokenOrListParam();
+		or1.add("urn:system", "a");
+		or1.add("urn:system", "b");
+		map1.add(Patient.SP_IDENTIFIER, or1);
+
+		SearchParameterMap map2 = new SearchParameterMap();
+		TokenOrListParam or2 = new TokenOrListParam();
+		or2.add("urn:system", "b");
+		or2.add("urn:system", "a");
+		map2.add(Patient.SP_IDENTIFIER, or2);
+		map2.add(Patient.SP_FAMILY, new StringParam("smith"));
+
+		assertEquals(map1.toNormalizedQueryString(), map2.toNormalizedQueryString());
+
+		map2.setSort(new SortSpec(Patient.SP_FAMILY));
+		assertNotEquals(map1.toNormalizedQueryString(), map2.toNormalizedQueryString());
+	}
+
 	@Test
 	public void testSearchForUnknownAlphanumericId() {
 		{
@@ -1335,6 +1519,49 @@ public class FhirResourceDaoDstu2Test {
 
 	}
 
+	@Test
+	public void testSearchWithMultipleParamsIntersectsResults() {
+		IdDt id1;
+		{
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("urn:system").setValue("testSearchWithMultipleParams01");
+			patient.addName().addFamily("testSearchWithMultipleParamsFamA");
+			patient.setBirthDate(new DateDt("2011-01-01"));
+			id1 = ourPatientDao.create(patient).getId().toUnqualifiedVersionless();
+		}
+		{
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("urn:system").setValue("testSearchWithMultipleParams01");
+			patient.addName().addFamily("testSearchWithMultipleParamsFamB");
+			patient.setBirthDate(new DateDt("2011-01-01"));
+			ourPatientDao.create(patient);
+		}
+		{
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("urn:system").setValue("testSearchWithMultipleParams02");
+			patient.addName().addFamily("testSearchWithMultipleParamsFamA");
+			patient.setBirthDate(new DateDt("2011-01-01"));
+			ourPatientDao.create(patient);
+		}
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_IDENTIFIER, new TokenParam("urn:system", "testSearchWithMultipleParams01"));
+		params.add(Patient.SP_FAMILY, new StringParam("testSearchWithMultipleParamsFamA"));
+		params.add(Patient.SP_BIRTHDATE, (IQueryParameterType) new DateParam("2011-01-01"));
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(params)), contains(id1));
+
+		params = new SearchParameterMap();
+		params.add(Patient.SP_IDENTIFIER, new TokenParam("urn:system", "testSearchWithMultipleParams01"));
+		params.add(Patient.SP_FAMILY, new StringParam("testSearchWithMultipleParamsFamA"));
+		params.add(Patient.SP_FAMILY, new StringParam("testSearchWithMultipleParamsFamB"));
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(params)), empty());
+
+		params = new SearchParameterMap();
+		params.add("_id", new StringParam("testSearchWithMultipleParamsUnknownId"));
+		params.add(Patient.SP_FAMILY, new StringParam("testSearchWithMultipleParamsFamA"));
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(params)), empty());
+	}
+
 	@Test
 	public void testSearchNumberParam() {
 		Encounter e1 = new Encounter();
@@ -1926,6 +2153,57 @@ public class FhirResourceDaoDstu2Test {
 		}
 	}
 
+	@Test
+	public void testSearchWithIncludesOnManyResources() {
+		String methodName = "testSearchWithIncludesOnManyResources";
+		Organization org = new Organization();
+		org.setName(methodName);
+		IdDt orgId = ourOrganizationDao.create(org).getId().toUnqualifiedVersionless();
+
+		Patient patient1 = new Patient();
+		patient1.setId(methodName);
+		patient1.getManagingOrganization().setReference(orgId);
+		IdDt patientId1 = ourPatientDao.update(patient1).getId().toUnqualifiedVersionless();
+		IdDt patientId2 = ourPatientDao.create(new Patient()).getId().toUnqualifiedVersionless();
+
+		Location location = new Location();
+		location.setName(methodName);
+		IdDt locationId = ourLocationDao.create(location).getId().toUnqualifiedVersionless();
+
+		List<IdDt> encounterIds = new ArrayList<IdDt>();
+		for (int i = 0; i < 6; i++) {
+			Encounter enc = new Encounter();
+			enc.addIdentifier().setSystem("urn:system").setValue(methodName);
+			enc.setPatient(new ResourceReferenceDt(i % 2 == 0 ? patientId1 : patientId2));
+			enc.addLocation().setLocation(new ResourceReferenceDt(locationId));
+			encounterIds.add(ourEncounterDao.create(enc).getId().toUnqualifiedVersionless());
+		}
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Encounter.SP_IDENTIFIER, new TokenParam("urn:system", methodName));
+		params.addInclude(Encounter.INCLUDE_PATIENT);
+		params.addInclude(Patient.INCLUDE_ORGANIZATION);
+		List<IResource> found = toList(ourEncounterDao.search(params));
+		assertEquals(9, found.size());
+		List<IdDt> foundIds = new ArrayList<IdDt>();
+		for (IResource next : found) {
+			foundIds.add(next.getId().toUnqualifiedVersionless());
+		}
+		assertThat(foundIds.subList(0, 6), containsInAnyOrder(encounterIds.toArray()));
+		assertThat(foundIds.subList(6, 9), containsInAnyOrder(patientId1, patientId2, orgId));
+		assertEquals(BundleEntrySearchModeEnum.INCLUDE, ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.get(found.get(8)));
+
+		params = new SearchParameterMap();
+		params.add(Encounter.SP_IDENTIFIER, new TokenParam("urn:system", methodName));
+		params.addInclude(new Include("*"));
+		found = toList(ourEncounterDao.search(params));
+		foundIds.clear();
+		for (IResource next : found) {
+			foundIds.add(next.getId().toUnqualifiedVersionless());
+		}
+		assertThat(foundIds.subList(6, foundIds.size()), containsInAnyOrder(patientId1, patientId2, orgId, locationId));
+	}
+
 	/**
 	 * Test for #62
 	 */
@@ -1967,6 +2245,51 @@ public class FhirResourceDaoDstu2Test {
 
 	}
 
+	@Test
+	public void testSortAndPageAcrossMissingValues() {
+		String methodName = "testSortAndPageAcrossMissingValues";
+
+		List<IdDt> expected = new ArrayList<IdDt>();
+		for (int i = 0; i < 3; i++) {
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue(methodName);
+			p.addName().addFamily(methodName + i);
+			expected.add(ourPatientDao.create(p).getId().toUnqualifiedVersionless());
+		}
+		for (int i = 0; i < 3; i++) {
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue(methodName);
+			expected.add(ourPatientDao.create(p).getId().toUnqualifiedVersionless());
+		}
+
+		SearchParameterMap pm = new SearchParameterMap();
+		pm.add(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName));
+		pm.setSort(new SortSpec(Patient.SP_FAMILY));
+		IBundleProvider found = ourPatientDao.search(pm);
+		assertEquals(6, found.size());
+
+		List<IdDt> actual = new ArrayList<IdDt>();
+		for (int i = 0; i < 6; i += 2) {
+			for (IBaseResource next : found.getResources(i, i + 2)) {
+				actual.add((IdDt) next.getIdElement().toUnqualifiedVersionless());
+			}
+		}
+		assertEquals(expected, actual);
+
+		actual = new ArrayList<IdDt>();
+		for (IBaseResource next : found.getResources(4, 6)) {
+			actual.add((IdDt) next.getIdElement().toUnqualifiedVersionless());
+		}
+		assertEquals(expected.subList(4, 6), actual);
+
+		pm = new SearchParameterMap();
+		pm.add(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName));
+		pm.setSort(new SortSpec(Patient.SP_RES_ID).setOrder(SortOrderEnum.DESC).setChain(new SortSpec(Patient.SP_FAMILY)));
+		actual = toUnqualifiedVersionlessIds(ourPatientDao.search(pm));
+		assertEquals(6, actual.size());
+		assertEquals(expected.get(5), actual.get(0));
+	}
+
 	@Test
 	public void testSortByDate() {
 		Patient p = new Patient();
@@ -2464,6 +2787,86 @@ public class FhirResourceDaoDstu2Test {
 
 	}
 
+	@Test
+	public void testUpdateOnlyRewritesChangedIndexRows() {
+		String methodName = "testUpdateOnlyRewritesChangedIndexRows";
+		Organization org = new Organization();
+		org.setName(methodName);
+		IdDt orgId = ourOrganizationDao.create(org).getId().toUnqualifiedVersionless();
+
+		Patient p = new Patient();
+		p.addIdentifier().setSystem("urn:system").setValue(methodName + "A");
+		p.addIdentifier().setSystem("urn:system").setValue(methodName + "B");
+		p.setBirthDate(new DateDt("2001-01-01"));
+		p.getManagingOrganization().setReference(orgId);
+		IdDt id = ourPatientDao.create(p).getId().toUnqualifiedVersionless();
+		Long tokenPid = findTokenIndexPid(methodName + "B");
+
+		p.setId(id);
+		p.getIdentifier().get(0).setValue(methodName + "C");
+		ourPatientDao.update(p);
+
+		assertEquals(tokenPid, findTokenIndexPid(methodName + "B"));
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName + "A"))), empty());
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName + "B"))), contains(id));
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName + "C"))), contains(id));
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(Patient.SP_BIRTHDATE, new DateParam("2001-01-01"))), hasItem(id));
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(Patient.SP_ORGANIZATION, new ReferenceParam(orgId.getValue()))), contains(id));
+
+		ourPatientDao.delete(id);
+		assertNull(findTokenIndexPid(methodName + "B"));
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(Patient.SP_ORGANIZATION, new ReferenceParam(orgId.getValue()))), empty());
+	}
+
+	@Test
+	public void testUpdateWithUnchangedIndexKeepsIndexRows() {
+		String methodName = "testUpdateWithUnchangedIndexKeepsIndexRows";
+		Patient p = new Patient();
+		p.addIdentifier().setSystem("urn:system").setValue(methodName);
+		p.addName().addFamily(methodName);
+		IdDt id = ourPatientDao.create(p).getId().toUnqualifiedVersionless();
+		Long tokenPid = findTokenIndexPid(methodName);
+		String indexHash = findIndexHash(id);
+		assertNotNull(indexHash);
+
+		p.setId(id);
+		p.getText().getDiv().setValueAsString("<div>" + methodName + "</div>");
+		ourPatientDao.update(p);
+
+		assertEquals(indexHash, findIndexHash(id));
+		assertEquals(tokenPid, findTokenIndexPid(methodName));
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(Patient.SP_FAMILY, new StringParam(methodName))), contains(id));
+
+		p.getNameFirstRep().getFamilyFirstRep().setValue(methodName + "B");
+		ourPatientDao.update(p);
+
+		assertNotEquals(indexHash, findIndexHash(id));
+		assertEquals(tokenPid, findTokenIndexPid(methodName));
+		assertThat(toUnqualifiedVersionlessIds(ourPatientDao.search(Patient.SP_FAMILY, new StringParam(methodName + "B"))), contains(id));
+	}
+
+	private static String findIndexHash(IdDt theId) {
+		EntityManager em = ourCtx.getBean(EntityManagerFactory.class).createEntityManager();
+		try {
+			return em.find(ResourceTable.class, theId.getIdPartAsLong()).getIndexHash();
+		} finally {
+			em.close();
+		}
+	}
+
+	private static Long findTokenIndexPid(String theValue) {
+		EntityManager em = ourCtx.getBean(EntityManagerFactory.class).createEntityManager();
+		try {
+			TypedQuery<Long> q = em.createQuery("SELECT t.myId FROM ResourceIndexedSearchParamToken t WHERE t.myValue = :value", Long.class);
+			q.setParameter("value", theValue);
+			List<Long> pids = q.getResultList();
+			assertThat(pids.size(), lessThanOrEqualTo(1));
+			return pids.isEmpty() ? null : pids.get(0);
+		} finally {
+			em.close();
+		}
+	}
+
 	@Test
 	public void testUpdateRejectsInvalidTypes() throws InterruptedException {
 		Patient p1 = new Patient();
@@ -8,6 +8,7 @@ import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.*;
 
 import java.io.InputStream;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,6 +39,9 @@ import ca.uhn.fhir.model.dstu2.valueset.BundleTypeEnum;
 import ca.uhn.fhir.model.dstu2.valueset.HTTPVerbEnum;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.model.primitive.UriDt;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.Constants;
 import ca.uhn.fhir.rest.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
@@ -58,6 +62,77 @@ public class FhirSystemDaoDstu2Test {
 		FhirSystemDaoDstu2Test.doDeleteEverything(ourSystemDao);
 	}
 
+	@Test
+	public void testImportNdjson() {
+		String methodName = "testImportNdjson";
+		Patient p1 = new Patient();
+		p1.addName().addFamily(methodName);
+		p1.addIdentifier().setSystem("urn:system").setValue(methodName);
+		Patient p2 = new Patient();
+		p2.setId(methodName + "-1");
+		p2.addName().addFamily(methodName);
+		Observation o1 = new Observation();
+		o1.getSubject().setReference(new IdDt("Patient", methodName + "-1"));
+		Observation o2 = new Observation();
+		o2.getSubject().setReference(new IdDt("Patient", methodName + "-missing"));
+
+		StringBuilder ndjson = new StringBuilder();
+		ndjson.append(ourFhirContext.newJsonParser().encodeResourceToString(p1)).append('\n');
+		ndjson.append(ourFhirContext.newJsonParser().encodeResourceToString(p2)).append('\n');
+		ndjson.append("{ \"resourceType\": \"Patient\", \n");
+		ndjson.append('\n');
+		ndjson.append(ourFhirContext.newJsonParser().encodeResourceToString(o1)).append('\n');
+		ndjson.append(ourFhirContext.newJsonParser().encodeResourceToString(o2)).append('\n');
+
+		DaoConfig config = ourCtx.getBean(DaoConfig.class);
+		int chunkSize = config.getImportChunkSize();
+		config.setImportChunkSize(2);
+		try {
+			ImportOutcome outcome = ourSystemDao.importResources(new StringReader(ndjson.toString()));
+			assertEquals(3, outcome.getCreatedCount());
+			assertEquals(0, outcome.getUpdatedCount());
+			assertEquals(2, outcome.getFailedCount());
+			assertEquals(2, outcome.getChunkCount());
+			assertEquals(2, outcome.getErrors().size());
+			assertThat(outcome.getErrors().get(0), startsWith("Entry 3: "));
+			assertThat(outcome.getErrors().get(1), startsWith("Entry 6: "));
+
+			assertEquals(2, ourPatientDao.search(Patient.SP_FAMILY, new StringParam(methodName)).size());
+			assertEquals(1, ourPatientDao.search(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName)).size());
+			assertEquals(1, ourObservationDao.search(Observation.SP_SUBJECT, new ReferenceParam("Patient/" + methodName + "-1")).size());
+
+			outcome = ourSystemDao.importResources(new StringReader(ourFhirContext.newJsonParser().encodeResourceToString(p2)));
+			assertEquals(0, outcome.getCreatedCount());
+			assertEquals(1, outcome.getUpdatedCount());
+			assertEquals(0, outcome.getFailedCount());
+			assertEquals(2, ourPatientDao.search(Patient.SP_FAMILY, new StringParam(methodName)).size());
+		} finally {
+			config.setImportChunkSize(chunkSize);
+		}
+	}
+
+	@Test
+	public void testImportBundle() {
+		String methodName = "testImportBundle";
+		Bundle bundle = new Bundle();
+		Patient p1 = new Patient();
+		p1.addName().addFamily(methodName);
+		bundle.addEntry().setResource(p1);
+		Patient p2 = new Patient();
+		p2.setId(methodName);
+		p2.addName().addFamily(methodName);
+		bundle.addEntry().setResource(p2);
+		bundle.addEntry();
+
+		ImportOutcome outcome = ourSystemDao.importResources(bundle);
+		assertEquals(2, outcome.getCreatedCount());
+		assertEquals(1, outcome.getFailedCount());
+		assertThat(outcome.getErrors().get(0), startsWith("Entry 3: "));
+
+		assertEquals(2, ourPatientDao.search(Patient.SP_FAMILY, new StringParam(methodName)).size());
+		assertEquals(methodName, ourPatientDao.read(new IdDt("Patient", methodName)).getNameFirstRep().getFamilyAsSingleString());
+	}
+
 	@Test
 	public void testSystemMetaOperation() {
 		deleteEverything();
@@ -814,6 +889,165 @@ public class FhirSystemDaoDstu2Test {
 	//
 	// }
 
+	@Test
+	public void testTransactionWithManyEntries() {
+		String methodName = "testTransactionWithManyEntries";
+		Bundle res = new Bundle();
+		res.setType(BundleTypeEnum.TRANSACTION);
+		for (int i = 0; i < 20; i++) {
+			Patient p = new Patient();
+			p.setId("urn:oid:0.1.2." + i);
+			p.addIdentifier().setSystem("urn:system").setValue(methodName + i);
+			res.addEntry().setResource(p).getTransaction().setMethod(HTTPVerbEnum.POST).setUrl("Patient");
+
+			Observation o = new Observation();
+			o.setId("cid:observation" + i);
+			o.addIdentifier().setSystem("urn:system").setValue(methodName + i);
+			o.setSubject(new ResourceReferenceDt("urn:oid:0.1.2." + i));
+			res.addEntry().setResource(o).getTransaction().setMethod(HTTPVerbEnum.POST).setUrl("Observation");
+		}
+
+		Bundle resp = ourSystemDao.transaction(res);
+		assertEquals(41, resp.getEntry().size());
+
+		IdDt patientId = new IdDt(resp.getEntry().get(19).getTransactionResponse().getLocation()).toUnqualifiedVersionless();
+		IdDt observationId = new IdDt(resp.getEntry().get(20).getTransactionResponse().getLocation()).toUnqualifiedVersionless();
+		IBundleProvider found = ourPatientDao.search(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName + 9));
+		assertEquals(patientId, found.getResources(0, 1).get(0).getIdElement().toUnqualifiedVersionless());
+		found = ourObservationDao.search(Observation.SP_SUBJECT, new ReferenceParam(patientId.getValue()));
+		assertEquals(observationId, found.getResources(0, 1).get(0).getIdElement().toUnqualifiedVersionless());
+	}
+
+	@Test
+	public void testTransactionWithManyEntriesIsAtomic() {
+		String methodName = "testTransactionWithManyEntriesIsAtomic";
+		Bundle res = new Bundle();
+		res.setType(BundleTypeEnum.TRANSACTION);
+		for (int i = 0; i < 20; i++) {
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue(methodName);
+			res.addEntry().setResource(p).getTransaction().setMethod(HTTPVerbEnum.POST).setUrl("Patient");
+		}
+		Observation o = new Observation();
+		o.setSubject(new ResourceReferenceDt("Patient/" + methodName));
+		res.addEntry().setResource(o).getTransaction().setMethod(HTTPVerbEnum.POST).setUrl("Observation");
+
+		try {
+			ourSystemDao.transaction(res);
+			fail();
+		} catch (InvalidRequestException e) {
+			// good
+		}
+
+		assertEquals(0, ourPatientDao.search(Patient.SP_IDENTIFIER, new TokenParam("urn:system", methodName)).size());
+	}
+
+	@Test
+	public void testTransactionWithManyConditionalCreates() {
+		String methodName = "testTransactionWithManyConditionalCreates";
+		List<IdDt> existingIds = new ArrayList<IdDt>();
+		for (int i = 0; i < 5; i++) {
+			Patient p = new Patient();
+			p.setId("Patient/" + methodName + i);
+			p.addIdentifier().setSystem("urn:system").setValue(methodName + i);
+			existingIds.add(ourPatientDao.update(p).getId().toUnqualifiedVersionless());
+		}
+
+		Bundle request = new Bundle();
+		for (int i = 0; i < 10; i++) {
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue(methodName + i);
+			request.addEntry().setResource(p).getTransaction().setMethod(HTTPVerbEnum.POST).setIfNoneExist("Patient?identifier=urn%3Asystem%7C" + methodName + i);
+		}
+		Patient p = new Patient();
+		request.addEntry().setResource(p).getTransaction().setMethod(HTTPVerbEnum.POST).setIfNoneExist("Patient?identifier=" + methodName + "0");
+		p = new Patient();
+		request.addEntry().setResource(p).getTransaction().setMethod(HTTPVerbEnum.POST).setIfNoneExist("Patient?identifier=%7C" + methodName + "0");
+		p = new Patient();
+		request.addEntry().setResource(p).getTransaction().setMethod(HTTPVerbEnum.POST).setIfNoneExist("Patient?identifier=urn%3Aother%7C" + methodName + "0");
+		Observation o = new Observation();
+		o.getSubject().setReference("Patient/" + methodName + "3");
+		request.addEntry().setResource(o).getTransaction().setMethod(HTTPVerbEnum.POST);
+
+		Bundle resp = ourSystemDao.transaction(request);
+		assertEquals(15, resp.getEntry().size());
+
+		for (int i = 0; i < 5; i++) {
+			Entry respEntry = resp.getEntry().get(i + 1);
+			assertEquals(Constants.STATUS_HTTP_200_OK + "", respEntry.getTransactionResponse().getStatus());
+			assertEquals(existingIds.get(i), new IdDt(respEntry.getTransactionResponse().getLocation()).toUnqualifiedVersionless());
+		}
+		for (int i = 5; i < 10; i++) {
+			assertEquals(Constants.STATUS_HTTP_201_CREATED + "", resp.getEntry().get(i + 1).getTransactionResponse().getStatus());
+		}
+
+		// No system matches any system
+		assertEquals(Constants.STATUS_HTTP_200_OK + "", resp.getEntry().get(11).getTransactionResponse().getStatus());
+		assertEquals(existingIds.get(0), new IdDt(resp.getEntry().get(11).getTransactionResponse().getLocation()).toUnqualifiedVersionless());
+		// An empty system only matches identifiers without a system
+		assertEquals(Constants.STATUS_HTTP_201_CREATED + "", resp.getEntry().get(12).getTransactionResponse().getStatus());
+		assertEquals(Constants.STATUS_HTTP_201_CREATED + "", resp.getEntry().get(13).getTransactionResponse().getStatus());
+
+		o = (Observation) ourObservationDao.read(new IdDt(resp.getEntry().get(14).getTransactionResponse().getLocation()));
+		assertEquals(existingIds.get(3), o.getSubject().getReference().toUnqualifiedVersionless());
+	}
+
+	@Test
+	public void testTransactionDeleteThenConditionalCreate() {
+		String methodName = "testTransactionDeleteThenConditionalCreate";
+
+		Patient p = new Patient();
+		p.addIdentifier().setSystem("urn:system").setValue(methodName);
+		IdDt id = ourPatientDao.create(p).getId();
+
+		Bundle request = new Bundle();
+		request.addEntry().getTransaction().setMethod(HTTPVerbEnum.DELETE).setUrl("Patient?identifier=urn%3Asystem%7C" + methodName);
+		p = new Patient();
+		p.addIdentifier().setSystem("urn:system").setValue(methodName);
+		request.addEntry().setResource(p).getTransaction().setMethod(HTTPVerbEnum.POST).setIfNoneExist("Patient?identifier=urn%3Asystem%7C" + methodName);
+
+		Bundle resp = ourSystemDao.transaction(request);
+		assertEquals(3, resp.getEntry().size());
+		assertEquals(Constants.STATUS_HTTP_204_NO_CONTENT + "", resp.getEntry().get(1).getTransactionResponse().getStatus());
+
+		// The match found before the delete must not be reused once the resource is gone
+		Entry respEntry = resp.getEntry().get(2);
+		assertEquals(Constants.STATUS_HTTP_201_CREATED + "", respEntry.getTransactionResponse().getStatus());
+		assertFalse(id.toVersionless().equals(new IdDt(respEntry.getTransactionResponse().getLocation()).toUnqualifiedVersionless()));
+	}
+
+	@Test
+	public void testTransactionRolledBackForcedIdIsNotReused() {
+		String methodName = "testTransactionRolledBackForcedIdIsNotReused";
+		Bundle res = new Bundle();
+		res.setType(BundleTypeEnum.TRANSACTION);
+		Patient p = new Patient();
+		p.setId(methodName);
+		res.addEntry().setResource(p).getTransaction().setMethod(HTTPVerbEnum.PUT).setUrl("Patient/" + methodName);
+		Observation o = new Observation();
+		o.setSubject(new ResourceReferenceDt("Patient/" + methodName + "Unknown"));
+		res.addEntry().setResource(o).getTransaction().setMethod(HTTPVerbEnum.POST).setUrl("Observation");
+		try {
+			ourSystemDao.transaction(res);
+			fail();
+		} catch (InvalidRequestException e) {
+			// good
+		}
+
+		try {
+			ourPatientDao.read(new IdDt("Patient", methodName));
+			fail();
+		} catch (ResourceNotFoundException e) {
+			// good
+		}
+
+		p = new Patient();
+		p.setId(methodName);
+		p.addName().addFamily(methodName);
+		ourPatientDao.update(p);
+		assertEquals(methodName, ourPatientDao.read(new IdDt("Patient", methodName)).getNameFirstRep().getFamilyAsSingleString());
+	}
+
 	@Test
 	public void testTransactionWithRelativeOidIds() throws Exception {
 		Bundle res = new Bundle();
@@ -0,0 +1,178 @@
+package ca.uhn.fhir.jpa.entity;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.dstu2.resource.Bundle;
+import ca.uhn.fhir.model.dstu2.resource.Bundle.Entry;
+import ca.uhn.fhir.model.dstu2.resource.Patient;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IParser;
+
+public class ResourceEncodingEnumTest {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ResourceEncodingEnumTest.class);
+	private static FhirContext ourCtx = FhirContext.forDstu2();
+	private static List<IResource> ourResources;
+
+	@Test
+	public void testNamesFitColumn() {
+		// Names are stored in the RES_ENCODING column, which is 5 characters long
+		for (ResourceEncodingEnum next : ResourceEncodingEnum.values()) {
+			assertTrue(next.name(), next.name().length() <= 5);
+		}
+	}
+
+	@Test
+	public void testRoundTrip() {
+		Patient unicode = new Patient();
+		unicode.addName().addFamily("\u00e9\u00e8\u4e2d\u6587");
+
+		for (ResourceEncodingEnum nextEncoding : ResourceEncodingEnum.values()) {
+			List<String> resources = encodeResources(nextEncoding);
+			List<String> texts = new ArrayList<String>(resources);
+			texts.add("");
+			texts.add(nextEncoding.newParser(ourCtx).encodeResourceToString(unicode));
+
+			StringBuilder large = new StringBuilder();
+			while (large.length() < 3 * 1024 * 1024) {
+				large.append(resources.get(large.length() % resources.size()));
+			}
+			texts.add(large.toString());
+
+			for (String next : texts) {
+				assertEquals(nextEncoding.name(), next, nextEncoding.decode(nextEncoding.encode(next)));
+			}
+		}
+	}
+
+	@Test
+	public void testDecodeStoredValues() throws Exception {
+		String text = "{\"resourceType\":\"Patient\",\"id\":\"1\",\"active\":true}";
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		GZIPOutputStream gos = new GZIPOutputStream(os);
+		gos.write(text.getBytes("UTF-8"));
+		gos.close();
+		assertEquals(text, ResourceEncodingEnum.JSONC.decode(os.toByteArray()));
+
+		// Written with the JSONZ dictionary, this fails if the dictionary is ever changed
+		byte[] jsonz = Base64.decodeBase64(ourStoredJsonz);
+		assertEquals(text, ResourceEncodingEnum.JSONZ.decode(jsonz));
+	}
+
+	private static final String ourStoredJsonz = "eD+77K+uw5CAJleYvCGQgZwLagGj6hBs";
+
+	@Test
+	public void testConcurrentUse() throws Exception {
+		final List<String> resources = encodeResources(ResourceEncodingEnum.JSONZ);
+		int threadCount = DeflateDictionaryResourceEncodingCodec.MAX_POOLED * 2;
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int i = 0; i < threadCount * 4; i++) {
+				results.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						for (String next : resources) {
+							if (!next.equals(ResourceEncodingEnum.JSONZ.decode(ResourceEncodingEnum.JSONZ.encode(next)))) {
+								return false;
+							}
+						}
+						return true;
+					}
+				}));
+			}
+			for (Future<Boolean> next : results) {
+				assertTrue(next.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testDecodeInvalidValue() {
+		try {
+			ResourceEncodingEnum.JSONZ.decode(ResourceEncodingEnum.JSONC.encode("{}"));
+			fail();
+		} catch (DataFormatException e) {
+			assertEquals("Failed to decompress contents", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testCompressedEncodingsAreSmaller() {
+		List<String> resources = encodeResources(ResourceEncodingEnum.JSON);
+		long jsonSize = 0;
+		long jsoncSize = 0;
+		long jsonzSize = 0;
+		for (String next : resources) {
+			int json = ResourceEncodingEnum.JSON.encode(next).length;
+			int jsonc = ResourceEncodingEnum.JSONC.encode(next).length;
+			int jsonz = ResourceEncodingEnum.JSONZ.encode(next).length;
+			assertTrue(next, jsonz < jsonc);
+			jsonSize += json;
+			jsoncSize += jsonc;
+			jsonzSize += jsonz;
+		}
+		ourLog.info("{} resources: JSON {} bytes, JSONC {} bytes, JSONZ {} bytes", new Object[] { resources.size(), jsonSize, jsoncSize, jsonzSize });
+		assertTrue(jsoncSize < jsonSize);
+		assertTrue(jsonzSize < jsoncSize);
+	}
+
+	@Test
+	public void testResourcesRoundTripThroughEachEncoding() {
+		for (ResourceEncodingEnum nextEncoding : ResourceEncodingEnum.values()) {
+			IParser parser = nextEncoding.newParser(ourCtx);
+			for (IResource next : ourResources) {
+				String text = parser.encodeResourceToString(next);
+				String decoded = nextEncoding.decode(nextEncoding.encode(text));
+				IResource parsed = parser.parseResource(next.getClass(), decoded);
+				assertEquals(nextEncoding.name(), text, parser.encodeResourceToString(parsed));
+			}
+		}
+	}
+
+	/**
+	 * Returns the text of each test resource as written by the parser of the given encoding
+	 */
+	private static List<String> encodeResources(ResourceEncodingEnum theEncoding) {
+		IParser parser = theEncoding.newParser(ourCtx);
+		List<String> retVal = new ArrayList<String>();
+		for (IResource next : ourResources) {
+			retVal.add(parser.encodeResourceToString(next));
+		}
+		return retVal;
+	}
+
+	@BeforeClass
+	public static void beforeClass() {
+		ourResources = new ArrayList<IResource>();
+		IParser parser = ourCtx.newJsonParser();
+		for (String nextFile : new String[] { "/bug147-bundle.json", "/document-father.json" }) {
+			Bundle bundle = parser.parseResource(Bundle.class, new InputStreamReader(ResourceEncodingEnumTest.class.getResourceAsStream(nextFile)));
+			for (Entry next : bundle.getEntry()) {
+				if (next.getResource() != null) {
+					ourResources.add(next.getResource());
+				}
+			}
+		}
+	}
+
+}
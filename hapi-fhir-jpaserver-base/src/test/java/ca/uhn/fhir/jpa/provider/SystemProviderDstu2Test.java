@@ -25,7 +25,9 @@ import ca.uhn.fhir.model.dstu.resource.Organization;
 import ca.uhn.fhir.model.dstu.resource.Patient;
 import ca.uhn.fhir.model.dstu.resource.Questionnaire;
 import ca.uhn.fhir.model.dstu2.resource.Bundle;
+import ca.uhn.fhir.model.dstu2.resource.Parameters;
 import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.model.primitive.IntegerDt;
 import ca.uhn.fhir.rest.client.IGenericClient;
 import ca.uhn.fhir.rest.server.RestfulServer;
 
@@ -37,6 +39,24 @@ public class SystemProviderDstu2Test {
 	private static FhirContext ourCtx;
 	private static IGenericClient ourClient;
 
+	@Test
+	public void testImportOperation() {
+		Bundle bundle = new Bundle();
+		ca.uhn.fhir.model.dstu2.resource.Patient p = new ca.uhn.fhir.model.dstu2.resource.Patient();
+		p.addName().addFamily("testImportOperation");
+		bundle.addEntry().setResource(p);
+		bundle.addEntry().setResource(p);
+
+		Parameters input = new Parameters();
+		input.addParameter().setName("input").setResource(bundle);
+		Parameters output = ourClient.operation().onServer().named("import").withParameters(input).execute();
+
+		assertEquals("created", output.getParameter().get(0).getName());
+		assertEquals(2, ((IntegerDt) output.getParameter().get(0).getValue()).getValue().intValue());
+		assertEquals("failed", output.getParameter().get(2).getName());
+		assertEquals(0, ((IntegerDt) output.getParameter().get(2).getValue()).getValue().intValue());
+	}
+
 	@Test
 	public void testTransactionFromBundle() throws Exception {
 
@@ -0,0 +1,85 @@
+package ca.uhn.fhir.context;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.hl7.fhir.instance.model.api.IBase;
+import org.junit.Test;
+
+import ca.uhn.fhir.model.dstu.composite.HumanNameDt;
+import ca.uhn.fhir.model.dstu.resource.Observation;
+import ca.uhn.fhir.model.dstu.resource.Patient;
+import ca.uhn.fhir.model.primitive.DateTimeDt;
+import ca.uhn.fhir.model.primitive.StringDt;
+
+public class ChildFieldAccessTest {
+
+	private static final FhirContext ourCtx = new FhirContext();
+
+	@Test
+	public void testAccessListField() {
+		BaseRuntimeChildDefinition child = ourCtx.getResourceDefinition(Patient.class).getChildByName("name");
+
+		Patient patient = new Patient();
+		assertEquals(0, child.getAccessor().getValues(patient).size());
+
+		HumanNameDt name = new HumanNameDt();
+		name.addFamily("SMITH");
+		child.getMutator().addValue(patient, name);
+		child.getMutator().addValue(patient, new HumanNameDt());
+
+		List<IBase> values = child.getAccessor().getValues(patient);
+		assertEquals(2, values.size());
+		assertSame(name, values.get(0));
+		assertSame(name, patient.getName().get(0));
+
+		child.getMutator().setValue(patient, name);
+		assertEquals(1, patient.getName().size());
+	}
+
+	@Test
+	public void testAccessPlainField() {
+		BaseRuntimeChildDefinition child = ourCtx.getResourceDefinition(Observation.class).getChildByName("comments");
+
+		Observation obs = new Observation();
+		assertEquals(0, child.getAccessor().getValues(obs).size());
+
+		StringDt comments = new StringDt("hello");
+		child.getMutator().setValue(obs, comments);
+		assertSame(comments, obs.getComments());
+		assertSame(comments, child.getAccessor().getValues(obs).get(0));
+	}
+
+	@Test
+	public void testRejectWrongTargetType() {
+		BaseRuntimeChildDefinition child = ourCtx.getResourceDefinition(Observation.class).getChildByName("comments");
+		try {
+			child.getAccessor().getValues(new Patient());
+			fail();
+		} catch (ConfigurationException e) {
+			// expected
+		}
+		try {
+			child.getMutator().setValue(new Patient(), new StringDt("hello"));
+			fail();
+		} catch (ConfigurationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRejectWrongValueType() {
+		BaseRuntimeChildDefinition child = ourCtx.getResourceDefinition(Observation.class).getChildByName("comments");
+
+		Observation obs = new Observation();
+		try {
+			child.getMutator().setValue(obs, new DateTimeDt());
+			fail();
+		} catch (ConfigurationException e) {
+			// expected
+		}
+		assertNull(obs.getComments().getValue());
+	}
+
+}
@@ -3,11 +3,14 @@ package ca.uhn.fhir.context;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
+import java.util.Properties;
+
 import org.junit.Test;
 
 import ca.uhn.fhir.model.api.IResource;
 import ca.uhn.fhir.model.dstu.resource.Patient;
 import ca.uhn.fhir.model.dstu.resource.ValueSet;
+import ca.uhn.fhir.rest.method.RestSearchParameterTypeEnum;
 
 public class FhirContextTest {
 
@@ -28,6 +31,67 @@ public class FhirContextTest {
 		assertEquals("Binary", def.getName());
 	}
 
+	@Test
+	public void testResourceNamesSharedBetweenContexts() {
+		FhirContext ctx = new FhirContext();
+		RuntimeResourceDefinition ptDef = ctx.getResourceDefinition("Patient");
+		assertEquals(Patient.class, ptDef.getImplementingClass());
+
+		FhirContext ctx2 = new FhirContext();
+		assertEquals(ValueSet.class, ctx2.getResourceDefinition("ValueSet").getImplementingClass());
+		assertNotSame(ptDef, ctx2.getResourceDefinition("Patient"));
+	}
+
+	@Test
+	public void testSearchParamsReadFromGeneratedIndex() throws Exception {
+		Properties props = new Properties();
+		props.load(FhirVersionEnum.DSTU1.getVersionImplementation().getFhirVersionPropertiesFile());
+		props.put("searchparams.Patient", "3");
+		props.put("searchparam.Patient.name.type", "string");
+		props.put("searchparam.Patient.name.path", "Patient.name");
+		props.put("searchparam.Patient.gender.type", "token");
+		props.put("searchparam.Patient.gender.path", "Patient.gender");
+		props.put("searchparam.Patient.name.description", "Name from the index");
+		props.put("searchparam.Patient.name-gender.type", "composite");
+		props.put("searchparam.Patient.name-gender.path", "");
+		props.put("searchparam.Patient.name-gender.description", "");
+		props.put("searchparam.Patient.name-gender.compositeOf", "name,gender");
+
+		ModelScanner.ourVersionTypes.put(FhirVersionEnum.DSTU1, ModelScanner.parseVersionProperties(props));
+		try {
+			RuntimeResourceDefinition def = new FhirContext().getResourceDefinition(Patient.class);
+
+			assertEquals("Name from the index", def.getSearchParam("name").getDescription());
+			assertEquals(RestSearchParameterTypeEnum.COMPOSITE, def.getSearchParam("name-gender").getParamType());
+			assertEquals(2, def.getSearchParam("name-gender").getCompositeOf().size());
+			assertNull(def.getSearchParam("family"));
+
+			// Inherited from BaseResource
+			assertNotNull(def.getSearchParam("_id"));
+		} finally {
+			ModelScanner.ourVersionTypes.remove(FhirVersionEnum.DSTU1);
+		}
+
+		RuntimeResourceDefinition def = new FhirContext().getResourceDefinition(Patient.class);
+		assertNotNull(def.getSearchParam("family"));
+	}
+
+	@Test
+	public void testSearchParamIndexIgnoredWhenIncomplete() throws Exception {
+		Properties props = new Properties();
+		props.load(FhirVersionEnum.DSTU1.getVersionImplementation().getFhirVersionPropertiesFile());
+		props.put("searchparams.Patient", "2");
+		props.put("searchparam.Patient.name.type", "string");
+
+		ModelScanner.ourVersionTypes.put(FhirVersionEnum.DSTU1, ModelScanner.parseVersionProperties(props));
+		try {
+			RuntimeResourceDefinition def = new FhirContext().getResourceDefinition(Patient.class);
+			assertNotNull(def.getSearchParam("family"));
+		} finally {
+			ModelScanner.ourVersionTypes.remove(FhirVersionEnum.DSTU1);
+		}
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void testGetResourceDefinitionFails() {
 		new FhirContext().getResourceDefinition(IResource.class);
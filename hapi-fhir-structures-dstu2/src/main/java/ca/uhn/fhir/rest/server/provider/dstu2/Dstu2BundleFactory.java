@@ -23,8 +23,11 @@ package ca.uhn.fhir.rest.server.provider.dstu2;
 import static org.apache.commons.lang3.StringUtils.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
 
@@ -34,6 +37,7 @@ import ca.uhn.fhir.util.ResourceReferenceInfo;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 
@@ -57,8 +61,16 @@ import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 public class Dstu2BundleFactory implements IVersionSpecificBundleFactory {
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(Dstu2BundleFactory.class);
+
+	/**
+	 * The number of resources which are loaded from the bundle provider at a time when the entries of a bundle are
+	 * streamed
+	 */
+	static final int STREAMING_BATCH_SIZE = 100;
+
 	private Bundle myBundle;
 	private FhirContext myContext;
+	private Iterator<Entry> myStreamedEntries;
 
 	public Dstu2BundleFactory(FhirContext theContext) {
 		myContext = theContext;
@@ -81,80 +93,100 @@ public class Dstu2BundleFactory implements IVersionSpecificBundleFactory {
 
 		for (IBaseResource nextBaseRes : theResult) {
 			IResource next = (IResource) nextBaseRes;
+			includedResources.addAll(prepareResourceForBundle(next, addedResourceIds, theBundleInclusionRule, theIncludes));
+			myBundle.addEntry(createEntry(next));
+		}
 
-			Set<String> containedIds = new HashSet<String>();
-			for (IResource nextContained : next.getContained().getContainedResources()) {
-				if (nextContained.getId().isEmpty() == false) {
-					containedIds.add(nextContained.getId().getValue());
-				}
-			}
+		/*
+		 * Actually add the resources to the bundle
+		 */
+		for (IResource next : includedResources) {
+			myBundle.addEntry().setResource(next).getSearch().setMode(SearchEntryModeEnum.INCLUDE);
+		}
 
-			if (myContext.getNarrativeGenerator() != null) {
-				String title = myContext.getNarrativeGenerator().generateTitle(next);
-				ourLog.trace("Narrative generator created title: {}", title);
-				if (StringUtils.isNotBlank(title)) {
-					ResourceMetadataKeyEnum.TITLE.put(next, title);
-				}
-			} else {
-				ourLog.trace("No narrative generator specified");
-			}
+	}
 
-            List<ResourceReferenceInfo> references = myContext.newTerser().getAllResourceReferences(next);
-			do {
-				List<IResource> addedResourcesThisPass = new ArrayList<IResource>();
+	private static Entry createEntry(IResource theResource) {
+		Entry retVal = new Entry();
+		retVal.setResource(theResource);
 
-                for (ResourceReferenceInfo nextRefInfo : references) {
-                    if (!theBundleInclusionRule.shouldIncludeReferencedResource(nextRefInfo, theIncludes))
-                        continue;
+		BundleEntrySearchModeEnum searchMode = ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.get(theResource);
+		if (searchMode != null) {
+			retVal.getSearch().getModeElement().setValue(searchMode.getCode());
+		}
+		return retVal;
+	}
 
-                    IResource nextRes = (IResource) nextRefInfo.getResourceReference().getResource();
-					if (nextRes != null) {
-						if (nextRes.getId().hasIdPart()) {
-							if (containedIds.contains(nextRes.getId().getValue())) {
-								// Don't add contained IDs as top level resources
-								continue;
-							}
+	/**
+	 * Sets the title of a resource which is being added to the bundle, and returns the resources it references which
+	 * should be included in the bundle and are not already in the given set of IDs (to which their IDs are added)
+	 */
+	private List<IResource> prepareResourceForBundle(IResource theResource, Set<IdDt> theAddedResourceIds, BundleInclusionRule theBundleInclusionRule, Set<Include> theIncludes) {
+		List<IResource> retVal = new ArrayList<IResource>();
+
+		Set<String> containedIds = new HashSet<String>();
+		for (IResource nextContained : theResource.getContained().getContainedResources()) {
+			if (nextContained.getId().isEmpty() == false) {
+				containedIds.add(nextContained.getId().getValue());
+			}
+		}
 
-							IdDt id = nextRes.getId();
-							if (id.hasResourceType() == false) {
-								String resName = myContext.getResourceDefinition(nextRes).getName();
-								id = id.withResourceType(resName);
-							}
+		if (myContext.getNarrativeGenerator() != null) {
+			String title = myContext.getNarrativeGenerator().generateTitle(theResource);
+			ourLog.trace("Narrative generator created title: {}", title);
+			if (StringUtils.isNotBlank(title)) {
+				ResourceMetadataKeyEnum.TITLE.put(theResource, title);
+			}
+		} else {
+			ourLog.trace("No narrative generator specified");
+		}
 
-							if (!addedResourceIds.contains(id)) {
-								addedResourceIds.add(id);
-								addedResourcesThisPass.add(nextRes);
-							}
+		List<ResourceReferenceInfo> references = myContext.newTerser().getAllResourceReferences(theResource);
+		do {
+			List<IResource> addedResourcesThisPass = new ArrayList<IResource>();
+
+			for (ResourceReferenceInfo nextRefInfo : references) {
+				if (!theBundleInclusionRule.shouldIncludeReferencedResource(nextRefInfo, theIncludes))
+					continue;
 
+				IResource nextRes = (IResource) nextRefInfo.getResourceReference().getResource();
+				if (nextRes != null) {
+					if (nextRes.getId().hasIdPart()) {
+						if (containedIds.contains(nextRes.getId().getValue())) {
+							// Don't add contained IDs as top level resources
+							continue;
 						}
-					}
-				}
 
-                includedResources.addAll(addedResourcesThisPass);
+						IdDt id = getIdWithResourceType(nextRes);
+						if (!theAddedResourceIds.contains(id)) {
+							theAddedResourceIds.add(id);
+							addedResourcesThisPass.add(nextRes);
+						}
 
-				// Linked resources may themselves have linked resources
-                references = new ArrayList<ResourceReferenceInfo>();
-				for (IResource iResource : addedResourcesThisPass) {
-                    List<ResourceReferenceInfo> newReferences = myContext.newTerser().getAllResourceReferences(iResource);
-					references.addAll(newReferences);
+					}
 				}
-			} while (references.isEmpty() == false);
+			}
 
-			Entry entry = myBundle.addEntry().setResource(next);
+			retVal.addAll(addedResourcesThisPass);
 
-			BundleEntrySearchModeEnum searchMode = ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.get(next);
-			if (searchMode != null) {
-				entry.getSearch().getModeElement().setValue(searchMode.getCode());
+			// Linked resources may themselves have linked resources
+			references = new ArrayList<ResourceReferenceInfo>();
+			for (IResource iResource : addedResourcesThisPass) {
+				List<ResourceReferenceInfo> newReferences = myContext.newTerser().getAllResourceReferences(iResource);
+				references.addAll(newReferences);
 			}
-		}
+		} while (references.isEmpty() == false);
 
-		/*
-		 * Actually add the resources to the bundle
-		 */
-		for (IResource next : includedResources) {
-			myBundle.addEntry().setResource(next).getSearch().setMode(SearchEntryModeEnum.INCLUDE);
-		}
+		return retVal;
+	}
 
+	private IdDt getIdWithResourceType(IResource theResource) {
+		IdDt retVal = theResource.getId();
+		if (retVal.hasResourceType() == false) {
+			String resName = myContext.getResourceDefinition(theResource).getName();
+			retVal = retVal.withResourceType(resName);
+		}
+		return retVal;
 	}
 
     @Override
@@ -198,13 +230,18 @@ public class Dstu2BundleFactory implements IVersionSpecificBundleFactory {
 
 	@Override
 	public void initializeBundleFromBundleProvider(RestfulServer theServer, IBundleProvider theResult, EncodingEnum theResponseEncoding, String theServerBase, String theCompleteUrl, boolean thePrettyPrint, int theOffset, Integer theLimit, String theSearchId, BundleTypeEnum theBundleType, Set<Include> theIncludes) {
+		boolean stream = theServer.isStreamSearchResults();
 		int numToReturn;
+		int fromIndex;
 		String searchId = null;
-		List<IBaseResource> resourceList;
+		List<IBaseResource> resourceList = null;
 		if (theServer.getPagingProvider() == null) {
 			numToReturn = theResult.size();
-			resourceList = theResult.getResources(0, numToReturn);
-			RestfulServerUtils.validateResourceListNotNull(resourceList);
+			fromIndex = 0;
+			if (!stream) {
+				resourceList = theResult.getResources(0, numToReturn);
+				RestfulServerUtils.validateResourceListNotNull(resourceList);
+			}
 
 		} else {
 			IPagingProvider pagingProvider = theServer.getPagingProvider();
@@ -215,8 +252,11 @@ public class Dstu2BundleFactory implements IVersionSpecificBundleFactory {
 			}
 
 			numToReturn = Math.min(numToReturn, theResult.size() - theOffset);
-			resourceList = theResult.getResources(theOffset, numToReturn + theOffset);
-			RestfulServerUtils.validateResourceListNotNull(resourceList);
+			fromIndex = theOffset;
+			if (!stream) {
+				resourceList = theResult.getResources(theOffset, numToReturn + theOffset);
+				RestfulServerUtils.validateResourceListNotNull(resourceList);
+			}
 
 			if (theSearchId != null) {
 				searchId = theSearchId;
@@ -228,24 +268,19 @@ public class Dstu2BundleFactory implements IVersionSpecificBundleFactory {
 			}
 		}
 
-		for (IBaseResource next : resourceList) {
-			if (next.getIdElement() == null || next.getIdElement().isEmpty()) {
-				if (!(next instanceof BaseOperationOutcome)) {
-					throw new InternalErrorException("Server method returned resource of type[" + next.getClass().getSimpleName() + "] with no ID specified (IResource#setId(IdDt) must be called)");
-				}
-			}
-		}
+		if (stream) {
+			myBundle = new Bundle();
+			StreamedEntryIterator entries = new StreamedEntryIterator(theServer, theResult, fromIndex, fromIndex + numToReturn, theServerBase, theIncludes);
 
-		if (theServer.getAddProfileTag() != AddProfileTagEnum.NEVER) {
-			for (IBaseResource nextRes : resourceList) {
-				RuntimeResourceDefinition def = theServer.getFhirContext().getResourceDefinition(nextRes);
-				if (theServer.getAddProfileTag() == AddProfileTagEnum.ALWAYS || !def.isStandardProfile()) {
-					RestfulServerUtils.addProfileToBundleEntry(theServer.getFhirContext(), nextRes, theServerBase);
-				}
-			}
+			/*
+			 * Load the first batch now, so that problems with the results are reported before the response is started
+			 */
+			entries.hasNext();
+			myStreamedEntries = entries;
+		} else {
+			prepareResourcesFromBundleProvider(theServer, resourceList, theServerBase);
+			addResourcesToBundle(new ArrayList<IBaseResource>(resourceList), theBundleType, theServerBase, theServer.getBundleInclusionRule(), theIncludes);
 		}
-
-		addResourcesToBundle(new ArrayList<IBaseResource>(resourceList), theBundleType, theServerBase, theServer.getBundleInclusionRule(), theIncludes);
 		addRootPropertiesToBundle(null, theServerBase, theCompleteUrl, theResult.size(), theBundleType);
 
 		if (theServer.getPagingProvider() != null) {
@@ -265,6 +300,25 @@ public class Dstu2BundleFactory implements IVersionSpecificBundleFactory {
 		}
 	}
 
+	private static void prepareResourcesFromBundleProvider(RestfulServer theServer, List<IBaseResource> theResourceList, String theServerBase) {
+		for (IBaseResource next : theResourceList) {
+			if (next.getIdElement() == null || next.getIdElement().isEmpty()) {
+				if (!(next instanceof BaseOperationOutcome)) {
+					throw new InternalErrorException("Server method returned resource of type[" + next.getClass().getSimpleName() + "] with no ID specified (IResource#setId(IdDt) must be called)");
+				}
+			}
+		}
+
+		if (theServer.getAddProfileTag() != AddProfileTagEnum.NEVER) {
+			for (IBaseResource nextRes : theResourceList) {
+				RuntimeResourceDefinition def = theServer.getFhirContext().getResourceDefinition(nextRes);
+				if (theServer.getAddProfileTag() == AddProfileTagEnum.ALWAYS || !def.isStandardProfile()) {
+					RestfulServerUtils.addProfileToBundleEntry(theServer.getFhirContext(), nextRes, theServerBase);
+				}
+			}
+		}
+	}
+
 	@Override
 	public ca.uhn.fhir.model.api.Bundle getDstu1Bundle() {
 		return null;
@@ -275,6 +329,11 @@ public class Dstu2BundleFactory implements IVersionSpecificBundleFactory {
 		return myBundle;
 	}
 
+	@Override
+	public Iterator<? extends IBase> getStreamedEntries() {
+		return myStreamedEntries;
+	}
+
 	@Override
 	public void initializeBundleFromResourceList(String theAuthor, List<? extends IBaseResource> theResources, String theServerBase, String theCompleteUrl, int theTotalResults, BundleTypeEnum theBundleType) {
 		myBundle = new Bundle();
@@ -416,4 +475,102 @@ public class Dstu2BundleFactory implements IVersionSpecificBundleFactory {
 		return retVal;
 	}
 
+	/**
+	 * Returns an entry for each resource of a page of results as the bundle is encoded, followed by the entries for the
+	 * included resources. The resources are loaded from the bundle provider {@link #STREAMING_BATCH_SIZE} at a time, so
+	 * only the current batch and the included resources are held in memory.
+	 */
+	private class StreamedEntryIterator implements Iterator<Entry> {
+
+		private final Set<IdDt> myAddedResourceIds = new HashSet<IdDt>();
+		private List<IBaseResource> myBatch = Collections.emptyList();
+		private int myBatchIndex;
+		private final List<IResource> myIncludedResources = new ArrayList<IResource>();
+		private Iterator<IResource> myIncludedResourcesIterator;
+		private final Set<Include> myIncludes;
+		private final Set<IdDt> myMatchedResourceIds = new HashSet<IdDt>();
+		private int myNextIndex;
+		private final IBundleProvider myResult;
+		private final RestfulServer myServer;
+		private final String myServerBase;
+		private final int myToIndex;
+
+		StreamedEntryIterator(RestfulServer theServer, IBundleProvider theResult, int theFromIndex, int theToIndex, String theServerBase, Set<Include> theIncludes) {
+			myServer = theServer;
+			myResult = theResult;
+			myNextIndex = theFromIndex;
+			myToIndex = theToIndex;
+			myServerBase = theServerBase;
+			myIncludes = theIncludes;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (myBatchIndex == myBatch.size() && myNextIndex < myToIndex) {
+				loadNextBatch();
+			}
+			if (myBatchIndex < myBatch.size()) {
+				return true;
+			}
+
+			if (myIncludedResourcesIterator == null) {
+				/*
+				 * Resources which were found to be included before they were returned as matches have already been
+				 * written
+				 */
+				List<IResource> includedResources = new ArrayList<IResource>();
+				for (IResource next : myIncludedResources) {
+					if (!myMatchedResourceIds.contains(getIdWithResourceType(next))) {
+						includedResources.add(next);
+					}
+				}
+				myIncludedResources.clear();
+				myIncludedResourcesIterator = includedResources.iterator();
+			}
+			return myIncludedResourcesIterator.hasNext();
+		}
+
+		private void loadNextBatch() {
+			int toIndex = Math.min(myNextIndex + STREAMING_BATCH_SIZE, myToIndex);
+			List<IBaseResource> batch = myResult.getResources(myNextIndex, toIndex);
+			RestfulServerUtils.validateResourceListNotNull(batch);
+			prepareResourcesFromBundleProvider(myServer, batch, myServerBase);
+
+			for (IBaseResource next : batch) {
+				if (next.getIdElement().isEmpty() == false) {
+					myAddedResourceIds.add((IdDt) next.getIdElement());
+					myMatchedResourceIds.add(getIdWithResourceType((IResource) next));
+				}
+			}
+
+			myBatch = batch;
+			myBatchIndex = 0;
+			myNextIndex = batch.isEmpty() ? myToIndex : toIndex;
+		}
+
+		@Override
+		public Entry next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			if (myBatchIndex < myBatch.size()) {
+				IResource next = (IResource) myBatch.get(myBatchIndex++);
+				myIncludedResources.addAll(prepareResourceForBundle(next, myAddedResourceIds, myServer.getBundleInclusionRule(), myIncludes));
+				return createEntry(next);
+			}
+
+			Entry retVal = new Entry();
+			retVal.setResource(myIncludedResourcesIterator.next());
+			retVal.getSearch().setMode(SearchEntryModeEnum.INCLUDE);
+			return retVal;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
 }
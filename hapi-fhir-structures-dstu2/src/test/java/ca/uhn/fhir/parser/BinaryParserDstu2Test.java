@@ -0,0 +1,133 @@
+package ca.uhn.fhir.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.hamcrest.Matchers.containsString;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+
+import org.apache.commons.io.IOUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.ExtensionDt;
+import ca.uhn.fhir.model.dstu2.resource.Bundle;
+import ca.uhn.fhir.model.dstu2.resource.Observation;
+import ca.uhn.fhir.model.dstu2.resource.Patient;
+import ca.uhn.fhir.model.primitive.DecimalDt;
+import ca.uhn.fhir.model.primitive.StringDt;
+
+public class BinaryParserDstu2Test {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BinaryParserDstu2Test.class);
+	private static final FhirContext ourCtx = FhirContext.forDstu2();
+
+	private static byte[] encode(IBaseResource theResource) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ourCtx.newBinaryParser().encodeResourceToOutputStream(theResource, bytes);
+		return bytes.toByteArray();
+	}
+
+	private static void assertRoundTrip(String theJson) throws Exception {
+		IBaseResource resource = ourCtx.newJsonParser().parseResource(theJson);
+		String expected = ourCtx.newJsonParser().encodeResourceToString(resource);
+
+		byte[] binary = encode(resource);
+		ourLog.info("JSON is {} bytes, binary is {} bytes", expected.length(), binary.length);
+		assertTrue(binary.length < expected.length());
+
+		IBaseResource parsed = ourCtx.newBinaryParser().parseResource(resource.getClass(), new ByteArrayInputStream(binary));
+		assertEquals(expected, ourCtx.newJsonParser().encodeResourceToString(parsed));
+	}
+
+	@Test
+	public void testEncodeAndParseBundle() throws Exception {
+		String json = IOUtils.toString(new InputStreamReader(BinaryParserDstu2Test.class.getResourceAsStream("/bundle-example.json"), "UTF-8"));
+		assertRoundTrip(json);
+	}
+
+	@Test
+	public void testEncodeAndParsePatient() throws Exception {
+		String json = IOUtils.toString(new InputStreamReader(BinaryParserDstu2Test.class.getResourceAsStream("/patient-example-dicom.json"), "UTF-8"));
+		assertRoundTrip(json);
+	}
+
+	@Test
+	public void testEncodeAndParseValues() throws Exception {
+		Patient patient = new Patient();
+		patient.setId("Patient/1/_history/2");
+		patient.getText().setDiv("<div>Text \u00e9\u4e2d\ud83d\ude00</div>");
+		for (int i = 0; i < 200; i++) {
+			patient.addName().addFamily("Family" + i).addGiven("Given" + (i % 3));
+		}
+		patient.addName().addFamily(longString('a', 70000));
+		patient.addUndeclaredExtension(new ExtensionDt(false, "http://example.com/ext", new DecimalDt("-12.3400")));
+		patient.addUndeclaredExtension(new ExtensionDt(true, "http://example.com/modext", new StringDt("value")));
+		patient.setMultipleBirth(new ca.uhn.fhir.model.primitive.IntegerDt(-2));
+
+		Observation obs = new Observation();
+		obs.setId("#1");
+		obs.setComments("Contained");
+		patient.getContained().getContainedResources().add(obs);
+
+		assertRoundTrip(ourCtx.newJsonParser().encodeResourceToString(patient));
+	}
+
+	@Test
+	public void testEncodeAndParseWithWriterAndReader() {
+		Patient patient = new Patient();
+		patient.addName().addFamily("Family \u00e9").addGiven("Given");
+		patient.addIdentifier().setSystem("urn:system").setValue("12345");
+
+		String encoded = ourCtx.newBinaryParser().encodeResourceToString(patient);
+		for (int i = 0; i < encoded.length(); i++) {
+			assertTrue(encoded.charAt(i) <= 0xFF);
+		}
+
+		Patient parsed = ourCtx.newBinaryParser().parseResource(Patient.class, encoded);
+		assertEquals(ourCtx.newJsonParser().encodeResourceToString(patient), ourCtx.newJsonParser().encodeResourceToString(parsed));
+	}
+
+	@Test
+	public void testEncodeAndParseBundleWithoutType() throws Exception {
+		Bundle bundle = new Bundle();
+		bundle.setTotal(2);
+		bundle.addEntry().setResource(new Patient().setActive(true));
+		bundle.addEntry().setResource(new Patient().setActive(false));
+
+		Bundle parsed = ourCtx.newBinaryParser().parseResource(Bundle.class, new ByteArrayInputStream(encode(bundle)));
+		assertEquals(2, parsed.getTotal().intValue());
+		assertEquals(2, parsed.getEntry().size());
+		assertEquals(Boolean.FALSE, ((Patient) parsed.getEntry().get(1).getResource()).getActive());
+	}
+
+	@Test
+	public void testParseInvalidContent() {
+		try {
+			ourCtx.newBinaryParser().parseResource(Patient.class, new ByteArrayInputStream("{\"resourceType\":\"Patient\"}".getBytes()));
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("not in the HAPI FHIR binary format"));
+		}
+
+		try {
+			ourCtx.newBinaryParser().parseResource(Patient.class, new ByteArrayInputStream(new byte[] { (byte) 0xFB, 'H', 'F', 1, 1, 0x0B, 50, 'a' }));
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("Unexpected end of content"));
+		}
+	}
+
+	private static String longString(char theChar, int theLength) {
+		StringBuilder b = new StringBuilder(theLength);
+		for (int i = 0; i < theLength; i++) {
+			b.append(theChar);
+		}
+		return b.toString();
+	}
+
+}
@@ -4,13 +4,22 @@ import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.stringContainsInOrder;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 
@@ -48,6 +57,7 @@ import ca.uhn.fhir.model.dstu2.valueset.BundleTypeEnum;
 import ca.uhn.fhir.model.dstu2.valueset.IdentifierUseEnum;
 import ca.uhn.fhir.model.dstu2.valueset.ObservationReliabilityEnum;
 import ca.uhn.fhir.model.dstu2.valueset.ObservationStatusEnum;
+import ca.uhn.fhir.model.primitive.Base64BinaryDt;
 import ca.uhn.fhir.model.primitive.DateDt;
 import ca.uhn.fhir.model.primitive.DateTimeDt;
 import ca.uhn.fhir.model.primitive.IdDt;
@@ -69,6 +79,83 @@ public class JsonParserDstu2Test {
 		assertThat(ourCtx.newJsonParser().setOmitResourceId(true).encodeResourceToString(p), not(containsString("123")));
 	}
 
+	@Test
+	public void testEncodeWithElementFilter() {
+		Patient p = new Patient();
+		p.setId("Patient/123/_history/2");
+		p.getText().setDiv("<div>THE DIV</div>");
+		p.addName().addFamily("FAMILY").addGiven("GIVEN");
+		p.addIdentifier().setSystem("urn:sys").setValue("IDVAL");
+		p.addUndeclaredExtension(false, "http://example.com/ext", new StringDt("EXTVAL"));
+		p.getManagingOrganization().setReference("Organization/1");
+
+		IParser parser = ourCtx.newJsonParser().setElementFilter(new HashSet<String>(Arrays.asList("Patient.name.family", "identifier")));
+		String encoded = parser.encodeResourceToString(p);
+		ourLog.info(encoded);
+
+		assertThat(encoded, stringContainsInOrder("\"id\":\"123\"", "\"versionId\":\"2\"", "IDVAL", "FAMILY"));
+		assertThat(encoded, not(containsString("GIVEN")));
+		assertThat(encoded, not(containsString("THE DIV")));
+		assertThat(encoded, not(containsString("EXTVAL")));
+		assertThat(encoded, not(containsString("Organization/1")));
+
+		parser.setElementFilter(null);
+		assertNull(parser.getElementFilter());
+		assertThat(parser.encodeResourceToString(p), stringContainsInOrder("EXTVAL", "THE DIV", "GIVEN", "Organization/1"));
+	}
+
+	@Test
+	public void testEncodeBundleWithElementFilter() {
+		ca.uhn.fhir.model.dstu2.resource.Bundle b = new ca.uhn.fhir.model.dstu2.resource.Bundle();
+		b.setTotal(1);
+		Patient p = new Patient();
+		p.addName().addFamily("FAMILY");
+		p.addIdentifier().setValue("IDVAL");
+		b.addEntry().setResource(p);
+
+		String encoded = ourCtx.newJsonParser().setElementFilter(Collections.singleton("name")).encodeResourceToString(b);
+		ourLog.info(encoded);
+		assertThat(encoded, stringContainsInOrder("\"total\":1", "FAMILY"));
+		assertThat(encoded, not(containsString("IDVAL")));
+
+		encoded = ourCtx.newJsonParser().setElementFilter(new HashSet<String>(Arrays.asList("Bundle.total"))).encodeResourceToString(b);
+		ourLog.info(encoded);
+		assertThat(encoded, containsString("\"total\":1"));
+		assertThat(encoded, not(containsString("FAMILY")));
+	}
+
+	@Test
+	public void testParseWithElementFilter() {
+		Patient p = new Patient();
+		p.setId("Patient/123/_history/2");
+		p.getText().setDiv("<div>THE DIV</div>");
+		p.addName().addFamily("FAMILY").addGiven("GIVEN");
+		p.addIdentifier().setSystem("urn:sys").setValue("IDVAL");
+		p.setBirthDate(new DateDt("2011-02-03"));
+		Observation obs = new Observation();
+		obs.setComments("OBS");
+		p.addCareProvider().setResource(obs);
+		String encoded = ourCtx.newJsonParser().encodeResourceToString(p);
+
+		ca.uhn.fhir.model.dstu2.resource.Bundle b = new ca.uhn.fhir.model.dstu2.resource.Bundle();
+		b.addEntry().setResource(p);
+		String encodedBundle = ourCtx.newJsonParser().encodeResourceToString(b);
+
+		IParser parser = ourCtx.newJsonParser().setElementFilter(new HashSet<String>(Arrays.asList("name.given", "Patient.contained", "Patient.birthDate")));
+		for (Patient parsed : new Patient[] { parser.parseResource(Patient.class, encoded),
+				(Patient) parser.parseResource(ca.uhn.fhir.model.dstu2.resource.Bundle.class, encodedBundle).getEntry().get(0).getResource() }) {
+			assertEquals("123", parsed.getId().getIdPart());
+			assertEquals("2", parsed.getId().getVersionIdPart());
+			assertEquals("GIVEN", parsed.getNameFirstRep().getGivenAsSingleString());
+			assertEquals(0, parsed.getNameFirstRep().getFamily().size());
+			assertEquals("2011-02-03", parsed.getBirthDateElement().getValueAsString());
+			assertEquals(0, parsed.getIdentifier().size());
+			assertEquals(0, parsed.getCareProvider().size());
+			assertTrue(parsed.getText().isEmpty());
+			assertEquals("OBS", ((Observation) parsed.getContained().getContainedResources().get(0)).getComments());
+		}
+	}
+
 	@Test
 	public void testParseAndEncodeBundleWithUuidBase() {
 		//@formatter:off
@@ -565,6 +652,141 @@ public class JsonParserDstu2Test {
 
 	}
 
+	@Test
+	public void testEncodeToOutputStream() throws Exception {
+		Patient patient = new Patient();
+		patient.setId("Patient/1");
+		patient.addName().addFamily("\u00dcn\u00efc\u00f6d\u00e9 \u65e5\u672c").addGiven("Joe").addUndeclaredExtension(false, "http://example.com#givenext", new StringDt("given"));
+		patient.addUndeclaredExtension(false, "http://example.com#someext", new DateTimeDt("2011-01-02T11:13:15"));
+
+		for (boolean prettyPrint : new boolean[] { false, true }) {
+			IParser parser = ourCtx.newJsonParser().setPrettyPrint(prettyPrint);
+			String expected = parser.encodeResourceToString(patient);
+
+			final boolean[] closed = new boolean[1];
+			ByteArrayOutputStream os = new ByteArrayOutputStream() {
+				@Override
+				public void close() {
+					closed[0] = true;
+				}
+			};
+			parser.encodeResourceToOutputStream(patient, os);
+
+			assertFalse(closed[0]);
+			assertEquals(expected, new String(os.toByteArray(), "UTF-8"));
+		}
+	}
+
+	@Test
+	public void testParsePropertiesInAnyOrder() {
+		String body = "\"name\":[{\"_given\":[{\"extension\":[{\"valueString\":\"ext1\",\"url\":\"http://ext\"}]},null],\"given\":[\"G1\",\"G2\"],\"family\":[\"F\"]}]," + 
+			"\"birthDate\":\"2001-02-03\",\"_birthDate\":{\"id\":\"bd\",\"extension\":[{\"url\":\"http://bdext\",\"valueString\":\"bdval\"}]}," + 
+			"\"contained\":[{\"name\":[{\"family\":[\"C\"]}],\"resourceType\":\"Patient\",\"id\":\"c1\"}],\"active\":true";
+		String streamable = "{\"resourceType\":\"Patient\",\"id\":\"1\"," + body + "}";
+		String notStreamable = "{\"id\":\"1\"," + body + ",\"resourceType\":\"Patient\"}";
+
+		for (String next : new String[] { streamable, notStreamable }) {
+			Patient p = ourCtx.newJsonParser().parseResource(Patient.class, next);
+			assertEquals("1", p.getId().getIdPart());
+			assertEquals("G1", p.getNameFirstRep().getGiven().get(0).getValue());
+			assertEquals("ext1", ((StringDt) p.getNameFirstRep().getGiven().get(0).getUndeclaredExtensionsByUrl("http://ext").get(0).getValue()).getValue());
+			assertEquals("G2", p.getNameFirstRep().getGiven().get(1).getValue());
+			assertEquals(0, p.getNameFirstRep().getGiven().get(1).getUndeclaredExtensions().size());
+			assertEquals("F", p.getNameFirstRep().getFamilyAsSingleString());
+			assertEquals("2001-02-03", p.getBirthDateElement().getValueAsString());
+			assertEquals("bd", p.getBirthDateElement().getElementSpecificId());
+			assertEquals("bdval", ((StringDt) p.getBirthDateElement().getUndeclaredExtensionsByUrl("http://bdext").get(0).getValue()).getValue());
+			assertEquals(1, p.getContained().getContainedResources().size());
+			assertEquals("C", ((Patient) p.getContained().getContainedResources().get(0)).getNameFirstRep().getFamilyAsSingleString());
+			assertEquals(Boolean.TRUE, p.getActive());
+		}
+	}
+
+	@Test
+	public void testEncodeAndParseBundleEntriesOneAtATime() throws IOException {
+		ca.uhn.fhir.model.dstu2.resource.Bundle bundle = new ca.uhn.fhir.model.dstu2.resource.Bundle();
+		bundle.setId("BUNDLEID");
+		bundle.setType(BundleTypeEnum.SEARCH_RESULTS);
+		bundle.setBase("http://foo/base");
+		bundle.setTotal(3);
+		bundle.addLink().setRelation("self").setUrl("http://foo/base/Patient");
+		bundle.setSignature(new Base64BinaryDt(new byte[] { 1, 2, 3 }));
+		for (int i = 0; i < 2; i++) {
+			Patient p = new Patient();
+			p.setId("Patient/" + i + "/_history/2");
+			p.addName().addFamily("FAMILY" + i);
+			bundle.addEntry().setResource(p);
+		}
+		Observation o = new Observation();
+		o.setId("http://other/base/Observation/3");
+		bundle.addEntry().setResource(o);
+
+		String expected = ourCtx.newJsonParser().encodeResourceToString(bundle);
+
+		List<Entry> entries = new ArrayList<Entry>(bundle.getEntry());
+		bundle.getEntry().clear();
+		StringWriter writer = new StringWriter();
+		ourCtx.newJsonParser().encodeBundleEntriesToWriter(bundle, entries.iterator(), writer);
+		assertEquals(expected, writer.toString());
+
+		String notStreamable = "{" + expected.substring(expected.indexOf(',') + 1, expected.length() - 1) + ",\"resourceType\":\"Bundle\"}";
+		for (String next : new String[] { expected, notStreamable }) {
+			IBundleEntryReader<ca.uhn.fhir.model.dstu2.resource.Bundle> reader = ourCtx.newJsonParser().parseBundleEntries(ca.uhn.fhir.model.dstu2.resource.Bundle.class, new StringReader(next));
+			List<String> ids = new ArrayList<String>();
+			while (reader.hasNext()) {
+				Entry nextEntry = (Entry) reader.next();
+				ids.add(nextEntry.getResource().getId().getValue());
+				assertEquals(0, reader.getBundle().getEntry().size());
+			}
+			assertEquals(Arrays.asList("http://foo/base/Patient/0/_history/2", "http://foo/base/Patient/1/_history/2", "http://other/base/Observation/3"), ids);
+
+			ca.uhn.fhir.model.dstu2.resource.Bundle parsed = reader.getBundle();
+			assertEquals("http://foo/base/Bundle/BUNDLEID", parsed.getId().getValue());
+			assertEquals(BundleTypeEnum.SEARCH_RESULTS, parsed.getTypeElement().getValueAsEnum());
+			assertEquals(3, parsed.getTotal().intValue());
+			assertEquals("http://foo/base/Patient", parsed.getLink("self").getUrl());
+			assertEquals(3, parsed.getSignatureElement().getValue().length);
+			assertEquals(0, parsed.getEntry().size());
+		}
+	}
+
+	@Test
+	public void testEncodeAndParseBundleEntriesWithoutHoldingThem() throws IOException {
+		final int count = 5000;
+		Iterator<Entry> entries = new Iterator<Entry>() {
+			private int myIndex;
+
+			@Override
+			public boolean hasNext() {
+				return myIndex < count;
+			}
+
+			@Override
+			public Entry next() {
+				Patient p = new Patient();
+				p.setId("Patient/" + myIndex++);
+				return new Entry().setResource(p);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+
+		ca.uhn.fhir.model.dstu2.resource.Bundle bundle = new ca.uhn.fhir.model.dstu2.resource.Bundle();
+		bundle.setType(BundleTypeEnum.COLLECTION);
+		StringWriter writer = new StringWriter();
+		ourCtx.newJsonParser().encodeBundleEntriesToWriter(bundle, entries, writer);
+
+		IBundleEntryReader<ca.uhn.fhir.model.dstu2.resource.Bundle> reader = ourCtx.newJsonParser().parseBundleEntries(ca.uhn.fhir.model.dstu2.resource.Bundle.class, new StringReader(writer.toString()));
+		int index = 0;
+		while (reader.hasNext()) {
+			assertEquals("Patient/" + index++, ((Entry) reader.next()).getResource().getId().getValue());
+		}
+		assertEquals(count, index);
+	}
+
 	/**
 	 * #65
 	 */
@@ -4,8 +4,10 @@ import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
 
@@ -37,6 +39,7 @@ import ca.uhn.fhir.model.dstu2.composite.IdentifierDt;
 import ca.uhn.fhir.model.dstu2.composite.ResourceReferenceDt;
 import ca.uhn.fhir.model.dstu2.resource.AllergyIntolerance;
 import ca.uhn.fhir.model.dstu2.resource.Binary;
+import ca.uhn.fhir.model.dstu2.resource.Bundle.Entry;
 import ca.uhn.fhir.model.dstu2.resource.Composition;
 import ca.uhn.fhir.model.dstu2.resource.DataElement;
 import ca.uhn.fhir.model.dstu2.resource.Encounter;
@@ -50,6 +53,7 @@ import ca.uhn.fhir.model.dstu2.valueset.AdministrativeGenderEnum;
 import ca.uhn.fhir.model.dstu2.valueset.BundleTypeEnum;
 import ca.uhn.fhir.model.dstu2.valueset.DocumentReferenceStatusEnum;
 import ca.uhn.fhir.model.dstu2.valueset.IdentifierUseEnum;
+import ca.uhn.fhir.model.primitive.Base64BinaryDt;
 import ca.uhn.fhir.model.primitive.DateDt;
 import ca.uhn.fhir.model.primitive.DateTimeDt;
 import ca.uhn.fhir.model.primitive.IdDt;
@@ -60,6 +64,55 @@ public class XmlParserDstu2Test {
 	private static final FhirContext ourCtx = FhirContext.forDstu2();
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(XmlParserDstu2Test.class);
 
+	@Test
+	public void testEncodeWithElementFilter() {
+		Patient p = new Patient();
+		p.setId("Patient/123/_history/2");
+		p.getText().setDiv("<div>THE DIV</div>");
+		p.addName().addFamily("FAMILY").addGiven("GIVEN");
+		p.addIdentifier().setSystem("urn:sys").setValue("IDVAL");
+		p.addUndeclaredExtension(false, "http://example.com/ext", new StringDt("EXTVAL"));
+		p.getManagingOrganization().setReference("Organization/1");
+
+		String encoded = ourCtx.newXmlParser().setElementFilter(new HashSet<String>(Arrays.asList("Patient.name.family", "identifier"))).encodeResourceToString(p);
+		ourLog.info(encoded);
+
+		assertThat(encoded, stringContainsInOrder("<id value=\"123\"/>", "<versionId value=\"2\"/>", "IDVAL", "FAMILY"));
+		assertThat(encoded, not(containsString("GIVEN")));
+		assertThat(encoded, not(containsString("THE DIV")));
+		assertThat(encoded, not(containsString("EXTVAL")));
+		assertThat(encoded, not(containsString("Organization/1")));
+
+		encoded = ourCtx.newXmlParser().setElementFilter(new HashSet<String>(Arrays.asList("Patient.extension"))).encodeResourceToString(p);
+		ourLog.info(encoded);
+		assertThat(encoded, containsString("EXTVAL"));
+		assertThat(encoded, not(containsString("FAMILY")));
+	}
+
+	@Test
+	public void testParseWithElementFilter() {
+		Patient p = new Patient();
+		p.setId("Patient/123/_history/2");
+		p.getText().setDiv("<div>THE DIV</div>");
+		p.addName().addFamily("FAMILY").addGiven("GIVEN");
+		p.addIdentifier().setSystem("urn:sys").setValue("IDVAL");
+		p.addUndeclaredExtension(false, "http://example.com/ext", new StringDt("EXTVAL"));
+		String encoded = ourCtx.newXmlParser().encodeResourceToString(p);
+
+		Patient parsed = ourCtx.newXmlParser().setElementFilter(new HashSet<String>(Arrays.asList("name.family"))).parseResource(Patient.class, encoded);
+		assertEquals("123", parsed.getId().getIdPart());
+		assertEquals("2", parsed.getId().getVersionIdPart());
+		assertEquals("FAMILY", parsed.getNameFirstRep().getFamilyAsSingleString());
+		assertEquals(0, parsed.getNameFirstRep().getGiven().size());
+		assertEquals(0, parsed.getIdentifier().size());
+		assertTrue(parsed.getText().isEmpty());
+		assertEquals(0, parsed.getUndeclaredExtensions().size());
+
+		parsed = ourCtx.newXmlParser().setElementFilter(new HashSet<String>(Arrays.asList("extension"))).parseResource(Patient.class, encoded);
+		assertEquals(0, parsed.getName().size());
+		assertEquals("EXTVAL", ((StringDt) parsed.getUndeclaredExtensions().get(0).getValue()).getValue());
+	}
+
 	@Test
 	public void testBundleWithBinary() {
 		//@formatter:off
@@ -129,6 +182,51 @@ public class XmlParserDstu2Test {
 	}
 
 
+	@Test
+	public void testEncodeAndParseBundleEntriesOneAtATime() throws Exception {
+		ca.uhn.fhir.model.dstu2.resource.Bundle bundle = new ca.uhn.fhir.model.dstu2.resource.Bundle();
+		bundle.setId("BUNDLEID");
+		bundle.setType(BundleTypeEnum.SEARCH_RESULTS);
+		bundle.setBase("http://foo/base");
+		bundle.setTotal(3);
+		bundle.addLink().setRelation("self").setUrl("http://foo/base/Patient");
+		bundle.setSignature(new Base64BinaryDt(new byte[] { 1, 2, 3 }));
+		for (int i = 0; i < 2; i++) {
+			Patient p = new Patient();
+			p.setId("Patient/" + i + "/_history/2");
+			p.addName().addFamily("FAMILY" + i);
+			bundle.addEntry().setResource(p);
+		}
+		Observation o = new Observation();
+		o.setId("http://other/base/Observation/3");
+		bundle.addEntry().setResource(o);
+
+		String expected = ourCtx.newXmlParser().encodeResourceToString(bundle);
+
+		List<Entry> entries = new ArrayList<Entry>(bundle.getEntry());
+		bundle.getEntry().clear();
+		StringWriter writer = new StringWriter();
+		ourCtx.newXmlParser().encodeBundleEntriesToWriter(bundle, entries.iterator(), writer);
+		assertEquals(expected, writer.toString());
+
+		IBundleEntryReader<ca.uhn.fhir.model.dstu2.resource.Bundle> reader = ourCtx.newXmlParser().parseBundleEntries(ca.uhn.fhir.model.dstu2.resource.Bundle.class, new StringReader(expected));
+		List<String> ids = new ArrayList<String>();
+		while (reader.hasNext()) {
+			Entry nextEntry = (Entry) reader.next();
+			ids.add(nextEntry.getResource().getId().getValue());
+			assertEquals(0, reader.getBundle().getEntry().size());
+		}
+		assertEquals(Arrays.asList("http://foo/base/Patient/0/_history/2", "http://foo/base/Patient/1/_history/2", "http://other/base/Observation/3"), ids);
+
+		ca.uhn.fhir.model.dstu2.resource.Bundle parsed = reader.getBundle();
+		assertEquals("http://foo/base/Bundle/BUNDLEID", parsed.getId().getValue());
+		assertEquals(BundleTypeEnum.SEARCH_RESULTS, parsed.getTypeElement().getValueAsEnum());
+		assertEquals(3, parsed.getTotal().intValue());
+		assertEquals("http://foo/base/Patient", parsed.getLink("self").getUrl());
+		assertEquals(3, parsed.getSignatureElement().getValue().length);
+		assertEquals(0, parsed.getEntry().size());
+	}
+
 	@Test
 	public void testEncodeAndParseBundleWithoutResourceIds() {
 		Organization org = new Organization();
@@ -9,7 +9,14 @@ import java.io.InputStream;
 import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.ReaderInputStream;
@@ -44,8 +51,11 @@ import ca.uhn.fhir.model.primitive.StringDt;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.client.interceptor.LoggingInterceptor;
+import ca.uhn.fhir.rest.gclient.IClientBundleEntryReader;
+import ca.uhn.fhir.rest.gclient.IClientExecutableCallback;
 import ca.uhn.fhir.rest.server.Constants;
 import ca.uhn.fhir.rest.server.EncodingEnum;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 
 public class GenericClientDstu2Test {
 	private static FhirContext ourCtx;
@@ -768,6 +778,134 @@ public class GenericClientDstu2Test {
 
 	}
 
+	@Test
+	public void testReadAsync() throws Exception {
+		final String msg = "{\"resourceType\":\"Patient\",\"id\":\"123\",\"name\":[{\"family\":[\"FAMILY\"]}]}";
+
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_JSON + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).then(new Answer<ReaderInputStream>() {
+			@Override
+			public ReaderInputStream answer(InvocationOnMock theInvocation) throws Throwable {
+				return new ReaderInputStream(new StringReader(msg), Charset.forName("UTF-8"));
+			}
+		});
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+
+		List<Future<Patient>> futures = new ArrayList<Future<Patient>>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(client.read().resource(Patient.class).withId("123").executeAsync());
+		}
+		for (Future<Patient> next : futures) {
+			Patient patient = next.get(10, TimeUnit.SECONDS);
+			assertEquals("FAMILY", patient.getNameFirstRep().getFamilyAsSingleString());
+		}
+
+		assertEquals(10, capt.getAllValues().size());
+		assertEquals("http://example.com/fhir/Patient/123", capt.getAllValues().get(0).getURI().toString());
+	}
+
+	@Test
+	public void testReadAsyncWithCallback() throws Exception {
+		final String msg = "{\"resourceType\":\"Patient\",\"id\":\"123\",\"name\":[{\"family\":[\"FAMILY\"]}]}";
+
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_JSON + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).then(new Answer<ReaderInputStream>() {
+			@Override
+			public ReaderInputStream answer(InvocationOnMock theInvocation) throws Throwable {
+				return new ReaderInputStream(new StringReader(msg), Charset.forName("UTF-8"));
+			}
+		});
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+
+		final CountDownLatch latch = new CountDownLatch(10);
+		final List<Patient> results = Collections.synchronizedList(new ArrayList<Patient>());
+		IClientExecutableCallback<Patient> callback = new IClientExecutableCallback<Patient>() {
+			@Override
+			public void onFailure(Throwable theException) {
+				latch.countDown();
+			}
+
+			@Override
+			public void onSuccess(Patient theResult) {
+				results.add(theResult);
+				latch.countDown();
+			}
+		};
+		for (int i = 0; i < 10; i++) {
+			client.read().resource(Patient.class).withId("123").executeAsync(callback);
+		}
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals(10, results.size());
+		assertEquals("FAMILY", results.get(0).getNameFirstRep().getFamilyAsSingleString());
+	}
+
+	@Test
+	public void testReadAsyncWithCallbackFailure() throws Exception {
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 404, "Not Found"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", "text/plain; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).then(new Answer<ReaderInputStream>() {
+			@Override
+			public ReaderInputStream answer(InvocationOnMock theInvocation) throws Throwable {
+				return new ReaderInputStream(new StringReader(""), Charset.forName("UTF-8"));
+			}
+		});
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		client.read().resource(Patient.class).withId("123").executeAsync(new IClientExecutableCallback<Patient>() {
+			@Override
+			public void onFailure(Throwable theException) {
+				failure.set(theException);
+				latch.countDown();
+			}
+
+			@Override
+			public void onSuccess(Patient theResult) {
+				latch.countDown();
+			}
+		});
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertThat(failure.get(), instanceOf(ResourceNotFoundException.class));
+	}
+
+	@Test
+	public void testReadAsyncFailure() throws Exception {
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 404, "Not Found"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", "text/plain; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).then(new Answer<ReaderInputStream>() {
+			@Override
+			public ReaderInputStream answer(InvocationOnMock theInvocation) throws Throwable {
+				return new ReaderInputStream(new StringReader(""), Charset.forName("UTF-8"));
+			}
+		});
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+
+		Future<Patient> future = client.read().resource(Patient.class).withId("123").executeAsync();
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(ResourceNotFoundException.class));
+		}
+	}
+
 	@Test
 	public void testSearchByString() throws Exception {
 		String msg = "{\"resourceType\":\"Bundle\",\"id\":null,\"base\":\"http://localhost:57931/fhir/contextDev\",\"total\":1,\"link\":[{\"relation\":\"self\",\"url\":\"http://localhost:57931/fhir/contextDev/Patient?identifier=urn%3AMultiFhirVersionTest%7CtestSubmitPatient01&_format=json\"}],\"entry\":[{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"1\",\"meta\":{\"versionId\":\"1\",\"lastUpdated\":\"2014-12-20T18:41:29.706-05:00\"},\"identifier\":[{\"system\":\"urn:MultiFhirVersionTest\",\"value\":\"testSubmitPatient01\"}]}}]}";
@@ -792,6 +930,81 @@ public class GenericClientDstu2Test {
 
 	}
 
+	@Test
+	public void testSearchReturnBundleEntries() throws Exception {
+		String msg = getPatientFeedWithOneResult();
+		final AtomicBoolean closed = new AtomicBoolean();
+
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_XML + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).thenReturn(new ReaderInputStream(new StringReader(msg), Charset.forName("UTF-8")) {
+			@Override
+			public void close() throws IOException {
+				closed.set(true);
+				super.close();
+			}
+		});
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+
+		//@formatter:off
+		IClientBundleEntryReader<ca.uhn.fhir.model.dstu2.resource.Bundle> response = client.search()
+				.forResource("Patient")
+				.where(Patient.NAME.matches().value("james"))
+				.returnBundleEntries(ca.uhn.fhir.model.dstu2.resource.Bundle.class)
+				.execute();
+		//@formatter:on
+
+		assertEquals("http://example.com/fhir/Patient?name=james", capt.getValue().getURI().toString());
+		assertFalse(closed.get());
+
+		assertTrue(response.hasNext());
+		ca.uhn.fhir.model.dstu2.resource.Bundle.Entry entry = (ca.uhn.fhir.model.dstu2.resource.Bundle.Entry) response.next();
+		assertEquals("Cardinal", ((Patient) entry.getResource()).getNameFirstRep().getFamilyAsSingleString());
+		assertFalse(response.hasNext());
+		assertTrue(closed.get());
+		assertNotNull(response.getBundle());
+
+		response.close();
+	}
+
+	@Test
+	public void testHistoryReturnBundleEntriesClosedEarly() throws Exception {
+		String msg = getPatientFeedWithOneResult();
+		final AtomicBoolean closed = new AtomicBoolean();
+
+		ArgumentCaptor<HttpUriRequest> capt = ArgumentCaptor.forClass(HttpUriRequest.class);
+		when(myHttpClient.execute(capt.capture())).thenReturn(myHttpResponse);
+		when(myHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+		when(myHttpResponse.getEntity().getContentType()).thenReturn(new BasicHeader("content-type", Constants.CT_FHIR_XML + "; charset=UTF-8"));
+		when(myHttpResponse.getEntity().getContent()).thenReturn(new ReaderInputStream(new StringReader(msg), Charset.forName("UTF-8")) {
+			@Override
+			public void close() throws IOException {
+				closed.set(true);
+				super.close();
+			}
+		});
+
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://example.com/fhir");
+
+		//@formatter:off
+		IClientBundleEntryReader<ca.uhn.fhir.model.dstu2.resource.Bundle> response = client
+				.history()
+				.onType(Patient.class)
+				.andReturnBundleEntries(ca.uhn.fhir.model.dstu2.resource.Bundle.class)
+				.execute();
+		//@formatter:on
+
+		assertEquals("http://example.com/fhir/Patient/_history", capt.getValue().getURI().toString());
+		assertFalse(closed.get());
+
+		response.close();
+		assertTrue(closed.get());
+		assertFalse(response.hasNext());
+	}
+
 	@SuppressWarnings("unused")
 	@Test
 	public void testSearchWithReverseInclude() throws Exception {
@@ -4,6 +4,7 @@ import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
+import java.io.ByteArrayInputStream;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
@@ -25,6 +26,8 @@ import ca.uhn.fhir.model.dstu2.resource.Patient;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.annotation.IdParam;
 import ca.uhn.fhir.rest.annotation.Read;
+import ca.uhn.fhir.rest.client.IGenericClient;
+import ca.uhn.fhir.rest.client.ServerValidationModeEnum;
 import ca.uhn.fhir.util.PortUtil;
 
 /**
@@ -37,6 +40,29 @@ public class ReadTest {
 	private static Server ourServer;
 	private static FhirContext ourCtx;
 
+	@Test
+	public void testReadBinary() throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient/123?_format=binary");
+		HttpResponse status = ourClient.execute(httpGet);
+		byte[] responseContent = IOUtils.toByteArray(status.getEntity().getContent());
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals(200, status.getStatusLine().getStatusCode());
+		assertEquals(Constants.CT_FHIR_BINARY, status.getFirstHeader(Constants.HEADER_CONTENT_TYPE).getValue());
+		Patient patient = ourCtx.newBinaryParser().parseResource(Patient.class, new ByteArrayInputStream(responseContent));
+		assertEquals("p1ReadValue", patient.getIdentifierFirstRep().getValue());
+	}
+
+	@Test
+	public void testReadBinaryWithClient() throws Exception {
+		ourCtx.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
+		IGenericClient client = ourCtx.newRestfulGenericClient("http://localhost:" + ourPort);
+		client.setEncoding(EncodingEnum.BINARY);
+
+		Patient patient = client.read(Patient.class, "123");
+		assertEquals("p1ReadValue", patient.getIdentifierFirstRep().getValue());
+	}
+
 	/**
 	 * In DSTU2+ the resource ID appears in the resource body
 	 */
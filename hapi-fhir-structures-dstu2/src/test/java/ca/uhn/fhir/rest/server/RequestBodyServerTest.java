@@ -0,0 +1,211 @@
+package ca.uhn.fhir.rest.server;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.dstu2.resource.Patient;
+import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.rest.annotation.Create;
+import ca.uhn.fhir.rest.annotation.ResourceParam;
+import ca.uhn.fhir.rest.api.MethodOutcome;
+import ca.uhn.fhir.util.PortUtil;
+
+public class RequestBodyServerTest {
+
+	private static CloseableHttpClient ourClient;
+	private static FhirContext ourCtx = FhirContext.forDstu2();
+	private static Patient ourLastPatient;
+	private static int ourPort;
+	private static Server ourServer;
+	private static RestfulServer ourServlet;
+
+	@After
+	public void after() {
+		ourServlet.setMaxRequestSize(0);
+		ourServlet.setDecodeGzipRequests(true);
+	}
+
+	@Before
+	public void before() {
+		ourLastPatient = null;
+	}
+
+	private byte[] createPatientBody(int theNameCount) throws Exception {
+		Patient patient = new Patient();
+		for (int i = 0; i < theNameCount; i++) {
+			patient.addName().addFamily("FAMILY" + i);
+		}
+		return ourCtx.newJsonParser().encodeResourceToString(patient).getBytes("UTF-8");
+	}
+
+	private static byte[] gzip(byte[] theBytes) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		GZIPOutputStream gos = new GZIPOutputStream(bos);
+		gos.write(theBytes);
+		gos.close();
+		return bos.toByteArray();
+	}
+
+	private HttpResponse post(HttpPost thePost) throws Exception {
+		return ourClient.execute(thePost);
+	}
+
+	private HttpPost newPost() {
+		return new HttpPost("http://localhost:" + ourPort + "/Patient");
+	}
+
+	@Test
+	public void testCreate() throws Exception {
+		HttpPost httpPost = newPost();
+		httpPost.setEntity(new ByteArrayEntity(createPatientBody(2), ContentType.create(Constants.CT_FHIR_JSON, "UTF-8")));
+		HttpResponse status = post(httpPost);
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals(201, status.getStatusLine().getStatusCode());
+		assertEquals("FAMILY1", ourLastPatient.getName().get(1).getFamilyAsSingleString());
+	}
+
+	@Test
+	public void testCreateGzip() throws Exception {
+		HttpPost httpPost = newPost();
+		httpPost.setEntity(new ByteArrayEntity(gzip(createPatientBody(2)), ContentType.create(Constants.CT_FHIR_JSON, "UTF-8")));
+		httpPost.addHeader(Constants.HEADER_CONTENT_ENCODING, Constants.ENCODING_GZIP);
+		HttpResponse status = post(httpPost);
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals(201, status.getStatusLine().getStatusCode());
+		assertEquals("FAMILY1", ourLastPatient.getName().get(1).getFamilyAsSingleString());
+	}
+
+	@Test
+	public void testCreateGzipNotDecoded() throws Exception {
+		ourServlet.setDecodeGzipRequests(false);
+
+		HttpPost httpPost = newPost();
+		httpPost.setEntity(new ByteArrayEntity(gzip(createPatientBody(2)), ContentType.create(Constants.CT_FHIR_JSON, "UTF-8")));
+		httpPost.addHeader(Constants.HEADER_CONTENT_ENCODING, Constants.ENCODING_GZIP);
+		HttpResponse status = post(httpPost);
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals(500, status.getStatusLine().getStatusCode());
+		assertNull(ourLastPatient);
+	}
+
+	@Test
+	public void testCreateTooLarge() throws Exception {
+		ourServlet.setMaxRequestSize(1000);
+
+		HttpPost httpPost = newPost();
+		httpPost.setEntity(new ByteArrayEntity(createPatientBody(5), ContentType.create(Constants.CT_FHIR_JSON, "UTF-8")));
+		HttpResponse status = post(httpPost);
+		IOUtils.closeQuietly(status.getEntity().getContent());
+		assertEquals(201, status.getStatusLine().getStatusCode());
+
+		httpPost = newPost();
+		httpPost.setEntity(new ByteArrayEntity(createPatientBody(100), ContentType.create(Constants.CT_FHIR_JSON, "UTF-8")));
+		status = post(httpPost);
+		String responseContent = IOUtils.toString(status.getEntity().getContent());
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals(413, status.getStatusLine().getStatusCode());
+		assertThat(responseContent, containsString("maximum of 1000 bytes"));
+	}
+
+	@Test
+	public void testCreateTooLargeChunked() throws Exception {
+		ourServlet.setMaxRequestSize(1000);
+
+		HttpPost httpPost = newPost();
+		httpPost.setEntity(new InputStreamEntity(new ByteArrayInputStream(createPatientBody(100)), -1, ContentType.create(Constants.CT_FHIR_JSON, "UTF-8")));
+		HttpResponse status = post(httpPost);
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals(413, status.getStatusLine().getStatusCode());
+		assertNull(ourLastPatient);
+	}
+
+	@Test
+	public void testCreateTooLargeGzip() throws Exception {
+		ourServlet.setMaxRequestSize(1000);
+
+		byte[] body = gzip(createPatientBody(100));
+		assertTrue(body.length < 1000);
+
+		HttpPost httpPost = newPost();
+		httpPost.setEntity(new ByteArrayEntity(body, ContentType.create(Constants.CT_FHIR_JSON, "UTF-8")));
+		httpPost.addHeader(Constants.HEADER_CONTENT_ENCODING, Constants.ENCODING_GZIP);
+		HttpResponse status = post(httpPost);
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals(413, status.getStatusLine().getStatusCode());
+		assertNull(ourLastPatient);
+	}
+
+	@AfterClass
+	public static void afterClass() throws Exception {
+		ourServer.stop();
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ourPort = PortUtil.findFreePort();
+		ourServer = new Server(ourPort);
+
+		ServletHandler proxyHandler = new ServletHandler();
+		ourServlet = new RestfulServer(ourCtx);
+		ourServlet.setResourceProviders(new PatientProvider());
+		ServletHolder servletHolder = new ServletHolder(ourServlet);
+		proxyHandler.addServletWithMapping(servletHolder, "/*");
+		ourServer.setHandler(proxyHandler);
+		ourServer.start();
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5000, TimeUnit.MILLISECONDS);
+		HttpClientBuilder builder = HttpClientBuilder.create();
+		builder.setConnectionManager(connectionManager);
+		ourClient = builder.build();
+	}
+
+	public static class PatientProvider implements IResourceProvider {
+
+		@Create
+		public MethodOutcome createPatient(@ResourceParam Patient thePatient) {
+			ourLastPatient = thePatient;
+			return new MethodOutcome(new IdDt("Patient/001/_history/002"));
+		}
+
+		@Override
+		public Class<? extends IResource> getResourceType() {
+			return Patient.class;
+		}
+
+	}
+
+}
@@ -0,0 +1,129 @@
+package ca.uhn.fhir.rest.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.dstu2.resource.Patient;
+import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Read;
+import ca.uhn.fhir.rest.annotation.RequiredParam;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.method.BaseMethodBinding;
+import ca.uhn.fhir.rest.method.RequestDetails;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+
+public class ResourceBindingTest {
+
+	private static ResourceBinding ourBinding;
+	private static FhirContext ourCtx = FhirContext.forDstu2();
+
+	private static String dispatch(IdDt theId, String... theParams) {
+		RequestDetails request = new RequestDetails();
+		request.setRequestType(RequestTypeEnum.GET);
+		request.setResourceName("Patient");
+		request.setId(theId);
+		Map<String, String[]> params = new HashMap<String, String[]>();
+		for (int i = 0; i < theParams.length; i += 2) {
+			params.put(theParams[i], new String[] { theParams[i + 1] });
+		}
+		request.setParameters(params);
+
+		BaseMethodBinding<?> method = ourBinding.getMethod(request);
+		return method != null ? method.getMethod().getName() : null;
+	}
+
+	@Test
+	public void testDispatchIsRepeatable() {
+		for (int i = 0; i < 3; i++) {
+			assertEquals("searchByName", dispatch(null, "name", "smith" + i));
+			assertEquals("searchByNameAndBirthdate", dispatch(null, "name", "smith", "birthdate", "2011-01-0" + (i + 1)));
+			assertEquals("searchByNameAndBirthdate", dispatch(null, "birthdate", "2011-01-01", "name:exact", "smith"));
+			assertEquals("searchByIdentifier", dispatch(null, "identifier", "urn:foo|" + i));
+			assertEquals("searchByIdentifier", dispatch(null, "identifier", "urn:foo|" + i, "_count", "10"));
+			assertEquals("searchNamed", dispatch(null, "_query", "named", "name", "smith"));
+			assertEquals("read", dispatch(new IdDt("Patient/" + i)));
+			assertEquals("read", dispatch(new IdDt("Patient/" + i + "/_history/2")));
+		}
+	}
+
+	@Test
+	public void testNoMatchIsRepeatable() {
+		for (int i = 0; i < 3; i++) {
+			assertNull(dispatch(null, "family", "smith"));
+			assertNull(dispatch(null, "name", "smith", "family", "smith"));
+			assertNull(dispatch(null, "_query", "other", "name", "smith"));
+			assertNull(dispatch(new IdDt("Patient/1"), "name", "smith"));
+		}
+	}
+
+	@Test
+	public void testManySignatures() {
+		for (int i = 0; i < ResourceBinding.MAX_CACHED_SIGNATURES + 10; i++) {
+			assertEquals("searchByIdentifier", dispatch(null, "identifier:modifier" + i, "urn:foo|1"));
+		}
+		assertEquals("searchByName", dispatch(null, "name", "smith"));
+	}
+
+	@BeforeClass
+	public static void beforeClass() {
+		ourBinding = new ResourceBinding();
+		ourBinding.setResourceName("Patient");
+		DummyPatientResourceProvider provider = new DummyPatientResourceProvider();
+		for (Method next : DummyPatientResourceProvider.class.getDeclaredMethods()) {
+			BaseMethodBinding<?> binding = BaseMethodBinding.bindMethod(next, ourCtx, provider);
+			if (binding != null) {
+				ourBinding.addMethod(binding);
+			}
+		}
+	}
+
+	public static class DummyPatientResourceProvider implements IResourceProvider {
+
+		@Override
+		public Class<? extends IResource> getResourceType() {
+			return Patient.class;
+		}
+
+		@Read(version = true)
+		public Patient read(@IdParam IdDt theId) {
+			return null;
+		}
+
+		@Search
+		public List<Patient> searchByIdentifier(@RequiredParam(name = Patient.SP_IDENTIFIER) TokenParam theIdentifier) {
+			return Collections.emptyList();
+		}
+
+		@Search
+		public List<Patient> searchByName(@RequiredParam(name = Patient.SP_NAME) StringParam theName) {
+			return Collections.emptyList();
+		}
+
+		@Search
+		public List<Patient> searchByNameAndBirthdate(@RequiredParam(name = Patient.SP_NAME) StringParam theName, @RequiredParam(name = Patient.SP_BIRTHDATE) DateParam theBirthdate) {
+			return Collections.emptyList();
+		}
+
+		@Search(queryName = "named")
+		public List<Patient> searchNamed(@RequiredParam(name = Patient.SP_NAME) StringParam theName) {
+			return Collections.emptyList();
+		}
+
+	}
+
+}
@@ -87,6 +87,57 @@ public class SearchDstu2Test {
 		assertNull(status.getFirstHeader(Constants.HEADER_CONTENT_LOCATION));
 	}
 
+	@Test
+	public void testSearchWithElements() throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient?_query=searchWithDetails&_elements=name,managingOrganization&_format=json");
+		HttpResponse status = ourClient.execute(httpGet);
+		String responseContent = IOUtils.toString(status.getEntity().getContent());
+		IOUtils.closeQuietly(status.getEntity().getContent());
+		ourLog.info(responseContent);
+
+		assertEquals(200, status.getStatusLine().getStatusCode());
+		assertThat(responseContent, containsString("\"total\":1"));
+		Patient patient = (Patient) ourCtx.newJsonParser().parseResource(Bundle.class, responseContent).getEntry().get(0).getResource();
+		assertEquals("1", patient.getId().getIdPart());
+		assertEquals("FAMILY", patient.getNameFirstRep().getFamilyAsSingleString());
+		assertEquals("Organization/555", patient.getManagingOrganization().getReference().getValue());
+		assertEquals(0, patient.getIdentifier().size());
+		assertThat(responseContent, not(containsString("THE DIV")));
+	}
+
+	@Test
+	public void testSearchWithSummary() throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient?_query=searchWithDetails&_summary=text");
+		HttpResponse status = ourClient.execute(httpGet);
+		String responseContent = IOUtils.toString(status.getEntity().getContent());
+		IOUtils.closeQuietly(status.getEntity().getContent());
+		ourLog.info(responseContent);
+
+		assertEquals(200, status.getStatusLine().getStatusCode());
+		assertThat(responseContent, containsString("THE DIV"));
+		assertThat(responseContent, not(containsString("FAMILY")));
+
+		httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient?_query=searchWithDetails&_summary=true");
+		status = ourClient.execute(httpGet);
+		responseContent = IOUtils.toString(status.getEntity().getContent());
+		IOUtils.closeQuietly(status.getEntity().getContent());
+		ourLog.info(responseContent);
+
+		assertEquals(200, status.getStatusLine().getStatusCode());
+		assertThat(responseContent, not(containsString("THE DIV")));
+		assertThat(responseContent, containsString("FAMILY"));
+
+		httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient?_query=searchWithDetails&_summary=count");
+		status = ourClient.execute(httpGet);
+		responseContent = IOUtils.toString(status.getEntity().getContent());
+		IOUtils.closeQuietly(status.getEntity().getContent());
+		ourLog.info(responseContent);
+
+		assertEquals(200, status.getStatusLine().getStatusCode());
+		assertThat(responseContent, containsString("<total value=\"1\"/>"));
+		assertThat(responseContent, not(containsString("<entry>")));
+	}
+
 	@AfterClass
 	public static void afterClass() throws Exception {
 		ourServer.stop();
@@ -129,6 +180,17 @@ public class SearchDstu2Test {
 			return patient;
 		}
 
+		@Search(queryName="searchWithDetails")
+		public Patient searchWithDetails() {
+			Patient patient = new Patient();
+			patient.setId("Patient/1/_history/1");
+			patient.getText().setDiv("<div>THE DIV</div>");
+			patient.addIdentifier().setSystem("urn:system").setValue("IDVAL");
+			patient.addName().addFamily("FAMILY");
+			patient.getManagingOrganization().setReference("Organization/555");
+			return patient;
+		}
+
 		@Override
 		public Class<? extends IResource> getResourceType() {
 			return Patient.class;
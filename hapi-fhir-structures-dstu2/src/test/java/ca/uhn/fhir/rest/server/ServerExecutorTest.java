@@ -0,0 +1,176 @@
+package ca.uhn.fhir.rest.server;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.dstu2.resource.Patient;
+import ca.uhn.fhir.model.primitive.IdDt;
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Read;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
+import ca.uhn.fhir.util.PortUtil;
+
+public class ServerExecutorTest {
+
+	private static CloseableHttpClient ourClient;
+	private static FhirContext ourCtx = FhirContext.forDstu2();
+	private static String ourLastThreadName;
+	private static int ourPort;
+	private static Server ourServer;
+	private static RestfulServer ourServlet;
+
+	@After
+	public void after() {
+		ourServlet.setExecutor(ExecutionPoolEnum.READ, null);
+		ourServlet.setExecutor(ExecutionPoolEnum.SEARCH, null);
+		ourServlet.setExecutorRejectionStatusCode(Constants.STATUS_HTTP_503_SERVICE_UNAVAILABLE);
+	}
+
+	private HttpResponse get(String thePath) throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + thePath);
+		return ourClient.execute(httpGet);
+	}
+
+	@Test
+	public void testExceptionOnExecutorThread() throws Exception {
+		ourServlet.setExecutor(ExecutionPoolEnum.READ, 2, 10);
+
+		HttpResponse status = get("/Patient/404?_format=json");
+		String responseContent = IOUtils.toString(status.getEntity().getContent());
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals(404, status.getStatusLine().getStatusCode());
+		assertThat(responseContent, containsString("OperationOutcome"));
+		assertThat(ourLastThreadName, startsWith("hapi-fhir-server-read-"));
+	}
+
+	@Test
+	public void testReadOnExecutorThread() throws Exception {
+		ourServlet.setExecutor(ExecutionPoolEnum.READ, 2, 10);
+
+		for (int i = 0; i < 5; i++) {
+			HttpResponse status = get("/Patient/123?_format=json");
+			String responseContent = IOUtils.toString(status.getEntity().getContent());
+			IOUtils.closeQuietly(status.getEntity().getContent());
+
+			assertEquals(200, status.getStatusLine().getStatusCode());
+			assertThat(responseContent, containsString("p1ReadValue"));
+			assertThat(ourLastThreadName, startsWith("hapi-fhir-server-read-"));
+		}
+
+		HttpResponse status = get("/Patient?_format=json");
+		String responseContent = IOUtils.toString(status.getEntity().getContent());
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals(200, status.getStatusLine().getStatusCode());
+		assertThat(responseContent, containsString("p1ReadValue"));
+		assertThat(ourLastThreadName, not(startsWith("hapi-fhir-server-")));
+	}
+
+	@Test
+	public void testRejectedByExecutor() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.shutdown();
+		ourServlet.setExecutor(ExecutionPoolEnum.SEARCH, executor);
+		ourLastThreadName = null;
+
+		HttpResponse status = get("/Patient?_format=json");
+		String responseContent = IOUtils.toString(status.getEntity().getContent());
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals(503, status.getStatusLine().getStatusCode());
+		assertThat(responseContent, containsString("too busy"));
+		assertEquals(null, ourLastThreadName);
+
+		ourServlet.setExecutorRejectionStatusCode(Constants.STATUS_HTTP_429_TOO_MANY_REQUESTS);
+		status = get("/Patient?_format=json");
+		IOUtils.closeQuietly(status.getEntity().getContent());
+		assertEquals(429, status.getStatusLine().getStatusCode());
+
+		status = get("/Patient/123?_format=json");
+		IOUtils.closeQuietly(status.getEntity().getContent());
+		assertEquals(200, status.getStatusLine().getStatusCode());
+	}
+
+	@AfterClass
+	public static void afterClass() throws Exception {
+		ourServer.stop();
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ourPort = PortUtil.findFreePort();
+		ourServer = new Server(ourPort);
+
+		ServletHandler proxyHandler = new ServletHandler();
+		ourServlet = new RestfulServer(ourCtx);
+		ourServlet.setResourceProviders(new DummyPatientResourceProvider());
+		ServletHolder servletHolder = new ServletHolder(ourServlet);
+		servletHolder.setAsyncSupported(true);
+		proxyHandler.addServletWithMapping(servletHolder, "/*");
+		ourServer.setHandler(proxyHandler);
+		ourServer.start();
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5000, TimeUnit.MILLISECONDS);
+		HttpClientBuilder builder = HttpClientBuilder.create();
+		builder.setConnectionManager(connectionManager);
+		ourClient = builder.build();
+	}
+
+	public static class DummyPatientResourceProvider implements IResourceProvider {
+
+		@Override
+		public Class<? extends IResource> getResourceType() {
+			return Patient.class;
+		}
+
+		@Read
+		public Patient read(@IdParam IdDt theId) {
+			ourLastThreadName = Thread.currentThread().getName();
+			if ("404".equals(theId.getIdPart())) {
+				throw new ResourceNotFoundException(theId);
+			}
+			Patient p1 = new Patient();
+			p1.setId("p1ReadId");
+			p1.addIdentifier().setValue("p1ReadValue");
+			return p1;
+		}
+
+		@Search
+		public List<Patient> search() {
+			ourLastThreadName = Thread.currentThread().getName();
+			Patient p1 = new Patient();
+			p1.setId("p1ReadId");
+			p1.addIdentifier().setValue("p1ReadValue");
+			return Collections.singletonList(p1);
+		}
+
+	}
+
+}
@@ -0,0 +1,215 @@
+package ca.uhn.fhir.rest.server;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.model.dstu2.resource.Bundle;
+import ca.uhn.fhir.model.dstu2.resource.Bundle.Entry;
+import ca.uhn.fhir.model.dstu2.resource.Organization;
+import ca.uhn.fhir.model.dstu2.resource.Patient;
+import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.annotation.RequiredParam;
+import ca.uhn.fhir.rest.annotation.Search;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.util.PortUtil;
+
+public class StreamSearchResultsDstu2Test {
+
+	private static CloseableHttpClient ourClient;
+	private static FhirContext ourCtx = FhirContext.forDstu2();
+	private static List<String> ourLoadedRanges;
+	private static int ourPort;
+	private static Server ourServer;
+	private static RestfulServer ourServlet;
+
+	@After
+	public void after() {
+		ourServlet.setStreamSearchResults(false);
+	}
+
+	@Before
+	public void before() {
+		ourLoadedRanges = new ArrayList<String>();
+	}
+
+	private Bundle search(String thePath) throws Exception {
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + thePath);
+		HttpResponse status = ourClient.execute(httpGet);
+		String responseContent = IOUtils.toString(status.getEntity().getContent(), "UTF-8");
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals(responseContent, 200, status.getStatusLine().getStatusCode());
+		return ourCtx.newJsonParser().parseResource(Bundle.class, responseContent);
+	}
+
+	private static List<String> toEntryDescriptions(Bundle theBundle) {
+		List<String> retVal = new ArrayList<String>();
+		for (Entry next : theBundle.getEntry()) {
+			String description = next.getResource().getId().toUnqualifiedVersionless().getValue();
+			if (next.getSearch().getMode() != null) {
+				description += " " + next.getSearch().getMode();
+			}
+			retVal.add(description);
+		}
+		return retVal;
+	}
+
+	@Test
+	public void testSearchAndPage() throws Exception {
+		Bundle buffered = search("/Patient?name=all&_count=200&_format=json");
+		assertEquals("[0-200]", ourLoadedRanges.toString());
+
+		ourServlet.setStreamSearchResults(true);
+		ourLoadedRanges.clear();
+		Bundle streamed = search("/Patient?name=all&_count=200&_format=json");
+		assertEquals("[0-100, 100-200]", ourLoadedRanges.toString());
+
+		assertEquals(250, streamed.getTotal().intValue());
+		assertEquals(toEntryDescriptions(buffered), toEntryDescriptions(streamed));
+		assertEquals(203, streamed.getEntry().size());
+		assertEquals("Patient/0", toEntryDescriptions(streamed).get(0));
+		assertEquals("Organization/O2 include", toEntryDescriptions(streamed).get(202));
+		assertEquals("FAMILY199", ((Patient) streamed.getEntry().get(199).getResource()).getNameFirstRep().getFamilyAsSingleString());
+
+		String next = streamed.getLink(Constants.LINK_NEXT).getUrl();
+		assertNotNull(next);
+		ourLoadedRanges.clear();
+		Bundle nextPage = search("/" + next.substring(next.indexOf('?')));
+		assertEquals("[200-250]", ourLoadedRanges.toString());
+		assertEquals("Patient/200", toEntryDescriptions(nextPage).get(0));
+		assertEquals(53, nextPage.getEntry().size());
+	}
+
+	@Test
+	public void testSearchIncludesMatchOnce() throws Exception {
+		ourServlet.setStreamSearchResults(true);
+		Bundle streamed = search("/Patient?name=all&_count=200&_format=json");
+
+		/*
+		 * Patient/0 links to Patient/150, which is loaded in the second batch and is only returned as a match
+		 */
+		List<String> entries = toEntryDescriptions(streamed);
+		assertEquals(150, entries.indexOf("Patient/150"));
+		assertEquals(150, entries.lastIndexOf("Patient/150"));
+		assertEquals(-1, entries.indexOf("Patient/150 include"));
+	}
+
+	@Test
+	public void testSearchWithInvalidResource() throws Exception {
+		ourServlet.setStreamSearchResults(true);
+
+		HttpGet httpGet = new HttpGet("http://localhost:" + ourPort + "/Patient?name=noid&_format=json");
+		HttpResponse status = ourClient.execute(httpGet);
+		String responseContent = IOUtils.toString(status.getEntity().getContent(), "UTF-8");
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals(500, status.getStatusLine().getStatusCode());
+		assertThat(responseContent, containsString("with no ID specified"));
+	}
+
+	@AfterClass
+	public static void afterClass() throws Exception {
+		ourServer.stop();
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ourPort = PortUtil.findFreePort();
+		ourServer = new Server(ourPort);
+
+		ServletHandler proxyHandler = new ServletHandler();
+		ourServlet = new RestfulServer(ourCtx);
+		ourServlet.setResourceProviders(new DummyPatientResourceProvider());
+		ourServlet.setPagingProvider(new FifoMemoryPagingProvider(10).setDefaultPageSize(10).setMaximumPageSize(1000));
+		ourServlet.setBundleInclusionRule(BundleInclusionRule.BASED_ON_RESOURCE_PRESENCE);
+		ServletHolder servletHolder = new ServletHolder(ourServlet);
+		proxyHandler.addServletWithMapping(servletHolder, "/*");
+		ourServer.setHandler(proxyHandler);
+		ourServer.start();
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5000, TimeUnit.MILLISECONDS);
+		HttpClientBuilder builder = HttpClientBuilder.create();
+		builder.setConnectionManager(connectionManager);
+		ourClient = builder.build();
+	}
+
+	public static class DummyPatientResourceProvider implements IResourceProvider {
+
+		@Override
+		public Class<? extends IResource> getResourceType() {
+			return Patient.class;
+		}
+
+		@Search
+		public IBundleProvider search(@RequiredParam(name = Patient.SP_NAME) StringParam theName) {
+			final List<Patient> patients = new ArrayList<Patient>();
+			if ("noid".equals(theName.getValue())) {
+				patients.add(new Patient());
+			} else {
+				List<Organization> orgs = new ArrayList<Organization>();
+				for (int i = 0; i < 3; i++) {
+					Organization org = new Organization();
+					org.setId("Organization/O" + i);
+					orgs.add(org);
+				}
+				for (int i = 0; i < 250; i++) {
+					Patient patient = new Patient();
+					patient.setId("Patient/" + i);
+					patient.addName().addFamily("FAMILY" + i);
+					patient.getManagingOrganization().setResource(orgs.get(i % 3));
+					patients.add(patient);
+				}
+				patients.get(0).addLink().getOther().setResource(patients.get(150));
+			}
+
+			return new IBundleProvider() {
+				@Override
+				public InstantDt getPublished() {
+					return InstantDt.withCurrentTime();
+				}
+
+				@Override
+				public List<IBaseResource> getResources(int theFromIndex, int theToIndex) {
+					ourLoadedRanges.add(theFromIndex + "-" + theToIndex);
+					return new ArrayList<IBaseResource>(patients.subList(theFromIndex, theToIndex));
+				}
+
+				@Override
+				public Integer preferredPageSize() {
+					return null;
+				}
+
+				@Override
+				public int size() {
+					return patients.size();
+				}
+			};
+		}
+
+	}
+
+}
@@ -1,6 +1,7 @@
 package ca.uhn.fhir.util;
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -17,15 +18,93 @@ import org.mockito.ArgumentCaptor;
 import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
 import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.model.dstu2.composite.QuantityDt;
 import ca.uhn.fhir.model.dstu2.resource.Bundle;
+import ca.uhn.fhir.model.dstu2.resource.Observation;
 import ca.uhn.fhir.model.dstu2.resource.Organization;
 import ca.uhn.fhir.model.dstu2.resource.Patient;
 import ca.uhn.fhir.model.primitive.StringDt;
+import ca.uhn.fhir.parser.DataFormatException;
 
 public class FhirTerserDstu2Test {
 
 	private static FhirContext ourCtx = new FhirContext();
 
+	@Test
+	public void testCompiledPath() {
+		Patient p = new Patient();
+		p.addName().addFamily("FAMILY1").addGiven("GIVEN1");
+		p.addName().addFamily("FAMILY2");
+
+		FhirTerser t = ourCtx.newTerser();
+		TerserPath path = t.compile(Patient.class, "Patient.name.family | Patient.name.given");
+		List<StringDt> values = path.getValues(p, StringDt.class);
+		assertEquals(3, values.size());
+		assertEquals("FAMILY1", values.get(0).getValue());
+		assertEquals("FAMILY2", values.get(1).getValue());
+		assertEquals("GIVEN1", values.get(2).getValue());
+
+		assertEquals(t.getValues(p, "Patient.name.family"), t.compile(Patient.class, "Patient.name.family").getValues(p));
+	}
+
+	@Test
+	public void testCompiledPathWithChoice() {
+		Observation obs = new Observation();
+		obs.setValue(new QuantityDt(123));
+
+		FhirTerser t = ourCtx.newTerser();
+		assertEquals(1, t.compile(Observation.class, "Observation.valueQuantity").getValues(obs).size());
+		assertEquals(0, t.compile(Observation.class, "Observation.valueString").getValues(obs).size());
+		assertEquals(1, t.compile(Observation.class, "Observation.valueQuantity.value").getValues(obs).size());
+		assertEquals(0, t.compile(Observation.class, "Observation.valueRange.low").getValues(obs).size());
+	}
+
+	@Test
+	public void testCompiledPathInvalid() {
+		try {
+			ourCtx.newTerser().compile(Patient.class, "Patient.foo");
+			fail();
+		} catch (DataFormatException e) {
+			assertThat(e.getMessage(), containsString("Unknown child name 'foo'"));
+		}
+
+		try {
+			ourCtx.newTerser().compile(Patient.class, "Patient.name.family").getValues(new Organization());
+			fail();
+		} catch (IllegalArgumentException e) {
+			// good
+		}
+	}
+
+	@Test
+	public void testCompileValidPathsSkipsInvalidPaths() {
+		Patient p = new Patient();
+		p.addName().addFamily("FAMILY1").addGiven("GIVEN1");
+
+		TerserPath path = ourCtx.newTerser().compileValidPaths(Patient.class, "Patient.name.family | Patient.foo | Patient.name.given | Patient.active.foo");
+		List<StringDt> values = path.getValues(p, StringDt.class);
+		assertEquals(2, values.size());
+		assertEquals("FAMILY1", values.get(0).getValue());
+		assertEquals("GIVEN1", values.get(1).getValue());
+
+		assertEquals(0, ourCtx.newTerser().compileValidPaths(Patient.class, "Patient.foo").getValues(p).size());
+	}
+
+	@Test
+	public void testCompiledSearchParamPathIsCached() {
+		RuntimeResourceDefinition def = ourCtx.getResourceDefinition(Patient.class);
+		RuntimeSearchParam sp = def.getSearchParam(Patient.SP_FAMILY);
+		TerserPath path = def.getSearchParamPath(sp);
+		assertSame(path, def.getSearchParamPath(sp));
+		assertEquals(sp.getPath(), path.getPath());
+
+		Patient p = new Patient();
+		p.addName().addFamily("FAMILY1");
+		assertEquals(1, path.getValues(p).size());
+	}
+
 	@Test
 	public void testGetAllPopulatedChildElementsOfTypeDoesntDescendIntoEmbedded() {
 		Patient p = new Patient();
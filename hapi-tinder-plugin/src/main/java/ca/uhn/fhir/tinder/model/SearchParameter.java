@@ -48,6 +48,14 @@ public class SearchParameter {
 		return BaseElement.toStringConstant(myDescription);
 	}
 
+	/**
+	 * Returns the description as the generated {@link ca.uhn.fhir.model.api.annotation.SearchParamDefinition} will
+	 * report it at runtime, i.e. without the escaping applied by {@link #getDescription()}
+	 */
+	public String getDescriptionValue() {
+		return getDescription().replace("\\\"", "\"");
+	}
+
 	public String getFluentConstantName() {
 		// if (myPath==null) {
 		// return myName.toUpperCase();
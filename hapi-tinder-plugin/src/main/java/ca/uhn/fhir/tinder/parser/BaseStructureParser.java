@@ -522,8 +522,16 @@ public abstract class BaseStructureParser {
 
 				ourLog.info("Writing file: {}", versionFile.getAbsolutePath());
 
+				List<Resource> resources = new ArrayList<Resource>();
+				for (BaseRootType next : myResources) {
+					if (next instanceof Resource) {
+						resources.add((Resource) next);
+					}
+				}
+
 				VelocityContext ctx = new VelocityContext();
 				ctx.put("nameToResourceClass", myNameToResourceClass);
+				ctx.put("resources", resources);
 				ctx.put("nameToDatatypeClass", myNameToDatatypeClass);
 				ctx.put("version", myVersion);
 				ctx.put("versionEnumName", determineVersionEnum().name());